@@ -33,6 +33,7 @@ CREATE TABLE IF NOT EXISTS `file` (
   `repository_id` int(11) NOT NULL,
   `binary_index` longblob,
   `usages` longblob,
+  `content_hash` char(40) DEFAULT NULL,
   PRIMARY KEY (`file_id`),
   KEY `repository_id` (`repository_id`)
 ) ENGINE=InnoDB  DEFAULT CHARSET=latin1 AUTO_INCREMENT=4960 ;
@@ -122,3 +123,4 @@ ALTER TABLE `type`
 
 
 CREATE INDEX file_path_file USING BTREE ON file (file_path);
+CREATE INDEX content_hash_file USING BTREE ON file (content_hash);
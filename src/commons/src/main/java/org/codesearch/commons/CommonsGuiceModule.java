@@ -21,7 +21,6 @@ package org.codesearch.commons;
 import org.apache.log4j.Logger;
 import org.codesearch.commons.configuration.ConfigurationReader;
 import org.codesearch.commons.configuration.ConfigurationValidator;
-import org.codesearch.commons.configuration.IndexCleaner;
 import org.codesearch.commons.configuration.InvalidConfigurationException;
 import org.codesearch.commons.configuration.properties.IndexStatusManager;
 import org.codesearch.commons.configuration.properties.IndexStatusManagerPropertiesImpl;
@@ -57,8 +56,6 @@ public class CommonsGuiceModule extends AbstractModule {
             DBAccess dbaccess = new DBAccessImpl();
             IndexStatusManager indexStatusManager = new IndexStatusManagerPropertiesImpl(configurationReader);
             new ConfigurationValidator(configurationReader, pluginLoader);
-            IndexCleaner indexCleaner = new IndexCleaner(indexStatusManager, configurationReader, dbaccess);
-            indexCleaner.cleanIndex();
             
             bind(ConfigurationReader.class).toInstance(configurationReader);
             bind(PluginLoader.class).toInstance(pluginLoader);
@@ -20,6 +20,7 @@ import java.net.URI;
 import java.util.List;
 
 import org.apache.commons.configuration.ConfigurationException;
+import org.codesearch.commons.configuration.dto.IndexerConfiguration;
 import org.codesearch.commons.configuration.dto.JobDto;
 import org.codesearch.commons.configuration.dto.RepositoryDto;
 
@@ -89,6 +90,12 @@ public interface ConfigurationReader {
      */
     URI getSearcherLocation();
 
+    /**
+     * Returns the global settings of the indexer.
+     * @return The indexer settings, never null
+     */
+    IndexerConfiguration getIndexerConfiguration();
+
     /**
      * Reloads the configuration to reflect changes.
      */
@@ -38,6 +38,7 @@ public class CodesearchConfiguration {
     private List<String> globalWhitelist = new LinkedList<String>();
     private List<String> globalBlacklist = new LinkedList<String>();
     private List<String> repositoryGroups = new LinkedList<String>();
+    private IndexerConfiguration indexerConfiguration = new IndexerConfiguration();
 
     public URI getSearcherLocation() {
         return searcherLocation;
@@ -102,4 +103,12 @@ public class CodesearchConfiguration {
     public void setRepositoryGroups(List<String> repositoryGroups) {
         this.repositoryGroups = repositoryGroups;
     }
+
+    public IndexerConfiguration getIndexerConfiguration() {
+        return indexerConfiguration;
+    }
+
+    public void setIndexerConfiguration(IndexerConfiguration indexerConfiguration) {
+        this.indexerConfiguration = indexerConfiguration;
+    }
 }
@@ -0,0 +1,289 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.commons.configuration.dto;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Global settings of the indexer that are not bound to a single job or
+ * repository. All values have sensible defaults so the corresponding section
+ * in the configuration file is optional.
+ */
+public class IndexerConfiguration {
+
+    /**
+     * The default number of seconds after which pending changes are
+     * committed.
+     */
+    public static final int DEFAULT_COMMIT_INTERVAL = 60;
+    /**
+     * The default number of changed documents after which the index is
+     * committed.
+     */
+    public static final int DEFAULT_COMMIT_DOCUMENT_COUNT = 10000;
+    /**
+     * The number of threads that retrieve file contents from the version
+     * control system.
+     */
+    private int fetchThreads = 1;
+    /**
+     * The number of threads that build the Lucene documents and add them to
+     * the index.
+     */
+    private int indexingThreads = 1;
+    /**
+     * The number of threads that run the code analyzer plugins.
+     */
+    private int analysisThreads = 1;
+    /**
+     * The maximum number of files that may wait between two stages of the
+     * indexing pipeline.
+     */
+    private int pipelineQueueSize = 100;
+    /**
+     * The number of repositories a job indexes at the same time unless the
+     * job specifies its own limit.
+     */
+    private int concurrentRepositories = 1;
+    /**
+     * The number of seconds a pushed revision waits before it is indexed, so
+     * notifications for the same repository within this time are indexed by
+     * a single job.
+     */
+    private int pushDebounceSeconds = 10;
+    /**
+     * The number of documents after which the index of a bulk import is
+     * committed. The journal of a repository records the processed files
+     * whenever the index they were added to is committed, so this is the
+     * checkpoint interval of bulk imports; other runs follow the commit
+     * policy of the shared index.
+     */
+    private int checkpointInterval = 5000;
+    /**
+     * The maximum number of bytes of a file that are indexed. Larger files are
+     * indexed without content if their size is known before they are
+     * fetched, otherwise their content is truncated.
+     */
+    private int maxFileSize = 10 * 1024 * 1024;
+    /**
+     * Whether repositories that are indexed from scratch are written to a
+     * separate index first and added to the main index when they are
+     * complete.
+     */
+    private boolean bulkImport = true;
+    /**
+     * The size of the RAM buffer of a bulk import in megabytes.
+     */
+    private int bulkImportRamBufferSize = 256;
+    /**
+     * Whether rebuilds keep the old documents of a repository searchable
+     * until the new ones are complete, unless the job specifies otherwise.
+     */
+    private boolean shadowRebuild = false;
+    /**
+     * Whether every repository is stored in a separate index.
+     */
+    private boolean shardedIndex = false;
+    /**
+     * The number of seconds after which pending changes are committed.
+     */
+    private int commitInterval = DEFAULT_COMMIT_INTERVAL;
+    /**
+     * The number of changed documents after which the index is committed.
+     */
+    private int commitDocumentCount = DEFAULT_COMMIT_DOCUMENT_COUNT;
+    /**
+     * Whether the analysis data of files with already analyzed content is
+     * copied instead of analyzing the file again.
+     */
+    private boolean deduplicate = false;
+    /**
+     * Whether the results of the code analysis are cached by content hash.
+     */
+    private boolean analysisCache = true;
+    /**
+     * The glob patterns of the paths of generated files, patterns without a
+     * slash are matched against the file name.
+     */
+    private List<String> generatedFilePatterns = new LinkedList<String>(Arrays.asList("*.min.js", "*.min.css",
+            "package-lock.json", "yarn.lock"));
+    /**
+     * Whether generated files are excluded from the code analysis.
+     */
+    private boolean skipAnalysisOfGeneratedFiles = false;
+    /**
+     * Whether the content of generated files is not indexed, so only their
+     * path can be found.
+     */
+    private boolean skipContentOfGeneratedFiles = false;
+
+    public int getFetchThreads() {
+        return fetchThreads;
+    }
+
+    public void setFetchThreads(int fetchThreads) {
+        this.fetchThreads = fetchThreads;
+    }
+
+    public int getIndexingThreads() {
+        return indexingThreads;
+    }
+
+    public void setIndexingThreads(int indexingThreads) {
+        this.indexingThreads = indexingThreads;
+    }
+
+    public int getAnalysisThreads() {
+        return analysisThreads;
+    }
+
+    public void setAnalysisThreads(int analysisThreads) {
+        this.analysisThreads = analysisThreads;
+    }
+
+    public int getPipelineQueueSize() {
+        return pipelineQueueSize;
+    }
+
+    public void setPipelineQueueSize(int pipelineQueueSize) {
+        this.pipelineQueueSize = pipelineQueueSize;
+    }
+
+    public int getConcurrentRepositories() {
+        return concurrentRepositories;
+    }
+
+    public void setConcurrentRepositories(int concurrentRepositories) {
+        this.concurrentRepositories = concurrentRepositories;
+    }
+
+    public int getPushDebounceSeconds() {
+        return pushDebounceSeconds;
+    }
+
+    public void setPushDebounceSeconds(int pushDebounceSeconds) {
+        this.pushDebounceSeconds = pushDebounceSeconds;
+    }
+
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    public void setCheckpointInterval(int checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    public int getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    public void setMaxFileSize(int maxFileSize) {
+        this.maxFileSize = maxFileSize;
+    }
+
+    public boolean isBulkImport() {
+        return bulkImport;
+    }
+
+    public void setBulkImport(boolean bulkImport) {
+        this.bulkImport = bulkImport;
+    }
+
+    public int getBulkImportRamBufferSize() {
+        return bulkImportRamBufferSize;
+    }
+
+    public void setBulkImportRamBufferSize(int bulkImportRamBufferSize) {
+        this.bulkImportRamBufferSize = bulkImportRamBufferSize;
+    }
+
+    public boolean isShadowRebuild() {
+        return shadowRebuild;
+    }
+
+    public void setShadowRebuild(boolean shadowRebuild) {
+        this.shadowRebuild = shadowRebuild;
+    }
+
+    public boolean isShardedIndex() {
+        return shardedIndex;
+    }
+
+    public void setShardedIndex(boolean shardedIndex) {
+        this.shardedIndex = shardedIndex;
+    }
+
+    public int getCommitInterval() {
+        return commitInterval;
+    }
+
+    public void setCommitInterval(int commitInterval) {
+        this.commitInterval = commitInterval;
+    }
+
+    public int getCommitDocumentCount() {
+        return commitDocumentCount;
+    }
+
+    public void setCommitDocumentCount(int commitDocumentCount) {
+        this.commitDocumentCount = commitDocumentCount;
+    }
+
+    public boolean isDeduplicate() {
+        return deduplicate;
+    }
+
+    public void setDeduplicate(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+    }
+
+    public boolean isAnalysisCache() {
+        return analysisCache;
+    }
+
+    public void setAnalysisCache(boolean analysisCache) {
+        this.analysisCache = analysisCache;
+    }
+
+    public List<String> getGeneratedFilePatterns() {
+        return generatedFilePatterns;
+    }
+
+    public void setGeneratedFilePatterns(List<String> generatedFilePatterns) {
+        this.generatedFilePatterns = generatedFilePatterns;
+    }
+
+    public boolean isSkipAnalysisOfGeneratedFiles() {
+        return skipAnalysisOfGeneratedFiles;
+    }
+
+    public void setSkipAnalysisOfGeneratedFiles(boolean skipAnalysisOfGeneratedFiles) {
+        this.skipAnalysisOfGeneratedFiles = skipAnalysisOfGeneratedFiles;
+    }
+
+    public boolean isSkipContentOfGeneratedFiles() {
+        return skipContentOfGeneratedFiles;
+    }
+
+    public void setSkipContentOfGeneratedFiles(boolean skipContentOfGeneratedFiles) {
+        this.skipContentOfGeneratedFiles = skipContentOfGeneratedFiles;
+    }
+}
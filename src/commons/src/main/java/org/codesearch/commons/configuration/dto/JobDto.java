@@ -43,6 +43,27 @@ public class JobDto {
      * the description of the job.
      */
     private String jobDescription;
+    /**
+     * the number of repositories indexed at the same time, 0 if the global
+     * default of the indexer is used
+     */
+    private int concurrentRepositories;
+    /**
+     * the shortest time in seconds between two runs of an adaptively polling
+     * job, 0 if the job uses its cron expression
+     */
+    private int minPollingInterval;
+    /**
+     * the longest time in seconds between two runs of an adaptively polling
+     * job
+     */
+    private int maxPollingInterval;
+    /**
+     * whether a job that clears the index rebuilds its repositories in the
+     * background, keeping the old documents searchable until the rebuild is
+     * finished
+     */
+    private boolean shadowRebuild;
 
     public JobDto() {
     }
@@ -79,6 +100,48 @@ public class JobDto {
         return this.jobDescription;
     }
 
+    public int getConcurrentRepositories() {
+        return concurrentRepositories;
+    }
+
+    public void setConcurrentRepositories(int concurrentRepositories) {
+        this.concurrentRepositories = concurrentRepositories;
+    }
+
+    public int getMinPollingInterval() {
+        return minPollingInterval;
+    }
+
+    public void setMinPollingInterval(int minPollingInterval) {
+        this.minPollingInterval = minPollingInterval;
+    }
+
+    public int getMaxPollingInterval() {
+        return maxPollingInterval;
+    }
+
+    public void setMaxPollingInterval(int maxPollingInterval) {
+        this.maxPollingInterval = maxPollingInterval;
+    }
+
+    public boolean isShadowRebuild() {
+        return shadowRebuild;
+    }
+
+    public void setShadowRebuild(boolean shadowRebuild) {
+        this.shadowRebuild = shadowRebuild;
+    }
+
+    /**
+     * Whether the polling interval of each repository of the job adapts to
+     * its commit activity instead of following the cron expression.
+     *
+     * @return true if polling bounds are configured
+     */
+    public boolean isAdaptivePolling() {
+        return minPollingInterval > 0;
+    }
+
     /**
      * {@inheritDoc}
      */
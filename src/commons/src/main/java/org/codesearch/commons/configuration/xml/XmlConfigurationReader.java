@@ -29,6 +29,7 @@ import java.util.NoSuchElementException;
 import java.util.Set;
 
 import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.configuration.ConversionException;
 import org.apache.commons.configuration.HierarchicalConfiguration;
 import org.apache.commons.configuration.XMLConfiguration;
 import org.apache.commons.lang.StringUtils;
@@ -38,6 +39,7 @@ import org.codesearch.commons.configuration.InvalidConfigurationException;
 import org.codesearch.commons.configuration.dto.AuthenticationType;
 import org.codesearch.commons.configuration.dto.BasicAuthentication;
 import org.codesearch.commons.configuration.dto.CodesearchConfiguration;
+import org.codesearch.commons.configuration.dto.IndexerConfiguration;
 import org.codesearch.commons.configuration.dto.JobDto;
 import org.codesearch.commons.configuration.dto.NoAuthentication;
 import org.codesearch.commons.configuration.dto.RepositoryDto;
@@ -181,6 +183,14 @@ public class XmlConfigurationReader implements ConfigurationReader {
         return codesearchConfiguration.getSearcherLocation();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized IndexerConfiguration getIndexerConfiguration() {
+        return codesearchConfiguration.getIndexerConfiguration();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -208,6 +218,7 @@ public class XmlConfigurationReader implements ConfigurationReader {
         loadCacheDirectory();
         loadIndexLocation();
         loadSearcherLocation();
+        loadIndexerConfiguration();
         loadGlobalBlacklist();
         loadGlobalWhitelist();
         loadRepositories();
@@ -243,6 +254,86 @@ public class XmlConfigurationReader implements ConfigurationReader {
         }
     }
 
+    @SuppressWarnings("unchecked")
+    private void loadIndexerConfiguration() throws InvalidConfigurationException {
+        IndexerConfiguration indexerConfiguration = new IndexerConfiguration();
+        indexerConfiguration.setFetchThreads(getPositiveInt(XmlConfigurationReaderConstants.INDEXER_FETCH_THREADS,
+                indexerConfiguration.getFetchThreads()));
+        indexerConfiguration.setIndexingThreads(getPositiveInt(XmlConfigurationReaderConstants.INDEXER_INDEXING_THREADS,
+                indexerConfiguration.getIndexingThreads()));
+        indexerConfiguration.setAnalysisThreads(getPositiveInt(XmlConfigurationReaderConstants.INDEXER_ANALYSIS_THREADS,
+                indexerConfiguration.getAnalysisThreads()));
+        indexerConfiguration.setPipelineQueueSize(getPositiveInt(XmlConfigurationReaderConstants.INDEXER_PIPELINE_QUEUE_SIZE,
+                indexerConfiguration.getPipelineQueueSize()));
+        indexerConfiguration.setConcurrentRepositories(getPositiveInt(XmlConfigurationReaderConstants.INDEXER_CONCURRENT_REPOSITORIES,
+                indexerConfiguration.getConcurrentRepositories()));
+        indexerConfiguration.setPushDebounceSeconds(getPositiveInt(XmlConfigurationReaderConstants.INDEXER_PUSH_DEBOUNCE_SECONDS,
+                indexerConfiguration.getPushDebounceSeconds()));
+        indexerConfiguration.setCheckpointInterval(getPositiveInt(XmlConfigurationReaderConstants.INDEXER_CHECKPOINT_INTERVAL,
+                indexerConfiguration.getCheckpointInterval()));
+        indexerConfiguration.setMaxFileSize(getPositiveInt(XmlConfigurationReaderConstants.INDEXER_MAX_FILE_SIZE,
+                indexerConfiguration.getMaxFileSize()));
+        indexerConfiguration.setBulkImport(config.getBoolean(XmlConfigurationReaderConstants.INDEXER_BULK_IMPORT,
+                indexerConfiguration.isBulkImport()));
+        indexerConfiguration.setBulkImportRamBufferSize(getPositiveInt(XmlConfigurationReaderConstants.INDEXER_BULK_IMPORT_RAM_BUFFER_SIZE,
+                indexerConfiguration.getBulkImportRamBufferSize()));
+        indexerConfiguration.setShadowRebuild(config.getBoolean(XmlConfigurationReaderConstants.INDEXER_SHADOW_REBUILD,
+                indexerConfiguration.isShadowRebuild()));
+        indexerConfiguration.setShardedIndex(config.getBoolean(XmlConfigurationReaderConstants.INDEXER_SHARDED_INDEX,
+                indexerConfiguration.isShardedIndex()));
+        indexerConfiguration.setCommitInterval(getPositiveInt(XmlConfigurationReaderConstants.INDEXER_COMMIT_INTERVAL,
+                indexerConfiguration.getCommitInterval()));
+        indexerConfiguration.setCommitDocumentCount(getPositiveInt(XmlConfigurationReaderConstants.INDEXER_COMMIT_DOCUMENT_COUNT,
+                indexerConfiguration.getCommitDocumentCount()));
+        indexerConfiguration.setDeduplicate(config.getBoolean(XmlConfigurationReaderConstants.INDEXER_DEDUPLICATE,
+                indexerConfiguration.isDeduplicate()));
+        indexerConfiguration.setAnalysisCache(config.getBoolean(XmlConfigurationReaderConstants.INDEXER_ANALYSIS_CACHE,
+                indexerConfiguration.isAnalysisCache()));
+        List<String> generatedFilePatterns = config.getList(XmlConfigurationReaderConstants.INDEXER_GENERATED_FILE_PATTERNS);
+        if (!generatedFilePatterns.isEmpty()) {
+            indexerConfiguration.setGeneratedFilePatterns(generatedFilePatterns);
+        }
+        indexerConfiguration.setSkipAnalysisOfGeneratedFiles(config.getBoolean(
+                XmlConfigurationReaderConstants.INDEXER_GENERATED_FILES_SKIP_ANALYSIS,
+                indexerConfiguration.isSkipAnalysisOfGeneratedFiles()));
+        indexerConfiguration.setSkipContentOfGeneratedFiles(config.getBoolean(
+                XmlConfigurationReaderConstants.INDEXER_GENERATED_FILES_SKIP_CONTENT,
+                indexerConfiguration.isSkipContentOfGeneratedFiles()));
+        codesearchConfiguration.setIndexerConfiguration(indexerConfiguration);
+    }
+
+    /**
+     * Reads an optional, strictly positive integer value from the
+     * configuration.
+     *
+     * @param key the key of the value
+     * @param defaultValue the value used if the key is not specified
+     * @return the configured value or the default value
+     * @throws InvalidConfigurationException if the value is not a positive
+     * integer
+     */
+    private int getPositiveInt(String key, int defaultValue) throws InvalidConfigurationException {
+        return getPositiveInt(config, key, defaultValue);
+    }
+
+    /**
+     * Reads an optional, strictly positive integer value from the given part
+     * of the configuration.
+     */
+    private int getPositiveInt(HierarchicalConfiguration configuration, String key, int defaultValue)
+            throws InvalidConfigurationException {
+        int value;
+        try {
+            value = configuration.getInt(key, defaultValue);
+        } catch (ConversionException ex) {
+            throw new InvalidConfigurationException("Value of " + key + " is not a number: " + ex);
+        }
+        if (value < 1) {
+            throw new InvalidConfigurationException("Value of " + key + " must be greater than 0, was " + value);
+        }
+        return value;
+    }
+
     private void loadRepositories() throws InvalidConfigurationException {
         List<RepositoryDto> repositories = new LinkedList<RepositoryDto>();
         Set<String> repositoryGroups = new HashSet<String>();
@@ -337,7 +428,23 @@ public class XmlConfigurationReader implements ConfigurationReader {
             job.setRepositories(repositoriesForJob);
             boolean clearIndex = hc.getBoolean(XmlConfigurationReaderConstants.JOB_CLEAR, false);
             job.setClearIndex(clearIndex);
+            job.setShadowRebuild(hc.getBoolean(XmlConfigurationReaderConstants.JOB_SHADOW_REBUILD,
+                    codesearchConfiguration.getIndexerConfiguration().isShadowRebuild()));
             job.setJobDescription(hc.getString(XmlConfigurationReaderConstants.JOB_DESCRIPTION, ""));
+            if (hc.containsKey(XmlConfigurationReaderConstants.JOB_CONCURRENT_REPOSITORIES)) {
+                job.setConcurrentRepositories(getPositiveInt(hc, XmlConfigurationReaderConstants.JOB_CONCURRENT_REPOSITORIES, 1));
+            }
+            if (hc.containsKey(XmlConfigurationReaderConstants.JOB_MIN_POLLING_INTERVAL)
+                    || hc.containsKey(XmlConfigurationReaderConstants.JOB_MAX_POLLING_INTERVAL)) {
+                int minInterval = getPositiveInt(hc, XmlConfigurationReaderConstants.JOB_MIN_POLLING_INTERVAL, 60);
+                int maxInterval = getPositiveInt(hc, XmlConfigurationReaderConstants.JOB_MAX_POLLING_INTERVAL, 86400);
+                if (maxInterval < minInterval) {
+                    throw new InvalidConfigurationException("The maximum polling interval of a job must not be smaller than the minimum, was "
+                            + maxInterval + " < " + minInterval);
+                }
+                job.setMinPollingInterval(minInterval);
+                job.setMaxPollingInterval(maxInterval);
+            }
             jobs.add(job);
         }
         codesearchConfiguration.setJobs(jobs);
@@ -74,6 +74,46 @@ public final class XmlConfigurationReaderConstants {
     /** Used to retrieve all repositories in the xml-config file */
     protected static final String REPOSITORY_LIST = "repositories.repository";
 
+    // INDEXER CONSTANTS
+    /** The number of threads retrieving files from the version control systems */
+    protected static final String INDEXER_FETCH_THREADS = "indexer.fetch-threads";
+    /** The number of threads adding documents to the Lucene index */
+    protected static final String INDEXER_INDEXING_THREADS = "indexer.indexing-threads";
+    /** The number of threads running the code analyzer plugins */
+    protected static final String INDEXER_ANALYSIS_THREADS = "indexer.analysis-threads";
+    /** The maximum number of files buffered between two stages of the indexing pipeline */
+    protected static final String INDEXER_PIPELINE_QUEUE_SIZE = "indexer.pipeline-queue-size";
+    /** The default number of repositories a job indexes concurrently */
+    protected static final String INDEXER_CONCURRENT_REPOSITORIES = "indexer.concurrent-repositories";
+    /** The number of seconds push notifications for a repository are collected before it is indexed */
+    protected static final String INDEXER_PUSH_DEBOUNCE_SECONDS = "indexer.push-debounce-seconds";
+    /** The number of documents after which a bulk import is committed and its progress is checkpointed */
+    protected static final String INDEXER_CHECKPOINT_INTERVAL = "indexer.checkpoint-interval";
+    /** The maximum number of bytes of a file that are indexed */
+    protected static final String INDEXER_MAX_FILE_SIZE = "indexer.max-file-size";
+    /** Whether repositories indexed from scratch are imported through a separate index */
+    protected static final String INDEXER_BULK_IMPORT = "indexer.bulk-import";
+    /** The RAM buffer size of bulk imports in megabytes */
+    protected static final String INDEXER_BULK_IMPORT_RAM_BUFFER_SIZE = "indexer.bulk-import-ram-buffer-size";
+    /** Whether rebuilds keep the old documents searchable by default */
+    protected static final String INDEXER_SHADOW_REBUILD = "indexer.shadow-rebuild";
+    /** Whether every repository is stored in a separate index */
+    protected static final String INDEXER_SHARDED_INDEX = "indexer.sharded-index";
+    /** The number of seconds after which pending changes of the index are committed */
+    protected static final String INDEXER_COMMIT_INTERVAL = "indexer.commit-interval";
+    /** The number of changed documents after which the index is committed */
+    protected static final String INDEXER_COMMIT_DOCUMENT_COUNT = "indexer.commit-document-count";
+    /** Whether the analysis data of identical file contents is reused */
+    protected static final String INDEXER_DEDUPLICATE = "indexer.deduplicate";
+    /** Whether the results of the code analysis are cached by content hash */
+    protected static final String INDEXER_ANALYSIS_CACHE = "indexer.analysis-cache";
+    /** The glob patterns of the paths of generated files */
+    protected static final String INDEXER_GENERATED_FILE_PATTERNS = "indexer.generated-files.pattern";
+    /** Whether generated files are excluded from the code analysis */
+    protected static final String INDEXER_GENERATED_FILES_SKIP_ANALYSIS = "indexer.generated-files.skip-analysis";
+    /** Whether the content of generated files is not indexed */
+    protected static final String INDEXER_GENERATED_FILES_SKIP_CONTENT = "indexer.generated-files.skip-content";
+
     // REPOSITORY CONSTANTS
     /** Used to access the repository version control system type parameter */
     protected static final String REPOSITORY_VCS = "version-control-system";
@@ -129,4 +169,12 @@ public final class XmlConfigurationReaderConstants {
     protected static final String JOB_CLEAR = "clear";
     /** description used for dashboard view. */
     public static final String JOB_DESCRIPTION = "description";
+    /** The number of repositories the job indexes concurrently */
+    protected static final String JOB_CONCURRENT_REPOSITORIES = "concurrent-repositories";
+    /** The shortest interval in seconds between two runs of an adaptively polling job */
+    protected static final String JOB_MIN_POLLING_INTERVAL = "min-polling-interval";
+    /** The longest interval in seconds between two runs of an adaptively polling job */
+    protected static final String JOB_MAX_POLLING_INTERVAL = "max-polling-interval";
+    /** Whether the rebuild of the job keeps the old documents searchable */
+    protected static final String JOB_SHADOW_REBUILD = "shadow-rebuild";
 }
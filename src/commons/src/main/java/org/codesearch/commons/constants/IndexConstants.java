@@ -37,8 +37,16 @@ public final class IndexConstants {
     public static final String INDEX_FIELD_FILENAME="filename";
     public static final String INDEX_FIELD_REVISION="revision";
     public static final String INDEX_FIELD_FILE_TYPE = "file_type";
+    /** The untokenized field that identifies the document of a file, it consists of the repository and the file path */
+    public static final String INDEX_FIELD_KEY = "key";
+    /** The untokenized field that holds the git blob id of the content of a file */
+    public static final String INDEX_FIELD_CONTENT_HASH = "content_hash";
+    /** The untokenized field that is true for generated files like parsers or minified scripts, false otherwise */
+    public static final String INDEX_FIELD_GENERATED = "generated";
     public static final String REVISIONS_PROPERTY_FILENAME = "revisions.properties";
     public static final String REPOSITORY_STATUS_INCONSISTENT = "inconsistent";
+    /** The directory in the index location that holds the indexes of single repositories */
+    public static final String SHARD_DIRECTORY = "shards";
     
     public static final String LC_POSTFIX = "_lc";
     
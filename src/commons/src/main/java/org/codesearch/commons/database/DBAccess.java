@@ -142,9 +142,21 @@ public interface DBAccess {
      * @param usages the usages as a list of Usages
      * @param types the types that are declared in the file as a list of strings
      * @param imports the imports that are declared in the file as a list of strings
+     * @param contentHash the hash of the analyzed content, null if it is not recorded
      * @throws DatabaseAccessException
      */
-    void setAnalysisDataForFile(String filePath, String repository, AstNode binaryIndex, List<Usage> usages, List<String> types, List<String> imports) throws DatabaseAccessException;
+    void setAnalysisDataForFile(String filePath, String repository, AstNode binaryIndex, List<Usage> usages, List<String> types, List<String> imports,
+            String contentHash) throws DatabaseAccessException;
+
+    /**
+     * copies the analysis data of another file with the same content hash to the file, without deserializing it
+     * @param contentHash the hash of the content of the file
+     * @param filePath the path of the file
+     * @param repository the repository holding the file
+     * @return true if the data was copied, false if no other file with this content has analysis data
+     * @throws DatabaseAccessException
+     */
+    boolean copyAnalysisData(String contentHash, String filePath, String repository) throws DatabaseAccessException;
 
     /**
      * sets the last_analysis_revision of the repository in the database
@@ -156,4 +168,22 @@ public interface DBAccess {
 
     void deleteFile(String filePath, String repository) throws DatabaseAccessException;
 
+    /**
+     * returns the paths of all files of the repository that have a record in the database
+     * @param repository the name of the repository
+     * @return the file paths
+     * @throws DatabaseAccessException
+     */
+    List<String> getFilesOfRepository(String repository) throws DatabaseAccessException;
+
+    /**
+     * moves the record of a renamed file including its analysis data to the new path, an existing record at the new path is replaced
+     * @param oldPath the path the file was renamed from
+     * @param newPath the path of the file
+     * @param repository the repository holding the file
+     * @return true if the file was moved, false if there was no record at the old path
+     * @throws DatabaseAccessException
+     */
+    boolean moveFile(String oldPath, String newPath, String repository) throws DatabaseAccessException;
+
 }
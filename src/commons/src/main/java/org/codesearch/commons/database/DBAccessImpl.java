@@ -38,6 +38,7 @@ import javax.sql.DataSource;
 
 import org.apache.commons.dbutils.QueryRunner;
 import org.apache.commons.dbutils.ResultSetHandler;
+import org.apache.commons.dbutils.handlers.ArrayHandler;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.codesearch.commons.plugins.codeanalyzing.ast.AstNode;
@@ -75,6 +76,12 @@ public class DBAccessImpl implements DBAccess {
     private static final String STMT_DELETE_REPOSITORY = "DELETE FROM repository WHERE repository_name = ?";
     private static final String STMT_GET_IMPORTS_FOR_FILE = "SELECT target_file_path FROM import i JOIN file f ON i.source_file_id = f.file_id JOIN repository r ON f.repository_id = r.repository_id WHERE r.repository_name = ? AND f.file_path = ?";
     private static final String STMT_PURGE_ALL_RECORDS = "DELETE FROM repository";
+    private static final String STMT_SET_CONTENT_HASH_FOR_FILE = "UPDATE file SET content_hash = ? WHERE file_id = ?";
+    private static final String STMT_GET_ANALYZED_FILE_FOR_CONTENT_HASH = "SELECT f.file_id, f.binary_index, f.usages FROM file f JOIN repository r ON f.repository_id = r.repository_id WHERE f.content_hash = ? AND f.binary_index IS NOT NULL AND NOT (f.file_path = ? AND r.repository_name = ?) LIMIT 1";
+    private static final String STMT_COPY_TYPES = "INSERT INTO type (full_name, file_id, repo_id) SELECT full_name, ?, ? FROM type WHERE file_id = ?";
+    private static final String STMT_COPY_IMPORTS = "INSERT INTO import (source_file_id, target_file_path) SELECT ?, target_file_path FROM import WHERE source_file_id = ?";
+    private static final String STMT_MOVE_FILE = "UPDATE file SET file_path = ? WHERE file_path = ? AND repository_id = (SELECT repository_id FROM repository where repository_name = ?)";
+    private static final String STMT_GET_FILES_OF_REPOSITORY = "SELECT f.file_path FROM file f JOIN repository r ON f.repository_id = r.repository_id WHERE r.repository_name = ?";
     private static final String STMT_DELETE_FILE = "DELETE FROM file WHERE file_path = ? AND repository_id = (SELECT repository_id FROM repository where repository_name = ?)";
 
     private DataSource dataSource;
@@ -387,7 +394,7 @@ public class DBAccessImpl implements DBAccess {
      */
     @Override
     public synchronized void setAnalysisDataForFile(String filePath, String repository, AstNode binaryIndex,
-            List<Usage> usages, List<String> types, List<String> imports) throws DatabaseAccessException {
+            List<Usage> usages, List<String> types, List<String> imports, String contentHash) throws DatabaseAccessException {
         int fileId = ensureThatRecordExists(filePath, repository);
         int repoId = getRepoIdForRepoName(repository);
 
@@ -399,6 +406,9 @@ public class DBAccessImpl implements DBAccess {
             run.update(STMT_CLEAR_IMPORTS_FOR_FILE, fileId);
             // Sets the Binary index and the usages for the file
             run.update(STMT_SET_BINARY_INDEX_AND_USAGES_FOR_FILE, binaryIndex, usages, fileId);
+            if (contentHash != null) {
+                run.update(STMT_SET_CONTENT_HASH_FOR_FILE, contentHash, fileId);
+            }
             // Sets the types for the file, if any
             if (!(types.isEmpty())) {
                 // extends the insert into statement by one line for each type in the list of types
@@ -428,6 +438,31 @@ public class DBAccessImpl implements DBAccess {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean copyAnalysisData(String contentHash, String filePath, String repository) throws DatabaseAccessException {
+        QueryRunner run = new QueryRunner(dataSource);
+        try {
+            Object[] source = run.query(STMT_GET_ANALYZED_FILE_FOR_CONTENT_HASH, new ArrayHandler(), contentHash, filePath, repository);
+            if (source == null || source.length == 0) {
+                return false;
+            }
+            deleteFile(filePath, repository);
+            int fileId = ensureThatRecordExists(filePath, repository);
+            int repoId = getRepoIdForRepoName(repository);
+            // the serialized data is copied as it is
+            run.update(STMT_SET_BINARY_INDEX_AND_USAGES_FOR_FILE, source[1], source[2], fileId);
+            run.update(STMT_SET_CONTENT_HASH_FOR_FILE, contentHash, fileId);
+            run.update(STMT_COPY_TYPES, fileId, repoId, source[0]);
+            run.update(STMT_COPY_IMPORTS, fileId, source[0]);
+            return true;
+        } catch (SQLException ex) {
+            throw new DatabaseAccessException("SQLException while trying to access the database\n" + ex);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -480,6 +515,45 @@ public class DBAccessImpl implements DBAccess {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized List<String> getFilesOfRepository(String repository) throws DatabaseAccessException {
+        ResultSetHandler<List<String>> handler = new ResultSetHandler<List<String>>() {
+
+            @Override
+            public List<String> handle(ResultSet rs) throws SQLException {
+                List<String> files = new LinkedList<String>();
+                while (rs.next()) {
+                    files.add(rs.getString("file_path"));
+                }
+                return files;
+            }
+        };
+
+        QueryRunner run = new QueryRunner(dataSource);
+        try {
+            return run.query(STMT_GET_FILES_OF_REPOSITORY, handler, repository);
+        } catch (SQLException ex) {
+            throw new DatabaseAccessException("SQLException while trying to access the database\n" + ex);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean moveFile(String oldPath, String newPath, String repository) throws DatabaseAccessException {
+        QueryRunner run = new QueryRunner(dataSource);
+        try {
+            run.update(STMT_DELETE_FILE, newPath, repository);
+            return run.update(STMT_MOVE_FILE, newPath, oldPath, repository) > 0;
+        } catch (SQLException ex) {
+            throw new DatabaseAccessException("SQLException while trying to access the database\n" + ex);
+        }
+    }
+
     /**
      * returns the id for the file
      * 
@@ -37,6 +37,18 @@ public interface PluginLoader {
      * @return The plugin matching the purpose, null if not found.
      */
     <T extends Plugin> T getPlugin(final Class<T> clazz, final String purpose);
+
+    /**
+     * Creates a new instance of the plugin of the given type whose purposes
+     * contain the given purpose. In contrast to {@link #getPlugin(Class, String)}
+     * the returned instance is not shared, so it can hold state that must not be
+     * accessed by multiple threads at the same time.
+     *
+     * @param purpose The purpose
+     * @return A new instance of the plugin matching the purpose, null if not found.
+     * @throws PluginLoaderException if the plugin could not be instantiated
+     */
+    <T extends Plugin> T getNewPluginInstance(final Class<T> clazz, final String purpose) throws PluginLoaderException;
     
     /**
      * Returns all implementations for the given plugin base class.
@@ -40,9 +40,11 @@ public class PluginLoaderImpl implements PluginLoader {
     private ServiceLoader<Plugin> serviceLoader;
     private Multimap<Class<? extends Plugin>, Plugin> loadedPlugins = LinkedListMultimap.create();
     private Multimap<Class<? extends Plugin>, String> basePluginPurposeMap = LinkedListMultimap.create();
+    private ConfigurationReader configurationReader;
 
     @Inject
     public PluginLoaderImpl(ConfigurationReader configurationReader) throws PluginLoaderException {
+        this.configurationReader = configurationReader;
         serviceLoader = ServiceLoader.load(Plugin.class);
         for (Plugin plugin : serviceLoader) {
             Class<? extends Plugin> basePlugin = findPluginBase(plugin.getClass());
@@ -59,16 +61,7 @@ public class PluginLoaderImpl implements PluginLoader {
                 }
 
                 loadedPlugins.put(basePlugin, plugin);
-
-                if (plugin instanceof VersionControlPlugin) {
-                    VersionControlPlugin vcsPlugin = (VersionControlPlugin) plugin;
-                    try {
-                        vcsPlugin.setCacheDirectory(configurationReader.getCacheDirectory().getAbsolutePath());
-                    } catch (VersionControlPluginException ex) {
-                        throw new PluginLoaderException(
-                                "VersionControlPlugin failed to load because an invalid cache directory was specified: " + ex);
-                    }
-                }
+                initializePlugin(plugin);
 
             } else {
                 LOG.warn("Invalid plugin class found: " + plugin.getClass().getCanonicalName());
@@ -94,6 +87,23 @@ public class PluginLoaderImpl implements PluginLoader {
         return null;
     }
 
+    @Override
+    public <T extends Plugin> T getNewPluginInstance(final Class<T> clazz, final String purpose) throws PluginLoaderException {
+        T sharedInstance = getPlugin(clazz, purpose);
+        if (sharedInstance == null) {
+            return null;
+        }
+        try {
+            T plugin = clazz.cast(sharedInstance.getClass().newInstance());
+            initializePlugin(plugin);
+            return plugin;
+        } catch (InstantiationException ex) {
+            throw new PluginLoaderException("Could not create new instance of " + sharedInstance.getClass().getCanonicalName() + ": " + ex);
+        } catch (IllegalAccessException ex) {
+            throw new PluginLoaderException("Could not create new instance of " + sharedInstance.getClass().getCanonicalName() + ": " + ex);
+        }
+    }
+
     @Override
     public synchronized <T extends Plugin> List<T> getAllPluginsOfClass(final Class<T> clazz) {
         List<T> implementations = new LinkedList<T>();
@@ -103,6 +113,24 @@ public class PluginLoaderImpl implements PluginLoader {
         return implementations;
     }
 
+    /**
+     * Applies the configuration required by the plugin before it can be used.
+     *
+     * @param plugin The newly created plugin
+     * @throws PluginLoaderException if the plugin could not be configured
+     */
+    private void initializePlugin(Plugin plugin) throws PluginLoaderException {
+        if (plugin instanceof VersionControlPlugin) {
+            VersionControlPlugin vcsPlugin = (VersionControlPlugin) plugin;
+            try {
+                vcsPlugin.setCacheDirectory(configurationReader.getCacheDirectory().getAbsolutePath());
+            } catch (VersionControlPluginException ex) {
+                throw new PluginLoaderException(
+                        "VersionControlPlugin failed to load because an invalid cache directory was specified: " + ex);
+            }
+        }
+    }
+
     /**
      * Finds the base plugin for a given class
      * 
@@ -112,17 +140,33 @@ public class PluginLoaderImpl implements PluginLoader {
     @SuppressWarnings("unchecked")
     private Class<? extends Plugin> findPluginBase(Class<? extends Plugin> class1) {
         if (class1.getSuperclass() == null || class1.getSuperclass() == java.lang.Object.class) {
-            for (Class<?> iface : class1.getInterfaces()) {
-                if (Plugin.class.isAssignableFrom(iface)) {
-                    if (iface.isAnnotationPresent(PluginBase.class)) {
-                        return (Class<? extends Plugin>) iface;
-                    }
-                }
-            }
-            // Not a valid plugin class
-            return null;
+            return findPluginBaseInterface(class1.getInterfaces());
         } else {
             return findPluginBase((Class<? extends Plugin>) class1.getSuperclass());
         }
     }
+
+    /**
+     * Searches the given interfaces and the interfaces they extend for the
+     * base plugin
+     *
+     * @param interfaces the interfaces implemented by a plugin class
+     * @return the base plugin, null if none of the interfaces is one
+     */
+    @SuppressWarnings("unchecked")
+    private Class<? extends Plugin> findPluginBaseInterface(Class<?>[] interfaces) {
+        for (Class<?> iface : interfaces) {
+            if (Plugin.class.isAssignableFrom(iface)) {
+                if (iface.isAnnotationPresent(PluginBase.class)) {
+                    return (Class<? extends Plugin>) iface;
+                }
+                Class<? extends Plugin> base = findPluginBaseInterface(iface.getInterfaces());
+                if (base != null) {
+                    return base;
+                }
+            }
+        }
+        // Not a valid plugin class
+        return null;
+    }
 }
@@ -66,4 +66,10 @@ public interface CodeAnalyzerPlugin extends Plugin {
      * @throws CodeAnalyzerPluginException if the analyzeFile method was not executed before
      */
     List<String> getImports() throws CodeAnalyzerPluginException;
+
+    /**
+     * returns the version of the analysis, it must be changed whenever the plugin extracts different information from the same content
+     * @return the version
+     */
+    String getVersion();
 }
@@ -64,6 +64,8 @@ public interface LuceneFieldPlugin extends Plugin {
 
     /**
      * Returns the analyzer used for the content of the lower case field.
+     * The analyzer has to convert the terms to lower case, the value is
+     * passed to it unchanged.
      * If the field should not be analyzed in lower case, return null.
      */
     Analyzer getLowerCaseAnalyzer();
@@ -0,0 +1,45 @@
+/**
+ * Copyright 2010 David Froehlich   <david.froehlich@businesssoftware.at>,
+ *                Samuel Kogler     <samuel.kogler@gmail.com>,
+ *                Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Codesearch is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Codesearch.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.codesearch.commons.plugins.lucenefields;
+
+import java.io.Reader;
+
+import org.codesearch.commons.plugins.vcs.FileDto;
+
+/**
+ * A {@link LuceneFieldPlugin} whose value can be read as a stream. The
+ * indexer uses the reader instead of {@link #getFieldValue(FileDto)} for
+ * analyzed fields that are not stored, so large values such as file contents
+ * are tokenized without being copied into a String.
+ */
+public interface StreamingLuceneFieldPlugin extends LuceneFieldPlugin {
+
+    /**
+     * Returns a reader over the value of the field for the given file. Every
+     * call returns a new reader, the regular and the lower case field are
+     * read separately.
+     * @param fileDto
+     * @return the reader over the content of the field
+     * @throws LuceneFieldValueException
+     */
+    Reader getFieldReader(FileDto fileDto) throws LuceneFieldValueException;
+}
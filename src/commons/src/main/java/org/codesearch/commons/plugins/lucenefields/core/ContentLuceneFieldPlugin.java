@@ -25,10 +25,15 @@
  */
 package org.codesearch.commons.plugins.lucenefields.core;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+
 import org.apache.lucene.analysis.Analyzer;
-import org.codesearch.commons.plugins.lucenefields.LuceneFieldPlugin;
 import org.codesearch.commons.plugins.lucenefields.LuceneFieldValueException;
 import org.codesearch.commons.plugins.lucenefields.SimpleSourceCodeAnalyzer;
+import org.codesearch.commons.plugins.lucenefields.StreamingLuceneFieldPlugin;
 import org.codesearch.commons.plugins.vcs.FileDto;
 import org.codesearch.commons.utils.mime.MimeTypeUtil;
 
@@ -36,7 +41,7 @@ import org.codesearch.commons.utils.mime.MimeTypeUtil;
  *
  * @author David Froehlich
  */
-public class ContentLuceneFieldPlugin implements LuceneFieldPlugin {
+public class ContentLuceneFieldPlugin implements StreamingLuceneFieldPlugin {
 
     /**
      * checks whether the file is flagged as binary
@@ -48,13 +53,34 @@ public class ContentLuceneFieldPlugin implements LuceneFieldPlugin {
     @Override
     public String getFieldValue(FileDto fileDto) throws LuceneFieldValueException {
         String content = "";
-        try{if (!fileDto.isBinary() && !MimeTypeUtil.isBinaryType(MimeTypeUtil.guessMimeTypeViaFileEnding(fileDto.getFilePath().substring(fileDto.getFilePath().lastIndexOf('.'))))) {
+        if (isTextFile(fileDto)) {
             content = new String(fileDto.getContent());
         }
-        } catch(StringIndexOutOfBoundsException ex){
+        return content;
+    }
+
+    /**
+     * Reads the content of non binary files directly from the byte array of
+     * the fileDto, binary files have an empty content
+     * @param fileDto
+     * @return
+     * @throws LuceneFieldValueException
+     */
+    @Override
+    public Reader getFieldReader(FileDto fileDto) throws LuceneFieldValueException {
+        if (isTextFile(fileDto)) {
+            return new InputStreamReader(new ByteArrayInputStream(fileDto.getContent()));
+        }
+        return new StringReader("");
+    }
+
+    private boolean isTextFile(FileDto fileDto) {
+        try {
+            return !fileDto.isBinary() && !MimeTypeUtil.isBinaryType(MimeTypeUtil.guessMimeTypeViaFileEnding(fileDto.getFilePath().substring(fileDto.getFilePath().lastIndexOf('.'))));
+        } catch (StringIndexOutOfBoundsException ex) {
             //in case the file does not have a file ending it is assumed that it is binary, therefore the content will not be stored in the index
+            return false;
         }
-        return content;
     }
 
     /** {@inheritDoc} */
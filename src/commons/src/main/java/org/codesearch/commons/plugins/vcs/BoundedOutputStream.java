@@ -0,0 +1,84 @@
+/**
+ * Copyright 2010 David Froehlich   <david.froehlich@businesssoftware.at>,
+ *                Samuel Kogler     <samuel.kogler@gmail.com>,
+ *                Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Codesearch is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Codesearch.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.codesearch.commons.plugins.vcs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+
+/**
+ * Collects the content of a file up to a maximum number of bytes. Bytes
+ * beyond the maximum are counted and discarded, so the output of a command
+ * can be drained completely without holding more than the maximum in memory.
+ */
+public class BoundedOutputStream extends OutputStream {
+
+    private ByteArrayOutputStream content = new ByteArrayOutputStream();
+    private long maxSize;
+    private long size;
+
+    /**
+     * Creates a new stream.
+     * @param maxSize the maximum number of bytes that are kept
+     */
+    public BoundedOutputStream(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(int b) {
+        if (size < maxSize) {
+            content.write(b);
+        }
+        size++;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(byte[] b, int off, int len) {
+        if (size < maxSize) {
+            content.write(b, off, (int) Math.min(len, maxSize - size));
+        }
+        size += len;
+    }
+
+    /**
+     * @return the number of bytes written, including the discarded ones
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return whether bytes were discarded
+     */
+    public boolean isTruncated() {
+        return size > maxSize;
+    }
+
+    /**
+     * @return the kept bytes
+     */
+    public byte[] toByteArray() {
+        return content.toByteArray();
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright 2010 David Froehlich   <david.froehlich@businesssoftware.at>,
+ *                Samuel Kogler     <samuel.kogler@gmail.com>,
+ *                Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Codesearch is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Codesearch.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.codesearch.commons.plugins.vcs;
+
+/**
+ * Enumerates the changed files of a repository one at a time, so callers do
+ * not need to hold all of them in memory. Works like an {@link java.util.Iterator}
+ * whose methods may fail with a {@link VersionControlPluginException}.
+ *
+ * The iterator must be closed once it is no longer used, even if it was not
+ * read to the end.
+ */
+public interface ChangedFileIterator {
+
+    /**
+     * Returns whether another changed file is available.
+     * @return true if {@link #next()} returns another file
+     * @throws VersionControlPluginException if the changes could not be read
+     */
+    boolean hasNext() throws VersionControlPluginException;
+
+    /**
+     * Returns the next changed file.
+     * @return the file
+     * @throws VersionControlPluginException if the changes could not be read
+     * @throws java.util.NoSuchElementException if there are no more files
+     */
+    FileIdentifier next() throws VersionControlPluginException;
+
+    /**
+     * Releases the resources held by the iterator, e.g. a running process.
+     */
+    void close();
+}
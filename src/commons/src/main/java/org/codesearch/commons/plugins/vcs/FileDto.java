@@ -36,6 +36,25 @@ public class FileDto {
     private byte[] content;
     private RepositoryDto repository;
     private boolean binary;
+    /**
+     * The git blob id of the complete content.
+     */
+    private String contentHash;
+    /**
+     * The path the file was renamed from without changing its content, null
+     * otherwise.
+     */
+    private String oldPath;
+    /**
+     * Whether the file was recognized as generated, like parsers or minified
+     * scripts.
+     */
+    private boolean generated;
+    /**
+     * Whether the content was cut off because the file is larger than the
+     * requested maximum size.
+     */
+    private boolean truncated;
 
     public void setContent(byte[] content) {
         this.content = content;
@@ -53,6 +72,38 @@ public class FileDto {
         this.binary = binary;
     }
 
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public String getOldPath() {
+        return oldPath;
+    }
+
+    public void setOldPath(String oldPath) {
+        this.oldPath = oldPath;
+    }
+
+    public boolean isGenerated() {
+        return generated;
+    }
+
+    public void setGenerated(boolean generated) {
+        this.generated = generated;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public void setTruncated(boolean truncated) {
+        this.truncated = truncated;
+    }
+
     public RepositoryDto getRepository() {
         return repository;
     }
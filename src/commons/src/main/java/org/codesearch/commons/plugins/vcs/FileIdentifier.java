@@ -35,6 +35,25 @@ public class FileIdentifier {
     private String filePath;
     private boolean deleted;
     private RepositoryDto repository;
+    /**
+     * The path the file was renamed or copied from, null if it is a new or
+     * modified file.
+     */
+    private String oldPath;
+    /**
+     * How similar the content is to the content at the old path in percent,
+     * -1 if the version control system does not report it.
+     */
+    private int similarity = -1;
+    /**
+     * Whether the file at the old path still exists.
+     */
+    private boolean copied;
+    /**
+     * The size of the file in bytes if the version control system reported
+     * it together with the change, -1 otherwise.
+     */
+    private long size = -1;
 
     public FileIdentifier() {
     }
@@ -73,6 +92,45 @@ public class FileIdentifier {
         this.repository = repository;
     }
 
+    public String getOldPath() {
+        return oldPath;
+    }
+
+    public void setOldPath(String oldPath) {
+        this.oldPath = oldPath;
+    }
+
+    public int getSimilarity() {
+        return similarity;
+    }
+
+    public void setSimilarity(int similarity) {
+        this.similarity = similarity;
+    }
+
+    public boolean isCopied() {
+        return copied;
+    }
+
+    public void setCopied(boolean copied) {
+        this.copied = copied;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    /**
+     * determines if the file was moved from its old path, which no longer exists
+     */
+    public boolean isRenamed() {
+        return oldPath != null && !copied;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o instanceof FileIdentifier) {
@@ -0,0 +1,226 @@
+/**
+ * Copyright 2010 David Froehlich   <david.froehlich@businesssoftware.at>,
+ *                Samuel Kogler     <samuel.kogler@gmail.com>,
+ *                Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Codesearch is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Codesearch.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.codesearch.commons.plugins.vcs;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the changed files line by line from the output of a command line
+ * tool while it is still running. Subclasses convert the lines to
+ * {@link FileIdentifier}s. Lines that only add information to the preceding
+ * file, like the copy source printed by hg, are recognized by
+ * {@link #isContinuationLine(String)}; the iterator reads one line ahead to
+ * find them.
+ *
+ * The error output of the process is drained by a separate thread, a process
+ * that writes more error output than the pipe holds would block otherwise.
+ * Only its beginning is kept for the error message.
+ */
+public abstract class ProcessChangedFileIterator implements ChangedFileIterator {
+
+    /**
+     * The maximum number of characters of the error output that are kept.
+     */
+    static final int MAX_ERROR_OUTPUT = 8192;
+    /**
+     * The number of milliseconds to wait for the rest of the error output
+     * after the process exited.
+     */
+    private static final long ERROR_OUTPUT_TIMEOUT = 5000;
+    private Process process;
+    private BufferedReader reader;
+    /**
+     * The file returned by the next call to {@link #next()}, null if it was
+     * not read yet.
+     */
+    private FileIdentifier nextFile;
+    /**
+     * The line read ahead while looking for continuation lines, null if there
+     * is none.
+     */
+    private String nextLine;
+    private boolean finished;
+    private ErrorOutputReader errorOutputReader;
+
+    /**
+     * Creates a new iterator that reads the output of the given process.
+     * @param process the started process, it is destroyed when the iterator is closed
+     */
+    public ProcessChangedFileIterator(Process process) {
+        this.process = process;
+        this.reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        errorOutputReader = new ErrorOutputReader(process.getErrorStream());
+        errorOutputReader.start();
+    }
+
+    /**
+     * Converts a line of the output to a file.
+     * @param line the line
+     * @return the file or null if the line does not describe a file
+     */
+    protected abstract FileIdentifier parseLine(String line);
+
+    /**
+     * Checks whether a line belongs to the file of the preceding line.
+     * @param line the line
+     * @return true if the line is passed to {@link #parseContinuationLine(FileIdentifier, String)}
+     */
+    protected boolean isContinuationLine(String line) {
+        return false;
+    }
+
+    /**
+     * Adds the information of a continuation line to the file of the preceding line.
+     * @param file the file
+     * @param line the continuation line
+     */
+    protected void parseContinuationLine(FileIdentifier file, String line) {
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean hasNext() throws VersionControlPluginException {
+        while (nextFile == null && !finished) {
+            String line = readLine();
+            if (line == null) {
+                finished = true;
+                checkExitValue();
+            } else if (!line.isEmpty()) {
+                nextFile = parseLine(line);
+                if (nextFile != null) {
+                    readContinuationLines(nextFile);
+                }
+            }
+        }
+        return nextFile != null;
+    }
+
+    private void readContinuationLines(FileIdentifier file) throws VersionControlPluginException {
+        for (String line = readLine(); line != null; line = readLine()) {
+            if (!isContinuationLine(line)) {
+                nextLine = line;
+                return;
+            }
+            parseContinuationLine(file, line);
+        }
+    }
+
+    private String readLine() throws VersionControlPluginException {
+        if (nextLine != null) {
+            String line = nextLine;
+            nextLine = null;
+            return line;
+        }
+        try {
+            return reader.readLine();
+        } catch (IOException ex) {
+            close();
+            throw new VersionControlPluginException("Error reading changed files: " + ex);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public FileIdentifier next() throws VersionControlPluginException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        FileIdentifier file = nextFile;
+        nextFile = null;
+        return file;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {
+        finished = true;
+        closeQuietly(reader);
+        closeQuietly(process.getErrorStream());
+        closeQuietly(process.getOutputStream());
+        process.destroy();
+    }
+
+    private void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ex) {
+        }
+    }
+
+    private void checkExitValue() throws VersionControlPluginException {
+        try {
+            int exitValue = process.waitFor();
+            if (exitValue != 0) {
+                errorOutputReader.join(ERROR_OUTPUT_TIMEOUT);
+                throw new VersionControlPluginException("Command returned error code: " + exitValue + "\n    Output: "
+                        + errorOutputReader.getOutput());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new VersionControlPluginException("Execution of command interrupted by operating system");
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Reads the error output of the process until it is closed, keeping the
+     * first {@link #MAX_ERROR_OUTPUT} characters.
+     */
+    private static class ErrorOutputReader extends Thread {
+
+        private InputStream errorStream;
+        private StringBuilder output = new StringBuilder();
+
+        ErrorOutputReader(InputStream errorStream) {
+            super("Error output reader");
+            setDaemon(true);
+            this.errorStream = errorStream;
+        }
+
+        @Override
+        public void run() {
+            BufferedReader errorReader = new BufferedReader(new InputStreamReader(errorStream));
+            try {
+                for (String line = errorReader.readLine(); line != null; line = errorReader.readLine()) {
+                    synchronized (this) {
+                        int remaining = MAX_ERROR_OUTPUT - output.length();
+                        if (remaining > 0) {
+                            output.append(line, 0, Math.min(line.length(), remaining)).append('\n');
+                        }
+                    }
+                }
+            } catch (IOException ex) {
+                // the stream was closed together with the iterator
+            }
+        }
+
+        synchronized String getOutput() {
+            return output.toString();
+        }
+    }
+}
@@ -61,6 +61,24 @@ public interface VersionControlPlugin extends Plugin {
      */
     FileDto getFile(FileIdentifier fileInfo, String revision) throws VersionControlPluginException, VcsFileNotFoundException;
 
+    /**
+     * Retrieves the file like {@link #getFile(FileIdentifier, String)}, but keeps at most the given number of
+     * bytes of its content in memory. A larger content is cut off and the file is marked as truncated.
+     * @param fileInfo The file
+     * @param revision The revision, see {@link #getFile(FileIdentifier, String)}
+     * @param maxSize The maximum number of bytes of the content
+     * @return The retrieved file
+     */
+    FileDto getFile(FileIdentifier fileInfo, String revision, long maxSize) throws VersionControlPluginException, VcsFileNotFoundException;
+
+    /**
+     * Returns the size of the file at the given revision without retrieving its content.
+     * @param fileInfo The file
+     * @param revision The revision, see {@link #getFile(FileIdentifier, String)}
+     * @return The size in bytes, or -1 if it can not be determined cheaply
+     */
+    long getFileSize(FileIdentifier fileInfo, String revision) throws VersionControlPluginException;
+
     /**
      * Returns a list of changed files since the given revision.
      * @param revision The given revision
@@ -71,6 +89,17 @@ public interface VersionControlPlugin extends Plugin {
      */
     Set<FileIdentifier> getChangedFilesSinceRevision(String revision, List<String> blacklistPatterns, List<String> whitelistPatterns) throws VersionControlPluginException;
 
+    /**
+     * Enumerates the changed files since the given revision without loading all of them into memory.
+     * The arguments and the returned files are the same as for {@link #getChangedFilesSinceRevision(String, List, List)}.
+     * The returned iterator must be closed by the caller.
+     * @param revision The given revision
+     * @param blacklistPatterns A list of Java regexes for directories that should not be checked
+     * @param whitelistPatterns A list of Java regexes for directories that should be checked
+     * @return The iterator over the changed files
+     */
+    ChangedFileIterator iterateChangedFilesSinceRevision(String revision, List<String> blacklistPatterns, List<String> whitelistPatterns) throws VersionControlPluginException;
+
     /**
      * Returns whether this plugin uses the black- and whitelist entries when retrieving changes files.
      * If false is returned, the caller is responsible for black- and whitelisting.
@@ -84,6 +113,14 @@ public interface VersionControlPlugin extends Plugin {
      */
     String getRepositoryRevision() throws VersionControlPluginException;
 
+    /**
+     * Returns the newest revision of the remote repository without pulling any changes.
+     * This is used to skip repositories that have not changed since they were indexed, so the
+     * returned value must be comparable to the one returned by {@link #getRepositoryRevision()} after pulling.
+     * @return The remote revision number, or null if it can not be determined cheaply
+     */
+    String getRemoteRevision() throws VersionControlPluginException;
+
     /**
      * returns a list of the names of all files in the directory (not recursively)
      * @param directoryPath the path of the directory
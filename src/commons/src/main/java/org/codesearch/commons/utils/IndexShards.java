@@ -0,0 +1,54 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.commons.utils;
+
+import java.io.File;
+
+import org.codesearch.commons.constants.IndexConstants;
+
+/**
+ * Resolves the locations of the repository indexes of a sharded index, shared
+ * by the indexer writing them and the searcher reading them.
+ */
+public final class IndexShards {
+
+    private IndexShards() {
+    }
+
+    /**
+     * Returns the directory holding the indexes of all repositories.
+     *
+     * @param indexLocation the location of the index
+     * @return the directory of the shards
+     */
+    public static File getShardDirectory(File indexLocation) {
+        return new File(indexLocation, IndexConstants.SHARD_DIRECTORY);
+    }
+
+    /**
+     * Returns the directory of the index of a single repository.
+     *
+     * @param indexLocation the location of the index
+     * @param repositoryName the name of the repository
+     * @return the directory of the shard
+     */
+    public static File getShardLocation(File indexLocation, String repositoryName) {
+        return new File(getShardDirectory(indexLocation), repositoryName);
+    }
+}
@@ -6,6 +6,7 @@ import java.util.List;
 
 import org.codesearch.commons.configuration.ConfigurationReader;
 import org.codesearch.commons.configuration.dto.CodesearchConfiguration;
+import org.codesearch.commons.configuration.dto.IndexerConfiguration;
 import org.codesearch.commons.configuration.dto.JobDto;
 import org.codesearch.commons.configuration.dto.RepositoryDto;
 
@@ -58,6 +59,11 @@ public class MockConfigurationReader implements ConfigurationReader {
         return configuration.getSearcherLocation();
     }
 
+    @Override
+    public IndexerConfiguration getIndexerConfiguration() {
+        return configuration.getIndexerConfiguration();
+    }
+
     @Override
     public void refresh() {
     }
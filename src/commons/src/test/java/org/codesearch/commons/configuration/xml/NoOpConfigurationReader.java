@@ -5,6 +5,7 @@ import java.net.URI;
 import java.util.List;
 
 import org.codesearch.commons.configuration.ConfigurationReader;
+import org.codesearch.commons.configuration.dto.IndexerConfiguration;
 import org.codesearch.commons.configuration.dto.JobDto;
 import org.codesearch.commons.configuration.dto.RepositoryDto;
 
@@ -54,6 +55,11 @@ public class NoOpConfigurationReader implements ConfigurationReader{
         return null;
     }
 
+    @Override
+    public IndexerConfiguration getIndexerConfiguration() {
+        return null;
+    }
+
     @Override
     public void refresh() {
 
@@ -100,7 +100,13 @@ public class MockDBAccessImpl implements DBAccess{
     }
 
     @Override
-    public void setAnalysisDataForFile(String filePath, String repository, AstNode binaryIndex, List<Usage> usages, List<String> types, List<String> imports) throws DatabaseAccessException {
+    public void setAnalysisDataForFile(String filePath, String repository, AstNode binaryIndex, List<Usage> usages, List<String> types, List<String> imports,
+            String contentHash) throws DatabaseAccessException {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public boolean copyAnalysisData(String contentHash, String filePath, String repository) throws DatabaseAccessException {
         throw new UnsupportedOperationException("Not supported yet.");
     }
 
@@ -114,4 +120,14 @@ public class MockDBAccessImpl implements DBAccess{
         throw new UnsupportedOperationException("Not supported yet.");
     }
 
+    @Override
+    public List<String> getFilesOfRepository(String repository) throws DatabaseAccessException {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public boolean moveFile(String oldPath, String newPath, String repository) throws DatabaseAccessException {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
 }
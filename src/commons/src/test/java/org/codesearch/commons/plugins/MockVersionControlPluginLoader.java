@@ -5,6 +5,7 @@ import java.util.List;
 import java.util.Set;
 
 import org.codesearch.commons.configuration.dto.RepositoryDto;
+import org.codesearch.commons.plugins.vcs.ChangedFileIterator;
 import org.codesearch.commons.plugins.vcs.FileDto;
 import org.codesearch.commons.plugins.vcs.FileIdentifier;
 import org.codesearch.commons.plugins.vcs.VersionControlPlugin;
@@ -38,16 +39,36 @@ public class MockVersionControlPluginLoader implements PluginLoader {
                     throw new UnsupportedOperationException("Not supported yet.");
                 }
 
+                @Override
+                public FileDto getFile(FileIdentifier fileInfo, String revision, long maxSize) throws VersionControlPluginException {
+                    throw new UnsupportedOperationException("Not supported yet.");
+                }
+
                 @Override
                 public Set<FileIdentifier> getChangedFilesSinceRevision(String revision, List<String> blacklistPatterns, List<String> whitelistPatterns) throws VersionControlPluginException {
                     throw new UnsupportedOperationException("Not supported yet.");
                 }
 
+                @Override
+                public ChangedFileIterator iterateChangedFilesSinceRevision(String revision, List<String> blacklistPatterns, List<String> whitelistPatterns) throws VersionControlPluginException {
+                    throw new UnsupportedOperationException("Not supported yet.");
+                }
+
                 @Override
                 public String getRepositoryRevision() throws VersionControlPluginException {
                     throw new UnsupportedOperationException("Not supported yet.");
                 }
 
+                @Override
+                public long getFileSize(FileIdentifier fileInfo, String revision) throws VersionControlPluginException {
+                    return -1;
+                }
+
+                @Override
+                public String getRemoteRevision() throws VersionControlPluginException {
+                    throw new UnsupportedOperationException("Not supported yet.");
+                }
+
                 @Override
                 public List<String> getFilesInDirectory(String directoryPath, String revision) throws VersionControlPluginException {
                     throw new UnsupportedOperationException("Not supported yet.");
@@ -83,4 +104,9 @@ public class MockVersionControlPluginLoader implements PluginLoader {
             return null;
         }
     }
+
+    @Override
+    public <T extends Plugin> T getNewPluginInstance(Class<T> clazz, String purpose) {
+        return getPlugin(clazz, purpose);
+    }
 }
@@ -19,4 +19,8 @@ public class NullPluginLoader implements PluginLoader{
         return null;
     }
 
+    @Override
+    public <T extends Plugin> T getNewPluginInstance(Class<T> clazz, String purpose) {
+        return null;
+    }
 }
@@ -0,0 +1,52 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.commons.plugins.vcs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class BoundedOutputStreamTest {
+
+    @Test
+    public void testContentWithinLimitIsKept() throws Exception {
+        BoundedOutputStream out = new BoundedOutputStream(5);
+        out.write("abc".getBytes());
+        out.write('d');
+        out.write('e');
+        assertArrayEquals("abcde".getBytes(), out.toByteArray());
+        assertEquals(5, out.getSize());
+        assertFalse(out.isTruncated());
+    }
+
+    @Test
+    public void testContentBeyondLimitIsDiscarded() throws Exception {
+        BoundedOutputStream out = new BoundedOutputStream(4);
+        byte[] content = "abcdefghij".getBytes();
+        out.write(content, 0, 3);
+        out.write(content, 3, 7);
+        out.write('k');
+        assertArrayEquals("abcd".getBytes(), out.toByteArray());
+        assertEquals(11, out.getSize());
+        assertTrue(out.isTruncated());
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.commons.plugins.vcs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class ProcessChangedFileIteratorTest {
+
+    private ChangedFileIterator iterate(String script) throws IOException {
+        Process process = new ProcessBuilder("sh", "-c", script).start();
+        return new ProcessChangedFileIterator(process) {
+
+            @Override
+            protected FileIdentifier parseLine(String line) {
+                return new FileIdentifier(line, false, null);
+            }
+        };
+    }
+
+    @Test(timeout = 30000)
+    public void testNoisyErrorOutputDoesNotBlock() throws Exception {
+        // writes far more to stderr than a pipe buffer holds before printing the files
+        ChangedFileIterator files = iterate("i=0; while [ $i -lt 5000 ]; do echo 'warning: something is odd here' >&2; i=$((i+1)); done;"
+                + " echo a.txt; echo b.txt");
+        assertTrue(files.hasNext());
+        assertEquals("a.txt", files.next().getFilePath());
+        assertEquals("b.txt", files.next().getFilePath());
+        assertFalse(files.hasNext());
+    }
+
+    @Test(timeout = 30000)
+    public void testErrorOutputIsReportedAndBounded() throws Exception {
+        ChangedFileIterator files = iterate("i=0; while [ $i -lt 5000 ]; do echo 'fatal: bad revision' >&2; i=$((i+1)); done; exit 3");
+        try {
+            files.hasNext();
+            fail("the exit value of the command was not checked");
+        } catch (VersionControlPluginException ex) {
+            assertTrue(ex.getMessage().contains("error code: 3"));
+            assertTrue(ex.getMessage().contains("fatal: bad revision"));
+            assertTrue(ex.getMessage().length() < ProcessChangedFileIterator.MAX_ERROR_OUTPUT + 200);
+        }
+    }
+}
@@ -24,6 +24,7 @@ import org.codesearch.indexer.client.rpc.DashboardServiceAsync;
 import org.codesearch.indexer.client.ui.dashboard.DashboardView.Presenter;
 import org.codesearch.indexer.shared.DashboardData;
 import org.codesearch.indexer.shared.JobStatus;
+import org.codesearch.indexer.shared.PollingStatus;
 import org.codesearch.indexer.shared.RepositoryStatus;
 
 import com.google.gwt.activity.shared.AbstractActivity;
@@ -50,6 +51,7 @@ public class DashboardActivity extends AbstractActivity implements Presenter {
     private ListDataProvider<JobStatus> scheduledJobsDataProvider = new ListDataProvider<JobStatus>();
     private ListDataProvider<JobStatus> delayedJobsDataProvider = new ListDataProvider<JobStatus>();
     private ListDataProvider<RepositoryStatus> repositoryStatuses = new ListDataProvider<RepositoryStatus>();
+    private ListDataProvider<PollingStatus> pollingStatuses = new ListDataProvider<PollingStatus>();
     private Timer refreshTimer;
 
     public DashboardActivity(ClientFactory clientFactory, DashboardPlace place) {
@@ -69,6 +71,7 @@ public class DashboardActivity extends AbstractActivity implements Presenter {
         scheduledJobsDataProvider.addDataDisplay(dashboardView.getScheduledJobsTable());
         delayedJobsDataProvider.addDataDisplay(dashboardView.getDelayedJobsTable());
         repositoryStatuses.addDataDisplay(dashboardView.getRepositoryStatuses());
+        pollingStatuses.addDataDisplay(dashboardView.getPollingStatusesTable());
         refresh();
 
         refreshTimer = new Timer() {
@@ -97,6 +100,7 @@ public class DashboardActivity extends AbstractActivity implements Presenter {
         scheduledJobsDataProvider.removeDataDisplay(dashboardView.getScheduledJobsTable());
         delayedJobsDataProvider.removeDataDisplay(dashboardView.getDelayedJobsTable());
         repositoryStatuses.removeDataDisplay(dashboardView.getRepositoryStatuses());
+        pollingStatuses.removeDataDisplay(dashboardView.getPollingStatusesTable());
         refreshTimer.cancel();
     }
 
@@ -125,6 +129,7 @@ public class DashboardActivity extends AbstractActivity implements Presenter {
             scheduledJobsDataProvider.setList(result.getScheduledJobs());
             delayedJobsDataProvider.setList(result.getDelayedJobs());
             repositoryStatuses.setList(result.getRepositoryStatuses());
+            pollingStatuses.setList(result.getPollingStatuses());
         }
     }
 }
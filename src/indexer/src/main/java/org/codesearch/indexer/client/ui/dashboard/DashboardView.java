@@ -22,6 +22,7 @@
 package org.codesearch.indexer.client.ui.dashboard;
 
 import org.codesearch.indexer.shared.JobStatus;
+import org.codesearch.indexer.shared.PollingStatus;
 import org.codesearch.indexer.shared.RepositoryStatus;
 
 import com.google.gwt.event.dom.client.HasClickHandlers;
@@ -89,6 +90,13 @@ public interface DashboardView extends IsWidget {
      */
     CellTable<RepositoryStatus> getRepositoryStatuses();
 
+    /**
+     * Returns the table that is used to display the adaptively polled
+     * repositories
+     * @return The table
+     */
+    CellTable<PollingStatus> getPollingStatusesTable();
+
     interface Presenter {
         void goTo(Place place);
         void refresh();
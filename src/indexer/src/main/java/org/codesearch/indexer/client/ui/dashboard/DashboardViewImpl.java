@@ -21,6 +21,7 @@ package org.codesearch.indexer.client.ui.dashboard;
 import java.util.Date;
 
 import org.codesearch.indexer.shared.JobStatus;
+import org.codesearch.indexer.shared.PollingStatus;
 import org.codesearch.indexer.shared.RepositoryStatus;
 
 import com.google.gwt.cell.client.Cell;
@@ -57,6 +58,8 @@ public class DashboardViewImpl extends Composite implements DashboardView {
     HasClickHandlers refreshButton;
     @UiField(provided = true)
     CellTable<RepositoryStatus> repositoryStatuses; // yeah, it's actually statuses, I own a dictionary
+    @UiField(provided = true)
+    CellTable<PollingStatus> pollingStatuses;
     private Presenter presenter;
 
     public DashboardViewImpl() {
@@ -145,6 +148,14 @@ public class DashboardViewImpl extends Composite implements DashboardView {
         return delayedJobs;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CellTable<PollingStatus> getPollingStatusesTable() {
+        return pollingStatuses;
+    }
+
     private void initTables() {
         Cell<Date> dateCell = new DateCell(DateTimeFormat.getFormat(PredefinedFormat.DATE_TIME_SHORT));
 
@@ -157,6 +168,7 @@ public class DashboardViewImpl extends Composite implements DashboardView {
 
         delayedJobs = new CellTable<JobStatus>();
         delayedJobs.addColumn(new JobStatusNameColumn(), "Name");
+        delayedJobs.addColumn(new JobStatusWaitingForColumn(), "Waiting for");
         delayedJobs.setSelectionModel(new NoSelectionModel<JobStatus>());
         delayedJobs.setPageSize(Integer.MAX_VALUE);
 
@@ -177,6 +189,72 @@ public class DashboardViewImpl extends Composite implements DashboardView {
         repositoryStatuses.addColumn(new RepositoryStatusStatusColumn(), "Status");
         repositoryStatuses.setSelectionModel(new NoSelectionModel<RepositoryStatus>());
         repositoryStatuses.setPageSize(Integer.MAX_VALUE);
+
+        pollingStatuses = new CellTable<PollingStatus>();
+        pollingStatuses.addColumn(new PollingStatusNameColumn(), "Repository");
+        pollingStatuses.addColumn(new PollingStatusIntervalColumn(), "Interval (s)");
+        pollingStatuses.addColumn(new PollingStatusNextRunColumn(dateCell), "Next poll");
+        pollingStatuses.addColumn(new PollingStatusChangeRateColumn(), "Polls with changes");
+        pollingStatuses.addColumn(new PollingStatusChangedFilesColumn(), "Last changed files");
+        pollingStatuses.addColumn(new PollingStatusDecisionColumn(), "Decision");
+        pollingStatuses.setSelectionModel(new NoSelectionModel<PollingStatus>());
+        pollingStatuses.setPageSize(Integer.MAX_VALUE);
+    }
+
+    private class PollingStatusNameColumn extends TextColumn<PollingStatus> {
+
+        @Override
+        public String getValue(PollingStatus object) {
+            return object.getRepositoryName();
+        }
+    }
+
+    private class PollingStatusIntervalColumn extends Column<PollingStatus, Number> {
+
+        public PollingStatusIntervalColumn() {
+            super(new NumberCell());
+        }
+
+        @Override
+        public Number getValue(PollingStatus object) {
+            return object.getInterval();
+        }
+    }
+
+    private class PollingStatusNextRunColumn extends Column<PollingStatus, Date> {
+
+        public PollingStatusNextRunColumn(Cell<Date> cell) {
+            super(cell);
+        }
+
+        @Override
+        public Date getValue(PollingStatus object) {
+            return object.getNextRun();
+        }
+    }
+
+    private class PollingStatusChangeRateColumn extends TextColumn<PollingStatus> {
+
+        @Override
+        public String getValue(PollingStatus object) {
+            return object.getRunsWithChanges() + " / " + object.getRuns();
+        }
+    }
+
+    private class PollingStatusChangedFilesColumn extends TextColumn<PollingStatus> {
+
+        @Override
+        public String getValue(PollingStatus object) {
+            return object.getLastChangedFiles() < 0 ? "" : String.valueOf(object.getLastChangedFiles());
+        }
+    }
+
+    private class PollingStatusDecisionColumn extends TextColumn<PollingStatus> {
+
+        @Override
+        public String getValue(PollingStatus object) {
+            return object.getDecision();
+        }
     }
 
     private class RepositoryStatusNameColumn extends TextColumn<RepositoryStatus> {
@@ -261,6 +339,14 @@ public class DashboardViewImpl extends Composite implements DashboardView {
         }
     }
 
+    private class JobStatusWaitingForColumn extends TextColumn<JobStatus> {
+
+        @Override
+        public String getValue(JobStatus object) {
+            return object.getWaitingFor();
+        }
+    }
+
     private class JobStatusStepColumn extends TextColumn<JobStatus> {
 
         @Override
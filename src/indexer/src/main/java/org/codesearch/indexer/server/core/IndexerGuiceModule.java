@@ -30,6 +30,7 @@ import org.codesearch.indexer.server.manager.IndexingManager;
 import org.codesearch.indexer.server.rpc.DashboardServiceImpl;
 import org.codesearch.indexer.server.rpc.LogServiceImpl;
 import org.codesearch.indexer.server.rpc.ManualIndexingServiceImpl;
+import org.codesearch.indexer.server.servlets.PushServlet;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
 import org.quartz.SchedulerFactory;
@@ -71,5 +72,6 @@ public class IndexerGuiceModule extends ServletModule {
         serve("/dashboard.rpc").with(DashboardServiceImpl.class);
         serve("/log.rpc").with(LogServiceImpl.class);
         serve("/manualIndexing.rpc").with(ManualIndexingServiceImpl.class);
+        serve("/push").with(PushServlet.class);
     }
 }
@@ -24,6 +24,7 @@ import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 
 import org.codesearch.commons.CommonsGuiceModule;
+import org.codesearch.indexer.server.manager.IndexWriterManager;
 import org.codesearch.indexer.server.manager.IndexingManager;
 
 import com.google.inject.Guice;
@@ -49,5 +50,6 @@ public class IndexerMain extends GuiceServletContextListener implements ServletC
     public void contextDestroyed(ServletContextEvent servletContextEvent) {
         IndexingManager indexingManager = injector.getInstance(IndexingManager.class);
         indexingManager.stop();
+        injector.getInstance(IndexWriterManager.class).shutdown();
     }
 }
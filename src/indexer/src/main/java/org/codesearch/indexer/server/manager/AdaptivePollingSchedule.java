@@ -0,0 +1,185 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.indexer.server.manager;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.codesearch.indexer.shared.PollingStatus;
+import org.quartz.JobKey;
+
+/**
+ * Keeps the polling interval of every adaptively polled repository. The
+ * interval starts at the configured minimum, it is halved whenever a poll found
+ * changes and doubled whenever it did not, always staying within the configured
+ * bounds. A poll that changed many files resets the interval to the minimum
+ * right away.
+ *
+ * This class is not thread-safe, it is guarded by the {@link IndexingManager}.
+ */
+public class AdaptivePollingSchedule {
+
+    /**
+     * The number of changed files at which a repository is considered busy and
+     * polled as often as possible.
+     */
+    public static final int BUSY_CHANGED_FILES = 100;
+    /**
+     * Instantiate a logger
+     */
+    private static final Logger LOG = Logger.getLogger(AdaptivePollingSchedule.class);
+    /**
+     * The polling state of the repositories, mapped to their names.
+     */
+    private Map<String, RepositoryActivity> activities = new LinkedHashMap<String, RepositoryActivity>();
+
+    /**
+     * Adds a repository to the schedule, starting at the minimum interval.
+     *
+     * @param repository the name of the repository
+     * @param jobKey the job that polls the repository
+     * @param minInterval the shortest interval in seconds
+     * @param maxInterval the longest interval in seconds
+     * @return false if the repository is already polled by another job
+     */
+    public boolean register(String repository, JobKey jobKey, int minInterval, int maxInterval) {
+        if (activities.containsKey(repository)) {
+            LOG.warn("Repository " + repository + " is already polled by " + activities.get(repository).jobKey + ", ignoring " + jobKey);
+            return false;
+        }
+        RepositoryActivity activity = new RepositoryActivity();
+        activity.jobKey = jobKey;
+        activity.minInterval = minInterval;
+        activity.maxInterval = maxInterval;
+        activity.interval = minInterval;
+        activity.lastChangedFiles = -1;
+        activity.decision = "started with minimum interval";
+        activities.put(repository, activity);
+        return true;
+    }
+
+    /**
+     * Returns the job that polls the given repository.
+     *
+     * @param repository the name of the repository
+     * @return the job key or null if the repository is not polled adaptively
+     */
+    public JobKey getJobKey(String repository) {
+        RepositoryActivity activity = activities.get(repository);
+        return activity == null ? null : activity.jobKey;
+    }
+
+    /**
+     * Records the result of a poll and adapts the interval of the repository.
+     *
+     * @param repository the name of the repository
+     * @param changedFiles the number of changed files or null if the poll
+     *            failed
+     * @return the interval until the next poll in seconds
+     */
+    public int recordRun(String repository, Integer changedFiles) {
+        RepositoryActivity activity = activities.get(repository);
+        activity.runs++;
+        if (changedFiles == null) {
+            activity.lastChangedFiles = -1;
+            activity.decision = "poll failed, interval kept";
+        } else if (changedFiles == 0) {
+            activity.lastChangedFiles = 0;
+            activity.interval = (int) Math.min((long) activity.interval * 2, activity.maxInterval);
+            activity.decision = "no changes, interval extended";
+        } else {
+            activity.lastChangedFiles = changedFiles;
+            activity.runsWithChanges++;
+            if (changedFiles >= BUSY_CHANGED_FILES) {
+                activity.interval = activity.minInterval;
+                activity.decision = changedFiles + " files changed, interval reset";
+            } else {
+                activity.interval = Math.max(activity.interval / 2, activity.minInterval);
+                activity.decision = changedFiles + " files changed, interval shortened";
+            }
+        }
+        LOG.debug("Polling interval of repository " + repository + " is " + activity.interval + " seconds: " + activity.decision);
+        return activity.interval;
+    }
+
+    /**
+     * Records that a poll was skipped because another job processed the
+     * repository at the time.
+     *
+     * @param repository the name of the repository
+     * @return the interval until the next poll in seconds
+     */
+    public int recordSkippedRun(String repository) {
+        RepositoryActivity activity = activities.get(repository);
+        activity.decision = "repository locked by another job, interval kept";
+        return activity.interval;
+    }
+
+    /**
+     * Sets the time of the next poll of the repository.
+     *
+     * @param repository the name of the repository
+     * @param nextRun the time of the next poll
+     */
+    public void setNextRun(String repository, Date nextRun) {
+        activities.get(repository).nextRun = nextRun;
+    }
+
+    /**
+     * Returns the polling state of all repositories for the dashboard.
+     *
+     * @return the states
+     */
+    public List<PollingStatus> getStatuses() {
+        List<PollingStatus> statuses = new LinkedList<PollingStatus>();
+        for (Map.Entry<String, RepositoryActivity> entry : activities.entrySet()) {
+            RepositoryActivity activity = entry.getValue();
+            PollingStatus status = new PollingStatus();
+            status.setRepositoryName(entry.getKey());
+            status.setInterval(activity.interval);
+            status.setNextRun(activity.nextRun);
+            status.setRuns(activity.runs);
+            status.setRunsWithChanges(activity.runsWithChanges);
+            status.setLastChangedFiles(activity.lastChangedFiles);
+            status.setDecision(activity.decision);
+            statuses.add(status);
+        }
+        return statuses;
+    }
+
+    /**
+     * The polling state of a single repository.
+     */
+    private static class RepositoryActivity {
+
+        private JobKey jobKey;
+        private int minInterval;
+        private int maxInterval;
+        private int interval;
+        private Date nextRun;
+        private int runs;
+        private int runsWithChanges;
+        private int lastChangedFiles;
+        private String decision;
+    }
+}
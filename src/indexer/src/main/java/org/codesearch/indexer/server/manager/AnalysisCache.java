@@ -0,0 +1,191 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.indexer.server.manager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Singleton;
+
+import org.apache.log4j.Logger;
+import org.codesearch.commons.configuration.ConfigurationReader;
+import org.codesearch.commons.plugins.codeanalyzing.CodeAnalyzerPlugin;
+import org.codesearch.commons.plugins.codeanalyzing.ast.AstNode;
+import org.codesearch.commons.plugins.codeanalyzing.ast.Usage;
+
+import com.google.inject.Inject;
+
+/**
+ * Stores the results of the code analysis on disk, keyed by the hash of the
+ * analyzed content and the version of the {@link CodeAnalyzerPlugin}. Files
+ * whose content was analyzed before, e.g. when a repository is rebuilt, a
+ * file is renamed or a change is reverted, are not parsed again.
+ *
+ * Every plugin version has its own directory in the analysis directory of the
+ * cache directory, so results of outdated plugin versions are never used. The
+ * cache can be deleted at any time.
+ */
+@Singleton
+public class AnalysisCache {
+
+    /**
+     * The name of the directory in the cache directory that holds the
+     * analysis results.
+     */
+    public static final String CACHE_DIRECTORY = "analysis";
+    /**
+     * Instantiate a logger
+     */
+    private static final Logger LOG = Logger.getLogger(AnalysisCache.class);
+    /**
+     * The directory of the cache, null if the cache is disabled.
+     */
+    private File directory;
+
+    @Inject
+    public AnalysisCache(ConfigurationReader configReader) {
+        if (configReader.getIndexerConfiguration().isAnalysisCache()) {
+            directory = new File(configReader.getCacheDirectory(), CACHE_DIRECTORY);
+        }
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Returns the stored result of the analysis of the given content.
+     *
+     * @param contentHash the hash of the content
+     * @param plugin the plugin that analyzes the content
+     * @return the result, or null if the content was not analyzed by this
+     *         version of the plugin
+     */
+    public CachedAnalysis get(String contentHash, CodeAnalyzerPlugin plugin) {
+        if (directory == null || contentHash == null) {
+            return null;
+        }
+        File file = getFile(contentHash, plugin);
+        if (!file.exists()) {
+            return null;
+        }
+        ObjectInputStream in = null;
+        try {
+            in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+            return (CachedAnalysis) in.readObject();
+        } catch (IOException ex) {
+            LOG.warn("Could not read cached analysis " + file + ", deleting it: " + ex);
+        } catch (ClassNotFoundException ex) {
+            LOG.warn("Could not read cached analysis " + file + ", deleting it: " + ex);
+        } catch (ClassCastException ex) {
+            LOG.warn("Could not read cached analysis " + file + ", deleting it: " + ex);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ex) {
+                    LOG.warn("Unable to close stream:\n", ex);
+                }
+            }
+        }
+        file.delete();
+        return null;
+    }
+
+    /**
+     * Stores the result of the analysis of the given content.
+     *
+     * @param contentHash the hash of the content
+     * @param plugin the plugin that analyzed the content
+     * @param analysis the result of the analysis
+     */
+    public void put(String contentHash, CodeAnalyzerPlugin plugin, CachedAnalysis analysis) {
+        if (directory == null || contentHash == null) {
+            return;
+        }
+        File file = getFile(contentHash, plugin);
+        file.getParentFile().mkdirs();
+        // written to a temporary file first, so concurrent readers never see a partial entry
+        File temporaryFile = new File(file.getParentFile(), file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)));
+            try {
+                out.writeObject(analysis);
+            } finally {
+                out.close();
+            }
+            if (!temporaryFile.renameTo(file)) {
+                temporaryFile.delete();
+            }
+        } catch (IOException ex) {
+            LOG.warn("Could not write cached analysis " + file + ": " + ex);
+            temporaryFile.delete();
+        }
+    }
+
+    private File getFile(String contentHash, CodeAnalyzerPlugin plugin) {
+        String pluginKey = (plugin.getClass().getName() + "-" + plugin.getVersion()).replaceAll("[^A-Za-z0-9._-]", "_");
+        return new File(new File(new File(directory, pluginKey), contentHash.substring(0, 2)), contentHash);
+    }
+
+    /**
+     * The information a code analyzer plugin extracted from a content.
+     */
+    public static class CachedAnalysis implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        private AstNode ast;
+        private List<Usage> usages;
+        private List<String> typeDeclarations;
+        private List<String> imports;
+
+        public CachedAnalysis(AstNode ast, List<Usage> usages, List<String> typeDeclarations, List<String> imports) {
+            this.ast = ast;
+            // the plugins may reuse their lists for the next file
+            this.usages = new ArrayList<Usage>(usages);
+            this.typeDeclarations = new ArrayList<String>(typeDeclarations);
+            this.imports = new ArrayList<String>(imports);
+        }
+
+        public AstNode getAst() {
+            return ast;
+        }
+
+        public List<Usage> getUsages() {
+            return usages;
+        }
+
+        public List<String> getTypeDeclarations() {
+            return typeDeclarations;
+        }
+
+        public List<String> getImports() {
+            return imports;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.indexer.server.manager;
+
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.log4j.Logger;
+import org.codesearch.commons.configuration.dto.RepositoryDto;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+
+/**
+ * Holds the jobs that were delayed because their repositories were locked.
+ * Jobs are kept in separate lanes, manual requests are executed before
+ * incremental runs and incremental runs before full rebuilds. Redundant work is
+ * removed when a job is added:
+ * <ul>
+ * <li>a job is merged into a queued job that shares repositories with it and
+ * indexes them the same way, e.g. with the same concurrency</li>
+ * <li>an incremental job is dropped if a queued rebuild covers all of its
+ * repositories, and queued incremental jobs are dropped if a new rebuild
+ * covers them</li>
+ * </ul>
+ * A job without repositories affects the whole index and covers every other
+ * job.
+ *
+ * This class is not thread-safe, it is guarded by the {@link IndexingManager}.
+ */
+public class DelayedJobQueue {
+
+    /**
+     * The lanes of the queue, in the order they are executed.
+     */
+    public enum Lane {
+        MANUAL, INCREMENTAL, REBUILD
+    }
+
+    /**
+     * Instantiate a logger
+     */
+    private static final Logger LOG = Logger.getLogger(DelayedJobQueue.class);
+    /**
+     * The job data fields that change how a job indexes its repositories,
+     * besides the ones deciding the lane. A merged job runs with the fields
+     * of the queued job, so only jobs with equal fields are merged.
+     */
+    private static final String[] MODE_FIELDS = {IndexingJob.FIELD_CONCURRENT_REPOSITORIES, IndexingJob.FIELD_ADAPTIVE_POLLING};
+    /**
+     * The queued jobs of each lane.
+     */
+    private Map<Lane, List<JobDetail>> lanes = new EnumMap<Lane, List<JobDetail>>(Lane.class);
+
+    public DelayedJobQueue() {
+        for (Lane lane : Lane.values()) {
+            lanes.put(lane, new LinkedList<JobDetail>());
+        }
+    }
+
+    /**
+     * Adds a job to the queue unless its work is already covered by a queued
+     * job.
+     *
+     * @param jobDetail the delayed job
+     * @return true if the job was added as a new entry, false if it was merged
+     *         into another job or dropped
+     */
+    public boolean add(JobDetail jobDetail) {
+        Lane lane = getLane(jobDetail);
+        List<RepositoryDto> repositories = getRepositories(jobDetail);
+
+        if (lane != Lane.REBUILD) {
+            for (JobDetail rebuild : lanes.get(Lane.REBUILD)) {
+                if (covers(getRepositories(rebuild), repositories)) {
+                    LOG.info("Dropping delayed job " + jobDetail.getKey() + ", its repositories are rebuilt by " + rebuild.getKey());
+                    return false;
+                }
+            }
+        } else {
+            for (Lane otherLane : new Lane[] { Lane.MANUAL, Lane.INCREMENTAL }) {
+                for (Iterator<JobDetail> iter = lanes.get(otherLane).iterator(); iter.hasNext();) {
+                    JobDetail queued = iter.next();
+                    if (covers(repositories, getRepositories(queued))) {
+                        LOG.info("Dropping delayed job " + queued.getKey() + ", its repositories are rebuilt by " + jobDetail.getKey());
+                        iter.remove();
+                    }
+                }
+            }
+        }
+
+        for (JobDetail queued : lanes.get(lane)) {
+            List<RepositoryDto> queuedRepositories = getRepositories(queued);
+            if (hasSameMode(queued, jobDetail) && overlaps(queuedRepositories, repositories)) {
+                LOG.info("Merging delayed job " + jobDetail.getKey() + " into " + queued.getKey());
+                queued.getJobDataMap().put(IndexingJob.FIELD_REPOSITORIES, union(queuedRepositories, repositories));
+                return false;
+            }
+        }
+        lanes.get(lane).add(jobDetail);
+        return true;
+    }
+
+    /**
+     * Returns all queued jobs in the order they should be executed.
+     *
+     * @return the jobs
+     */
+    public List<JobDetail> getJobs() {
+        List<JobDetail> jobs = new LinkedList<JobDetail>();
+        for (Lane lane : Lane.values()) {
+            jobs.addAll(lanes.get(lane));
+        }
+        return jobs;
+    }
+
+    /**
+     * Removes the given job from the queue.
+     *
+     * @param jobDetail the job
+     */
+    public void remove(JobDetail jobDetail) {
+        lanes.get(getLane(jobDetail)).remove(jobDetail);
+    }
+
+    /**
+     * Returns the lane a job is queued in. Shadow rebuilds are clearing jobs
+     * with the shadow flag, so they are queued as rebuilds no matter who
+     * requested them.
+     *
+     * @param jobDetail the job
+     * @return the lane
+     */
+    public static Lane getLane(JobDetail jobDetail) {
+        if (getFlag(jobDetail, IndexingJob.FIELD_CLEAR_INDEX)) {
+            return Lane.REBUILD;
+        }
+        if (getFlag(jobDetail, IndexingJob.FIELD_MANUAL)) {
+            return Lane.MANUAL;
+        }
+        return Lane.INCREMENTAL;
+    }
+
+    /**
+     * Checks whether two jobs index their repositories the same way, so one
+     * of them can be merged into the other. Besides being in the same lane,
+     * rebuilds must both be shadow rebuilds or both clear the index first, and
+     * the fields in {@link #MODE_FIELDS} must be equal. A missing field is
+     * only equal to another missing field, since its default is not known
+     * here.
+     *
+     * @param first the first job
+     * @param second the second job
+     * @return true if the jobs may be merged
+     */
+    static boolean hasSameMode(JobDetail first, JobDetail second) {
+        if (getLane(first) != getLane(second) || isShadowRebuild(first) != isShadowRebuild(second)) {
+            return false;
+        }
+        for (String field : MODE_FIELDS) {
+            if (!ObjectUtils.equals(first.getJobDataMap().get(field), second.getJobDataMap().get(field))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether a job keeps the old documents of its repositories until they are
+     * rebuilt. Like in {@link IndexingJob}, the shadow flag only has an effect
+     * on clearing jobs, jobs without the flag are treated as regular rebuilds.
+     */
+    private static boolean isShadowRebuild(JobDetail jobDetail) {
+        return getFlag(jobDetail, IndexingJob.FIELD_CLEAR_INDEX) && getFlag(jobDetail, IndexingJob.FIELD_SHADOW_REBUILD);
+    }
+
+    /**
+     * Reads a boolean field of a job, false if it is not set.
+     */
+    private static boolean getFlag(JobDetail jobDetail, String field) {
+        JobDataMap jobDataMap = jobDetail.getJobDataMap();
+        return jobDataMap.containsKey(field) && jobDataMap.getBoolean(field);
+    }
+
+    /**
+     * Checks whether two jobs share repositories.
+     *
+     * @param first the repositories of the first job, all if empty
+     * @param second the repositories of the second job, all if empty
+     * @return true if at least one repository is processed by both jobs
+     */
+    static boolean overlaps(List<RepositoryDto> first, List<RepositoryDto> second) {
+        if (first.isEmpty() || second.isEmpty()) {
+            return true;
+        }
+        for (RepositoryDto repository : second) {
+            if (first.contains(repository)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<RepositoryDto> getRepositories(JobDetail jobDetail) {
+        List<RepositoryDto> repositories = (List<RepositoryDto>) jobDetail.getJobDataMap().get(IndexingJob.FIELD_REPOSITORIES);
+        if (repositories == null) {
+            return new LinkedList<RepositoryDto>();
+        }
+        return repositories;
+    }
+
+    private boolean covers(List<RepositoryDto> covering, List<RepositoryDto> covered) {
+        if (covering.isEmpty()) {
+            return true;
+        }
+        return !covered.isEmpty() && covering.containsAll(covered);
+    }
+
+    private List<RepositoryDto> union(List<RepositoryDto> first, List<RepositoryDto> second) {
+        if (first.isEmpty() || second.isEmpty()) {
+            return new LinkedList<RepositoryDto>();
+        }
+        // the lists may be shared with the stored job, so a new one is created
+        List<RepositoryDto> union = new LinkedList<RepositoryDto>(first);
+        for (RepositoryDto repository : second) {
+            if (!union.contains(repository)) {
+                union.add(repository);
+            }
+        }
+        return union;
+    }
+}
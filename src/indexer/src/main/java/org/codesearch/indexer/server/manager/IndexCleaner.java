@@ -16,32 +16,25 @@
  * You should have received a copy of the GNU General Public License along with
  * Codesearch. If not, see <http://www.gnu.org/licenses/>.
  */
-package org.codesearch.commons.configuration;
+package org.codesearch.indexer.server.manager;
 
 import java.io.IOException;
 import java.util.List;
 
 import org.apache.log4j.Logger;
-import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.standard.StandardAnalyzer;
-import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
-import org.apache.lucene.index.Term;
-import org.apache.lucene.search.BooleanClause;
-import org.apache.lucene.search.BooleanQuery;
-import org.apache.lucene.search.Query;
-import org.apache.lucene.search.TermQuery;
-import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
+import org.codesearch.commons.configuration.ConfigurationReader;
+import org.codesearch.commons.configuration.InvalidConfigurationException;
 import org.codesearch.commons.configuration.dto.RepositoryDto;
 import org.codesearch.commons.configuration.properties.IndexStatusManager;
-import org.codesearch.commons.constants.IndexConstants;
 import org.codesearch.commons.database.DBAccess;
 import org.codesearch.commons.database.DatabaseAccessException;
 import org.codesearch.commons.plugins.vcs.VersionControlPlugin;
 
+import com.google.inject.Inject;
+
 /**
- * Cleans the index of all data associated with invalid repositories
+ * Cleans the index of all data associated with invalid repositories and resets
+ * repositories whose documents were written without a document key
  *
  * @author David Froehlich
  */
@@ -50,57 +43,58 @@ public class IndexCleaner {
     private IndexStatusManager indexStatusManager;
     private ConfigurationReader configReader;
     private DBAccess dbAccess;
+    private IndexWriterManager indexWriterManager;
     public static Logger LOG = Logger.getLogger(IndexCleaner.class);
 
-    public IndexCleaner(IndexStatusManager indexStatusManager, ConfigurationReader configReader, DBAccess dbAccess) {
+    @Inject
+    public IndexCleaner(IndexStatusManager indexStatusManager, ConfigurationReader configReader, DBAccess dbAccess,
+            IndexWriterManager indexWriterManager) {
         this.indexStatusManager = indexStatusManager;
         this.configReader = configReader;
         this.dbAccess = dbAccess;
+        this.indexWriterManager = indexWriterManager;
     }
 
     public void cleanIndex() throws InvalidConfigurationException {
-        // delete all lucene documents and database information associated to a repository that exists in the configuration
+        // delete all lucene documents and database information associated to a repository that does not exist in the configuration
         // in case the repository configuraiton has changed since the last startup
-        Directory indexDirectory;
-        IndexWriter indexWriter = null;
         try {
-            indexDirectory = FSDirectory.open(configReader.getIndexLocation());
-            Analyzer analyzer = new StandardAnalyzer(IndexConstants.LUCENE_VERSION);
-            IndexWriterConfig config = new IndexWriterConfig(IndexConstants.LUCENE_VERSION, analyzer);
-            indexWriter = new IndexWriter(indexDirectory, config);
-
             List<String> invalidRepositories = indexStatusManager.getAllSavedRepositoryNames();
-
-            BooleanQuery query = new BooleanQuery();
             for (RepositoryDto repository : configReader.getRepositories()) {
                 invalidRepositories.remove(repository.getName());
             }
             for (String invalidRepo : invalidRepositories) {
                 dbAccess.deleteRepository(invalidRepo);
+                if (indexWriterManager.isSharded()) {
+                    indexWriterManager.deleteShard(invalidRepo);
+                }
                 if (!indexStatusManager.getStatus(invalidRepo).equals(VersionControlPlugin.UNDEFINED_VERSION)) {
-                    Query q = new TermQuery(new Term("repository", invalidRepo));
-                    query.add(q, BooleanClause.Occur.SHOULD);
+                    if (!indexWriterManager.isSharded()) {
+                        indexWriterManager.clearRepository(invalidRepo);
+                    }
                     indexStatusManager.setStatus(invalidRepo, VersionControlPlugin.UNDEFINED_VERSION);
+                    LOG.info("Deleted the documents of repository " + invalidRepo + " from the index since it was no longer found in the configuration.");
                 }
             }
-            
-            int countDocuments = indexWriter.maxDoc();
-            indexWriter.deleteDocuments(query);
-            indexWriter.commit();
-            int countDeleted = countDocuments - indexWriter.maxDoc();
-            if (countDeleted > 0) {
-                LOG.info("Deleted " + countDeleted + " documents from the Index since they belonged to repositories that were no longer found in the configuration.");
+            // documents without a key can not be replaced when their files change, so their repositories are indexed again
+            for (RepositoryDto repository : configReader.getRepositories()) {
+                String name = repository.getName();
+                if (!indexStatusManager.getStatus(name).equals(VersionControlPlugin.UNDEFINED_VERSION)
+                        && !indexWriterManager.hasDocumentKeys(name)) {
+                    LOG.info("Repository " + name + " was indexed by an older version and will be indexed again.");
+                    indexWriterManager.clearRepository(name);
+                    indexStatusManager.setStatus(name, VersionControlPlugin.UNDEFINED_VERSION);
+                    try {
+                        dbAccess.deleteRepository(name);
+                    } catch (DatabaseAccessException ex) {
+                        LOG.warn("Could not clear code analysis index for repository: " + name + ", ignore if code analysis is not enabled \n" + ex);
+                    }
+                }
             }
         } catch (DatabaseAccessException ex) {
             throw new InvalidConfigurationException("Could not clean analysis data for unused repository" + ex);
         } catch (IOException ex) {
             throw new InvalidConfigurationException("Index can not be opened for writing at: " + configReader.getIndexLocation() + "\n" + ex);
-        } finally {
-            try {
-                indexWriter.close();
-            } catch (IOException ex) {
-                LOG.error("Unable to close IndexWriter after cleaning up Lucene index\n" + ex);
-            }
         }
     }
 }
@@ -0,0 +1,611 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.indexer.server.manager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Singleton;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.codesearch.commons.configuration.ConfigurationReader;
+import org.codesearch.commons.configuration.dto.IndexerConfiguration;
+import org.codesearch.commons.constants.IndexConstants;
+import org.codesearch.commons.plugins.lucenefields.LuceneFieldPluginLoader;
+import org.codesearch.commons.utils.IndexShards;
+
+import com.google.inject.Inject;
+
+/**
+ * Owns the {@link IndexWriter}s of the indexer. Lucene only allows one writer
+ * per index directory, so every task that changes the index submits its
+ * changes through this class. A writer is opened when it is first needed and
+ * stays open until the indexer is shut down, so buffered documents are not
+ * lost between jobs.
+ *
+ * Changes are committed when the configured number of documents changed, when
+ * the configured commit interval elapsed since the changes were made, and
+ * when a task explicitly commits, e.g. once a repository is finished.
+ *
+ * If the index is sharded, every repository has its own index in the shard
+ * directory of the index location and its own writer. Otherwise all
+ * repositories share the writer of the main index.
+ *
+ * When the documents of a repository are replaced by another index, the
+ * revision of the new documents is stored in the commit user data of the same
+ * commit, so the index status can be repaired if the indexer stops before the
+ * status is written.
+ *
+ * Separate writers, e.g. of bulk imports, can be registered to be committed by
+ * the same policy, and {@link CommitListener}s are notified of the commits of
+ * a writer, so progress is only recorded once it is durable.
+ */
+@Singleton
+public class IndexWriterManager {
+
+    /**
+     * Instantiate a logger
+     */
+    private static final Logger LOG = Logger.getLogger(IndexWriterManager.class);
+    /**
+     * The key of the main index in the writer map.
+     */
+    private static final String MAIN_INDEX = "";
+    /**
+     * The prefix of the commit user data keys that hold the revision of
+     * replaced repositories.
+     */
+    private static final String ATTACHED_REVISION_PREFIX = "attached-revision:";
+    /**
+     * The location of the index.
+     */
+    private File indexLocation;
+    /**
+     * Whether every repository is stored in a separate index.
+     */
+    private boolean sharded;
+    /**
+     * The number of changed documents after which a writer is committed.
+     */
+    private int commitDocumentCount;
+    /**
+     * Used to create the analyzer of the writers.
+     */
+    private LuceneFieldPluginLoader luceneFieldPluginLoader;
+    /**
+     * The open writers by the repository of their shard, or by
+     * {@link #MAIN_INDEX}.
+     */
+    private Map<String, SharedWriter> writers = new HashMap<String, SharedWriter>();
+    /**
+     * The open and the registered writers by writer instance, used to count
+     * the changes without locking the manager.
+     */
+    private Map<IndexWriter, SharedWriter> openWriters = new ConcurrentHashMap<IndexWriter, SharedWriter>();
+    /**
+     * Commits the pending changes periodically.
+     */
+    private ScheduledExecutorService commitScheduler;
+
+    @Inject
+    public IndexWriterManager(ConfigurationReader configReader, LuceneFieldPluginLoader luceneFieldPluginLoader) {
+        this.indexLocation = configReader.getIndexLocation();
+        this.sharded = configReader.getIndexerConfiguration().isShardedIndex();
+        this.commitDocumentCount = configReader.getIndexerConfiguration().getCommitDocumentCount();
+        if (commitDocumentCount < 1) {
+            LOG.warn("Invalid commit document count " + commitDocumentCount + ", using " + IndexerConfiguration.DEFAULT_COMMIT_DOCUMENT_COUNT);
+            commitDocumentCount = IndexerConfiguration.DEFAULT_COMMIT_DOCUMENT_COUNT;
+        }
+        this.luceneFieldPluginLoader = luceneFieldPluginLoader;
+        int commitInterval = configReader.getIndexerConfiguration().getCommitInterval();
+        if (commitInterval < 1) {
+            // the scheduler rejects delays that are not positive
+            LOG.warn("Invalid commit interval " + commitInterval + ", using " + IndexerConfiguration.DEFAULT_COMMIT_INTERVAL + " seconds");
+            commitInterval = IndexerConfiguration.DEFAULT_COMMIT_INTERVAL;
+        }
+        commitScheduler = Executors.newSingleThreadScheduledExecutor();
+        commitScheduler.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                commitPendingChanges();
+            }
+        }, commitInterval, commitInterval, TimeUnit.SECONDS);
+    }
+
+    public File getIndexLocation() {
+        return indexLocation;
+    }
+
+    public boolean isSharded() {
+        return sharded;
+    }
+
+    /**
+     * Returns the directory of the index that holds the documents of a
+     * repository.
+     *
+     * @param repositoryName the name of the repository
+     * @return the shard of the repository, or the main index if the index
+     *         is not sharded
+     */
+    public File getIndexLocation(String repositoryName) {
+        if (!sharded) {
+            return indexLocation;
+        }
+        return IndexShards.getShardLocation(indexLocation, repositoryName);
+    }
+
+    /**
+     * Returns the writer of the index that holds the documents of a
+     * repository, opening it if necessary. The writer is shared with all
+     * other tasks using the same index, it must not be closed.
+     *
+     * @param repositoryName the name of the repository
+     * @return the writer
+     * @throws IOException if the writer could not be opened
+     */
+    public synchronized IndexWriter getWriter(String repositoryName) throws IOException {
+        String key = getKey(repositoryName);
+        SharedWriter sharedWriter = writers.get(key);
+        if (sharedWriter == null) {
+            File location = getIndexLocation(repositoryName);
+            location.mkdirs();
+            Directory directory = FSDirectory.open(location);
+            LOG.info("Opened index at " + directory);
+            IndexWriterConfig config = new IndexWriterConfig(IndexConstants.LUCENE_VERSION,
+                    luceneFieldPluginLoader.getPerFieldAnalyzerWrapper(false));
+            try {
+                sharedWriter = new SharedWriter(key, directory, new IndexWriter(directory, config), commitDocumentCount);
+                if (IndexReader.indexExists(directory)) {
+                    sharedWriter.commitData.putAll(IndexReader.getCommitUserData(directory));
+                }
+            } catch (IOException ex) {
+                if (sharedWriter != null) {
+                    sharedWriter.writer.close();
+                }
+                directory.close();
+                throw ex;
+            }
+            writers.put(key, sharedWriter);
+            openWriters.put(sharedWriter.writer, sharedWriter);
+            LOG.debug("IndexWriter initialization successful");
+        }
+        return sharedWriter.writer;
+    }
+
+    /**
+     * Registers a separate writer, its changes are committed like the changes
+     * of the shared writers until it is unregistered.
+     *
+     * @param writer the writer, it must be unregistered before it is closed
+     * @param documentCount the number of changed documents after which the
+     *            writer is committed
+     */
+    public synchronized void registerWriter(IndexWriter writer, int documentCount) {
+        if (!openWriters.containsKey(writer)) {
+            openWriters.put(writer, new SharedWriter(null, writer.getDirectory(), writer, documentCount));
+        }
+    }
+
+    /**
+     * Unregisters a separate writer, its listeners are removed as well. Does
+     * nothing if the writer is not registered.
+     *
+     * @param writer the writer
+     */
+    public synchronized void unregisterWriter(IndexWriter writer) {
+        SharedWriter sharedWriter = openWriters.get(writer);
+        if (sharedWriter != null && sharedWriter.key == null) {
+            openWriters.remove(writer);
+        }
+    }
+
+    /**
+     * Adds a listener that is notified whenever a writer is committed.
+     *
+     * @param writer a shared or a registered writer
+     * @param listener the listener
+     */
+    public synchronized void addCommitListener(IndexWriter writer, CommitListener listener) {
+        SharedWriter sharedWriter = openWriters.get(writer);
+        if (sharedWriter == null) {
+            throw new IllegalArgumentException("The writer of " + writer.getDirectory() + " is not managed");
+        }
+        sharedWriter.listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener of a writer.
+     *
+     * @param writer the writer
+     * @param listener the listener
+     */
+    public synchronized void removeCommitListener(IndexWriter writer, CommitListener listener) {
+        SharedWriter sharedWriter = openWriters.get(writer);
+        if (sharedWriter != null) {
+            sharedWriter.listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Adds a document to an index. The writer is committed if the number of
+     * its uncommitted changes reaches the configured limit.
+     *
+     * @param writer a shared writer or the writer of a separate index, only
+     *            the changes of shared and registered writers are counted
+     * @param document the document
+     * @throws IOException if the document could not be added
+     */
+    public void addDocument(IndexWriter writer, Document document) throws IOException {
+        writer.addDocument(document);
+        changed(writer);
+    }
+
+    /**
+     * Replaces the documents containing a term with a new document, the
+     * deletion and the addition are applied atomically. The writer is
+     * committed if the number of its uncommitted changes reaches the
+     * configured limit.
+     *
+     * @param writer a shared writer or the writer of a separate index
+     * @param term the term identifying the replaced documents
+     * @param document the new document
+     * @throws IOException if the document could not be updated
+     */
+    public void updateDocument(IndexWriter writer, Term term, Document document) throws IOException {
+        writer.updateDocument(term, document);
+        changed(writer);
+    }
+
+    /**
+     * Deletes the documents containing a term from an index. The writer is
+     * committed if the number of its uncommitted changes reaches the
+     * configured limit.
+     *
+     * @param writer a shared writer or the writer of a separate index
+     * @param term the term identifying the deleted documents
+     * @throws IOException if the documents could not be deleted
+     */
+    public void deleteDocuments(IndexWriter writer, Term term) throws IOException {
+        writer.deleteDocuments(term);
+        changed(writer);
+    }
+
+    /**
+     * Checks whether the documents in the index of a repository can be
+     * replaced by their key. Documents written before the
+     * {@link IndexConstants#INDEX_FIELD_KEY} field was introduced do not have
+     * a key. The check is done per repository, since repositories indexed by
+     * a newer version may share the index with ones that were not.
+     *
+     * @param repositoryName the name of the repository
+     * @return true if the index contains no documents of the repository or
+     *         keys of the repository
+     * @throws IOException if the index could not be read
+     */
+    public synchronized boolean hasDocumentKeys(String repositoryName) throws IOException {
+        IndexReader reader = IndexReader.open(getWriter(repositoryName), true);
+        try {
+            TermDocs documents = reader.termDocs(new Term(IndexConstants.INDEX_FIELD_REPOSITORY, repositoryName.toLowerCase()));
+            try {
+                if (!documents.next()) {
+                    return true;
+                }
+            } finally {
+                documents.close();
+            }
+            // the keys of a repository start with its name
+            String prefix = repositoryName + ":";
+            TermEnum keys = reader.terms(new Term(IndexConstants.INDEX_FIELD_KEY, prefix));
+            try {
+                Term key = keys.term();
+                return key != null && key.field().equals(IndexConstants.INDEX_FIELD_KEY) && key.text().startsWith(prefix);
+            } finally {
+                keys.close();
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Commits a writer. Commits are serialized with
+     * {@link #replaceDocuments(IndexWriter, Term, Directory, String, String, String)},
+     * so no commit exposes a partially applied replacement.
+     *
+     * @param writer a shared writer or the writer of a separate index
+     * @throws IOException if the index could not be committed
+     */
+    public synchronized void commit(IndexWriter writer) throws IOException {
+        SharedWriter sharedWriter = openWriters.get(writer);
+        if (sharedWriter != null) {
+            commit(sharedWriter);
+        } else {
+            writer.commit();
+        }
+    }
+
+    /**
+     * Replaces the documents of a repository with the documents of another
+     * index and commits the shared writer, so searchers see either the old or
+     * the new documents. The revision of the new documents is recorded in the
+     * same commit, together with the index status it replaces.
+     *
+     * @param writer the shared writer of the index the repository belongs to
+     * @param term the term matching the documents that are replaced
+     * @param directory the index containing the new documents, it must not
+     *            be open for writing
+     * @param repositoryName the name of the repository
+     * @param previousRevision the index status of the repository before the
+     *            replacement
+     * @param revision the revision of the new documents
+     * @throws IOException if the documents could not be replaced
+     */
+    public synchronized void replaceDocuments(IndexWriter writer, Term term, Directory directory, String repositoryName,
+            String previousRevision, String revision) throws IOException {
+        SharedWriter sharedWriter = openWriters.get(writer);
+        writer.deleteDocuments(term);
+        writer.addIndexes(directory);
+        sharedWriter.commitData.put(ATTACHED_REVISION_PREFIX + repositoryName, previousRevision + " " + revision);
+        try {
+            commit(sharedWriter);
+        } catch (IOException ex) {
+            sharedWriter.commitData.remove(ATTACHED_REVISION_PREFIX + repositoryName);
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns the revision recorded when the documents of a repository were
+     * last replaced by
+     * {@link #replaceDocuments(IndexWriter, Term, Directory, String, String, String)},
+     * if the index status was not updated since. Commits without changes are
+     * skipped by Lucene, so a removed record may still be stored in the index.
+     *
+     * @param repositoryName the name of the repository
+     * @param status the current index status of the repository
+     * @return the revision, null if none is recorded for the status
+     * @throws IOException if the index could not be opened
+     */
+    public synchronized String getAttachedRevision(String repositoryName, String status) throws IOException {
+        getWriter(repositoryName);
+        String record = writers.get(getKey(repositoryName)).commitData.get(ATTACHED_REVISION_PREFIX + repositoryName);
+        if (record == null) {
+            return null;
+        }
+        int separator = record.indexOf(' ');
+        if (separator < 0 || !record.substring(0, separator).equals(status)) {
+            return null;
+        }
+        return record.substring(separator + 1);
+    }
+
+    /**
+     * Removes the revision recorded for a repository once the index status
+     * points to it, the removal is part of the next commit.
+     *
+     * @param repositoryName the name of the repository
+     * @throws IOException if the index could not be opened
+     */
+    public synchronized void clearAttachedRevision(String repositoryName) throws IOException {
+        getWriter(repositoryName);
+        writers.get(getKey(repositoryName)).commitData.remove(ATTACHED_REVISION_PREFIX + repositoryName);
+    }
+
+    /**
+     * Deletes all documents of a repository and commits the index. If the
+     * index is sharded, the shard of the repository is emptied.
+     *
+     * @param repositoryName the name of the repository
+     * @throws IOException if the documents could not be deleted
+     */
+    public synchronized void clearRepository(String repositoryName) throws IOException {
+        IndexWriter writer = getWriter(repositoryName);
+        if (sharded) {
+            LOG.debug("Deleting all documents of the index of repository " + repositoryName);
+            writer.deleteAll();
+        } else {
+            Term term = new Term(IndexConstants.INDEX_FIELD_REPOSITORY, repositoryName.toLowerCase());
+            LOG.debug("Deleting documents where field '" + term.field() + "' is '" + term.text() + "'");
+            writer.deleteDocuments(term);
+        }
+        writers.get(getKey(repositoryName)).commitData.remove(ATTACHED_REVISION_PREFIX + repositoryName);
+        commit(writer);
+    }
+
+    /**
+     * Closes the writer of a shard and deletes its directory, used for
+     * repositories that no longer exist. Does nothing if the index is not
+     * sharded.
+     *
+     * @param repositoryName the name of the repository
+     * @throws IOException if the shard could not be deleted
+     */
+    public synchronized void deleteShard(String repositoryName) throws IOException {
+        if (!sharded) {
+            return;
+        }
+        SharedWriter sharedWriter = writers.get(repositoryName);
+        if (sharedWriter != null) {
+            close(sharedWriter);
+        }
+        FileUtils.deleteDirectory(getIndexLocation(repositoryName));
+    }
+
+    /**
+     * Commits and closes all writers, e.g. before the files of the index are
+     * deleted. Writers requested afterwards are opened again.
+     */
+    public synchronized void closeWriters() {
+        for (SharedWriter sharedWriter : new LinkedList<SharedWriter>(writers.values())) {
+            close(sharedWriter);
+        }
+    }
+
+    /**
+     * Stops the periodic commits and closes all writers, called when the
+     * indexer is shut down.
+     */
+    public void shutdown() {
+        commitScheduler.shutdownNow();
+        closeWriters();
+    }
+
+    /**
+     * Commits all writers that have uncommitted changes.
+     */
+    private synchronized void commitPendingChanges() {
+        for (SharedWriter sharedWriter : openWriters.values()) {
+            if (sharedWriter.pendingChanges.get() > 0) {
+                try {
+                    commit(sharedWriter);
+                    LOG.debug("Committed pending changes of index " + sharedWriter.directory);
+                } catch (IOException ex) {
+                    LOG.error("Could not commit the index " + sharedWriter.directory + ":\n" + ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts a change of a writer and commits it once the limit is reached.
+     */
+    private void changed(IndexWriter writer) throws IOException {
+        SharedWriter sharedWriter = openWriters.get(writer);
+        if (sharedWriter != null && sharedWriter.pendingChanges.incrementAndGet() >= sharedWriter.documentCount) {
+            synchronized (this) {
+                // another thread may have committed in the meantime, or the writer was unregistered
+                if (sharedWriter.pendingChanges.get() >= sharedWriter.documentCount && openWriters.containsKey(writer)) {
+                    commit(sharedWriter);
+                }
+            }
+        }
+    }
+
+    private void commit(SharedWriter sharedWriter) throws IOException {
+        // changes made while committing stay pending
+        int changes = sharedWriter.pendingChanges.get();
+        for (CommitListener listener : sharedWriter.listeners) {
+            listener.beforeCommit();
+        }
+        sharedWriter.writer.commit(new HashMap<String, String>(sharedWriter.commitData));
+        sharedWriter.pendingChanges.addAndGet(-changes);
+        for (CommitListener listener : sharedWriter.listeners) {
+            try {
+                listener.afterCommit();
+            } catch (IOException ex) {
+                LOG.warn("Commit listener of index " + sharedWriter.directory + " failed: " + ex);
+            }
+        }
+    }
+
+    private void close(SharedWriter sharedWriter) {
+        writers.remove(sharedWriter.key);
+        openWriters.remove(sharedWriter.writer);
+        try {
+            sharedWriter.writer.close();
+        } catch (IOException ex) {
+            LOG.error("Could not close the index writer:\n" + ex);
+        } catch (OutOfMemoryError error) {
+            LOG.error("Out of memory, trying to save index");
+            Runtime.getRuntime().gc();
+            try {
+                sharedWriter.writer.close();
+            } catch (IOException ex) {
+                LOG.error("Could not close the index writer:\n" + ex);
+            }
+        }
+        try {
+            sharedWriter.directory.close();
+        } catch (IOException ex) {
+            LOG.error("Could not close the index directory");
+        }
+    }
+
+    private String getKey(String repositoryName) {
+        return sharded ? repositoryName : MAIN_INDEX;
+    }
+
+    /**
+     * Notified of the commits of a writer.
+     */
+    public interface CommitListener {
+
+        /**
+         * Called before the writer is committed. All changes made before this
+         * call are part of the commit.
+         */
+        void beforeCommit();
+
+        /**
+         * Called after the writer was committed successfully.
+         *
+         * @throws IOException if the listener could not record the commit
+         */
+        void afterCommit() throws IOException;
+    }
+
+    /**
+     * An open or registered writer and the number of its uncommitted changes.
+     */
+    private static class SharedWriter {
+
+        /**
+         * The key in the writer map, null for registered separate writers.
+         */
+        private String key;
+        private Directory directory;
+        private IndexWriter writer;
+        private int documentCount;
+        private AtomicInteger pendingChanges = new AtomicInteger();
+        private List<CommitListener> listeners = new CopyOnWriteArrayList<CommitListener>();
+        /**
+         * The user data stored with every commit, guarded by the manager.
+         */
+        private Map<String, String> commitData = new HashMap<String, String>();
+
+        SharedWriter(String key, Directory directory, IndexWriter writer, int documentCount) {
+            this.key = key;
+            this.directory = directory;
+            this.writer = writer;
+            this.documentCount = documentCount;
+        }
+    }
+}
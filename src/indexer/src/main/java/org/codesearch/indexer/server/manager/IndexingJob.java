@@ -21,17 +21,21 @@ package org.codesearch.indexer.server.manager;
 import java.io.File;
 import java.io.IOException;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
-import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
 import org.codesearch.commons.configuration.ConfigurationReader;
 import org.codesearch.commons.configuration.dto.RepositoryDto;
 import org.codesearch.commons.configuration.properties.IndexStatusManager;
 import org.codesearch.commons.database.DBAccess;
 import org.codesearch.commons.plugins.PluginLoader;
+import org.codesearch.commons.plugins.PluginLoaderException;
 import org.codesearch.commons.plugins.lucenefields.LuceneFieldPluginLoader;
+import org.codesearch.commons.plugins.vcs.VersionControlPlugin;
+import org.codesearch.commons.plugins.vcs.VersionControlPluginException;
 import org.codesearch.indexer.server.exceptions.TaskExecutionException;
 import org.codesearch.indexer.server.tasks.ClearTask;
 import org.codesearch.indexer.server.tasks.IndexingTask;
@@ -61,6 +65,14 @@ public class IndexingJob implements Job {
     public static final String FIELD_FINISHED_STEPS = "finished_steps";
     public static final String FIELD_STATUS = "status";
     public static final String FIELD_STEP = "step";
+    public static final String FIELD_CONCURRENT_REPOSITORIES = "concurrent_repositories";
+    public static final String FIELD_MANUAL = "manual";
+    public static final String FIELD_ADAPTIVE_POLLING = "adaptive_polling";
+    public static final String FIELD_CHANGED_FILES = "changed_files";
+    public static final String FIELD_SHADOW_REBUILD = "shadow_rebuild";
+    public static final String FIELD_GENERATED_FILES = "generated_files";
+    public static final String FIELD_GENERATED_FILES_WITHOUT_CONTENT = "generated_files_without_content";
+    public static final String FIELD_GENERATED_FILES_NOT_ANALYZED = "generated_files_not_analyzed";
     public static final String STATUS_CLEARING = "clearing";
     public static final String STATUS_INDEXING = "indexing";
     public static final String GROUP_NAME = "INDEXING_JOBS";
@@ -90,6 +102,14 @@ public class IndexingJob implements Job {
      */
     private List<RepositoryDto> repositories;
     private IndexStatusManager indexStatusManager;
+    /**
+     * Provides the IndexWriter shared with concurrently executed jobs.
+     */
+    private IndexWriterManager indexWriterManager;
+    /**
+     * Provides the results of earlier code analyses.
+     */
+    private AnalysisCache analysisCache;
     /**
      * whether or not the index should be cleared for the specified repositories
      * before indexing
@@ -103,10 +123,22 @@ public class IndexingJob implements Job {
      * The current job data map of the job.
      */
     private JobDataMap jobDataMap;
+    /**
+     * The number of repositories that are indexed at the same time.
+     */
+    private int concurrentRepositories;
+    /**
+     * Whether the repositories are rebuilt while their old documents stay
+     * searchable, instead of being cleared first.
+     */
+    private boolean shadowRebuild;
 
     @Inject
-    public IndexingJob(ConfigurationReader configReader, DBAccess dba, PluginLoader pluginLoader, LuceneFieldPluginLoader luceneFieldPluginLoader, IndexStatusManager indexStatusManager) {
+    public IndexingJob(ConfigurationReader configReader, DBAccess dba, PluginLoader pluginLoader, LuceneFieldPluginLoader luceneFieldPluginLoader, IndexStatusManager indexStatusManager,
+            IndexWriterManager indexWriterManager, AnalysisCache analysisCache) {
         this.configReader = configReader;
+        this.analysisCache = analysisCache;
+        this.indexWriterManager = indexWriterManager;
         this.dba = dba;
         this.indexStatusManager = indexStatusManager;
         this.pluginLoader = pluginLoader;
@@ -130,19 +162,35 @@ public class IndexingJob implements Job {
         jobDataMap.put(FIELD_FINISHED_REPOSITORIES, 0);
         jobDataMap.put(FIELD_CURRENT_STEPS, 0);
         jobDataMap.put(FIELD_FINISHED_STEPS, 0);
+        jobDataMap.put(FIELD_CHANGED_FILES, new HashMap<String, Integer>());
+        jobDataMap.put(FIELD_GENERATED_FILES, 0);
+        jobDataMap.put(FIELD_GENERATED_FILES_WITHOUT_CONTENT, 0);
+        jobDataMap.put(FIELD_GENERATED_FILES_NOT_ANALYZED, 0);
 
         repositories = (List<RepositoryDto>) jobDataMap.get(FIELD_REPOSITORIES);
         clearIndex = (Boolean) jobDataMap.get(FIELD_CLEAR_INDEX);
+        concurrentRepositories = configReader.getIndexerConfiguration().getConcurrentRepositories();
+        if (jobDataMap.containsKey(FIELD_CONCURRENT_REPOSITORIES) && jobDataMap.getIntValue(FIELD_CONCURRENT_REPOSITORIES) > 0) {
+            concurrentRepositories = jobDataMap.getIntValue(FIELD_CONCURRENT_REPOSITORIES);
+        }
+        shadowRebuild = configReader.getIndexerConfiguration().isShadowRebuild();
+        if (jobDataMap.containsKey(FIELD_SHADOW_REBUILD)) {
+            shadowRebuild = jobDataMap.getBoolean(FIELD_SHADOW_REBUILD);
+        }
+        // clearing the whole index is not done in the background
+        shadowRebuild = shadowRebuild && clearIndex && !repositories.isEmpty();
         LOG.info("Executing " + jec.getJobDetail().getKey().toString() + ", indexing " + repositories.size() + " repositories");
 
         Date startDate = new Date();
 
         try {
-            if (clearIndex) {
+            if (shadowRebuild) {
+                LOG.info("Rebuilding repositories in the background, their old documents stay searchable");
+            } else if (clearIndex) {
                 jobDataMap.put(FIELD_STATUS, STATUS_CLEARING);
                 // clear the index of data associated to the specified
                 // repositories
-                ClearTask clearTask = new ClearTask(dba, indexStatusManager, repositories, indexLocation, this);
+                ClearTask clearTask = new ClearTask(dba, indexStatusManager, repositories, indexLocation, indexWriterManager, this);
                 clearTask.execute();
             }
 
@@ -154,10 +202,14 @@ public class IndexingJob implements Job {
             // execution of regular indexing job
             // By default, fields are indexed case insensitive
 
-            Directory indexDirectory = FSDirectory.open(indexLocation);
-            LOG.info("Opened index at " + indexDirectory);
-            Task indexingTask = new IndexingTask(dba, pluginLoader, configReader.getSearcherLocation(), luceneFieldPluginLoader, indexStatusManager, repositories, indexDirectory, this);
-            indexingTask.execute();
+            List<RepositoryDto> changedRepositories = clearIndex ? repositories : getChangedRepositories();
+            if (changedRepositories.isEmpty()) {
+                LOG.info("None of the repositories changed since the last indexing");
+            } else {
+                Task indexingTask = new IndexingTask(dba, pluginLoader, configReader.getSearcherLocation(), luceneFieldPluginLoader, indexStatusManager, changedRepositories, indexWriterManager, this,
+                        configReader.getIndexerConfiguration(), analysisCache);
+                indexingTask.execute();
+            }
         } catch (TaskExecutionException ex) {
             String errorMsg = "Execution of IndexingJob threw an exception:\n" + ex;
             LOG.error(errorMsg);
@@ -173,10 +225,81 @@ public class IndexingJob implements Job {
         LOG.info("Finished execution of " + jec.getJobDetail().getKey().toString());
     }
 
+    /**
+     * Compares the remote revision of each repository with the indexed
+     * revision and returns the repositories that have changed. Repositories
+     * whose remote revision can not be determined are considered changed.
+     *
+     * @return the repositories that have to be indexed
+     */
+    private List<RepositoryDto> getChangedRepositories() {
+        jobDataMap.put(FIELD_STEP, "Checking repositories for changes");
+        List<RepositoryDto> changedRepositories = new LinkedList<RepositoryDto>();
+        for (RepositoryDto repository : repositories) {
+            String indexedRevision = indexStatusManager.getStatus(repository.getName());
+            if (indexedRevision == null || indexedRevision.equals(VersionControlPlugin.UNDEFINED_VERSION)) {
+                changedRepositories.add(repository);
+                continue;
+            }
+            String remoteRevision = null;
+            try {
+                VersionControlPlugin plugin = pluginLoader.getNewPluginInstance(VersionControlPlugin.class,
+                        repository.getVersionControlSystem());
+                if (plugin != null) {
+                    plugin.setRepository(repository);
+                    remoteRevision = plugin.getRemoteRevision();
+                }
+            } catch (PluginLoaderException ex) {
+                LOG.warn("Could not load VersionControlPlugin to check repository " + repository.getName() + " for changes: " + ex);
+            } catch (VersionControlPluginException ex) {
+                LOG.warn("Could not retrieve remote revision of repository " + repository.getName() + ": " + ex);
+            }
+            if (indexedRevision.equals(remoteRevision)) {
+                LOG.info("Repository " + repository.getName() + " is unchanged at revision " + remoteRevision + ", skipping");
+                recordChangedFiles(repository.getName(), 0);
+            } else {
+                changedRepositories.add(repository);
+            }
+        }
+        return changedRepositories;
+    }
+
     public void setCurrentRepository(int index) {
         jobDataMap.put(FIELD_CURRENT_REPOSITORY, repositories.get(index).getName());
     }
 
+    /**
+     * Records the number of files that changed in a successfully indexed
+     * repository, used to adapt the polling interval of the repository.
+     *
+     * @param repository the name of the repository
+     * @param changedFiles the number of changed files
+     */
+    @SuppressWarnings("unchecked")
+    public void recordChangedFiles(String repository, int changedFiles) {
+        Map<String, Integer> changedFilesMap = (Map<String, Integer>) jobDataMap.get(FIELD_CHANGED_FILES);
+        synchronized (changedFilesMap) {
+            changedFilesMap.put(repository, changedFiles);
+        }
+    }
+
+    /**
+     * Adds the generated files of an indexed repository to the counts of the
+     * job.
+     *
+     * @param generatedFiles the number of generated files
+     * @param withoutContent the number of generated files indexed without
+     *            their content
+     * @param notAnalyzed the number of generated files excluded from the code
+     *            analysis
+     */
+    public synchronized void recordGeneratedFiles(int generatedFiles, int withoutContent, int notAnalyzed) {
+        jobDataMap.put(FIELD_GENERATED_FILES, jobDataMap.getIntValue(FIELD_GENERATED_FILES) + generatedFiles);
+        jobDataMap.put(FIELD_GENERATED_FILES_WITHOUT_CONTENT, jobDataMap.getIntValue(FIELD_GENERATED_FILES_WITHOUT_CONTENT)
+                + withoutContent);
+        jobDataMap.put(FIELD_GENERATED_FILES_NOT_ANALYZED, jobDataMap.getIntValue(FIELD_GENERATED_FILES_NOT_ANALYZED) + notAnalyzed);
+    }
+
     public JobDataMap getJobDataMap() {
         return jobDataMap;
     }
@@ -185,6 +308,21 @@ public class IndexingJob implements Job {
         return repositories;
     }
 
+    public int getConcurrentRepositories() {
+        return concurrentRepositories;
+    }
+
+    /**
+     * Whether the repositories of the job are rebuilt from scratch while
+     * their current documents stay in the index until the rebuild of each
+     * repository is finished.
+     *
+     * @return true for a shadow rebuild
+     */
+    public boolean isShadowRebuild() {
+        return shadowRebuild;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj instanceof IndexingJob) {
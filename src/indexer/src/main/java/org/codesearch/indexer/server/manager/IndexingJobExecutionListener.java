@@ -46,8 +46,7 @@ public class IndexingJobExecutionListener implements JobListener {
     /** {@inheritDoc} */
     @Override
     public void jobWasExecuted(JobExecutionContext context, JobExecutionException jobException) {
-        
-
+        indexingManager.jobFinished(context);
     }
 
 }
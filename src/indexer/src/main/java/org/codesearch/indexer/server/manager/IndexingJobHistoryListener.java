@@ -26,6 +26,7 @@ import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
 
+import org.quartz.JobDataMap;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 import org.quartz.JobListener;
@@ -75,6 +76,12 @@ public class IndexingJobHistoryListener implements JobListener {
         String message = context.getJobDetail().getKey() + " finished ";
         if (jobException == null) {
             message += "successfully.";
+            JobDataMap jobDataMap = context.getJobDetail().getJobDataMap();
+            if (jobDataMap.containsKey(IndexingJob.FIELD_GENERATED_FILES) && jobDataMap.getIntValue(IndexingJob.FIELD_GENERATED_FILES) > 0) {
+                message += " " + jobDataMap.getIntValue(IndexingJob.FIELD_GENERATED_FILES) + " generated files, "
+                        + jobDataMap.getIntValue(IndexingJob.FIELD_GENERATED_FILES_WITHOUT_CONTENT) + " indexed without content, "
+                        + jobDataMap.getIntValue(IndexingJob.FIELD_GENERATED_FILES_NOT_ANALYZED) + " not analyzed.";
+            }
         } else {
             message += "with an error. See log file for details.";
         }
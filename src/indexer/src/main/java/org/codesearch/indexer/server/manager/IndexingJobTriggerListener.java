@@ -14,29 +14,20 @@
  */
 package org.codesearch.indexer.server.manager;
 
-import static org.quartz.JobBuilder.newJob;
-
-import java.util.List;
-
 import javax.inject.Inject;
 
-import org.apache.log4j.Logger;
-import org.quartz.JobDetail;
 import org.quartz.JobExecutionContext;
-import org.quartz.Scheduler;
-import org.quartz.SchedulerException;
 import org.quartz.Trigger;
 import org.quartz.TriggerListener;
 import org.quartz.listeners.TriggerListenerSupport;
 
 /**
- * Listener that gets called before the execution of every job and checks whether another job is running and if those jobs have the same
- * tasks
+ * Listener that gets called before the execution of every job and checks whether the repositories of the job are locked by another
+ * running job, in which case the job is delayed
  *
  * @author David Froehlich
  */
 public class IndexingJobTriggerListener extends TriggerListenerSupport implements TriggerListener {
-    private static final Logger LOG = Logger.getLogger(IndexingJobTriggerListener.class);
     private IndexingManager indexingManager;
 
     /**
@@ -56,27 +47,6 @@ public class IndexingJobTriggerListener extends TriggerListenerSupport implement
 
     @Override
     public boolean vetoJobExecution(Trigger trigger, JobExecutionContext context) {
-        Scheduler scheduler = context.getScheduler();
-        JobDetail jobDetail = context.getJobDetail();
-
-        try {
-            List<JobExecutionContext> currentlyExecutingJobs = scheduler.getCurrentlyExecutingJobs();
-
-            LOG.debug("Checking if a job is currently running");
-            LOG.debug(currentlyExecutingJobs.size() + " jobs currently running");
-
-            if (!currentlyExecutingJobs.isEmpty()) {
-                LOG.info("Delaying execution of job " + jobDetail.getKey().toString());
-                JobDetail newJobDetail = newJob(jobDetail.getJobClass()).withIdentity(jobDetail.getKey())
-                        .usingJobData(jobDetail.getJobDataMap()).build();
-                indexingManager.delayJob(newJobDetail);
-                return true;
-            } else {
-                return false;
-            }
-        } catch (SchedulerException ex) {
-            LOG.error("Scheduler failed:\n" + ex);
-            return true;
-        }
+        return !indexingManager.lockRepositoriesOrDelayJob(context);
     }
 }
@@ -21,9 +21,11 @@ package org.codesearch.indexer.server.manager;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
+import java.util.Map;
 import java.util.Set;
 
 import javax.inject.Singleton;
@@ -31,6 +33,7 @@ import javax.inject.Singleton;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.codesearch.commons.configuration.ConfigurationReader;
+import org.codesearch.commons.configuration.InvalidConfigurationException;
 import org.codesearch.commons.configuration.dto.JobDto;
 import org.codesearch.commons.configuration.dto.RepositoryDto;
 import org.codesearch.commons.configuration.properties.IndexStatusManager;
@@ -38,6 +41,7 @@ import org.codesearch.commons.constants.IndexConstants;
 import org.codesearch.commons.plugins.vcs.VersionControlPlugin;
 import org.codesearch.indexer.shared.JobStatus;
 import org.codesearch.indexer.shared.JobStatusStep;
+import org.codesearch.indexer.shared.PollingStatus;
 import org.codesearch.indexer.shared.RepositoryStatus;
 import org.quartz.CronScheduleBuilder;
 import org.quartz.JobBuilder;
@@ -49,6 +53,7 @@ import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
 import org.quartz.Trigger;
 import org.quartz.TriggerBuilder;
+import org.quartz.TriggerKey;
 import org.quartz.impl.matchers.EverythingMatcher;
 import org.quartz.impl.matchers.GroupMatcher;
 import org.quartz.spi.JobFactory;
@@ -87,10 +92,39 @@ public final class IndexingManager {
     private IndexStatusManager indexStatusManager;
 
     /**
-     * Keeps the jobs that have been delayed due to a currently executing job
-     * in a Queue.
+     * Keeps the jobs that have been delayed due to a currently executing job,
+     * ordered by priority.
      */
-    private Queue<JobDetail> delayedJobQueue = new LinkedList<JobDetail>();
+    private DelayedJobQueue delayedJobQueue = new DelayedJobQueue();
+    /**
+     * The number of delayed jobs that were scheduled again, used to create
+     * unique job keys.
+     */
+    private int delayedRuns;
+    /**
+     * The triggers of the jobs scheduled for pushed revisions, mapped to the
+     * name of the repository.
+     */
+    private Map<String, TriggerKey> pushTriggers = new HashMap<String, TriggerKey>();
+    /**
+     * The number of jobs scheduled for pushed revisions, used to create unique
+     * trigger keys.
+     */
+    private int pushNotifications;
+    /**
+     * The locks of the repositories processed by the currently executing
+     * jobs.
+     */
+    private RepositoryLockManager repositoryLockManager = new RepositoryLockManager();
+    /**
+     * The polling intervals of the repositories of adaptively polling jobs.
+     */
+    private AdaptivePollingSchedule adaptivePollingSchedule = new AdaptivePollingSchedule();
+    /**
+     * The number of scheduled adaptive polls, used to create unique trigger
+     * keys.
+     */
+    private int adaptivePolls;
 
     /**
      * Creates a new instance of IndexingManager
@@ -102,7 +136,7 @@ public final class IndexingManager {
     @SuppressWarnings("unchecked")
     @Inject
     public IndexingManager(ConfigurationReader configurationReader, IndexStatusManager indexStatusManager, Scheduler scheduler,
-            JobFactory jobFactory) throws SchedulerException {
+            JobFactory jobFactory, IndexCleaner indexCleaner) throws SchedulerException {
         this.jobs = configurationReader.getJobs();
         this.scheduler = scheduler;
         this.historyListener = new IndexingJobHistoryListener();
@@ -113,6 +147,11 @@ public final class IndexingManager {
         scheduler.getListenerManager().addTriggerListener(new IndexingJobTriggerListener(this), EverythingMatcher.allTriggers());
         scheduler.getListenerManager().addJobListener(new IndexingJobExecutionListener(this), EverythingMatcher.allJobs());
         scheduler.getListenerManager().addJobListener(historyListener, EverythingMatcher.allJobs());
+        try {
+            indexCleaner.cleanIndex();
+        } catch (InvalidConfigurationException ex) {
+            LOG.error("Could not clean the index of removed repositories:", ex);
+        }
         start();
     }
 
@@ -129,10 +168,17 @@ public final class IndexingManager {
 
         int i = 0;
         for (JobDto job : jobs) {
+            if (job.isAdaptivePolling()) {
+                scheduleAdaptivePollingJobs(job, getJobKey(job, i));
+                i++;
+                continue;
+            }
             JobDataMap jdm = new JobDataMap();
             jdm.put(IndexingJob.FIELD_REPOSITORIES, job.getRepositories());
             jdm.put(IndexingJob.FIELD_TERMINATED, false);
             jdm.put(IndexingJob.FIELD_CLEAR_INDEX, job.isClearIndex());
+            jdm.put(IndexingJob.FIELD_SHADOW_REBUILD, job.isShadowRebuild());
+            jdm.put(IndexingJob.FIELD_CONCURRENT_REPOSITORIES, job.getConcurrentRepositories());
 
             JobKey jobKey = new JobKey(getJobKey(job, i), IndexingJob.GROUP_NAME);
             JobDetail jobDetail = JobBuilder.newJob(IndexingJob.class).withIdentity(jobKey).usingJobData(jdm).build();
@@ -157,6 +203,69 @@ public final class IndexingManager {
         scheduler.start();
     }
 
+    /**
+     * Creates a separate job for every repository of an adaptively polling
+     * job, each of them is rescheduled after its execution according to the
+     * activity of its repository.
+     *
+     * @param job the configured job
+     * @param jobName the name of the configured job
+     * @throws SchedulerException if a job could not be added to the scheduler
+     */
+    private synchronized void scheduleAdaptivePollingJobs(JobDto job, String jobName) throws SchedulerException {
+        LOG.info(jobName + " polls its repositories every " + job.getMinPollingInterval() + " to " + job.getMaxPollingInterval()
+                + " seconds");
+        for (RepositoryDto repository : job.getRepositories()) {
+            List<RepositoryDto> repos = new LinkedList<RepositoryDto>();
+            repos.add(repository);
+            JobDataMap jdm = new JobDataMap();
+            jdm.put(IndexingJob.FIELD_REPOSITORIES, repos);
+            jdm.put(IndexingJob.FIELD_TERMINATED, false);
+            jdm.put(IndexingJob.FIELD_CLEAR_INDEX, job.isClearIndex());
+            jdm.put(IndexingJob.FIELD_SHADOW_REBUILD, job.isShadowRebuild());
+            jdm.put(IndexingJob.FIELD_CONCURRENT_REPOSITORIES, job.getConcurrentRepositories());
+            jdm.put(IndexingJob.FIELD_ADAPTIVE_POLLING, true);
+
+            JobKey jobKey = new JobKey(jobName + " - " + repository.getName(), IndexingJob.GROUP_NAME);
+            if (!adaptivePollingSchedule.register(repository.getName(), jobKey, job.getMinPollingInterval(), job.getMaxPollingInterval())) {
+                continue;
+            }
+            JobDetail jobDetail = JobBuilder.newJob(IndexingJob.class).withIdentity(jobKey).usingJobData(jdm).storeDurably().build();
+            scheduler.addJob(jobDetail, true);
+            scheduleAdaptivePoll(repository.getName(), 0);
+        }
+    }
+
+    /**
+     * Schedules the next poll of an adaptively polled repository.
+     *
+     * @param repository the name of the repository
+     * @param interval the number of seconds until the poll
+     */
+    private synchronized void scheduleAdaptivePoll(String repository, int interval) {
+        adaptivePolls++;
+        TriggerKey triggerKey = new TriggerKey("poll-" + repository + "-" + adaptivePolls, IndexingJob.TRIGGER_GROUP_NAME);
+        Date start = new Date(System.currentTimeMillis() + interval * 1000L);
+        Trigger trigger = TriggerBuilder.newTrigger().withIdentity(triggerKey).forJob(adaptivePollingSchedule.getJobKey(repository))
+                .startAt(start).build();
+        try {
+            scheduler.scheduleJob(trigger);
+            adaptivePollingSchedule.setNextRun(repository, start);
+        } catch (SchedulerException ex) {
+            LOG.error("Could not schedule the next poll of repository " + repository + ", it will not be polled anymore:\n" + ex);
+            adaptivePollingSchedule.setNextRun(repository, null);
+        }
+    }
+
+    /**
+     * Returns the polling state of the adaptively polled repositories.
+     *
+     * @return the states
+     */
+    public synchronized List<PollingStatus> getPollingStatuses() {
+        return adaptivePollingSchedule.getStatuses();
+    }
+
     private String getJobKey(JobDto job, int i) {
         String jobDescription = "IndexJob " + i;
         if (StringUtils.isNotBlank(job.getJobDescription())) {
@@ -260,11 +369,18 @@ public final class IndexingManager {
     }
 
 
-    public List<JobStatus> getDelayedJobs() {
+    @SuppressWarnings("unchecked")
+    public synchronized List<JobStatus> getDelayedJobs() {
         List<JobStatus> delayedJobsStatus = new LinkedList<JobStatus>();
-        for (JobDetail detail : delayedJobQueue) {
+        for (JobDetail detail : delayedJobQueue.getJobs()) {
             JobStatus status = new JobStatus();
-            status.setName(detail.getKey().getName());
+            status.setName(detail.getKey().getName() + " [" + DelayedJobQueue.getLane(detail).toString().toLowerCase() + "]");
+            List<RepositoryDto> repos = (List<RepositoryDto>) detail.getJobDataMap().get(IndexingJob.FIELD_REPOSITORIES);
+            String blockingLock = repositoryLockManager.getBlockingLock(repos);
+            if (blockingLock != null) {
+                JobExecutionContext holder = repositoryLockManager.getLockHolder(blockingLock);
+                status.setWaitingFor(blockingLock + (holder == null ? "" : " (locked by " + holder.getJobDetail().getKey().getName() + ")"));
+            }
             delayedJobsStatus.add(status);
         }
         return delayedJobsStatus;
@@ -319,6 +435,7 @@ public final class IndexingManager {
         jdm.put(IndexingJob.FIELD_REPOSITORIES, repos);
         jdm.put(IndexingJob.FIELD_TERMINATED, false);
         jdm.put(IndexingJob.FIELD_CLEAR_INDEX, clear);
+        jdm.put(IndexingJob.FIELD_MANUAL, true);
 
         JobDetail jobDetail = JobBuilder.newJob(IndexingJob.class).withIdentity(jobKey).usingJobData(jdm).build();
         Trigger jobTrigger = TriggerBuilder.newTrigger().forJob(jobKey).startNow().build();
@@ -327,30 +444,152 @@ public final class IndexingManager {
         LOG.info("Starting manual indexing job for");
     }
 
-    public boolean delayJob(JobDetail jobDetail) {
-        boolean isInQueue = false;
-        for (JobDetail d : delayedJobQueue) {
-            if (d.getKey().equals(jobDetail.getKey())) {
-                isInQueue = true;
-                break;
+    /**
+     * Schedules an incremental job for a repository that was reported to have
+     * moved to a new revision, for instance by a post-receive hook. The job is
+     * started after the configured debounce time, notifications that arrive
+     * in the meantime are handled by the same job.
+     *
+     * @param repository the repository
+     * @param revision the new revision, null if unknown
+     * @return true if a new job was scheduled, false if the notification was
+     *         merged into a pending job or the revision is already indexed
+     * @throws SchedulerException if the job could not be scheduled
+     */
+    public synchronized boolean indexPushedRevision(RepositoryDto repository, String revision) throws SchedulerException {
+        if (revision != null && revision.equals(indexStatusManager.getStatus(repository.getName()))) {
+            LOG.debug("Revision " + revision + " of repository " + repository.getName() + " is already indexed");
+            return false;
+        }
+        TriggerKey pendingTrigger = pushTriggers.get(repository.getName());
+        if (pendingTrigger != null) {
+            Trigger trigger = scheduler.getTrigger(pendingTrigger);
+            if (trigger != null && trigger.getNextFireTime() != null) {
+                LOG.debug("Push notification for repository " + repository.getName() + " merged into pending job");
+                return false;
             }
         }
 
-        if (isInQueue) {
-            return false;
-        } else {
-            delayedJobQueue.add(jobDetail);
+        List<RepositoryDto> repos = new LinkedList<RepositoryDto>();
+        repos.add(repository);
+        JobDataMap jdm = new JobDataMap();
+        jdm.put(IndexingJob.FIELD_REPOSITORIES, repos);
+        jdm.put(IndexingJob.FIELD_TERMINATED, false);
+        jdm.put(IndexingJob.FIELD_CLEAR_INDEX, false);
+
+        JobKey jobKey = new JobKey("push-job-" + repository.getName(), IndexingJob.GROUP_NAME);
+        JobDetail jobDetail = JobBuilder.newJob(IndexingJob.class).withIdentity(jobKey).usingJobData(jdm).storeDurably().build();
+        pushNotifications++;
+        TriggerKey triggerKey = new TriggerKey("push-" + repository.getName() + "-" + pushNotifications, IndexingJob.TRIGGER_GROUP_NAME);
+        Date start = new Date(System.currentTimeMillis() + configReader.getIndexerConfiguration().getPushDebounceSeconds() * 1000L);
+        Trigger trigger = TriggerBuilder.newTrigger().withIdentity(triggerKey).forJob(jobKey).startAt(start).build();
+        scheduler.addJob(jobDetail, true);
+        scheduler.scheduleJob(trigger);
+        pushTriggers.put(repository.getName(), triggerKey);
+        LOG.info("Repository " + repository.getName() + " was pushed" + (revision == null ? "" : " to revision " + revision)
+                + ", indexing at " + start);
+        return true;
+    }
+
+    /**
+     * Adds a job to the delayed jobs. It is merged into or dropped in favor of
+     * a queued job that already covers its repositories.
+     *
+     * @param jobDetail the delayed job
+     * @return true if the job was added as a new entry
+     */
+    public synchronized boolean delayJob(JobDetail jobDetail) {
+        return delayedJobQueue.add(jobDetail);
+    }
+
+    /**
+     * Tries to lock the repositories of the given job execution. If one of
+     * them is locked by another job, the job is added to the delayed jobs and
+     * executed once the lock is released.
+     *
+     * @param context the job execution
+     * @return true if the job may be executed, false if it was delayed
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized boolean lockRepositoriesOrDelayJob(JobExecutionContext context) {
+        JobDetail jobDetail = context.getJobDetail();
+        List<RepositoryDto> repos = (List<RepositoryDto>) jobDetail.getJobDataMap().get(IndexingJob.FIELD_REPOSITORIES);
+        if (repositoryLockManager.tryLock(context, repos)) {
             return true;
         }
+        if (jobDetail.getJobDataMap().containsKey(IndexingJob.FIELD_ADAPTIVE_POLLING)) {
+            // the next poll is scheduled anyway, so the job is not delayed
+            String repository = repos.get(0).getName();
+            LOG.info("Skipping poll of repository " + repository + ", it is locked by another job");
+            scheduleAdaptivePoll(repository, adaptivePollingSchedule.recordSkippedRun(repository));
+            return false;
+        }
+        LOG.info("Delaying execution of job " + jobDetail.getKey().toString() + ", repository "
+                + repositoryLockManager.getBlockingLock(repos) + " is locked by another job");
+        delayJob(JobBuilder.newJob(jobDetail.getJobClass()).withIdentity(jobDetail.getKey()).usingJobData(jobDetail.getJobDataMap())
+                .build());
+        return false;
+    }
+
+    /**
+     * Releases the repository locks of the finished job execution and starts
+     * the delayed jobs that are no longer blocked. Adaptively polling jobs are
+     * scheduled again according to the changes they found.
+     *
+     * @param context the finished job execution
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void jobFinished(JobExecutionContext context) {
+        repositoryLockManager.unlock(context);
+        JobDataMap jobDataMap = context.getJobDetail().getJobDataMap();
+        if (jobDataMap.containsKey(IndexingJob.FIELD_ADAPTIVE_POLLING)) {
+            String repository = ((List<RepositoryDto>) jobDataMap.get(IndexingJob.FIELD_REPOSITORIES)).get(0).getName();
+            Map<String, Integer> changedFiles = (Map<String, Integer>) jobDataMap.get(IndexingJob.FIELD_CHANGED_FILES);
+            Integer changedFileCount = null;
+            if (changedFiles != null) {
+                synchronized (changedFiles) {
+                    changedFileCount = changedFiles.get(repository);
+                }
+            }
+            scheduleAdaptivePoll(repository, adaptivePollingSchedule.recordRun(repository, changedFileCount));
+        }
+        executeUnblockedJobs();
     }
 
-    public void executeNextJobInQueue() {
-        JobDetail detail = delayedJobQueue.poll();
-        if (detail != null) {
-            LOG.info("Executing delayed job " + detail.getKey().toString());
-            Trigger trigger = TriggerBuilder.newTrigger().forJob(detail).withIdentity("Delayed Trigger").startNow().build();
+    /**
+     * Schedules all delayed jobs whose repositories are not locked anymore,
+     * in the order of their priority. A job is not started if it shares
+     * repositories with a job of higher priority that is still waiting.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void executeUnblockedJobs() {
+        List<List<RepositoryDto>> claimedRepositories = new LinkedList<List<RepositoryDto>>();
+        for (JobDetail detail : delayedJobQueue.getJobs()) {
+            List<RepositoryDto> repos = (List<RepositoryDto>) detail.getJobDataMap().get(IndexingJob.FIELD_REPOSITORIES);
+            if (repos == null) {
+                repos = new LinkedList<RepositoryDto>();
+            }
+            boolean claimed = false;
+            for (List<RepositoryDto> claimedRepos : claimedRepositories) {
+                if (DelayedJobQueue.overlaps(claimedRepos, repos)) {
+                    claimed = true;
+                    break;
+                }
+            }
+            claimedRepositories.add(repos);
+            if (claimed || repositoryLockManager.getBlockingLock(repos) != null) {
+                continue;
+            }
+            delayedJobQueue.remove(detail);
+            // the original job may still exist in the scheduler, so the delayed run gets its own key
+            delayedRuns++;
+            JobKey jobKey = new JobKey(detail.getKey().getName() + " (delayed run " + delayedRuns + ")", IndexingJob.GROUP_NAME);
+            JobDetail delayedDetail = JobBuilder.newJob(detail.getJobClass()).withIdentity(jobKey)
+                    .usingJobData(detail.getJobDataMap()).build();
+            LOG.info("Executing delayed job " + jobKey.toString());
+            Trigger trigger = TriggerBuilder.newTrigger().forJob(delayedDetail).startNow().build();
             try {
-                scheduler.scheduleJob(trigger);
+                scheduler.scheduleJob(delayedDetail, trigger);
             } catch (SchedulerException e) {
                 LOG.error("Error re-scheduling delayed job: " + e);
             }
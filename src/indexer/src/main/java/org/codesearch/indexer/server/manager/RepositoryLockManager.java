@@ -0,0 +1,122 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.indexer.server.manager;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.codesearch.commons.configuration.dto.RepositoryDto;
+import org.quartz.JobExecutionContext;
+
+/**
+ * Keeps track of the repositories that are currently processed by a job. A job
+ * may only be executed once it holds the locks of all its repositories, so jobs
+ * with disjoint repositories run concurrently while conflicting jobs are
+ * delayed. A job without repositories affects the whole index and therefore
+ * requires that no other job holds any lock.
+ *
+ * Locks are held per job execution, so two executions of the same job exclude
+ * each other as well.
+ */
+public class RepositoryLockManager {
+
+    /**
+     * The lock name used for jobs that affect the whole index.
+     */
+    public static final String WHOLE_INDEX = "<whole index>";
+    /**
+     * The currently held locks, mapped to the job execution that holds them.
+     */
+    private Map<String, JobExecutionContext> locks = new HashMap<String, JobExecutionContext>();
+
+    /**
+     * Locks all given repositories for the job, either all of them or none.
+     *
+     * @param job the job execution that wants to lock the repositories
+     * @param repositories the repositories processed by the job, the whole
+     *            index if null or empty
+     * @return true if the locks were acquired, false if at least one of them
+     *         is held by another job
+     */
+    public synchronized boolean tryLock(JobExecutionContext job, Collection<RepositoryDto> repositories) {
+        if (getBlockingLock(repositories) != null) {
+            return false;
+        }
+        if (repositories == null || repositories.isEmpty()) {
+            locks.put(WHOLE_INDEX, job);
+        } else {
+            for (RepositoryDto repository : repositories) {
+                locks.put(repository.getName(), job);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Releases all locks held by the given job execution.
+     *
+     * @param job the job execution
+     */
+    public synchronized void unlock(JobExecutionContext job) {
+        for (Iterator<JobExecutionContext> iter = locks.values().iterator(); iter.hasNext();) {
+            if (iter.next() == job) {
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the first lock that prevents a job with the given
+     * repositories from being executed.
+     *
+     * @param repositories the repositories processed by the job, the whole
+     *            index if null or empty
+     * @return the name of the repository, {@link #WHOLE_INDEX} or null if the
+     *         job could be executed now
+     */
+    public synchronized String getBlockingLock(Collection<RepositoryDto> repositories) {
+        if (locks.containsKey(WHOLE_INDEX)) {
+            return WHOLE_INDEX;
+        }
+        if (repositories == null || repositories.isEmpty()) {
+            if (!locks.isEmpty()) {
+                return locks.keySet().iterator().next();
+            }
+        } else {
+            for (RepositoryDto repository : repositories) {
+                if (locks.containsKey(repository.getName())) {
+                    return repository.getName();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the job execution that currently holds the given lock.
+     *
+     * @param lock the name of the repository or {@link #WHOLE_INDEX}
+     * @return the job execution or null if the lock is not held
+     */
+    public synchronized JobExecutionContext getLockHolder(String lock) {
+        return locks.get(lock);
+    }
+}
@@ -69,6 +69,7 @@ public class DashboardServiceImpl extends RemoteServiceServlet implements Dashbo
             dashboardData.setScheduledJobs(scheduledJobs);
             dashboardData.setDelayedJobs(delayedJobs);
             dashboardData.setRepositoryStatuses(repositoryStatuses);
+            dashboardData.setPollingStatuses(indexingManager.getPollingStatuses());
 
             return dashboardData;
         } catch (SchedulerException e) {
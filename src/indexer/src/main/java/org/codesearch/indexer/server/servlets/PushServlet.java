@@ -0,0 +1,105 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.indexer.server.servlets;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.log4j.Logger;
+import org.codesearch.commons.configuration.ConfigurationReader;
+import org.codesearch.commons.configuration.dto.RepositoryDto;
+import org.codesearch.indexer.server.manager.IndexingManager;
+import org.quartz.SchedulerException;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Receives notifications that a repository moved to a new revision and
+ * schedules an incremental indexing job for it. Intended to be called from
+ * hooks of the version control system, e.g. a git post-receive hook:
+ *
+ * <pre>
+ * curl -d repository=NAME -d revision=$newrev http://localhost:8080/indexer/push
+ * </pre>
+ *
+ * The revision parameter is optional.
+ */
+@Singleton
+public class PushServlet extends HttpServlet {
+
+    private static final Logger LOG = Logger.getLogger(PushServlet.class);
+    private static final long serialVersionUID = 1L;
+    private ConfigurationReader configReader;
+    private IndexingManager indexingManager;
+
+    @Inject
+    public PushServlet(ConfigurationReader configReader, IndexingManager indexingManager) {
+        this.configReader = configReader;
+        this.indexingManager = indexingManager;
+    }
+
+    /**
+     * Handles the HTTP <code>POST</code> method.
+     * @param request servlet request
+     * @param response servlet response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        String repositoryName = request.getParameter("repository");
+        String revision = request.getParameter("revision");
+        if (repositoryName == null || repositoryName.trim().isEmpty()) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Parameter 'repository' is missing");
+            return;
+        }
+        RepositoryDto repository = configReader.getRepositoryByName(repositoryName.trim());
+        if (repository == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "Unknown repository: " + repositoryName);
+            return;
+        }
+        if (revision != null && revision.trim().isEmpty()) {
+            revision = null;
+        }
+        try {
+            boolean scheduled = indexingManager.indexPushedRevision(repository, revision == null ? null : revision.trim());
+            response.setStatus(HttpServletResponse.SC_ACCEPTED);
+            response.setContentType("text/plain");
+            response.getWriter().println(scheduled ? "scheduled" : "already scheduled or indexed");
+        } catch (SchedulerException ex) {
+            LOG.error("Could not schedule indexing of pushed repository " + repositoryName + ":\n" + ex);
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Could not schedule indexing job");
+        }
+    }
+
+    /**
+     * Returns a short description of the servlet.
+     * @return a String containing servlet description
+     */
+    @Override
+    public String getServletInfo() {
+        return "Schedules indexing of repositories that were pushed to";
+    }
+}
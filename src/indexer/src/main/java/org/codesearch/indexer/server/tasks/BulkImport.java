@@ -0,0 +1,254 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.indexer.server.tasks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.LogByteSizeMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.codesearch.commons.constants.IndexConstants;
+import org.codesearch.indexer.server.manager.IndexWriterManager;
+
+/**
+ * Builds the index of a repository that is indexed from scratch in a separate
+ * directory. The import writer uses a large RAM buffer and merges rarely, and
+ * since the repository has no documents in the import index, no deletes are
+ * necessary. Once the repository is complete, its documents in the main index
+ * are replaced by the segments of the import index. Since the old documents
+ * are only removed at that point, the import is also used to rebuild
+ * repositories while their old documents stay searchable.
+ *
+ * The import writer is registered with the {@link IndexWriterManager} and
+ * committed by its policy, the {@link IndexingJournal} records a checkpoint at
+ * every commit, so an interrupted import continues with the same directory.
+ */
+class BulkImport {
+
+    /**
+     * The name of the directory in the index location that holds the import
+     * indexes.
+     */
+    static final String BULK_DIRECTORY = "bulk";
+    /**
+     * The merge factor of the import writer, segments are merged by the main
+     * index after the import.
+     */
+    private static final int MERGE_FACTOR = 50;
+    /**
+     * Instantiate a logger
+     */
+    private static final Logger LOG = Logger.getLogger(BulkImport.class);
+    /**
+     * The name of the imported repository.
+     */
+    private String repositoryName;
+    /**
+     * The directory of the import index.
+     */
+    private File location;
+    private Directory directory;
+    private IndexWriter writer;
+    /**
+     * The manager the import writer is registered with while it is open.
+     */
+    private IndexWriterManager indexWriterManager;
+
+    /**
+     * Creates the import of a repository.
+     *
+     * @param indexLocation the location of the main index
+     * @param repositoryName the name of the repository
+     */
+    BulkImport(File indexLocation, String repositoryName) {
+        this.repositoryName = repositoryName;
+        location = new File(new File(indexLocation, BULK_DIRECTORY), repositoryName);
+    }
+
+    /**
+     * Whether an interrupted import of the repository exists.
+     */
+    boolean exists() {
+        return location.isDirectory();
+    }
+
+    /**
+     * Opens the writer of the import index and registers it with the
+     * manager of the main index.
+     *
+     * @param resume whether the documents committed by an interrupted import
+     *            are kept
+     * @param analyzer the analyzer of the main index
+     * @param ramBufferSize the RAM buffer size in megabytes
+     * @param indexWriterManager the manager of the main index
+     * @param commitDocumentCount the number of documents after which the
+     *            import index is committed
+     * @return the writer
+     * @throws IOException if the import index could not be opened
+     */
+    IndexWriter open(boolean resume, Analyzer analyzer, int ramBufferSize, IndexWriterManager indexWriterManager,
+            int commitDocumentCount) throws IOException {
+        location.mkdirs();
+        directory = FSDirectory.open(location);
+        LogByteSizeMergePolicy mergePolicy = new LogByteSizeMergePolicy();
+        mergePolicy.setMergeFactor(MERGE_FACTOR);
+        mergePolicy.setUseCompoundFile(false);
+        IndexWriterConfig config = new IndexWriterConfig(IndexConstants.LUCENE_VERSION, analyzer);
+        config.setOpenMode(resume ? OpenMode.CREATE_OR_APPEND : OpenMode.CREATE);
+        config.setRAMBufferSizeMB(ramBufferSize);
+        config.setMaxBufferedDocs(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+        config.setMergePolicy(mergePolicy);
+        try {
+            writer = new IndexWriter(directory, config);
+        } catch (IOException ex) {
+            directory.close();
+            directory = null;
+            throw ex;
+        }
+        this.indexWriterManager = indexWriterManager;
+        indexWriterManager.registerWriter(writer, commitDocumentCount);
+        LOG.info("Opened bulk import of repository " + repositoryName + " at " + location);
+        return writer;
+    }
+
+    /**
+     * Closes the import writer and replaces the documents of the repository
+     * in the main index with the imported ones. The deletion of the old
+     * documents, the addition of the new ones and the revision they belong
+     * to become visible in a single commit.
+     *
+     * @param indexWriter the shared writer of the index the repository
+     *            belongs to
+     * @param previousRevision the index status of the repository
+     * @param revision the revision that was imported
+     * @throws IOException if the import index could not be added
+     */
+    void attach(IndexWriter indexWriter, String previousRevision, String revision) throws IOException {
+        unregister();
+        writer.close();
+        writer = null;
+        indexWriterManager.replaceDocuments(indexWriter, new Term(IndexConstants.INDEX_FIELD_REPOSITORY, repositoryName.toLowerCase()),
+                directory, repositoryName, previousRevision, revision);
+        LOG.info("Added bulk import of repository " + repositoryName + " to the index");
+    }
+
+    /**
+     * Reads the paths of the files in the import index, used after the import
+     * was attached to find the files that no longer exist.
+     *
+     * @return the paths
+     * @throws IOException if the import index could not be read
+     */
+    Set<String> getImportedFiles() throws IOException {
+        Set<String> files = new HashSet<String>();
+        String prefix = IndexingPipeline.createKey(repositoryName, "");
+        IndexReader reader = IndexReader.open(directory, true);
+        try {
+            TermEnum terms = reader.terms(new Term(IndexConstants.INDEX_FIELD_KEY, prefix));
+            try {
+                do {
+                    Term term = terms.term();
+                    if (term == null || !term.field().equals(IndexConstants.INDEX_FIELD_KEY) || !term.text().startsWith(prefix)) {
+                        break;
+                    }
+                    files.add(term.text().substring(prefix.length()));
+                } while (terms.next());
+            } finally {
+                terms.close();
+            }
+        } finally {
+            reader.close();
+        }
+        return files;
+    }
+
+    /**
+     * Discards the changes since the last checkpoint and closes the import
+     * index, which is kept so the import can be resumed.
+     */
+    void abort() {
+        unregister();
+        if (writer != null) {
+            try {
+                writer.rollback();
+            } catch (IOException ex) {
+                LOG.error("Could not roll back bulk import of repository " + repositoryName + ": " + ex);
+            }
+            writer = null;
+        }
+        closeDirectory();
+    }
+
+    /**
+     * Deletes the import index once it was committed to the main index.
+     */
+    void delete() {
+        abort();
+        deleteRecursively(location);
+    }
+
+    /**
+     * Deletes the import indexes of all repositories.
+     *
+     * @param indexLocation the location of the main index
+     */
+    static void deleteAll(File indexLocation) {
+        deleteRecursively(new File(indexLocation, BULK_DIRECTORY));
+    }
+
+    private void unregister() {
+        if (writer != null && indexWriterManager != null) {
+            indexWriterManager.unregisterWriter(writer);
+        }
+    }
+
+    private void closeDirectory() {
+        if (directory != null) {
+            try {
+                directory.close();
+            } catch (IOException ex) {
+                LOG.error("Could not close the bulk import directory " + location);
+            }
+            directory = null;
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        if (file.exists() && !file.delete()) {
+            LOG.warn("Could not delete " + file);
+        }
+    }
+}
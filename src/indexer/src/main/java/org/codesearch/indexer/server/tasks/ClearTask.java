@@ -22,20 +22,18 @@ import java.io.File;
 import java.io.IOException;
 import java.util.List;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 import org.apache.lucene.index.CorruptIndexException;
-import org.apache.lucene.index.StaleReaderException;
-import org.apache.lucene.index.Term;
-import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.LockObtainFailedException;
 import org.codesearch.commons.configuration.dto.RepositoryDto;
 import org.codesearch.commons.configuration.properties.IndexStatusManager;
-import org.codesearch.commons.constants.IndexConstants;
 import org.codesearch.commons.database.DBAccess;
 import org.codesearch.commons.database.DatabaseAccessException;
 import org.codesearch.commons.plugins.vcs.VersionControlPlugin;
+import org.codesearch.commons.utils.IndexShards;
 import org.codesearch.indexer.server.exceptions.TaskExecutionException;
+import org.codesearch.indexer.server.manager.IndexWriterManager;
 import org.codesearch.indexer.server.manager.IndexingJob;
 
 import com.google.inject.Inject;
@@ -73,10 +71,16 @@ public class ClearTask implements Task {
      * The properties manager used to reset the indexed revision.
      */
     private IndexStatusManager indexStatusManager;
+    /**
+     * Submits the changes to the index writers of the indexer.
+     */
+    private IndexWriterManager indexWriterManager;
 
     @Inject
-    public ClearTask(DBAccess dba, IndexStatusManager indexStatusManager, List<RepositoryDto> repositories, File indexLocation, IndexingJob job) {
+    public ClearTask(DBAccess dba, IndexStatusManager indexStatusManager, List<RepositoryDto> repositories, File indexLocation,
+            IndexWriterManager indexWriterManager, IndexingJob job) {
         this.dba = dba;
+        this.indexWriterManager = indexWriterManager;
         this.indexStatusManager = indexStatusManager;
         this.repositories = repositories;
         this.indexLocation = indexLocation;
@@ -94,6 +98,16 @@ public class ClearTask implements Task {
         if (repositories == null || repositories.isEmpty()) { // Clear the whole index
             LOG.info("Clearing the whole index");
             boolean deleteSuccess = true;
+            // the writers must not be open while their files are deleted
+            indexWriterManager.closeWriters();
+            IndexingJournal.deleteAll(indexLocation);
+            BulkImport.deleteAll(indexLocation);
+            try {
+                FileUtils.deleteDirectory(IndexShards.getShardDirectory(indexLocation));
+            } catch (IOException ex) {
+                LOG.error("Could not delete the repository indexes: " + ex);
+                deleteSuccess = false;
+            }
             if (indexLocation.listFiles() != null) {
                 for (File f : indexLocation.listFiles()) {
                     if (!f.delete()) {
@@ -122,48 +136,15 @@ public class ClearTask implements Task {
             if (job != null) {
                 job.getJobDataMap().put(IndexingJob.FIELD_CURRENT_STEPS, repositories.size());
             }
-            IndexSearcher searcher = null;
-            try {
-                FSDirectory fsd = FSDirectory.open(indexLocation);
-                searcher = new IndexSearcher(fsd, false);
-
-                int index = 0;
-                for (RepositoryDto repositoryDto : repositories) {
-                    if (job != null) {
-                        // set the status
-                        job.setCurrentRepository(index);
-                        job.getJobDataMap().put(IndexingJob.FIELD_FINISHED_STEPS, index);
-                    }
-                    Term term = new Term(IndexConstants.INDEX_FIELD_REPOSITORY, repositoryDto.getName().toLowerCase());
-
-                    LOG.debug("Deleting documents where field '" + term.field() + "' is '" + term.text() + "'");
-                    int deleteCount = 0;
-                    try {
-                        deleteCount = searcher.getIndexReader().deleteDocuments(term);
-                    } catch (IOException ex) {
-                        LOG.error("Error encountered while clearing index: " + ex);
-                    }
-
-                    indexStatusManager.setStatus(repositoryDto.getName(), VersionControlPlugin.UNDEFINED_VERSION);
-
-                    LOG.debug("Cleared " + deleteCount + " documents for repository " + repositoryDto.getName());
-                    index++;
-                }
-            } catch (CorruptIndexException ex) {
-                LOG.error("Could not clear index because it is corrupt: \n" + ex);
-            } catch (LockObtainFailedException ex) {
-                LOG.error("Could not clear index because it is locked.");
-            } catch (StaleReaderException ex) {
-                LOG.error("The index was modified by another program/instance while clearing.");
-            } catch (IOException ex) {
-                // if there is no index nothing has to be cleared
-            } finally {
-                if (searcher != null) {
-                    try {
-                        searcher.close();
-                    } catch (IOException ex) {
-                    }
+            int index = 0;
+            for (RepositoryDto repositoryDto : repositories) {
+                if (job != null) {
+                    // set the status
+                    job.setCurrentRepository(index);
+                    job.getJobDataMap().put(IndexingJob.FIELD_FINISHED_STEPS, index);
                 }
+                clearRepository(repositoryDto);
+                index++;
             }
 
             for (RepositoryDto repositoryDto : repositories) {
@@ -178,4 +159,27 @@ public class ClearTask implements Task {
 
         LOG.info("Finished clearing index");
     }
+
+    /**
+     * Deletes the documents of a repository and resets its revision.
+     *
+     * @param repositoryDto the repository
+     */
+    private void clearRepository(RepositoryDto repositoryDto) {
+        try {
+            indexWriterManager.clearRepository(repositoryDto.getName());
+
+            indexStatusManager.setStatus(repositoryDto.getName(), VersionControlPlugin.UNDEFINED_VERSION);
+            new IndexingJournal(indexLocation, repositoryDto.getName()).delete();
+            new BulkImport(indexLocation, repositoryDto.getName()).delete();
+
+            LOG.debug("Cleared documents of repository " + repositoryDto.getName());
+        } catch (CorruptIndexException ex) {
+            LOG.error("Could not clear index because it is corrupt: \n" + ex);
+        } catch (LockObtainFailedException ex) {
+            LOG.error("Could not clear index because it is locked.");
+        } catch (IOException ex) {
+            LOG.error("Could not clear index: " + ex);
+        }
+    }
 }
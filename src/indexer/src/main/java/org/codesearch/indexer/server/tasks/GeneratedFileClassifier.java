@@ -0,0 +1,180 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.indexer.server.tasks;
+
+import java.util.List;
+
+import org.apache.commons.io.FilenameUtils;
+
+/**
+ * Recognizes generated files, like parsers created by a parser generator,
+ * lock files and minified scripts, using cheap heuristics:
+ * <ul>
+ * <li>the path matches one of the configured glob patterns, patterns without a
+ * slash are matched against the file name</li>
+ * <li>the beginning of the file contains a marker like "generated by" or "do
+ * not edit"</li>
+ * <li>most of the content is in very long lines, as in minified files</li>
+ * <li>the characters are distributed almost randomly, as in embedded base64
+ * data</li>
+ * </ul>
+ * Only the beginning of the content is examined. Instances are immutable and
+ * can be shared between threads.
+ */
+class GeneratedFileClassifier {
+
+    /**
+     * The reasons a file is considered generated.
+     */
+    enum Reason {
+        PATH, MARKER, MINIFIED, ENCODED
+    }
+
+    /**
+     * The number of bytes at the beginning of the file searched for markers.
+     */
+    private static final int HEADER_SIZE = 2048;
+    /**
+     * Markers of generated files, in lower case.
+     */
+    private static final String[] MARKERS = { "@generated", "generated by", "do not edit", "auto-generated", "autogenerated",
+            "automatically generated" };
+    /**
+     * The number of bytes examined by the statistical heuristics.
+     */
+    private static final int SAMPLE_SIZE = 64 * 1024;
+    /**
+     * The minimum number of bytes for the statistical heuristics, smaller
+     * files can not be classified reliably.
+     */
+    private static final int MIN_SAMPLE_SIZE = 1024;
+    /**
+     * Lines with more characters count as long lines.
+     */
+    private static final int LONG_LINE_LENGTH = 500;
+    /**
+     * The share of bytes in long lines above which a file is minified.
+     */
+    private static final double MINIFIED_LONG_LINE_SHARE = 0.5;
+    /**
+     * The entropy of the ASCII characters in bits per character above which a
+     * file is considered encoded data. Source code stays well below, base64
+     * comes close to 6.
+     */
+    private static final double ENCODED_ENTROPY = 5.7;
+
+    private List<String> pathPatterns;
+
+    /**
+     * @param pathPatterns the glob patterns of the paths of generated files
+     */
+    GeneratedFileClassifier(List<String> pathPatterns) {
+        this.pathPatterns = pathPatterns;
+    }
+
+    /**
+     * Classifies a file.
+     *
+     * @param path the path of the file
+     * @param content the content of the file
+     * @return the reason the file is considered generated, null if it is not
+     */
+    Reason classify(String path, byte[] content) {
+        String fileName = path.substring(path.lastIndexOf('/') + 1);
+        for (String pattern : pathPatterns) {
+            if (FilenameUtils.wildcardMatch(pattern.indexOf('/') < 0 ? fileName : path, pattern)) {
+                return Reason.PATH;
+            }
+        }
+        if (containsMarker(content)) {
+            return Reason.MARKER;
+        }
+        int sampleSize = Math.min(content.length, SAMPLE_SIZE);
+        if (sampleSize < MIN_SAMPLE_SIZE) {
+            return null;
+        }
+        if (getLongLineShare(content, sampleSize) > MINIFIED_LONG_LINE_SHARE) {
+            return Reason.MINIFIED;
+        }
+        if (getEntropy(content, sampleSize) > ENCODED_ENTROPY) {
+            return Reason.ENCODED;
+        }
+        return null;
+    }
+
+    private boolean containsMarker(byte[] content) {
+        int length = Math.min(content.length, HEADER_SIZE);
+        char[] header = new char[length];
+        for (int i = 0; i < length; i++) {
+            header[i] = Character.toLowerCase((char) (content[i] & 0xff));
+        }
+        String headerString = new String(header);
+        for (String marker : MARKERS) {
+            if (headerString.contains(marker)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the share of the bytes of the sample that are in long lines.
+     */
+    private double getLongLineShare(byte[] content, int sampleSize) {
+        int longLineBytes = 0;
+        int lineStart = 0;
+        for (int i = 0; i <= sampleSize; i++) {
+            if (i == sampleSize || content[i] == '\n') {
+                if (i - lineStart > LONG_LINE_LENGTH) {
+                    longLineBytes += i - lineStart;
+                }
+                lineStart = i + 1;
+            }
+        }
+        return (double) longLineBytes / sampleSize;
+    }
+
+    /**
+     * Returns the Shannon entropy of the printable ASCII characters of the
+     * sample in bits per character. Other bytes are ignored, so text in other
+     * scripts is not mistaken for encoded data.
+     */
+    private double getEntropy(byte[] content, int sampleSize) {
+        int[] counts = new int[128];
+        int total = 0;
+        for (int i = 0; i < sampleSize; i++) {
+            int c = content[i];
+            if (c > ' ' && c < 127) {
+                counts[c]++;
+                total++;
+            }
+        }
+        if (total < MIN_SAMPLE_SIZE) {
+            return 0;
+        }
+        double entropy = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                double p = (double) count / total;
+                entropy -= p * Math.log(p);
+            }
+        }
+        return entropy / Math.log(2);
+    }
+}
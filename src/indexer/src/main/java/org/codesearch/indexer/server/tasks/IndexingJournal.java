@@ -0,0 +1,252 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.indexer.server.tasks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.codesearch.indexer.server.manager.IndexWriterManager;
+
+/**
+ * Records the files of a repository that were already indexed during an
+ * unfinished indexing run. The journal listens to the commits of the writer
+ * the files are added to and is only written at these checkpoints, so every
+ * file listed in it is guaranteed to be in the index. If the run is
+ * interrupted, the next run of the repository skips the listed files.
+ *
+ * The journal file starts with the revision the run started from and the
+ * revision it indexes, followed by one file path per line.
+ */
+class IndexingJournal implements IndexWriterManager.CommitListener {
+
+    /**
+     * The name of the directory in the index location that holds the
+     * journals.
+     */
+    static final String JOURNAL_DIRECTORY = "journals";
+    /**
+     * Instantiate a logger
+     */
+    private static final Logger LOG = Logger.getLogger(IndexingJournal.class);
+    private static final String ENCODING = "UTF-8";
+    /**
+     * The journal file.
+     */
+    private File file;
+    /**
+     * The revision the journaled run indexes.
+     */
+    private String targetRevision;
+    /**
+     * The files read from an existing journal.
+     */
+    private Set<String> processedFiles = new HashSet<String>();
+    /**
+     * The files finished since the last checkpoint.
+     */
+    private List<String> pendingFiles = new LinkedList<String>();
+    /**
+     * The number of pending files that are part of the running commit.
+     */
+    private int committingFiles;
+
+    /**
+     * Creates the journal of a repository.
+     *
+     * @param indexLocation the location of the index
+     * @param repositoryName the name of the repository
+     */
+    IndexingJournal(File indexLocation, String repositoryName) {
+        file = new File(new File(indexLocation, JOURNAL_DIRECTORY), repositoryName + ".journal");
+    }
+
+    /**
+     * Reads an existing journal. A journal that was started from another
+     * revision than the given one is outdated and ignored.
+     *
+     * @param baseRevision the revision the repository is currently indexed at
+     * @return true if a valid journal was read
+     */
+    boolean load(String baseRevision) {
+        processedFiles.clear();
+        targetRevision = null;
+        if (!file.exists()) {
+            return false;
+        }
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), ENCODING));
+            String journalBase = reader.readLine();
+            String journalTarget = reader.readLine();
+            if (journalTarget == null || !journalBase.equals(baseRevision)) {
+                LOG.info("Ignoring outdated indexing journal " + file);
+                return false;
+            }
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (!line.isEmpty()) {
+                    processedFiles.add(line);
+                }
+            }
+            targetRevision = journalTarget;
+            return true;
+        } catch (IOException ex) {
+            LOG.warn("Could not read indexing journal " + file + ", indexing all files: " + ex);
+            processedFiles.clear();
+            return false;
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException ex) {
+                    LOG.warn("Unable to close reader:\n", ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the revision the loaded journal indexes.
+     *
+     * @return the revision or null if no journal was loaded
+     */
+    String getTargetRevision() {
+        return targetRevision;
+    }
+
+    /**
+     * Returns the files listed in the loaded journal. The set may be modified
+     * to drop files that have to be indexed again.
+     *
+     * @return the file paths
+     */
+    Set<String> getProcessedFiles() {
+        return processedFiles;
+    }
+
+    /**
+     * Starts a new journal, replacing the existing one.
+     *
+     * @param baseRevision the revision the repository is currently indexed at
+     * @param targetRevision the revision that is indexed
+     * @param processedFiles the files that are already in the index at the
+     *            target revision
+     * @throws IOException if the journal could not be written
+     */
+    void start(String baseRevision, String targetRevision, Collection<String> processedFiles) throws IOException {
+        file.getParentFile().mkdirs();
+        this.targetRevision = targetRevision;
+        pendingFiles.clear();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), ENCODING);
+        try {
+            writer.write(baseRevision + "\n" + targetRevision + "\n");
+            for (String path : processedFiles) {
+                writer.write(path + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Marks a file as finished, it is written to the journal once the index
+     * is committed the next time.
+     *
+     * @param path the path of the file
+     */
+    synchronized void fileFinished(String path) {
+        pendingFiles.add(path);
+    }
+
+    /**
+     * Remembers the files that were finished before the commit, only these
+     * are guaranteed to be part of it.
+     */
+    @Override
+    public synchronized void beforeCommit() {
+        committingFiles = pendingFiles.size();
+    }
+
+    /**
+     * Appends the files that are part of the commit to the journal.
+     *
+     * @throws IOException if the journal could not be written, the files
+     *             stay pending
+     */
+    @Override
+    public synchronized void afterCommit() throws IOException {
+        if (committingFiles == 0) {
+            return;
+        }
+        List<String> committedFiles = pendingFiles.subList(0, committingFiles);
+        FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            Writer writer = new OutputStreamWriter(out, ENCODING);
+            for (String path : committedFiles) {
+                writer.write(path + "\n");
+            }
+            writer.flush();
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        LOG.debug("Checkpoint of " + committingFiles + " files written to " + file);
+        committedFiles.clear();
+        committingFiles = 0;
+    }
+
+    /**
+     * Deletes the journal once the run is finished and the index status
+     * points to the target revision.
+     */
+    synchronized void delete() {
+        pendingFiles.clear();
+        committingFiles = 0;
+        if (file.exists() && !file.delete()) {
+            LOG.warn("Could not delete indexing journal " + file);
+        }
+    }
+
+    /**
+     * Deletes the journals of all repositories.
+     *
+     * @param indexLocation the location of the index
+     */
+    static void deleteAll(File indexLocation) {
+        File[] journals = new File(indexLocation, JOURNAL_DIRECTORY).listFiles();
+        if (journals != null) {
+            for (File journal : journals) {
+                if (!journal.delete()) {
+                    LOG.warn("Could not delete indexing journal " + journal);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,1066 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.indexer.server.tasks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.Field.Index;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.codesearch.commons.configuration.dto.IndexerConfiguration;
+import org.codesearch.commons.configuration.dto.RepositoryDto;
+import org.codesearch.commons.constants.IndexConstants;
+import org.codesearch.commons.database.DBAccess;
+import org.codesearch.commons.database.DatabaseAccessException;
+import org.codesearch.commons.plugins.PluginLoader;
+import org.codesearch.commons.plugins.PluginLoaderException;
+import org.codesearch.commons.plugins.codeanalyzing.CodeAnalyzerPlugin;
+import org.codesearch.commons.plugins.codeanalyzing.ast.AstNode;
+import org.codesearch.commons.plugins.codeanalyzing.ast.Usage;
+import org.codesearch.commons.plugins.lucenefields.LuceneFieldPlugin;
+import org.codesearch.commons.plugins.lucenefields.LuceneFieldValueException;
+import org.codesearch.commons.plugins.lucenefields.StreamingLuceneFieldPlugin;
+import org.codesearch.commons.plugins.vcs.FileDto;
+import org.codesearch.commons.plugins.vcs.FileIdentifier;
+import org.codesearch.commons.plugins.vcs.VcsFileNotFoundException;
+import org.codesearch.commons.plugins.vcs.VersionControlPlugin;
+import org.codesearch.commons.plugins.vcs.VersionControlPluginException;
+import org.codesearch.commons.utils.mime.MimeTypeUtil;
+import org.codesearch.indexer.server.manager.AnalysisCache;
+import org.codesearch.indexer.server.manager.AnalysisCache.CachedAnalysis;
+import org.codesearch.indexer.server.manager.IndexWriterManager;
+import org.codesearch.indexer.server.exceptions.TaskExecutionException;
+import org.codesearch.indexer.server.manager.IndexingJob;
+
+/**
+ * Indexes the changed files of a single repository using a staged pipeline.
+ * Each file passes the stages VCS fetch, Lucene document build, code analysis
+ * and database write. Every stage is executed by its own configurable number
+ * of worker threads and the stages are connected by bounded queues, so slow
+ * stages throttle the faster ones instead of buffering the whole repository in
+ * memory.
+ *
+ * Plugins that keep per-call state (version control and code analyzer plugins)
+ * are instantiated once per worker. The {@link IndexWriter} is shared since
+ * adding documents is thread-safe. Database writes are done by a single worker
+ * because the {@link DBAccess} implementation serializes all calls anyway.
+ *
+ * Files that are binary according to their file ending and files the version
+ * control plugin reports to be larger than the configured maximum file size
+ * are indexed without their content, it is never retrieved. To bound the
+ * memory used per file, at most the maximum file size of a content of unknown
+ * size is kept while it is fetched, and fields of
+ * {@link StreamingLuceneFieldPlugin}s are tokenized from a reader over the
+ * content instead of a copy of it.
+ *
+ * The git blob id of the complete content is stored with every document. If
+ * deduplication is enabled, files whose content was already analyzed in any
+ * repository or branch get a copy of the existing analysis data instead of
+ * being analyzed again. Independent of the database, analysis results are
+ * kept in the {@link AnalysisCache}, so contents that were analyzed before are
+ * not parsed again. The database records of files that were renamed without
+ * changing their content are moved to the new path.
+ *
+ * Errors of single files are logged and the file is skipped. If a worker
+ * itself fails, the pipeline is marked as failed, the remaining workers stop
+ * and the failure is reported by {@link #add(FileIdentifier)} and
+ * {@link #finish()}.
+ */
+class IndexingPipeline {
+
+    /**
+     * The Logger.
+     */
+    private static final Logger LOG = Logger.getLogger(IndexingPipeline.class);
+    /**
+     * Marks the end of the input in the fetch queue.
+     */
+    private static final FileIdentifier END_OF_FILES = new FileIdentifier();
+    /**
+     * Marks the end of the input in the indexing and analysis queues.
+     */
+    private static final FileDto END_OF_CONTENTS = new FileDto();
+    /**
+     * Marks the end of the input in the database queue.
+     */
+    private static final AnalysisResult END_OF_RESULTS = new AnalysisResult(null, null, null, null, null);
+    /**
+     * The number of milliseconds a full queue is waited for before checking
+     * whether the pipeline failed.
+     */
+    private static final long OFFER_TIMEOUT = 500;
+    /**
+     * The repository whose files are indexed.
+     */
+    private RepositoryDto repository;
+    /**
+     * The version control plugin already set to the repository, used by the
+     * first fetch worker.
+     */
+    private VersionControlPlugin versionControlPlugin;
+    /**
+     * The writer the documents are added to.
+     */
+    private IndexWriter indexWriter;
+    /**
+     * Whether the documents replace indexed versions of the files, false if
+     * the index contains no documents of the repository.
+     */
+    private boolean replaceDocuments;
+    /**
+     * Submits the documents.
+     */
+    private IndexWriterManager indexWriterManager;
+    /**
+     * The plugins that will be used to create the fields for each document.
+     */
+    private List<LuceneFieldPlugin> luceneFieldPlugins;
+    /**
+     * The database access object.
+     */
+    private DBAccess dba;
+    /**
+     * Provides the results of earlier code analyses.
+     */
+    private AnalysisCache analysisCache;
+    /**
+     * The plugin loader used to create the per-worker plugin instances.
+     */
+    private PluginLoader pluginLoader;
+    /**
+     * The parent {@link IndexingJob}, used for progress reporting. Null if
+     * the progress of single files is not reported, for instance because
+     * several repositories are indexed at the same time.
+     */
+    private IndexingJob job;
+    /**
+     * The worker and queue settings.
+     */
+    private IndexerConfiguration configuration;
+    /**
+     * Whether previous database operations were executed successfully, shared
+     * with the task so a failed connection is not retried for every file.
+     */
+    private AtomicBoolean databaseConnectionValid;
+    /**
+     * The journal the indexed files are recorded in, null if no checkpoints
+     * are written.
+     */
+    private IndexingJournal journal;
+    /**
+     * The number of files that have passed all stages they need.
+     */
+    private AtomicInteger finishedFiles = new AtomicInteger();
+    /**
+     * The number of files whose analysis data was copied from a file with the
+     * same content.
+     */
+    private AtomicInteger deduplicatedFiles = new AtomicInteger();
+    /**
+     * The number of files whose analysis result was taken from the
+     * {@link AnalysisCache}.
+     */
+    private AtomicInteger cachedFiles = new AtomicInteger();
+    /**
+     * The number of renamed files whose analysis data was moved to the new
+     * path.
+     */
+    private AtomicInteger movedFiles = new AtomicInteger();
+    /**
+     * The number of binary files indexed without content.
+     */
+    private AtomicInteger binaryFiles = new AtomicInteger();
+    /**
+     * The number of files indexed without content because they exceed the
+     * maximum file size.
+     */
+    private AtomicInteger oversizedFiles = new AtomicInteger();
+    /**
+     * The number of files of unknown size whose content was truncated to the
+     * maximum file size while it was fetched.
+     */
+    private AtomicInteger truncatedFiles = new AtomicInteger();
+    /**
+     * Recognizes generated files.
+     */
+    private GeneratedFileClassifier generatedFileClassifier;
+    /**
+     * The number of generated files by the reason they were recognized.
+     */
+    private Map<GeneratedFileClassifier.Reason, AtomicInteger> generatedFiles = new EnumMap<GeneratedFileClassifier.Reason, AtomicInteger>(
+            GeneratedFileClassifier.Reason.class);
+    /**
+     * The number of generated files indexed without content.
+     */
+    private AtomicInteger generatedFilesWithoutContent = new AtomicInteger();
+    /**
+     * The number of generated files excluded from the code analysis.
+     */
+    private AtomicInteger generatedFilesNotAnalyzed = new AtomicInteger();
+    /**
+     * The first failure of a worker, null as long as all workers are running.
+     */
+    private AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+    private BlockingQueue<FileIdentifier> fetchQueue;
+    private BlockingQueue<FileDto> indexingQueue;
+    private BlockingQueue<FileDto> analysisQueue;
+    private BlockingQueue<AnalysisResult> databaseQueue;
+
+    private List<VersionControlPlugin> fetchPlugins;
+    private int indexingThreads;
+    private int analysisThreads;
+    private ExecutorService fetchExecutor;
+    private ExecutorService indexingExecutor;
+    private ExecutorService analysisExecutor;
+    private ExecutorService databaseExecutor;
+
+    IndexingPipeline(RepositoryDto repository, VersionControlPlugin versionControlPlugin, IndexWriter indexWriter, boolean replaceDocuments,
+            IndexWriterManager indexWriterManager, List<LuceneFieldPlugin> luceneFieldPlugins, DBAccess dba, AnalysisCache analysisCache,
+            PluginLoader pluginLoader, IndexingJob job,
+            IndexerConfiguration configuration, AtomicBoolean databaseConnectionValid, IndexingJournal journal) {
+        this.repository = repository;
+        this.versionControlPlugin = versionControlPlugin;
+        this.indexWriter = indexWriter;
+        this.replaceDocuments = replaceDocuments;
+        this.indexWriterManager = indexWriterManager;
+        this.luceneFieldPlugins = luceneFieldPlugins;
+        this.dba = dba;
+        this.analysisCache = analysisCache;
+        this.pluginLoader = pluginLoader;
+        this.job = job;
+        this.configuration = configuration;
+        this.databaseConnectionValid = databaseConnectionValid;
+        this.journal = journal;
+        generatedFileClassifier = new GeneratedFileClassifier(configuration.getGeneratedFilePatterns());
+        for (GeneratedFileClassifier.Reason reason : GeneratedFileClassifier.Reason.values()) {
+            generatedFiles.put(reason, new AtomicInteger());
+        }
+        int queueSize = configuration.getPipelineQueueSize();
+        fetchQueue = new ArrayBlockingQueue<FileIdentifier>(queueSize);
+        indexingQueue = new ArrayBlockingQueue<FileDto>(queueSize);
+        analysisQueue = new ArrayBlockingQueue<FileDto>(queueSize);
+        databaseQueue = new ArrayBlockingQueue<AnalysisResult>(queueSize);
+    }
+
+    /**
+     * Starts the workers of all stages. Files are passed to the pipeline with
+     * {@link #add(FileIdentifier)}, {@link #finish()} must be called
+     * afterwards in any case.
+     */
+    void start() {
+        fetchPlugins = createFetchPlugins();
+        indexingThreads = configuration.getIndexingThreads();
+        analysisThreads = repository.isCodeNavigationEnabled() ? configuration.getAnalysisThreads() : 0;
+
+        fetchExecutor = Executors.newFixedThreadPool(fetchPlugins.size());
+        indexingExecutor = Executors.newFixedThreadPool(indexingThreads);
+        analysisExecutor = analysisThreads > 0 ? Executors.newFixedThreadPool(analysisThreads) : null;
+        databaseExecutor = analysisThreads > 0 ? Executors.newSingleThreadExecutor() : null;
+        for (VersionControlPlugin plugin : fetchPlugins) {
+            fetchExecutor.execute(new FetchWorker(plugin));
+        }
+        for (int i = 0; i < indexingThreads; i++) {
+            indexingExecutor.execute(new IndexingWorker());
+        }
+        for (int i = 0; i < analysisThreads; i++) {
+            analysisExecutor.execute(new AnalysisWorker());
+        }
+        if (databaseExecutor != null) {
+            databaseExecutor.execute(new DatabaseWorker());
+        }
+    }
+
+    /**
+     * @return the number of generated files among the indexed files
+     */
+    int getGeneratedFileCount() {
+        int count = 0;
+        for (AtomicInteger reasonCount : generatedFiles.values()) {
+            count += reasonCount.get();
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of generated files indexed without their content
+     */
+    int getGeneratedFilesWithoutContent() {
+        return generatedFilesWithoutContent.get();
+    }
+
+    /**
+     * @return the number of generated files excluded from the code analysis
+     */
+    int getGeneratedFilesNotAnalyzed() {
+        return generatedFilesNotAnalyzed.get();
+    }
+
+    /**
+     * Adds a file to the pipeline, blocks while the first stage is busy.
+     *
+     * @param file the file that is to be indexed
+     * @throws InterruptedException if the calling thread was interrupted while
+     *             waiting for the pipeline
+     * @throws TaskExecutionException if a worker of the pipeline failed
+     */
+    void add(FileIdentifier file) throws InterruptedException, TaskExecutionException {
+        checkFailure();
+        if (!transfer(fetchQueue, file)) {
+            checkFailure();
+        }
+    }
+
+    /**
+     * Returns once every stage has processed all added files.
+     *
+     * @throws InterruptedException if the calling thread was interrupted while
+     *             waiting for the pipeline
+     * @throws TaskExecutionException if a worker of the pipeline failed, in
+     *             this case not all files were indexed
+     */
+    void finish() throws InterruptedException, TaskExecutionException {
+        try {
+            // shut down the stages in order, each one only after all of its producers are done
+            finishStage(fetchExecutor, fetchQueue, END_OF_FILES, fetchPlugins.size());
+            finishStage(indexingExecutor, indexingQueue, END_OF_CONTENTS, indexingThreads);
+            if (analysisExecutor != null) {
+                finishStage(analysisExecutor, analysisQueue, END_OF_CONTENTS, analysisThreads);
+                finishStage(databaseExecutor, databaseQueue, END_OF_RESULTS, 1);
+            }
+            // a failed worker of a stage leaves its files unprocessed while the other workers finish normally
+            checkFailure();
+            if (deduplicatedFiles.get() > 0) {
+                LOG.info("Reused the analysis data of " + deduplicatedFiles.get() + " files with known content in repository "
+                        + repository.getName());
+            }
+            if (binaryFiles.get() > 0 || oversizedFiles.get() > 0) {
+                LOG.info("Indexed " + binaryFiles.get() + " binary files and " + oversizedFiles.get()
+                        + " files larger than the maximum file size of repository " + repository.getName() + " without their content");
+            }
+            if (truncatedFiles.get() > 0) {
+                LOG.info("Truncated the content of " + truncatedFiles.get() + " files larger than the maximum file size of repository "
+                        + repository.getName());
+            }
+            if (getGeneratedFileCount() > 0) {
+                LOG.info("Recognized " + getGeneratedFileCount() + " generated files " + generatedFiles + " in repository "
+                        + repository.getName() + ", indexed " + generatedFilesWithoutContent.get() + " of them without content and excluded "
+                        + generatedFilesNotAnalyzed.get() + " from the code analysis");
+            }
+            if (movedFiles.get() > 0) {
+                LOG.info("Moved the analysis data of " + movedFiles.get() + " renamed files in repository " + repository.getName());
+            }
+            if (cachedFiles.get() > 0) {
+                LOG.info("Took the analysis results of " + cachedFiles.get() + " files of repository " + repository.getName()
+                        + " from the analysis cache");
+            }
+        } finally {
+            fetchExecutor.shutdownNow();
+            indexingExecutor.shutdownNow();
+            if (analysisExecutor != null) {
+                analysisExecutor.shutdownNow();
+                databaseExecutor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Signals the end of the input to all workers of a stage and waits until
+     * they are done.
+     */
+    private <T> void finishStage(ExecutorService executor, BlockingQueue<T> queue, T endMarker, int workerCount)
+            throws InterruptedException, TaskExecutionException {
+        for (int i = 0; i < workerCount; i++) {
+            if (!transfer(queue, endMarker)) {
+                checkFailure();
+            }
+        }
+        executor.shutdown();
+        while (!executor.awaitTermination(OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+            checkFailure();
+        }
+    }
+
+    /**
+     * Passes an element to the next stage. While the queue is full, the
+     * pipeline is checked for failed workers that would never take the
+     * element.
+     *
+     * @return false if the pipeline failed before the element could be
+     *         queued
+     */
+    private <T> boolean transfer(BlockingQueue<T> queue, T element) throws InterruptedException {
+        while (!queue.offer(element, OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+            if (failure.get() != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Marks the pipeline as failed, only the first failure is kept.
+     *
+     * @param cause the error that stopped a worker
+     */
+    private void fail(Throwable cause) {
+        if (cause instanceof InterruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure.compareAndSet(null, cause)) {
+            LOG.error("Worker of the indexing pipeline of repository " + repository.getName() + " failed", cause);
+        }
+    }
+
+    /**
+     * @throws TaskExecutionException if a worker of the pipeline failed
+     */
+    private void checkFailure() throws TaskExecutionException {
+        Throwable cause = failure.get();
+        if (cause != null) {
+            throw new TaskExecutionException("Indexing pipeline of repository " + repository.getName() + " failed: " + cause);
+        }
+    }
+
+    /**
+     * Creates one version control plugin per fetch worker. The first worker
+     * uses the plugin of the task, if the additional instances can not be
+     * created the pipeline falls back to a single fetch worker.
+     */
+    private List<VersionControlPlugin> createFetchPlugins() {
+        List<VersionControlPlugin> plugins = new LinkedList<VersionControlPlugin>();
+        plugins.add(versionControlPlugin);
+        for (int i = 1; i < configuration.getFetchThreads(); i++) {
+            try {
+                VersionControlPlugin plugin = pluginLoader.getNewPluginInstance(VersionControlPlugin.class,
+                        repository.getVersionControlSystem());
+                if (plugin == null) {
+                    break;
+                }
+                plugin.setRepository(repository);
+                plugins.add(plugin);
+            } catch (PluginLoaderException ex) {
+                LOG.warn("Could not create additional VersionControlPlugin, using " + plugins.size() + " fetch threads: " + ex);
+                break;
+            } catch (VersionControlPluginException ex) {
+                LOG.warn("Could not create additional VersionControlPlugin, using " + plugins.size() + " fetch threads: " + ex);
+                break;
+            }
+        }
+        return plugins;
+    }
+
+    /**
+     * Marks a file as finished and updates the progress of the job. Only
+     * files that passed all their stages are recorded in the journal, a
+     * resumed run processes the others again.
+     *
+     * @param path the path of the file
+     * @param completed whether the file was indexed and analyzed successfully
+     */
+    private void fileFinished(String path, boolean completed) {
+        if (journal != null && completed) {
+            journal.fileFinished(path);
+        }
+        int finished = finishedFiles.incrementAndGet();
+        if (job != null) {
+            synchronized (job.getJobDataMap()) {
+                job.getJobDataMap().put(IndexingJob.FIELD_FINISHED_STEPS, finished);
+            }
+        }
+    }
+
+    /**
+     * Removes the indexed version of a file that could not be indexed again,
+     * so no outdated version stays in the index.
+     *
+     * @param path the path of the file
+     */
+    private void removeFromIndex(String path) {
+        if (!replaceDocuments) {
+            return;
+        }
+        try {
+            indexWriterManager.deleteDocuments(indexWriter, createKeyTerm(repository.getName(), path));
+        } catch (IOException ex) {
+            LOG.error("Could not delete file from index: " + ex);
+        }
+    }
+
+    /**
+     * Returns the value of the {@link IndexConstants#INDEX_FIELD_KEY} field
+     * of a file.
+     *
+     * @param repositoryName the name of the repository of the file
+     * @param path the path of the file
+     * @return the key
+     */
+    static String createKey(String repositoryName, String path) {
+        return repositoryName + ":" + path;
+    }
+
+    /**
+     * Returns the term identifying the document of a file.
+     *
+     * @param repositoryName the name of the repository of the file
+     * @param path the path of the file
+     * @return the term
+     */
+    static Term createKeyTerm(String repositoryName, String path) {
+        return new Term(IndexConstants.INDEX_FIELD_KEY, createKey(repositoryName, path));
+    }
+
+    /**
+     * Returns the hash git uses to identify a blob with the given content, so
+     * identical contents have the same hash in every repository and branch.
+     *
+     * @param content the content of the file
+     * @return the hex encoded SHA-1 hash
+     */
+    static String computeContentHash(byte[] content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(("blob " + content.length + "\0").getBytes("US-ASCII"));
+            byte[] hash = digest.digest(content);
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-1 is not supported", ex);
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException("US-ASCII is not supported", ex);
+        }
+    }
+
+    /**
+     * Retrieves the content of the files from the version control system.
+     */
+    private class FetchWorker implements Runnable {
+
+        private VersionControlPlugin plugin;
+
+        FetchWorker(VersionControlPlugin plugin) {
+            this.plugin = plugin;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (FileIdentifier identifier = fetchQueue.take(); identifier != END_OF_FILES; identifier = fetchQueue.take()) {
+                    FileDto file = null;
+                    try {
+                        if (!identifier.isDeleted()) {
+                            if (isIndexedWithoutContent(identifier)) {
+                                file = createFileWithoutContent(identifier);
+                            } else {
+                                file = plugin.getFile(identifier, VersionControlPlugin.UNDEFINED_VERSION, configuration.getMaxFileSize());
+                            }
+                        }
+                    } catch (VcsFileNotFoundException ex) {
+                        LOG.error("File not found: " + identifier + " , skipping file.");
+                    } catch (VersionControlPluginException ex) {
+                        LOG.error("Could not retrieve file: " + identifier.getFilePath());
+                        LOG.debug("VersionControlPlugin threw exception: \n" + ex);
+                    } catch (RuntimeException ex) {
+                        LOG.error("Unexpected error while retrieving file: " + identifier.getFilePath(), ex);
+                    }
+                    if (file == null) {
+                        removeFromIndex(identifier.getFilePath());
+                        fileFinished(identifier.getFilePath(), false);
+                    } else {
+                        if (file.isTruncated()) {
+                            // without the complete content there is no hash, the file is neither deduplicated nor cached
+                            LOG.info("File " + file.getFilePath() + " is larger than " + configuration.getMaxFileSize()
+                                    + " bytes, only the first bytes are indexed");
+                            truncatedFiles.incrementAndGet();
+                        } else if (file.getContent() != null && file.getContent().length > 0) {
+                            file.setContentHash(computeContentHash(file.getContent()));
+                        }
+                        if (file.getContent() != null && file.getContent().length > 0) {
+                            classifyFile(file);
+                        }
+                        if (IndexingTask.isUnchangedRename(identifier)) {
+                            file.setOldPath(identifier.getOldPath());
+                        }
+                        if (!transfer(indexingQueue, file)) {
+                            return;
+                        }
+                    }
+                }
+            } catch (Throwable ex) {
+                fail(ex);
+            }
+        }
+
+        /**
+         * Checks whether a file is binary or too large, based on its path and
+         * the size reported by the version control system, with the change if
+         * possible.
+         */
+        private boolean isIndexedWithoutContent(FileIdentifier identifier) throws VersionControlPluginException {
+            if (MimeTypeUtil.isBinaryType(MimeTypeUtil.guessMimeTypeViaFileEnding(identifier.getFilePath()))) {
+                binaryFiles.incrementAndGet();
+                return true;
+            }
+            // sizes reported with the changes save a request per file
+            long size = identifier.getSize() >= 0 ? identifier.getSize() : plugin.getFileSize(identifier,
+                    VersionControlPlugin.UNDEFINED_VERSION);
+            if (size > configuration.getMaxFileSize()) {
+                LOG.info("File " + identifier.getFilePath() + " is larger than " + configuration.getMaxFileSize()
+                        + " bytes, it is indexed without its content");
+                oversizedFiles.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Tags generated files and removes their content if configured.
+     */
+    private void classifyFile(FileDto file) {
+        GeneratedFileClassifier.Reason reason = generatedFileClassifier.classify(file.getFilePath(), file.getContent());
+        if (reason == null) {
+            return;
+        }
+        LOG.debug("File " + file.getFilePath() + " is generated (" + reason + ")");
+        generatedFiles.get(reason).incrementAndGet();
+        file.setGenerated(true);
+        if (configuration.isSkipContentOfGeneratedFiles()) {
+            // the content hash still identifies the complete content
+            file.setContent(new byte[0]);
+            generatedFilesWithoutContent.incrementAndGet();
+        }
+    }
+
+    /**
+     * Creates the file of an identifier with an empty content, the fields
+     * retrieved from the version control system are left empty.
+     */
+    private FileDto createFileWithoutContent(FileIdentifier identifier) {
+        FileDto file = new FileDto();
+        file.setFilePath(identifier.getFilePath());
+        file.setRepository(repository);
+        file.setContent(new byte[0]);
+        file.setBinary(true);
+        file.setLastAlteration("");
+        file.setLastAuthor("");
+        return file;
+    }
+
+    /**
+     * Builds the Lucene documents and adds them to the index.
+     */
+    private class IndexingWorker implements Runnable {
+
+        /**
+         * The document builder of this worker, documents are not shared
+         * between workers.
+         */
+        private DocumentBuilder documentBuilder = new DocumentBuilder();
+
+        @Override
+        public void run() {
+            try {
+                for (FileDto file = indexingQueue.take(); file != END_OF_CONTENTS; file = indexingQueue.take()) {
+                    boolean indexed = false;
+                    try {
+                        addFileToIndex(documentBuilder, file);
+                        indexed = true;
+                    } catch (LuceneFieldValueException ex) {
+                        LOG.error(ex);
+                    } catch (IOException ex) {
+                        LOG.error("Could not add file " + file.getFilePath() + " to the index: " + ex);
+                    } catch (RuntimeException ex) {
+                        LOG.error("Unexpected error while indexing file: " + file.getFilePath(), ex);
+                    }
+                    if (indexed && repository.isCodeNavigationEnabled() && databaseConnectionValid.get()) {
+                        if (!transfer(analysisQueue, file)) {
+                            return;
+                        }
+                    } else {
+                        if (!indexed) {
+                            removeFromIndex(file.getFilePath());
+                        }
+                        // files that should have been analyzed are only complete once the database is available again
+                        fileFinished(file.getFilePath(), indexed && !repository.isCodeNavigationEnabled());
+                    }
+                }
+            } catch (Throwable ex) {
+                fail(ex);
+            }
+        }
+    }
+
+    /**
+     * Runs the code analyzer plugins, every worker uses its own plugin
+     * instances.
+     */
+    private class AnalysisWorker implements Runnable {
+
+        /**
+         * The CodeAnalyzerPlugins used by this worker, one per mimetype.
+         */
+        private Map<String, CodeAnalyzerPlugin> caPlugins = new HashMap<String, CodeAnalyzerPlugin>();
+
+        @Override
+        public void run() {
+            try {
+                for (FileDto file = analysisQueue.take(); file != END_OF_CONTENTS; file = analysisQueue.take()) {
+                    if (!databaseConnectionValid.get()) {
+                        fileFinished(file.getFilePath(), false);
+                        continue;
+                    }
+                    AnalysisResult result;
+                    try {
+                        result = moveAnalysisData(file);
+                        if (result == null && file.isGenerated() && configuration.isSkipAnalysisOfGeneratedFiles()) {
+                            // only removes the outdated database record
+                            generatedFilesNotAnalyzed.incrementAndGet();
+                            result = new AnalysisResult(file, null, null, null, null);
+                        }
+                        if (result == null) {
+                            result = copyAnalysisData(file);
+                        }
+                        if (result == null) {
+                            result = analyzeFile(file);
+                        }
+                    } catch (RuntimeException ex) {
+                        LOG.error("Code analyzer plugin threw exception: \n" + ex);
+                        result = new AnalysisResult(file, null, null, null, null);
+                        result.failed = true;
+                    }
+                    if (!transfer(databaseQueue, result)) {
+                        return;
+                    }
+                }
+            } catch (Throwable ex) {
+                fail(ex);
+            }
+        }
+
+        /**
+         * Moves the analysis data of a file that was renamed without changing
+         * its content to the new path.
+         *
+         * @return the result marking the moved data, null if the file has to
+         *         be analyzed
+         */
+        private AnalysisResult moveAnalysisData(FileDto fileDto) {
+            if (fileDto.getOldPath() == null) {
+                return null;
+            }
+            try {
+                if (dba.moveFile(fileDto.getOldPath(), fileDto.getFilePath(), repository.getName())) {
+                    movedFiles.incrementAndGet();
+                    AnalysisResult result = new AnalysisResult(fileDto, null, null, null, null);
+                    result.copied = true;
+                    return result;
+                }
+            } catch (DatabaseAccessException ex) {
+                LOG.error("Could not move analysis data of file " + fileDto.getOldPath() + ": " + ex);
+            }
+            return null;
+        }
+
+        /**
+         * Copies the analysis data of a file with the same content if
+         * deduplication is enabled.
+         *
+         * @return the result marking the copied data, null if the file has to
+         *         be analyzed
+         */
+        private AnalysisResult copyAnalysisData(FileDto fileDto) {
+            if (!configuration.isDeduplicate() || fileDto.getContentHash() == null) {
+                return null;
+            }
+            try {
+                if (dba.copyAnalysisData(fileDto.getContentHash(), fileDto.getFilePath(), repository.getName())) {
+                    deduplicatedFiles.incrementAndGet();
+                    LOG.debug("Copied analysis data of content " + fileDto.getContentHash() + " to file " + fileDto.getFilePath());
+                    AnalysisResult result = new AnalysisResult(fileDto, null, null, null, null);
+                    result.copied = true;
+                    return result;
+                }
+            } catch (DatabaseAccessException ex) {
+                LOG.error("Could not copy analysis data of file " + fileDto.getFilePath() + ": " + ex);
+            }
+            return null;
+        }
+
+        /**
+         * Executes the code analysis for the given file. The returned result
+         * contains no AST if the file could not be analyzed, in that case only
+         * the outdated database record is removed.
+         */
+        private AnalysisResult analyzeFile(FileDto fileDto) {
+            String fileType = MimeTypeUtil.guessMimeTypeViaFileEnding(fileDto.getFilePath());
+            if (fileType.equals(MimeTypeUtil.UNKNOWN) || fileDto.getContent().length == 0) {
+                return new AnalysisResult(fileDto, null, null, null, null);
+            }
+            CodeAnalyzerPlugin plugin = getPlugin(fileType);
+            if (plugin == null) {
+                return new AnalysisResult(fileDto, null, null, null, null);
+            }
+            CachedAnalysis cached = analysisCache.get(fileDto.getContentHash(), plugin);
+            if (cached != null) {
+                cachedFiles.incrementAndGet();
+                return new AnalysisResult(fileDto, cached.getAst(), cached.getUsages(), cached.getTypeDeclarations(), cached.getImports());
+            }
+            LOG.debug("Analyzing file: " + fileDto.getFilePath());
+            try {
+                plugin.analyzeFile(new String(fileDto.getContent()));
+                AnalysisResult result = new AnalysisResult(fileDto, plugin.getAst(), plugin.getUsages(), plugin.getTypeDeclarations(),
+                        plugin.getImports());
+                if (analysisCache.isEnabled() && result.ast != null) {
+                    analysisCache.put(fileDto.getContentHash(), plugin, new CachedAnalysis(result.ast, result.usages,
+                            result.typeDeclarations, result.imports));
+                }
+                return result;
+            } catch (Exception ex) {
+                LOG.error("Code analyzer plugin threw exception: \n" + ex);
+                AnalysisResult result = new AnalysisResult(fileDto, null, null, null, null);
+                result.failed = true;
+                return result;
+            }
+        }
+
+        private CodeAnalyzerPlugin getPlugin(String fileType) {
+            if (!caPlugins.containsKey(fileType)) {
+                CodeAnalyzerPlugin plugin = null;
+                try {
+                    plugin = pluginLoader.getNewPluginInstance(CodeAnalyzerPlugin.class, fileType);
+                } catch (PluginLoaderException ex) {
+                    LOG.error("Could not create CodeAnalyzerPlugin for " + fileType + ": " + ex);
+                }
+                caPlugins.put(fileType, plugin);
+            }
+            return caPlugins.get(fileType);
+        }
+    }
+
+    /**
+     * Writes the analysis results to the database.
+     */
+    private class DatabaseWorker implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                for (AnalysisResult result = databaseQueue.take(); result != END_OF_RESULTS; result = databaseQueue.take()) {
+                    boolean completed = !result.failed && databaseConnectionValid.get();
+                    if (databaseConnectionValid.get() && !result.copied) {
+                        FileDto file = result.file;
+                        try {
+                            // delete outdated record from database
+                            dba.deleteFile(file.getFilePath(), repository.getName());
+                            if (result.ast != null) {
+                                dba.setAnalysisDataForFile(file.getFilePath(), repository.getName(), result.ast, result.usages,
+                                        result.typeDeclarations, result.imports, configuration.isDeduplicate() ? file.getContentHash() : null);
+                            }
+                        } catch (DatabaseAccessException ex) {
+                            LOG.error("Code analyzing failed: Database error:" + ex);
+                            databaseConnectionValid.set(false);
+                            completed = false;
+                        } catch (RuntimeException ex) {
+                            LOG.error("Unexpected error while writing analysis data of file: " + file.getFilePath(), ex);
+                            completed = false;
+                        }
+                    }
+                    fileFinished(result.file.getFilePath(), completed);
+                }
+            } catch (Throwable ex) {
+                fail(ex);
+            }
+        }
+    }
+
+    /**
+     * Adds the specified file to the index.
+     */
+    private void addFileToIndex(DocumentBuilder documentBuilder, FileDto file) throws IOException, LuceneFieldValueException {
+        Document doc = documentBuilder.build(file);
+        if (replaceDocuments) {
+            // deletes the indexed version of the file in the same step
+            indexWriterManager.updateDocument(indexWriter, createKeyTerm(repository.getName(), file.getFilePath()), doc);
+        } else {
+            indexWriterManager.addDocument(indexWriter, doc);
+        }
+        // Logging
+        if (LOG.isDebugEnabled()) {
+            String fileName;
+            try {
+                fileName = file.getFilePath().substring(file.getFilePath().lastIndexOf('/') + 1);
+            } catch (StringIndexOutOfBoundsException ex) {
+                // if the file is in the root directory of the repository
+                fileName = file.getFilePath();
+            }
+            LOG.debug("Added file: " + fileName + " to index.");
+        }
+    }
+
+    /**
+     * Creates the documents of a single indexing worker. The document and its
+     * fields are created once, for every file only the values of the fields
+     * are replaced. Lucene allows this as long as the document is not used by
+     * several threads at the same time.
+     */
+    private class DocumentBuilder {
+
+        private Document doc = new Document();
+        private Field keyField = new Field(IndexConstants.INDEX_FIELD_KEY, "", Store.NO, Index.NOT_ANALYZED_NO_NORMS);
+        private Field contentHashField = new Field(IndexConstants.INDEX_FIELD_CONTENT_HASH, "", Store.YES, Index.NOT_ANALYZED_NO_NORMS);
+        private Field generatedField = new Field(IndexConstants.INDEX_FIELD_GENERATED, "", Store.NO, Index.NOT_ANALYZED_NO_NORMS);
+        /**
+         * The regular fields, in the order of the lucene field plugins.
+         */
+        private List<Field> regularFields = new ArrayList<Field>();
+        /**
+         * The lower case fields, in the order of the lucene field plugins.
+         * Null for plugins without a lower case field.
+         */
+        private List<Field> lowerCaseFields = new ArrayList<Field>();
+
+        DocumentBuilder() {
+            keyField.setOmitTermFreqAndPositions(true);
+            doc.add(keyField);
+            contentHashField.setOmitTermFreqAndPositions(true);
+            doc.add(contentHashField);
+            generatedField.setOmitTermFreqAndPositions(true);
+            doc.add(generatedField);
+            for (LuceneFieldPlugin currentPlugin : luceneFieldPlugins) {
+                String currentFieldName = currentPlugin.getFieldName();
+                Field regularField = createField(currentPlugin, currentFieldName);
+                regularFields.add(regularField);
+                doc.add(regularField);
+
+                Field lowerCaseField = null;
+                if (currentPlugin.getLowerCaseAnalyzer() != null) {
+                    lowerCaseField = createField(currentPlugin, currentFieldName + IndexConstants.LC_POSTFIX);
+                    doc.add(lowerCaseField);
+                }
+                lowerCaseFields.add(lowerCaseField);
+            }
+        }
+
+        /**
+         * Sets the values of all fields to the ones of the specified file.
+         *
+         * @param file The source file
+         * @return the document of this builder
+         */
+        Document build(FileDto file) throws LuceneFieldValueException {
+            keyField.setValue(createKey(repository.getName(), file.getFilePath()));
+            contentHashField.setValue(file.getContentHash() == null ? "" : file.getContentHash());
+            generatedField.setValue(Boolean.toString(file.isGenerated()));
+            for (int i = 0; i < luceneFieldPlugins.size(); i++) {
+                LuceneFieldPlugin currentPlugin = luceneFieldPlugins.get(i);
+                Field regularField = regularFields.get(i);
+                Field lowerCaseField = lowerCaseFields.get(i);
+                if (isStreamed(currentPlugin)) {
+                    StreamingLuceneFieldPlugin streamingPlugin = (StreamingLuceneFieldPlugin) currentPlugin;
+                    regularField.setValue(streamingPlugin.getFieldReader(file));
+                    if (lowerCaseField != null) {
+                        lowerCaseField.setValue(streamingPlugin.getFieldReader(file));
+                    }
+                } else {
+                    String fieldValue = currentPlugin.getFieldValue(file);
+                    regularField.setValue(fieldValue);
+                    if (lowerCaseField != null) {
+                        // analyzed values are converted to lower case by the lower case analyzer
+                        lowerCaseField.setValue(lowerCaseField.isTokenized() ? fieldValue : fieldValue.toLowerCase());
+                    }
+                }
+            }
+            return doc;
+        }
+
+        private Field createField(LuceneFieldPlugin plugin, String fieldName) {
+            if (isStreamed(plugin)) {
+                return new Field(fieldName, new StringReader(""));
+            }
+            Store store = plugin.isStored() ? Field.Store.YES : Field.Store.NO;
+            Index index = plugin.getRegularCaseAnalyzer() != null ? Field.Index.ANALYZED : Field.Index.NOT_ANALYZED;
+            return new Field(fieldName, "", store, index);
+        }
+
+        /**
+         * Whether the fields of the plugin are read from a reader, this is
+         * only possible for analyzed fields that are not stored.
+         */
+        private boolean isStreamed(LuceneFieldPlugin plugin) {
+            return plugin instanceof StreamingLuceneFieldPlugin && !plugin.isStored() && plugin.getRegularCaseAnalyzer() != null;
+        }
+    }
+
+    /**
+     * The information extracted by a code analyzer plugin for a single file.
+     */
+    private static class AnalysisResult {
+
+        private final FileDto file;
+        private final AstNode ast;
+        private final List<Usage> usages;
+        private final List<String> typeDeclarations;
+        private final List<String> imports;
+        /**
+         * Whether the analysis data was copied from a file with the same
+         * content or moved from the old path of the file, nothing has to be
+         * written in that case.
+         */
+        private boolean copied;
+        /**
+         * Whether the analyzer failed, the outdated database record is
+         * removed but the file is not complete.
+         */
+        private boolean failed;
+
+        AnalysisResult(FileDto file, AstNode ast, List<Usage> usages, List<String> typeDeclarations, List<String> imports) {
+            this.file = file;
+            this.ast = ast;
+            this.usages = usages;
+            this.typeDeclarations = typeDeclarations;
+            this.imports = imports;
+        }
+    }
+}
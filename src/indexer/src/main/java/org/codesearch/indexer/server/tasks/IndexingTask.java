@@ -22,52 +22,42 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URL;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
-import org.apache.lucene.analysis.PerFieldAnalyzerWrapper;
-import org.apache.lucene.document.Document;
-import org.apache.lucene.document.Field;
-import org.apache.lucene.document.Field.Index;
-import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
-import org.apache.lucene.index.Term;
-import org.apache.lucene.search.BooleanClause;
-import org.apache.lucene.search.BooleanClause.Occur;
-import org.apache.lucene.search.BooleanQuery;
-import org.apache.lucene.search.TermQuery;
-import org.apache.lucene.store.Directory;
+import org.codesearch.commons.configuration.dto.IndexerConfiguration;
 import org.codesearch.commons.configuration.dto.RepositoryDto;
 import org.codesearch.commons.configuration.properties.IndexStatusManager;
-import org.codesearch.commons.constants.IndexConstants;
 import org.codesearch.commons.database.DBAccess;
 import org.codesearch.commons.database.DatabaseAccessException;
 import org.codesearch.commons.plugins.PluginLoader;
 import org.codesearch.commons.plugins.PluginLoaderException;
-import org.codesearch.commons.plugins.codeanalyzing.CodeAnalyzerPlugin;
-import org.codesearch.commons.plugins.codeanalyzing.CodeAnalyzerPluginException;
-import org.codesearch.commons.plugins.codeanalyzing.ast.AstNode;
-import org.codesearch.commons.plugins.codeanalyzing.ast.Usage;
 import org.codesearch.commons.plugins.lucenefields.LuceneFieldPlugin;
 import org.codesearch.commons.plugins.lucenefields.LuceneFieldPluginLoader;
-import org.codesearch.commons.plugins.lucenefields.LuceneFieldValueException;
-import org.codesearch.commons.plugins.vcs.FileDto;
+import org.codesearch.commons.plugins.vcs.ChangedFileIterator;
 import org.codesearch.commons.plugins.vcs.FileIdentifier;
-import org.codesearch.commons.plugins.vcs.VcsFileNotFoundException;
 import org.codesearch.commons.plugins.vcs.VersionControlPlugin;
 import org.codesearch.commons.plugins.vcs.VersionControlPluginException;
-import org.codesearch.commons.utils.mime.MimeTypeUtil;
 import org.codesearch.indexer.server.exceptions.NotifySearcherException;
 import org.codesearch.indexer.server.exceptions.TaskExecutionException;
+import org.codesearch.indexer.server.manager.AnalysisCache;
+import org.codesearch.indexer.server.manager.IndexWriterManager;
 import org.codesearch.indexer.server.manager.IndexingJob;
 
 import com.google.inject.Inject;
@@ -89,17 +79,9 @@ public class IndexingTask implements Task {
      */
     private List<RepositoryDto> repositories;
     /**
-     * The currently active IndexWriter
+     * Submits the changes to the index writers of the indexer
      */
-    private IndexWriter indexWriter;
-    /**
-     * The index directory, contains all index files
-     */
-    private Directory indexDirectory;
-    /**
-     * The Version control Plugin
-     */
-    private VersionControlPlugin versionControlPlugin;
+    private IndexWriterManager indexWriterManager;
     /**
      * used to read the repository revision status
      */
@@ -125,34 +107,36 @@ public class IndexingTask implements Task {
      */
     private IndexingJob job;
     /**
-     * the CodeAnalyzerPlugins used, one per mimetype
+     * The worker and queue settings of the indexing pipeline.
      */
-    private Map<String, CodeAnalyzerPlugin> caPlugins = new HashMap<String, CodeAnalyzerPlugin>();
+    private IndexerConfiguration indexerConfiguration;
     /**
-     * The wrapper analyzer constructed by the plugin loader
+     * Provides the analyzer of bulk imports.
      */
-    private PerFieldAnalyzerWrapper caseInsensitiveAnalyzer;
+    private LuceneFieldPluginLoader luceneFieldPluginLoader;
+    /**
+     * Provides the results of earlier code analyses.
+     */
+    private AnalysisCache analysisCache;
 
     @Inject
     public IndexingTask(DBAccess dba, PluginLoader pluginLoader, URI searcherLocation, LuceneFieldPluginLoader luceneFieldPluginLoader,
-            IndexStatusManager indexStatusManager, List<RepositoryDto> repositories, Directory indexDirectory, IndexingJob job)
-            throws IOException, TaskExecutionException {
+            IndexStatusManager indexStatusManager, List<RepositoryDto> repositories, IndexWriterManager indexWriterManager, IndexingJob job,
+            IndexerConfiguration indexerConfiguration, AnalysisCache analysisCache) throws IOException, TaskExecutionException {
         if (job == null) {
             throw new TaskExecutionException("Parent job must be set in constructor, was null");
         }
         luceneFieldPlugins = luceneFieldPluginLoader.getAllLuceneFieldPlugins();
-        caseInsensitiveAnalyzer = luceneFieldPluginLoader.getPerFieldAnalyzerWrapper(false);
+        this.luceneFieldPluginLoader = luceneFieldPluginLoader;
         this.indexStatusManager = indexStatusManager;
         this.repositories = repositories;
         this.searcherLocation = searcherLocation;
         this.dba = dba;
         this.pluginLoader = pluginLoader;
-        this.indexDirectory = indexDirectory;
+        this.indexWriterManager = indexWriterManager;
         this.job = job;
-        IndexWriterConfig config = new IndexWriterConfig(IndexConstants.LUCENE_VERSION, caseInsensitiveAnalyzer);
-
-        indexWriter = new IndexWriter(indexDirectory, config);
-        LOG.debug("IndexWriter initialization successful");
+        this.indexerConfiguration = indexerConfiguration;
+        this.analysisCache = analysisCache;
     }
 
     /**
@@ -164,7 +148,7 @@ public class IndexingTask implements Task {
     public void execute() throws TaskExecutionException {
         // whether or not previous database operations were executed successfully
         // once a DB-operation fails no additional operations are executed in this task to prevent log flooding
-        boolean databaseConnectionValid = true;
+        AtomicBoolean databaseConnectionValid = new AtomicBoolean(true);
         if (repositories != null) {
             StringBuilder repos = new StringBuilder();
             for (RepositoryDto repositoryDto : repositories) {
@@ -172,103 +156,15 @@ public class IndexingTask implements Task {
             }
             LOG.info("Starting indexing of repositories: " + repos.toString().trim());
             try {
-                int i = 0;
-                for (RepositoryDto repository : repositories) {
-                    job.setCurrentRepository(i);
-                    job.getJobDataMap().put(IndexingJob.FIELD_STEP, "Getting newest revision number");
-                    try {
-                        LOG.info("Indexing repository: " + repository.getName()
-                                + (repository.isCodeNavigationEnabled() ? " using" : " without") + " code analyzing");
-                        long start = System.currentTimeMillis();
-                        // Read the index status file
-                        String lastIndexedRevision = indexStatusManager.getStatus(repository.getName());
-                        LOG.info("Last indexed revision: " + lastIndexedRevision);
-                        // Get the version control plugins
-                        versionControlPlugin = pluginLoader.getPlugin(VersionControlPlugin.class, repository.getVersionControlSystem());
-                        if (versionControlPlugin == null) {
-                            LOG.error("Could not load VersionControlPlugin, skipping repository " + repository.getName());
-                        }
-                        // get the changed files
-                        versionControlPlugin.setRepository(repository);
-                        LOG.info("Pulling new changes of the repository");
-                        job.getJobDataMap().put(IndexingJob.FIELD_STEP, "Pulling repository changes");
-                        versionControlPlugin.pullChanges();
-                        String repositoryRevision = versionControlPlugin.getRepositoryRevision();
-                        LOG.info("Newest revision      : " + repositoryRevision);
-                        job.getJobDataMap().put(IndexingJob.FIELD_STEP, "Getting changed files");
-                        Set<FileIdentifier> changedFiles = versionControlPlugin.getChangedFilesSinceRevision(lastIndexedRevision,
-                                repository.getBlacklistEntries(), repository.getWhitelistEntries());
-                        if (!versionControlPlugin.supportsBlacklistingChanges()) {
-                            filterChangedFiles(changedFiles, repository.getWhitelistEntries(), repository.getBlacklistEntries());
-                        }
-                        LOG.info(changedFiles.size() + " files have changed since the last indexing");
-                        job.getJobDataMap().put(IndexingJob.FIELD_STEP, "Deleting changed files");
-                        // clear the index of the old verions of the files
-                        deleteFilesFromIndex(changedFiles);
-                        if (repository.isCodeNavigationEnabled()) {
-                            try {
-                                String lastAnalysisRevision = dba.getLastAnalyzedRevisionOfRepository(repository.getName());
-                                if (!lastAnalysisRevision.equals(lastIndexedRevision)) {
-                                    throw new TaskExecutionException(
-                                            "The code information in the database is not at the same revision as the regular indexed information\n"
-                                                    + "The index of the repository must be cleared first");
-                                }
-                            } catch (DatabaseAccessException ex) {
-                                LOG.error("Code analyzing failed, no code analyzing data will be available: \n" + ex);
-                                databaseConnectionValid = false;
-                            }
-                        }
-
-                        // check whether the changed files should be indexed
-                        job.getJobDataMap().put(IndexingJob.FIELD_STEP, "Applying black- and whitelist");
-                        removeNotToBeIndexedFiles(changedFiles);
-                        job.getJobDataMap().put(IndexingJob.FIELD_STEP, "Indexing changed files");
-                        job.getJobDataMap().put(IndexingJob.FIELD_CURRENT_STEPS, changedFiles.size());
-                        int finishedFiles = 0;
-                        for (FileIdentifier currentIdentifier : changedFiles) {
-                            job.getJobDataMap().put(IndexingJob.FIELD_FINISHED_STEPS, finishedFiles);
-                            if (!currentIdentifier.isDeleted()) {
-                                try {
-                                    FileDto currentDto = versionControlPlugin.getFile(currentIdentifier,
-                                            VersionControlPlugin.UNDEFINED_VERSION);
-                                    addFileToIndex(currentDto);
-
-                                    if (repository.isCodeNavigationEnabled() && databaseConnectionValid) {
-                                        executeCodeAnalysisForFile(currentDto);
-                                    }
-                                } catch (VcsFileNotFoundException ex) {
-                                    LOG.error("File not found: " + currentIdentifier + " , skipping file.");
-                                } catch (CodeAnalyzerPluginException ex) {
-                                    LOG.error("Code analyzing failed, skipping file\n" + ex);
-                                    // in case either of those exceptions occurs try to keep indexing the remaining files
-                                } catch (LuceneFieldValueException ex) {
-                                    LOG.error(ex);
-                                } catch (DatabaseAccessException ex) {
-                                    LOG.error("Code analyzing failed: Database error:" + ex);
-                                    databaseConnectionValid = false;
-                                } catch (VersionControlPluginException ex) {
-                                    LOG.error("Could not retrieve file: " + currentIdentifier.getFilePath());
-                                    LOG.debug("VersionControlPlugin threw exception: \n" + ex);
-                                }
-                            }
-                            finishedFiles++;
-                        }
-                        long duration = System.currentTimeMillis() - start;
-                        LOG.info("Indexing of repository " + repository.getName() + " took " + duration / 1000 + " seconds");
-                        indexStatusManager.setStatus(repository.getName(), repositoryRevision);
-                        if (repository.isCodeNavigationEnabled()) {
-                            try {
-                                dba.setLastAnalyzedRevisionOfRepository(repository.getName(), repositoryRevision);
-                            } catch (DatabaseAccessException ex) {
-                                databaseConnectionValid = false;
-                            }
-                        }
-                    } catch (VersionControlPluginException ex) {
-                        LOG.error("Fatal error in VersionControlPlugin, skipping repository " + repository.getName(), ex);
+                int concurrentRepositories = Math.min(job.getConcurrentRepositories(), repositories.size());
+                if (concurrentRepositories > 1) {
+                    indexRepositoriesConcurrently(concurrentRepositories, databaseConnectionValid);
+                } else {
+                    for (RepositoryDto repository : repositories) {
+                        job.getJobDataMap().put(IndexingJob.FIELD_CURRENT_REPOSITORY, repository.getName());
+                        indexRepository(repository, databaseConnectionValid, false);
                     }
-                    i++;
                 }
-                indexWriter.commit();
                 try {
                     // notify the searcher about the update of the indexer
                     notifySearcher();
@@ -280,8 +176,9 @@ public class IndexingTask implements Task {
                 LOG.error("Could not write the index status file: " + ex);
             } catch (IOException ex) {
                 LOG.error("IOException occured at indexing: " + ex);
-            } finally {
-                cleanup();
+            } catch (InterruptedException ex) {
+                LOG.error("Indexing was interrupted: " + ex);
+                Thread.currentThread().interrupt();
             }
         } else {
             LOG.warn("No repositories specified, skipping indexing.");
@@ -289,212 +186,490 @@ public class IndexingTask implements Task {
     }
 
     /**
-     * Filters the list of changed files by the given white and blacklist
-     * 
-     * @param changedFiles
-     * @param whitelistEntries
-     * @param blacklistEntries
+     * Indexes the repositories of the job using the given number of threads.
+     * The progress of the job is reported per repository instead of per file.
+     *
+     * @param threads the number of repositories that are indexed at the same
+     *            time
+     * @param databaseConnectionValid whether previous database operations
+     *            were successful
      */
-    private void filterChangedFiles(Set<FileIdentifier> changedFiles, List<String> whitelistEntries, List<String> blacklistEntries) {
-        List<Pattern> compiledBlacklist = new LinkedList<Pattern>();
-        List<Pattern> compiledWhitelist = new LinkedList<Pattern>();
-        for (String s : blacklistEntries) {
-            compiledBlacklist.add(Pattern.compile(s));
-        }
-        for (String s : whitelistEntries) {
-            compiledWhitelist.add(Pattern.compile(s));
-        }
+    private void indexRepositoriesConcurrently(int threads, final AtomicBoolean databaseConnectionValid) throws IOException,
+            InterruptedException, TaskExecutionException {
+        LOG.info("Indexing " + threads + " repositories at the same time");
+        final Set<String> runningRepositories = new LinkedHashSet<String>();
+        final AtomicInteger finishedRepositories = new AtomicInteger();
+        job.getJobDataMap().put(IndexingJob.FIELD_STEP, "Indexing repositories");
+        job.getJobDataMap().put(IndexingJob.FIELD_CURRENT_STEPS, repositories.size());
+        job.getJobDataMap().put(IndexingJob.FIELD_FINISHED_STEPS, 0);
 
-        outer: for (Iterator<FileIdentifier> iterator = changedFiles.iterator(); iterator.hasNext();) {
-            FileIdentifier fileIdentifier = iterator.next();
-            if (!compiledWhitelist.isEmpty()) {
-                for (Pattern pattern : compiledWhitelist) {
-                    if (!pattern.matcher(fileIdentifier.getFilePath()).find()) {
-                        iterator.remove();
-                        continue outer;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> results = new LinkedList<Future<Void>>();
+            for (final RepositoryDto repository : repositories) {
+                results.add(executor.submit(new Callable<Void>() {
+
+                    @Override
+                    public Void call() throws Exception {
+                        synchronized (runningRepositories) {
+                            runningRepositories.add(repository.getName());
+                            job.getJobDataMap().put(IndexingJob.FIELD_CURRENT_REPOSITORY, StringUtils.join(runningRepositories, ", "));
+                        }
+                        try {
+                            indexRepository(repository, databaseConnectionValid, true);
+                        } finally {
+                            synchronized (runningRepositories) {
+                                runningRepositories.remove(repository.getName());
+                                job.getJobDataMap().put(IndexingJob.FIELD_CURRENT_REPOSITORY, StringUtils.join(runningRepositories, ", "));
+                                job.getJobDataMap().put(IndexingJob.FIELD_FINISHED_STEPS, finishedRepositories.incrementAndGet());
+                            }
+                        }
+                        return null;
                     }
-                }
+                }));
             }
-
-            if (!compiledBlacklist.isEmpty()) {
-                for (Pattern pattern : compiledBlacklist) {
-                    if (pattern.matcher(fileIdentifier.getFilePath()).find()) {
-                        iterator.remove();
-                        continue outer;
+            for (Future<Void> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof TaskExecutionException) {
+                        throw (TaskExecutionException) cause;
+                    } else if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    } else if (cause instanceof InterruptedException) {
+                        throw (InterruptedException) cause;
                     }
+                    throw new TaskExecutionException("Indexing of a repository failed: " + cause);
                 }
             }
+        } finally {
+            executor.shutdownNow();
         }
     }
 
     /**
-     * checks all FileIdentifiers whether the files should be indexed or not
-     * deletes those files that should not be indexed from the set
-     * 
-     * @param fileIdentifiers
+     * Indexes the changes of a single repository since the last indexed
+     * revision and updates its revision status.
+     *
+     * @param repository the repository
+     * @param databaseConnectionValid whether previous database operations
+     *            were successful
+     * @param concurrent whether other repositories are indexed at the same
+     *            time, in this case the progress of the single steps is not
+     *            reported
      */
-    private void removeNotToBeIndexedFiles(Set<FileIdentifier> fileIdentifiers) {
-        if (!fileIdentifiers.isEmpty()) {
-            Iterator<FileIdentifier> iter = fileIdentifiers.iterator();
-            FileIdentifier currentFile = iter.next();
-            for (; iter.hasNext(); currentFile = iter.next()) {
-                if ((currentFile.isDeleted()) || (!shouldFileBeIndexed(currentFile))) {
-                    iter.remove();
+    private void indexRepository(RepositoryDto repository, AtomicBoolean databaseConnectionValid, boolean concurrent)
+            throws IOException, InterruptedException, TaskExecutionException {
+        setStep("Getting newest revision number", concurrent);
+        IndexWriter indexWriter = indexWriterManager.getWriter(repository.getName());
+        try {
+            LOG.info("Indexing repository: " + repository.getName()
+                    + (repository.isCodeNavigationEnabled() ? " using" : " without") + " code analyzing");
+            long start = System.currentTimeMillis();
+            // Read the index status file
+            String lastIndexedRevision = recoverAttachedRevision(repository);
+            LOG.info("Last indexed revision: " + lastIndexedRevision);
+            // Get the version control plugins
+            // jobs with different repositories may run at the same time, so the plugin instance is not shared
+            VersionControlPlugin versionControlPlugin;
+            try {
+                versionControlPlugin = pluginLoader.getNewPluginInstance(VersionControlPlugin.class, repository.getVersionControlSystem());
+            } catch (PluginLoaderException ex) {
+                versionControlPlugin = null;
+            }
+            if (versionControlPlugin == null) {
+                LOG.error("Could not load VersionControlPlugin, skipping repository " + repository.getName());
+                return;
+            }
+            // get the changed files
+            versionControlPlugin.setRepository(repository);
+            LOG.info("Pulling new changes of the repository");
+            setStep("Pulling repository changes", concurrent);
+            versionControlPlugin.pullChanges();
+            String repositoryRevision = versionControlPlugin.getRepositoryRevision();
+            LOG.info("Newest revision      : " + repositoryRevision);
+            // a shadow rebuild analyzes every file again, so the analysis data may be at any revision
+            if (repository.isCodeNavigationEnabled() && !job.isShadowRebuild()) {
+                try {
+                    String lastAnalysisRevision = dba.getLastAnalyzedRevisionOfRepository(repository.getName());
+                    if (!lastAnalysisRevision.equals(lastIndexedRevision)) {
+                        throw new TaskExecutionException(
+                                "The code information in the database is not at the same revision as the regular indexed information\n"
+                                        + "The index of the repository must be cleared first");
+                    }
+                } catch (DatabaseAccessException ex) {
+                    LOG.error("Code analyzing failed, no code analyzing data will be available: \n" + ex);
+                    databaseConnectionValid.set(false);
                 }
             }
+            // a shadow rebuild indexes all files while the index status still points to the indexed revision
+            String baseRevision = job.isShadowRebuild() ? VersionControlPlugin.UNDEFINED_VERSION : lastIndexedRevision;
+            // repositories that are indexed from scratch are imported into a separate index
+            BulkImport bulkImport = new BulkImport(indexWriterManager.getIndexLocation(), repository.getName());
+            boolean useBulkImport = job.isShadowRebuild()
+                    || (indexerConfiguration.isBulkImport() && VersionControlPlugin.UNDEFINED_VERSION.equals(lastIndexedRevision));
+            // the journaled files of an interrupted run are in the import index only if that run was a bulk import
+            boolean resume = useBulkImport == bulkImport.exists();
+            if (!useBulkImport) {
+                if (bulkImport.exists()) {
+                    bulkImport.delete();
+                }
+                bulkImport = null;
+            }
+            List<String> staleFiles = new LinkedList<String>();
+            IndexingJournal journal = resumeFromJournal(repository, versionControlPlugin, baseRevision, repositoryRevision, resume,
+                    staleFiles);
+            IndexWriter targetWriter = indexWriter;
+            if (bulkImport != null) {
+                LOG.info("Importing repository " + repository.getName() + " into a separate index");
+                boolean resumeImport = journal != null && !journal.getProcessedFiles().isEmpty();
+                targetWriter = bulkImport.open(resumeImport, luceneFieldPluginLoader.getPerFieldAnalyzerWrapper(false),
+                        indexerConfiguration.getBulkImportRamBufferSize(), indexWriterManager, indexerConfiguration.getCheckpointInterval());
+            }
+            for (String path : staleFiles) {
+                // the interrupted run indexed an outdated version, the file is indexed again if it still exists
+                deleteFileFromIndex(repository.getName(), path, targetWriter);
+            }
+            if (journal != null) {
+                // the journal records a checkpoint whenever the target writer is committed
+                indexWriterManager.addCommitListener(targetWriter, journal);
+            }
+            int changedFileCount;
+            try {
+                changedFileCount = indexChangedFiles(repository, versionControlPlugin, baseRevision, targetWriter,
+                        bulkImport == null, journal, databaseConnectionValid, concurrent);
+                long duration = System.currentTimeMillis() - start;
+                LOG.info("Indexing of repository " + repository.getName() + " took " + duration / 1000 + " seconds");
+                if (bulkImport != null) {
+                    // replaces the old documents of the repository and records their revision in a single commit
+                    bulkImport.attach(indexWriter, lastIndexedRevision, repositoryRevision);
+                    if (repository.isCodeNavigationEnabled() && databaseConnectionValid.get()) {
+                        purgeDeletedFiles(repository, bulkImport.getImportedFiles(), databaseConnectionValid);
+                    }
+                }
+            } finally {
+                if (journal != null) {
+                    indexWriterManager.removeCommitListener(targetWriter, journal);
+                }
+                if (bulkImport != null) {
+                    // an interrupted import is kept at its last checkpoint
+                    bulkImport.abort();
+                }
+            }
+            // the status may only point to the new revision once all of its files are committed
+            indexWriterManager.commit(indexWriter);
+            indexStatusManager.setStatus(repository.getName(), repositoryRevision);
+            indexWriterManager.clearAttachedRevision(repository.getName());
+            if (journal != null) {
+                journal.delete();
+            }
+            if (bulkImport != null) {
+                bulkImport.delete();
+            }
+            job.recordChangedFiles(repository.getName(), changedFileCount);
+            if (repository.isCodeNavigationEnabled()) {
+                try {
+                    dba.setLastAnalyzedRevisionOfRepository(repository.getName(), repositoryRevision);
+                } catch (DatabaseAccessException ex) {
+                    databaseConnectionValid.set(false);
+                }
+            }
+        } catch (VersionControlPluginException ex) {
+            LOG.error("Fatal error in VersionControlPlugin, skipping repository " + repository.getName(), ex);
         }
     }
 
     /**
-     * Sends a request to the searcher web application, notifying it to re-load
-     * the index.
-     * 
-     * @throws NotifySearcherException in case the connection to the searcher
-     *             could not be established
+     * Reads the indexed revision of a repository. If the documents of the
+     * repository were replaced by an import whose revision was not written to
+     * the index status, e.g. because the indexer stopped in between, the
+     * status is set to the revision recorded in the index.
+     *
+     * @param repository the repository
+     * @return the revision the index of the repository is at
      */
-    private void notifySearcher() throws NotifySearcherException {
-        try {
-            URL url = new URL(searcherLocation.toURL(), "refresh");
-            url.openStream();
-        } catch (IOException ex) {
-            throw new NotifySearcherException("Could not connect to searcher at the configured address: " + searcherLocation + "\n"
-                    + ex.toString());
+    private String recoverAttachedRevision(RepositoryDto repository) throws IOException {
+        String status = indexStatusManager.getStatus(repository.getName());
+        String attachedRevision = indexWriterManager.getAttachedRevision(repository.getName(), status);
+        if (attachedRevision != null && !attachedRevision.equals(status)) {
+            LOG.warn("The index of repository " + repository.getName() + " is at revision " + attachedRevision
+                    + ", correcting the index status " + status);
+            indexStatusManager.setStatus(repository.getName(), attachedRevision);
+            status = attachedRevision;
         }
+        if (attachedRevision != null) {
+            indexWriterManager.clearAttachedRevision(repository.getName());
+        }
+        return status;
     }
 
     /**
-     * executes the code analysis for the given file
-     * 
-     * @throws CodeAnalyzerPluginException if the source code of one of the
-     *             files could not be analyzed
+     * Deletes the database records of the files that are not part of an
+     * attached import, they were deleted while the old documents of the
+     * repository were still searchable.
+     *
+     * @param repository the repository
+     * @param importedFiles the files of the import
+     * @param databaseConnectionValid whether previous database operations
+     *            were successful
      */
-    private void executeCodeAnalysisForFile(FileDto fileDto) throws DatabaseAccessException, CodeAnalyzerPluginException {
-        // delete outdated record from database
-        dba.deleteFile(fileDto.getFilePath(), fileDto.getRepository().getName());
-        String fileType = MimeTypeUtil.guessMimeTypeViaFileEnding(fileDto.getFilePath());
-        if (!fileType.equals(MimeTypeUtil.UNKNOWN)) {
-            CodeAnalyzerPlugin plugin;
-            if (!caPlugins.containsKey(fileType)) {
-                caPlugins.put(fileType, pluginLoader.getPlugin(CodeAnalyzerPlugin.class, fileType));
-            }
-            plugin = caPlugins.get(fileType);
-            if(plugin == null) {
-                return;
-            }
-            LOG.debug("Analyzing file: " + fileDto.getFilePath());
-            try {
-                plugin.analyzeFile(new String(fileDto.getContent()));
-                AstNode ast = plugin.getAst();
-                List<String> typeDeclarations = plugin.getTypeDeclarations();
-                List<Usage> usages = plugin.getUsages();
-                List<String> imports = plugin.getImports();
-                // add the externalLinks to the FileDto, so they
-                // can be parsed after the regular indexing is finished
-                // write the AST information into the database
-                dba.setAnalysisDataForFile(fileDto.getFilePath(), fileDto.getRepository().getName(), ast, usages, typeDeclarations, imports);
-            } catch (Exception ex) {
-                LOG.error("Code analyzer plugin threw exception: \n" + ex);
+    private void purgeDeletedFiles(RepositoryDto repository, Set<String> importedFiles, AtomicBoolean databaseConnectionValid) {
+        try {
+            int purgedFiles = 0;
+            for (String path : dba.getFilesOfRepository(repository.getName())) {
+                if (!importedFiles.contains(path)) {
+                    dba.deleteFile(path, repository.getName());
+                    purgedFiles++;
+                }
             }
+            LOG.info("Deleted the analysis data of " + purgedFiles + " files that no longer exist in repository " + repository.getName());
+        } catch (DatabaseAccessException ex) {
+            LOG.error("Could not delete the analysis data of deleted files: \n" + ex);
+            databaseConnectionValid.set(false);
         }
     }
 
     /**
-     * Adds all fields of the specified file to the specified document.
-     * 
-     * @param doc The target document
-     * @param file The source file
+     * Streams the changed files of the repository into an indexing pipeline
+     * and waits until all of them are indexed.
+     *
+     * @param repository the repository
+     * @param versionControlPlugin the plugin set to the repository
+     * @param lastIndexedRevision the revision the index is at
+     * @param targetWriter the writer the documents are added to
+     * @param deleteOldVersions whether the previous versions of the files
+     *            have to be deleted from the index
+     * @param journal the journal of the run, null if no checkpoints are
+     *            written
+     * @param databaseConnectionValid whether previous database operations
+     *            were successful
+     * @param concurrent whether other repositories are indexed at the same
+     *            time
+     * @return the number of changed files
      */
-    private void addLuceneFields(Document doc, FileDto file) throws LuceneFieldValueException {
-        for (LuceneFieldPlugin currentPlugin : luceneFieldPlugins) {
-            String fieldValue = currentPlugin.getFieldValue(file);
-            String currentFieldName = currentPlugin.getFieldName();
-            Store store = currentPlugin.isStored() ? Field.Store.YES : Field.Store.NO;
-            Index index = currentPlugin.getRegularCaseAnalyzer() != null ? Field.Index.ANALYZED : Field.Index.NOT_ANALYZED;
-            Field regularField = new Field(currentFieldName, fieldValue, store, index);
-
-            doc.add(regularField);
-
-            if (currentPlugin.getLowerCaseAnalyzer() != null) {
-                Field lowerCaseField = new Field(currentFieldName + IndexConstants.LC_POSTFIX, fieldValue.toLowerCase(), store, index);
-                doc.add(lowerCaseField);
+    private int indexChangedFiles(RepositoryDto repository, VersionControlPlugin versionControlPlugin, String lastIndexedRevision,
+            IndexWriter targetWriter, boolean deleteOldVersions, IndexingJournal journal, AtomicBoolean databaseConnectionValid,
+            boolean concurrent) throws VersionControlPluginException, InterruptedException, TaskExecutionException {
+        setStep("Indexing changed files", concurrent);
+        if (!concurrent) {
+            job.getJobDataMap().put(IndexingJob.FIELD_CURRENT_STEPS, 0);
+            job.getJobDataMap().put(IndexingJob.FIELD_FINISHED_STEPS, 0);
+        }
+        List<Pattern> whitelist = compilePatterns(repository.getWhitelistEntries());
+        List<Pattern> blacklist = compilePatterns(repository.getBlacklistEntries());
+        boolean filterChanges = !versionControlPlugin.supportsBlacklistingChanges();
+        Set<String> processedFiles = journal == null ? Collections.<String> emptySet() : journal.getProcessedFiles();
+        int changedFileCount = 0;
+        int queuedFiles = 0;
+        // the changed files are streamed into the pipeline, so they never have to be held in memory at once
+        IndexingPipeline pipeline = new IndexingPipeline(repository, versionControlPlugin, targetWriter, deleteOldVersions, indexWriterManager,
+                luceneFieldPlugins, dba, analysisCache,
+                pluginLoader, concurrent ? null : job, indexerConfiguration, databaseConnectionValid, journal);
+        ChangedFileIterator changedFiles = versionControlPlugin.iterateChangedFilesSinceRevision(lastIndexedRevision,
+                repository.getBlacklistEntries(), repository.getWhitelistEntries());
+        pipeline.start();
+        try {
+            while (changedFiles.hasNext()) {
+                FileIdentifier file = changedFiles.next();
+                if (file.isRenamed() && deleteOldVersions) {
+                    // renames are not reported as deletions of the old path
+                    removeOldPath(file, targetWriter, whitelist, blacklist, databaseConnectionValid);
+                }
+                if (filterChanges && !passesChangeFilter(file, whitelist, blacklist)) {
+                    continue;
+                }
+                changedFileCount++;
+                if (!file.isDeleted() && processedFiles.contains(file.getFilePath())) {
+                    continue;
+                }
+                if (file.isDeleted() || !shouldFileBeIndexed(file, whitelist, blacklist)) {
+                    if (deleteOldVersions) {
+                        // clear the index of the old version of the file
+                        deleteFileFromIndex(file, targetWriter);
+                    }
+                    continue;
+                }
+                pipeline.add(file);
+                queuedFiles++;
+                if (!concurrent) {
+                    job.getJobDataMap().put(IndexingJob.FIELD_CURRENT_STEPS, queuedFiles);
+                }
             }
+        } finally {
+            changedFiles.close();
+            pipeline.finish();
         }
+        job.recordGeneratedFiles(pipeline.getGeneratedFileCount(), pipeline.getGeneratedFilesWithoutContent(),
+                pipeline.getGeneratedFilesNotAnalyzed());
+        LOG.info(changedFileCount + " files have changed since the last indexing, " + queuedFiles + " of them were indexed");
+        return changedFileCount;
     }
 
     /**
-     * Performs cleanup tasks after execution or after an error is encountered.
+     * Starts the journal of the repository. If an earlier run for the same
+     * base revision was interrupted, the files it already indexed are kept in
+     * the journal, unless they changed again since the revision that run
+     * indexed.
+     *
+     * @param repository the repository
+     * @param versionControlPlugin the plugin set to the repository
+     * @param lastIndexedRevision the revision the index is at
+     * @param repositoryRevision the revision that is indexed now
+     * @param resume whether the files of an existing journal may be skipped
+     * @param staleFiles receives the journaled files that changed since the
+     *            revision the interrupted run indexed, their documents have to
+     *            be deleted
+     * @return the journal, its processed files are the files that do not
+     *         have to be indexed again, null if it could not be written
      */
-    private void cleanup() {
-        if (indexWriter != null) {
-            try {
-                indexWriter.close();
-            } catch (IOException ex) {
-                LOG.error("Could not close the index writer:\n" + ex);
-            } catch (OutOfMemoryError error) {
-                LOG.error("Out of memory, trying to save index");
-                Runtime.getRuntime().gc();
+    private IndexingJournal resumeFromJournal(RepositoryDto repository, VersionControlPlugin versionControlPlugin,
+            String lastIndexedRevision, String repositoryRevision, boolean resume, List<String> staleFiles) {
+        IndexingJournal journal = new IndexingJournal(indexWriterManager.getIndexLocation(), repository.getName());
+        if (resume && journal.load(lastIndexedRevision)) {
+            Set<String> processedFiles = journal.getProcessedFiles();
+            if (!journal.getTargetRevision().equals(repositoryRevision)) {
+                ChangedFileIterator changedFiles = null;
                 try {
-                    indexWriter.close();
-                } catch (IOException ex) {
-                    LOG.error("Could not close the index writer:\n" + ex);
+                    changedFiles = versionControlPlugin.iterateChangedFilesSinceRevision(journal.getTargetRevision(),
+                            repository.getBlacklistEntries(), repository.getWhitelistEntries());
+                    while (changedFiles.hasNext()) {
+                        String path = changedFiles.next().getFilePath();
+                        if (processedFiles.remove(path)) {
+                            staleFiles.add(path);
+                        }
+                    }
+                } catch (VersionControlPluginException ex) {
+                    LOG.warn("Could not compare journal revision " + journal.getTargetRevision() + " of repository "
+                            + repository.getName() + ", indexing all files: " + ex);
+                    staleFiles.addAll(processedFiles);
+                    processedFiles.clear();
+                } finally {
+                    if (changedFiles != null) {
+                        changedFiles.close();
+                    }
                 }
             }
+            LOG.info("Resuming interrupted indexing of repository " + repository.getName() + ", " + processedFiles.size()
+                    + " files are already indexed");
         }
         try {
-            if (indexDirectory != null) {
-                indexDirectory.close();
-            }
+            journal.start(lastIndexedRevision, repositoryRevision, journal.getProcessedFiles());
+            return journal;
         } catch (IOException ex) {
-            LOG.error("Could not close the index directory");
+            LOG.warn("Could not write indexing journal of repository " + repository.getName() + ", no checkpoints are written: " + ex);
+            return null;
         }
     }
 
     /**
-     * Adds the specified files to the index.
+     * Shows the given step on the dashboard unless several repositories are
+     * indexed at the same time.
      */
-    private void addFileToIndex(FileDto file) throws VersionControlPluginException, CorruptIndexException, IOException,
-            LuceneFieldValueException {
-        if (indexWriter == null) {
-            LOG.error("Creation of indexDirectory failed due to missing initialization of IndexWriter!");
-            throw new IllegalStateException("IndexWriter was not initialized: fatal error");
+    private void setStep(String step, boolean concurrent) {
+        if (!concurrent) {
+            job.getJobDataMap().put(IndexingJob.FIELD_STEP, step);
         }
-        Document doc = new Document();
-        // Add fields
-        addLuceneFields(doc, file);
-        // Add document to the index
-        indexWriter.addDocument(doc);
-        // Logging
-        if (LOG.isDebugEnabled()) {
-            String fileName;
-            try {
-                fileName = file.getFilePath().substring(file.getFilePath().lastIndexOf('/') + 1);
-            } catch (StringIndexOutOfBoundsException ex) {
-                // if the file is in the root directory of the repository
-                fileName = file.getFilePath();
+    }
+
+    /**
+     * Compiles the given white or blacklist entries.
+     *
+     * @param entries the regular expressions
+     * @return the compiled patterns
+     */
+    private List<Pattern> compilePatterns(List<String> entries) {
+        List<Pattern> patterns = new LinkedList<Pattern>();
+        for (String s : entries) {
+            patterns.add(Pattern.compile(s));
+        }
+        return patterns;
+    }
+
+    /**
+     * Checks a changed file against the white and blacklist, used for plugins
+     * that do not filter the changes themselves.
+     *
+     * @param fileIdentifier the changed file
+     * @param compiledWhitelist the whitelist, all entries have to match
+     * @param compiledBlacklist the blacklist
+     * @return true if the file passes both lists
+     */
+    private boolean passesChangeFilter(FileIdentifier fileIdentifier, List<Pattern> compiledWhitelist, List<Pattern> compiledBlacklist) {
+        for (Pattern pattern : compiledWhitelist) {
+            if (!pattern.matcher(fileIdentifier.getFilePath()).find()) {
+                return false;
+            }
+        }
+        for (Pattern pattern : compiledBlacklist) {
+            if (pattern.matcher(fileIdentifier.getFilePath()).find()) {
+                return false;
             }
-            LOG.debug("Added file: " + fileName + " to index.");
         }
+        return true;
     }
 
     /**
-     * Removes the specified files from the index.
+     * Sends a request to the searcher web application, notifying it to re-load
+     * the index.
+     * 
+     * @throws NotifySearcherException in case the connection to the searcher
+     *             could not be established
      */
-    private void deleteFilesFromIndex(Set<FileIdentifier> files) {
+    private void notifySearcher() throws NotifySearcherException {
         try {
-            for (FileIdentifier file : files) {
-                // FIXME this is now done via plugins -> what if constant changes?!
-                Term repositoryTerm = new Term(IndexConstants.INDEX_FIELD_REPOSITORY, file.getRepository().getName());
-                Term filepathTerm = new Term(IndexConstants.INDEX_FIELD_FILEPATH, file.getFilePath());
-                BooleanQuery query = new BooleanQuery();
-                query.add(new BooleanClause(new TermQuery(repositoryTerm), Occur.MUST));
-                query.add(new BooleanClause(new TermQuery(filepathTerm), Occur.MUST));
+            URL url = new URL(searcherLocation.toURL(), "refresh");
+            url.openStream();
+        } catch (IOException ex) {
+            throw new NotifySearcherException("Could not connect to searcher at the configured address: " + searcherLocation + "\n"
+                    + ex.toString());
+        }
+    }
+
+    /**
+     * Checks whether a file was renamed without changing its content, in that
+     * case only its path has to be updated in the database.
+     *
+     * @param file the changed file
+     * @return true if the content at the old path was identical
+     */
+    static boolean isUnchangedRename(FileIdentifier file) {
+        return file.isRenamed() && file.getSimilarity() == 100;
+    }
 
-                indexWriter.deleteDocuments(query);
+    /**
+     * Removes the old path of a renamed file from the index. Its analysis
+     * data is moved to the new path by the pipeline if the content did not
+     * change, otherwise it is deleted as well.
+     */
+    private void removeOldPath(FileIdentifier file, IndexWriter indexWriter, List<Pattern> whitelist, List<Pattern> blacklist,
+            AtomicBoolean databaseConnectionValid) {
+        deleteFileFromIndex(file.getRepository().getName(), file.getOldPath(), indexWriter);
+        if (file.getRepository().isCodeNavigationEnabled() && databaseConnectionValid.get()
+                && (!isUnchangedRename(file) || !shouldFileBeIndexed(file, whitelist, blacklist))) {
+            try {
+                dba.deleteFile(file.getOldPath(), file.getRepository().getName());
+            } catch (DatabaseAccessException ex) {
+                LOG.error("Could not delete renamed file from the database: " + ex);
+                databaseConnectionValid.set(false);
             }
+        }
+    }
+
+    /**
+     * Removes the specified file from the index.
+     */
+    private void deleteFileFromIndex(FileIdentifier file, IndexWriter indexWriter) {
+        deleteFileFromIndex(file.getRepository().getName(), file.getFilePath(), indexWriter);
+    }
+
+    private void deleteFileFromIndex(String repositoryName, String path, IndexWriter indexWriter) {
+        try {
+            indexWriterManager.deleteDocuments(indexWriter, IndexingPipeline.createKeyTerm(repositoryName, path));
         } catch (CorruptIndexException ex) {
-            LOG.error("Could not delete files from index because it is corrupted.");
+            LOG.error("Could not delete file from index because it is corrupted.");
         } catch (IOException ex) {
-            LOG.error("Could not delete files from index: " + ex);
+            LOG.error("Could not delete file from index: " + ex);
         }
     }
 
@@ -502,19 +677,16 @@ public class IndexingTask implements Task {
      * Checks whether the current file is on the list of files that will not be
      * indexed
      */
-    private boolean shouldFileBeIndexed(FileIdentifier file) {
+    private boolean shouldFileBeIndexed(FileIdentifier file, List<Pattern> compiledWhitelist, List<Pattern> compiledBlacklist) {
         String path = file.getFilePath();
-        RepositoryDto repository = file.getRepository();
-        Pattern p;
         boolean matchesElementOnWhitelist = false;
         boolean shouldFileBeIndexed = true;
         // if no whitelist is specified all files pass the whitelist check
-        if (repository.getWhitelistEntries().isEmpty()) {
+        if (compiledWhitelist.isEmpty()) {
             matchesElementOnWhitelist = true;
         } else {
             // else check if the filename matches one of the whitelist entries
-            for (String currentWhitelistEntry : repository.getWhitelistEntries()) {
-                p = Pattern.compile(currentWhitelistEntry);
+            for (Pattern p : compiledWhitelist) {
                 Matcher m = p.matcher(path);
                 if (m.find()) {
                     matchesElementOnWhitelist = true;
@@ -525,8 +697,7 @@ public class IndexingTask implements Task {
         // check if the filename matches one of the blacklist entries, if yes
         // return false, so the file won't be indexed
         if (matchesElementOnWhitelist) {
-            for (String currentBlacklistEntry : repository.getBlacklistEntries()) {
-                p = Pattern.compile(currentBlacklistEntry);
+            for (Pattern p : compiledBlacklist) {
                 Matcher m = p.matcher(path);
                 if (m.find()) {
                     shouldFileBeIndexed = false;
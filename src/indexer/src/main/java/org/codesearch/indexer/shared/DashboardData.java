@@ -40,6 +40,16 @@ public class DashboardData implements Serializable {
     private List<JobStatus> delayedJobs;
     /** All the repositories with their indexing statuses */
     private List<RepositoryStatus> repositoryStatuses;
+    /** The repositories that are polled adaptively */
+    private List<PollingStatus> pollingStatuses;
+
+    public List<PollingStatus> getPollingStatuses() {
+        return pollingStatuses;
+    }
+
+    public void setPollingStatuses(List<PollingStatus> pollingStatuses) {
+        this.pollingStatuses = pollingStatuses;
+    }
 
     public List<JobStatus> getDelayedJobs() {
         return delayedJobs;
@@ -56,6 +56,11 @@ public class JobStatus implements Serializable {
      * The number of currently finished repositories.
      */
     private int finishedRepositories;
+    /**
+     * The repository lock a delayed job is waiting on, including the job that
+     * holds it.
+     */
+    private String waitingFor;
 
     /*
      * Contains more detail about the currently running process.
@@ -121,4 +126,12 @@ public class JobStatus implements Serializable {
     public void setCurrentRepository(String currentRepository) {
         this.currentRepository = currentRepository;
     }
+
+    public String getWaitingFor() {
+        return waitingFor;
+    }
+
+    public void setWaitingFor(String waitingFor) {
+        this.waitingFor = waitingFor;
+    }
 }
@@ -0,0 +1,106 @@
+/**
+ * Copyright 2010 David Froehlich   <david.froehlich@businesssoftware.at>,
+ *                Samuel Kogler     <samuel.kogler@gmail.com>,
+ *                Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Codesearch is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Codesearch.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.indexer.shared;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Represents the adaptive polling state of a repository.
+ */
+public class PollingStatus implements Serializable {
+
+    /** . */
+    private static final long serialVersionUID = 3816243097523560842L;
+
+    private String repositoryName;
+    /** The current interval between two polls in seconds. */
+    private int interval;
+    /** The time of the next poll, null if none is scheduled. */
+    private Date nextRun;
+    /** The number of finished polls. */
+    private int runs;
+    /** The number of polls that found changes. */
+    private int runsWithChanges;
+    /** The number of files changed at the last poll, -1 if it failed. */
+    private int lastChangedFiles;
+    /** Describes the last scheduling decision. */
+    private String decision;
+
+    public PollingStatus() {
+    }
+
+    public String getRepositoryName() {
+        return repositoryName;
+    }
+
+    public void setRepositoryName(String repositoryName) {
+        this.repositoryName = repositoryName;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    public void setInterval(int interval) {
+        this.interval = interval;
+    }
+
+    public Date getNextRun() {
+        return nextRun;
+    }
+
+    public void setNextRun(Date nextRun) {
+        this.nextRun = nextRun;
+    }
+
+    public int getRuns() {
+        return runs;
+    }
+
+    public void setRuns(int runs) {
+        this.runs = runs;
+    }
+
+    public int getRunsWithChanges() {
+        return runsWithChanges;
+    }
+
+    public void setRunsWithChanges(int runsWithChanges) {
+        this.runsWithChanges = runsWithChanges;
+    }
+
+    public int getLastChangedFiles() {
+        return lastChangedFiles;
+    }
+
+    public void setLastChangedFiles(int lastChangedFiles) {
+        this.lastChangedFiles = lastChangedFiles;
+    }
+
+    public String getDecision() {
+        return decision;
+    }
+
+    public void setDecision(String decision) {
+        this.decision = decision;
+    }
+}
@@ -0,0 +1,261 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.indexer.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.codesearch.commons.configuration.dto.IndexerConfiguration;
+import org.codesearch.commons.configuration.dto.NoAuthentication;
+import org.codesearch.commons.configuration.dto.RepositoryDto;
+import org.codesearch.commons.configuration.properties.IndexStatusManager;
+import org.codesearch.commons.configuration.properties.IndexStatusManagerPropertiesImpl;
+import org.codesearch.commons.constants.IndexConstants;
+import org.codesearch.commons.database.DBAccess;
+import org.codesearch.commons.plugins.lucenefields.LuceneFieldPlugin;
+import org.codesearch.commons.plugins.lucenefields.LuceneFieldPluginLoader;
+import org.codesearch.commons.plugins.lucenefields.LuceneFieldPluginLoaderImpl;
+import org.codesearch.commons.plugins.lucenefields.core.ContentLuceneFieldPlugin;
+import org.codesearch.commons.plugins.lucenefields.core.RepositoryLuceneFieldPlugin;
+import org.codesearch.commons.plugins.vcs.VersionControlPlugin;
+import org.codesearch.indexer.server.manager.AnalysisCache;
+import org.codesearch.indexer.server.manager.IndexCleaner;
+import org.codesearch.indexer.server.manager.IndexWriterManager;
+import org.codesearch.indexer.server.manager.IndexingJob;
+import org.codesearch.indexer.server.manager.IndexingManager;
+import org.codesearch.indexer.tasks.NoOpDatabaseImpl;
+import org.quartz.Job;
+import org.quartz.JobBuilder;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionException;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.TriggerBuilder;
+import org.quartz.impl.JobExecutionContextImpl;
+import org.quartz.impl.StdSchedulerFactory;
+import org.quartz.spi.JobFactory;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.TriggerFiredBundle;
+
+/**
+ * An indexer working on a temporary directory, with repositories whose files
+ * are served by {@link MockVersionControlPlugin}s. Jobs are executed directly
+ * instead of being scheduled.
+ */
+public class IndexerTestEnvironment {
+
+    private File directory;
+    private MockConfigurationReader configReader;
+    private MockPluginLoader pluginLoader = new MockPluginLoader();
+    private LuceneFieldPluginLoader luceneFieldPluginLoader;
+    private Map<String, MockVersionControlPlugin> plugins = new HashMap<String, MockVersionControlPlugin>();
+    private DBAccess dba = new NoOpDatabaseImpl();
+    private IndexStatusManager indexStatusManager;
+    private IndexWriterManager indexWriterManager;
+    private Scheduler scheduler;
+
+    public IndexerTestEnvironment() throws IOException {
+        directory = File.createTempFile("codesearch", "test");
+        directory.delete();
+        directory.mkdirs();
+        configReader = new MockConfigurationReader(directory);
+        indexStatusManager = new IndexStatusManagerPropertiesImpl(configReader);
+        pluginLoader.register(LuceneFieldPlugin.class, "repository", new RepositoryLuceneFieldPlugin());
+        pluginLoader.register(LuceneFieldPlugin.class, "content", new ContentLuceneFieldPlugin());
+        luceneFieldPluginLoader = new LuceneFieldPluginLoaderImpl(pluginLoader);
+    }
+
+    public IndexerConfiguration getIndexerConfiguration() {
+        return configReader.getIndexerConfiguration();
+    }
+
+    public MockConfigurationReader getConfigReader() {
+        return configReader;
+    }
+
+    public IndexStatusManager getIndexStatusManager() {
+        return indexStatusManager;
+    }
+
+    public void setDatabase(DBAccess dba) {
+        this.dba = dba;
+    }
+
+    /**
+     * Returns the writer manager, it is created with the configuration at the
+     * time of the first call.
+     */
+    public IndexWriterManager getIndexWriterManager() {
+        if (indexWriterManager == null) {
+            indexWriterManager = new IndexWriterManager(configReader, luceneFieldPluginLoader);
+        }
+        return indexWriterManager;
+    }
+
+    /**
+     * Adds a repository without code navigation to the configuration.
+     */
+    public RepositoryDto addRepository(String name) throws Exception {
+        RepositoryDto repository = new RepositoryDto(name, "mock://" + name, new NoAuthentication(), false, name,
+                new LinkedList<String>(), new LinkedList<String>(), new LinkedList<String>());
+        MockVersionControlPlugin plugin = new MockVersionControlPlugin();
+        plugin.setRepository(repository);
+        plugins.put(name, plugin);
+        pluginLoader.register(VersionControlPlugin.class, name, plugin);
+        configReader.getRepositories().add(repository);
+        return repository;
+    }
+
+    public MockVersionControlPlugin getPlugin(String repositoryName) {
+        return plugins.get(repositoryName);
+    }
+
+    /**
+     * Creates a job that indexes the given repositories.
+     */
+    public JobDataMap createJobData(boolean clearIndex, RepositoryDto... repositories) {
+        List<RepositoryDto> repositoryList = new LinkedList<RepositoryDto>();
+        for (RepositoryDto repository : repositories) {
+            repositoryList.add(repository);
+        }
+        JobDataMap jobDataMap = new JobDataMap();
+        jobDataMap.put(IndexingJob.FIELD_REPOSITORIES, repositoryList);
+        jobDataMap.put(IndexingJob.FIELD_CLEAR_INDEX, clearIndex);
+        return jobDataMap;
+    }
+
+    /**
+     * Creates an indexing job with the dependencies of this environment.
+     */
+    public IndexingJob createIndexingJob() {
+        return new IndexingJob(configReader, dba, pluginLoader, luceneFieldPluginLoader, indexStatusManager, getIndexWriterManager(),
+                new AnalysisCache(configReader));
+    }
+
+    /**
+     * Creates an indexing manager with a scheduler of its own, the jobs it
+     * schedules are executed with the dependencies of this environment.
+     */
+    public IndexingManager createIndexingManager() throws SchedulerException {
+        Properties properties = new Properties();
+        properties.setProperty("org.quartz.scheduler.instanceName", "TestScheduler-" + directory.getName());
+        properties.setProperty("org.quartz.threadPool.threadCount", "2");
+        properties.setProperty("org.quartz.jobStore.class", "org.quartz.simpl.RAMJobStore");
+        properties.setProperty("org.quartz.scheduler.skipUpdateCheck", "true");
+        scheduler = new StdSchedulerFactory(properties).getScheduler();
+        JobFactory jobFactory = new JobFactory() {
+
+            @Override
+            public Job newJob(TriggerFiredBundle bundle, Scheduler scheduler) {
+                return createIndexingJob();
+            }
+        };
+        return new IndexingManager(configReader, indexStatusManager, scheduler, jobFactory, new IndexCleaner(indexStatusManager,
+                configReader, dba, getIndexWriterManager()));
+    }
+
+    /**
+     * Executes an indexing job in the calling thread.
+     */
+    public void runJob(JobDataMap jobDataMap) throws JobExecutionException {
+        IndexingJob job = createIndexingJob();
+        JobDetail jobDetail = JobBuilder.newJob(IndexingJob.class).usingJobData(jobDataMap).build();
+        OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger().forJob(jobDetail).build();
+        job.execute(new JobExecutionContextImpl(null, new TriggerFiredBundle(jobDetail, trigger, null, false, null, null, null, null),
+                job));
+    }
+
+    /**
+     * Counts the committed documents of a file in the index of its
+     * repository.
+     */
+    public int getIndexedCount(String repositoryName, String path) throws IOException {
+        return getDocumentFrequency(repositoryName, new Term(IndexConstants.INDEX_FIELD_KEY, repositoryName + ":" + path));
+    }
+
+    /**
+     * Counts the committed documents of a repository.
+     */
+    public int getDocumentCount(String repositoryName) throws IOException {
+        return getDocumentFrequency(repositoryName, new Term(IndexConstants.INDEX_FIELD_REPOSITORY, repositoryName.toLowerCase()));
+    }
+
+    /**
+     * Counts the committed documents containing a term in the index of a
+     * repository.
+     */
+    public int getDocumentFrequency(String repositoryName, Term term) throws IOException {
+        Directory index = FSDirectory.open(getIndexWriterManager().getIndexLocation(repositoryName));
+        try {
+            if (!IndexReader.indexExists(index)) {
+                return 0;
+            }
+            IndexReader reader = IndexReader.open(index);
+            try {
+                return countDocuments(reader, term);
+            } finally {
+                reader.close();
+            }
+        } finally {
+            index.close();
+        }
+    }
+
+    /**
+     * Counts the documents of a reader containing a term. Unlike
+     * {@link IndexReader#docFreq(Term)}, deleted documents are not counted.
+     */
+    public static int countDocuments(IndexReader reader, Term term) throws IOException {
+        TermDocs termDocs = reader.termDocs(term);
+        try {
+            int count = 0;
+            while (termDocs.next()) {
+                count++;
+            }
+            return count;
+        } finally {
+            termDocs.close();
+        }
+    }
+
+    /**
+     * Closes the writers and deletes the temporary directory.
+     */
+    public void close() throws IOException, SchedulerException {
+        if (scheduler != null) {
+            scheduler.shutdown(true);
+        }
+        if (indexWriterManager != null) {
+            indexWriterManager.shutdown();
+        }
+        FileUtils.deleteDirectory(directory);
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.indexer.server;
+
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codesearch.commons.plugins.codeanalyzing.CodeAnalyzerPlugin;
+import org.codesearch.commons.plugins.codeanalyzing.CodeAnalyzerPluginException;
+import org.codesearch.commons.plugins.codeanalyzing.ast.AstNode;
+import org.codesearch.commons.plugins.codeanalyzing.ast.Usage;
+
+/**
+ * A code analyzer that declares a single type named like the analyzed
+ * content and counts the analyzed files.
+ */
+public class MockCodeAnalyzerPlugin implements CodeAnalyzerPlugin {
+
+    private String version = "1";
+    private String content;
+    private AtomicInteger analyzedFiles = new AtomicInteger();
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    public int getAnalyzedFiles() {
+        return analyzedFiles.get();
+    }
+
+    @Override
+    public void analyzeFile(String fileContent) throws CodeAnalyzerPluginException {
+        analyzedFiles.incrementAndGet();
+        content = fileContent;
+    }
+
+    @Override
+    public AstNode getAst() {
+        MockAstNode node = new MockAstNode();
+        node.setName(content);
+        return node;
+    }
+
+    @Override
+    public List<String> getTypeDeclarations() throws CodeAnalyzerPluginException {
+        return Collections.singletonList(content);
+    }
+
+    @Override
+    public List<Usage> getUsages() throws CodeAnalyzerPluginException {
+        return new LinkedList<Usage>();
+    }
+
+    @Override
+    public List<String> getImports() throws CodeAnalyzerPluginException {
+        return new LinkedList<String>();
+    }
+
+    @Override
+    public String getVersion() {
+        return version;
+    }
+
+    @Override
+    public String getPurposes() {
+        return "text/x-java";
+    }
+
+    /**
+     * The root node of the mock analysis.
+     */
+    public static class MockAstNode extends AstNode {
+
+        @Override
+        public String getOutlineName() {
+            return getName();
+        }
+
+        @Override
+        public boolean showInOutline() {
+            return true;
+        }
+
+        @Override
+        public List<AstNode> getChildNodes() {
+            return new LinkedList<AstNode>();
+        }
+
+        @Override
+        public String getModifiers() {
+            return "";
+        }
+    }
+}
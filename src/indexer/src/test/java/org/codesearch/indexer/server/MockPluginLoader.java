@@ -0,0 +1,70 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.indexer.server;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.codesearch.commons.plugins.Plugin;
+import org.codesearch.commons.plugins.PluginLoader;
+
+/**
+ * Returns the registered plugin instances, new instances are not created.
+ * Plugins registered without a purpose are used for all purposes that have
+ * no plugin of their own.
+ */
+public class MockPluginLoader implements PluginLoader {
+
+    private Map<String, Plugin> plugins = new HashMap<String, Plugin>();
+
+    public <T extends Plugin> void register(Class<T> clazz, T plugin) {
+        register(clazz, null, plugin);
+    }
+
+    public <T extends Plugin> void register(Class<T> clazz, String purpose, T plugin) {
+        plugins.put(clazz.getName() + ":" + purpose, plugin);
+    }
+
+    @Override
+    public <T extends Plugin> T getPlugin(Class<T> clazz, String purpose) {
+        Plugin plugin = plugins.get(clazz.getName() + ":" + purpose);
+        if (plugin == null) {
+            plugin = plugins.get(clazz.getName() + ":" + null);
+        }
+        return clazz.cast(plugin);
+    }
+
+    @Override
+    public <T extends Plugin> T getNewPluginInstance(Class<T> clazz, String purpose) {
+        return getPlugin(clazz, purpose);
+    }
+
+    @Override
+    public <T extends Plugin> List<T> getAllPluginsOfClass(Class<T> clazz) {
+        List<T> result = new LinkedList<T>();
+        for (Plugin plugin : plugins.values()) {
+            if (clazz.isInstance(plugin)) {
+                result.add(clazz.cast(plugin));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,267 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.indexer.server;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.codesearch.commons.configuration.dto.RepositoryDto;
+import org.codesearch.commons.plugins.vcs.ChangedFileIterator;
+import org.codesearch.commons.plugins.vcs.FileDto;
+import org.codesearch.commons.plugins.vcs.FileIdentifier;
+import org.codesearch.commons.plugins.vcs.VcsFileNotFoundException;
+import org.codesearch.commons.plugins.vcs.VersionControlPlugin;
+import org.codesearch.commons.plugins.vcs.VersionControlPluginException;
+import org.codesearch.commons.validator.ValidationException;
+
+/**
+ * A version control plugin that serves files from memory. The changed files
+ * are the ones added with {@link #addChange(FileIdentifier)}, independent of
+ * the requested revision. Instances may be shared by several threads.
+ */
+public class MockVersionControlPlugin implements VersionControlPlugin {
+
+    private RepositoryDto repository;
+    private String revision = "1";
+    private Map<String, byte[]> files = Collections.synchronizedMap(new LinkedHashMap<String, byte[]>());
+    private List<FileIdentifier> changes = Collections.synchronizedList(new LinkedList<FileIdentifier>());
+    private Map<String, List<FileIdentifier>> changesSinceRevision = Collections
+            .synchronizedMap(new HashMap<String, List<FileIdentifier>>());
+    private Map<String, Throwable> failures = Collections.synchronizedMap(new HashMap<String, Throwable>());
+    private Set<String> fetchedFiles = Collections.synchronizedSet(new HashSet<String>());
+    private boolean reportingFileSizes;
+    private boolean reportingSizesWithChanges;
+    private int pulls;
+    private int fileSizeRequests;
+
+    /**
+     * Adds a file and reports it as changed.
+     */
+    public FileIdentifier addFile(String path, String content) {
+        files.put(path, content.getBytes());
+        FileIdentifier file = new FileIdentifier(path, false, repository);
+        if (reportingSizesWithChanges) {
+            file.setSize(content.getBytes().length);
+        }
+        changes.add(file);
+        return file;
+    }
+
+    public void addChange(FileIdentifier file) {
+        changes.add(file);
+    }
+
+    /**
+     * Reports the given files as the changes since a revision, instead of
+     * the changes added with the other methods.
+     */
+    public void setChangesSinceRevision(String revision, FileIdentifier... files) {
+        changesSinceRevision.put(revision, Arrays.asList(files));
+    }
+
+    /**
+     * Removes a file without reporting a change.
+     */
+    public void removeFile(String path) {
+        files.remove(path);
+    }
+
+    /**
+     * Forgets the reported changes, as if they were indexed.
+     */
+    public void clearChanges() {
+        changes.clear();
+    }
+
+    /**
+     * Moves a file and reports it as renamed.
+     */
+    public FileIdentifier renameFile(String oldPath, String path, String content, int similarity) {
+        files.remove(oldPath);
+        FileIdentifier file = addFile(path, content);
+        file.setOldPath(oldPath);
+        file.setSimilarity(similarity);
+        return file;
+    }
+
+    /**
+     * Makes the retrieval of a file throw the given runtime exception or
+     * error.
+     */
+    public void failOn(String path, Throwable failure) {
+        failures.put(path, failure);
+    }
+
+    public void setRevision(String revision) {
+        this.revision = revision;
+    }
+
+    public void setReportingFileSizes(boolean reportingFileSizes) {
+        this.reportingFileSizes = reportingFileSizes;
+    }
+
+    /**
+     * Sets whether files added afterwards report their size with the change.
+     */
+    public void setReportingSizesWithChanges(boolean reportingSizesWithChanges) {
+        this.reportingSizesWithChanges = reportingSizesWithChanges;
+    }
+
+    /**
+     * @return the number of times the size of a file was requested
+     */
+    public synchronized int getFileSizeRequests() {
+        return fileSizeRequests;
+    }
+
+    /**
+     * @return the number of times the changes were pulled
+     */
+    public int getPulls() {
+        return pulls;
+    }
+
+    /**
+     * @return the paths of the files whose content was retrieved
+     */
+    public Set<String> getFetchedFiles() {
+        return fetchedFiles;
+    }
+
+    @Override
+    public void pullChanges() throws VersionControlPluginException {
+        pulls++;
+    }
+
+    @Override
+    public void setRepository(RepositoryDto repository) throws VersionControlPluginException {
+        this.repository = repository;
+    }
+
+    @Override
+    public FileDto getFile(FileIdentifier fileInfo, String revision) throws VersionControlPluginException, VcsFileNotFoundException {
+        return getFile(fileInfo, revision, Long.MAX_VALUE);
+    }
+
+    @Override
+    public FileDto getFile(FileIdentifier fileInfo, String revision, long maxSize) throws VersionControlPluginException,
+            VcsFileNotFoundException {
+        Throwable failure = failures.get(fileInfo.getFilePath());
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw (RuntimeException) failure;
+        }
+        byte[] content = files.get(fileInfo.getFilePath());
+        if (content == null) {
+            throw new VcsFileNotFoundException("File not found: " + fileInfo.getFilePath());
+        }
+        fetchedFiles.add(fileInfo.getFilePath());
+        FileDto file = new FileDto(fileInfo.getFilePath(), "author", "alteration", content, repository, false);
+        if (content.length > maxSize) {
+            file.setContent(Arrays.copyOf(content, (int) maxSize));
+            file.setTruncated(true);
+        }
+        return file;
+    }
+
+    @Override
+    public long getFileSize(FileIdentifier fileInfo, String revision) throws VersionControlPluginException {
+        synchronized (this) {
+            fileSizeRequests++;
+        }
+        byte[] content = files.get(fileInfo.getFilePath());
+        return reportingFileSizes && content != null ? content.length : -1;
+    }
+
+    @Override
+    public Set<FileIdentifier> getChangedFilesSinceRevision(String revision, List<String> blacklistPatterns, List<String> whitelistPatterns)
+            throws VersionControlPluginException {
+        return new HashSet<FileIdentifier>(changes);
+    }
+
+    @Override
+    public ChangedFileIterator iterateChangedFilesSinceRevision(String revision, List<String> blacklistPatterns,
+            List<String> whitelistPatterns) throws VersionControlPluginException {
+        List<FileIdentifier> revisionChanges = changesSinceRevision.get(revision);
+        final Iterator<FileIdentifier> iterator = new LinkedList<FileIdentifier>(revisionChanges != null ? revisionChanges
+                : changes).iterator();
+        return new ChangedFileIterator() {
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public FileIdentifier next() {
+                if (!iterator.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return iterator.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Override
+    public boolean supportsBlacklistingChanges() {
+        return false;
+    }
+
+    @Override
+    public String getRepositoryRevision() throws VersionControlPluginException {
+        return revision;
+    }
+
+    @Override
+    public String getRemoteRevision() throws VersionControlPluginException {
+        return revision;
+    }
+
+    @Override
+    public List<String> getFilesInDirectory(String directoryPath, String revision) throws VersionControlPluginException {
+        return new LinkedList<String>(files.keySet());
+    }
+
+    @Override
+    public void setCacheDirectory(String directoryPath) throws VersionControlPluginException {
+    }
+
+    @Override
+    public void validate() throws ValidationException {
+    }
+
+    @Override
+    public String getPurposes() {
+        return "MOCK";
+    }
+}
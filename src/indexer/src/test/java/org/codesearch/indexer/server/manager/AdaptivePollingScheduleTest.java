@@ -0,0 +1,100 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.indexer.server.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.codesearch.indexer.shared.PollingStatus;
+import org.junit.Test;
+import org.quartz.JobKey;
+
+public class AdaptivePollingScheduleTest {
+
+    private AdaptivePollingSchedule schedule = new AdaptivePollingSchedule();
+
+    @Test
+    public void testRepositoryIsPolledByOneJob() {
+        JobKey first = new JobKey("first");
+        assertTrue(schedule.register("alpha", first, 60, 3600));
+        assertFalse(schedule.register("alpha", new JobKey("second"), 60, 3600));
+        assertEquals(first, schedule.getJobKey("alpha"));
+        assertNull(schedule.getJobKey("beta"));
+    }
+
+    @Test
+    public void testIntervalIsExtendedUpToMaximum() {
+        schedule.register("alpha", new JobKey("job"), 60, 300);
+        assertEquals(120, schedule.recordRun("alpha", 0));
+        assertEquals(240, schedule.recordRun("alpha", 0));
+        assertEquals(300, schedule.recordRun("alpha", 0));
+        assertEquals(300, schedule.recordRun("alpha", 0));
+    }
+
+    @Test
+    public void testIntervalIsShortenedDownToMinimum() {
+        schedule.register("alpha", new JobKey("job"), 60, 3600);
+        for (int i = 0; i < 5; i++) {
+            schedule.recordRun("alpha", 0);
+        }
+        assertEquals(960, schedule.recordRun("alpha", 3));
+        assertEquals(480, schedule.recordRun("alpha", 3));
+        assertEquals(240, schedule.recordRun("alpha", 3));
+        assertEquals(120, schedule.recordRun("alpha", 3));
+        assertEquals(60, schedule.recordRun("alpha", 3));
+        assertEquals(60, schedule.recordRun("alpha", 3));
+    }
+
+    @Test
+    public void testBusyRepositoryResetsInterval() {
+        schedule.register("alpha", new JobKey("job"), 60, 3600);
+        for (int i = 0; i < 5; i++) {
+            schedule.recordRun("alpha", 0);
+        }
+        assertEquals(60, schedule.recordRun("alpha", AdaptivePollingSchedule.BUSY_CHANGED_FILES));
+    }
+
+    @Test
+    public void testFailedAndSkippedRunsKeepInterval() {
+        schedule.register("alpha", new JobKey("job"), 60, 3600);
+        assertEquals(120, schedule.recordRun("alpha", 0));
+        assertEquals(120, schedule.recordRun("alpha", null));
+        assertEquals(120, schedule.recordSkippedRun("alpha"));
+    }
+
+    @Test
+    public void testStatusesCountRuns() {
+        schedule.register("alpha", new JobKey("job"), 60, 3600);
+        schedule.recordRun("alpha", 0);
+        schedule.recordRun("alpha", 5);
+        schedule.recordSkippedRun("alpha");
+        List<PollingStatus> statuses = schedule.getStatuses();
+        assertEquals(1, statuses.size());
+        PollingStatus status = statuses.get(0);
+        assertEquals("alpha", status.getRepositoryName());
+        assertEquals(60, status.getInterval());
+        assertEquals(2, status.getRuns());
+        assertEquals(1, status.getRunsWithChanges());
+        assertEquals(5, status.getLastChangedFiles());
+    }
+}
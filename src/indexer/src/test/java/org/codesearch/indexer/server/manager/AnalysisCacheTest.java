@@ -0,0 +1,111 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.indexer.server.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedList;
+
+import org.apache.commons.io.FileUtils;
+import org.codesearch.commons.plugins.codeanalyzing.ast.AstNode;
+import org.codesearch.commons.plugins.codeanalyzing.ast.Usage;
+import org.codesearch.indexer.server.MockCodeAnalyzerPlugin;
+import org.codesearch.indexer.server.MockConfigurationReader;
+import org.codesearch.indexer.server.manager.AnalysisCache.CachedAnalysis;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AnalysisCacheTest {
+
+    private static final String HASH = "ce013625030ba8dba906f756967f9e9ca394464a";
+    private File directory;
+    private MockConfigurationReader configReader;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("codesearch", "test");
+        directory.delete();
+        directory.mkdirs();
+        configReader = new MockConfigurationReader(directory);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    private CachedAnalysis createAnalysis(String type) {
+        MockCodeAnalyzerPlugin.MockAstNode ast = new MockCodeAnalyzerPlugin.MockAstNode();
+        ast.setName(type);
+        return new CachedAnalysis(ast, new LinkedList<Usage>(), Collections.singletonList(type), new LinkedList<String>());
+    }
+
+    @Test
+    public void testAnalysisIsStoredPerPluginVersion() {
+        AnalysisCache cache = new AnalysisCache(configReader);
+        MockCodeAnalyzerPlugin plugin = new MockCodeAnalyzerPlugin();
+        cache.put(HASH, plugin, createAnalysis("Hello"));
+
+        // read by another instance, e.g. after a restart
+        CachedAnalysis cached = new AnalysisCache(configReader).get(HASH, plugin);
+        assertNotNull(cached);
+        assertEquals(Collections.singletonList("Hello"), cached.getTypeDeclarations());
+        AstNode ast = cached.getAst();
+        assertEquals("Hello", ast.getName());
+        assertNull(cache.get("e69de29bb2d1d6434b8b29ae775ad8c2e48c5391", plugin));
+
+        MockCodeAnalyzerPlugin updatedPlugin = new MockCodeAnalyzerPlugin();
+        updatedPlugin.setVersion("2");
+        assertNull("results of other plugin versions are not used", cache.get(HASH, updatedPlugin));
+    }
+
+    @Test
+    public void testDisabledCacheStoresNothing() {
+        configReader.getIndexerConfiguration().setAnalysisCache(false);
+        AnalysisCache cache = new AnalysisCache(configReader);
+        MockCodeAnalyzerPlugin plugin = new MockCodeAnalyzerPlugin();
+        cache.put(HASH, plugin, createAnalysis("Hello"));
+
+        assertFalse(cache.isEnabled());
+        assertNull(cache.get(HASH, plugin));
+        assertFalse(new File(directory, "cache/" + AnalysisCache.CACHE_DIRECTORY).exists());
+    }
+
+    @Test
+    public void testUnreadableEntryIsDeleted() throws IOException {
+        AnalysisCache cache = new AnalysisCache(configReader);
+        MockCodeAnalyzerPlugin plugin = new MockCodeAnalyzerPlugin();
+        cache.put(HASH, plugin, createAnalysis("Hello"));
+        Collection<File> entries = FileUtils.listFiles(new File(configReader.getCacheDirectory(), AnalysisCache.CACHE_DIRECTORY), null, true);
+        assertEquals(1, entries.size());
+        File entry = entries.iterator().next();
+        FileUtils.writeStringToFile(entry, "not an analysis");
+
+        assertNull(cache.get(HASH, plugin));
+        assertFalse(entry.exists());
+    }
+}
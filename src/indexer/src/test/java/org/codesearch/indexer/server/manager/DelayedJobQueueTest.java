@@ -0,0 +1,168 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.indexer.server.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.codesearch.commons.configuration.dto.NoAuthentication;
+import org.codesearch.commons.configuration.dto.RepositoryDto;
+import org.codesearch.indexer.server.manager.DelayedJobQueue.Lane;
+import org.junit.Test;
+import org.quartz.JobBuilder;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+
+public class DelayedJobQueueTest {
+
+    private DelayedJobQueue queue = new DelayedJobQueue();
+
+    private JobDetail createJob(boolean clear, boolean manual, String... repositoryNames) {
+        List<RepositoryDto> repositories = new LinkedList<RepositoryDto>();
+        for (String name : repositoryNames) {
+            repositories.add(new RepositoryDto(name, "", new NoAuthentication(), false, "GIT", Collections.<String> emptyList(),
+                    Collections.<String> emptyList(), Collections.<String> emptyList()));
+        }
+        JobDataMap jobDataMap = new JobDataMap();
+        jobDataMap.put(IndexingJob.FIELD_REPOSITORIES, repositories);
+        jobDataMap.put(IndexingJob.FIELD_CLEAR_INDEX, clear);
+        if (manual) {
+            jobDataMap.put(IndexingJob.FIELD_MANUAL, true);
+        }
+        return JobBuilder.newJob(IndexingJob.class).usingJobData(jobDataMap).build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<RepositoryDto> getRepositories(JobDetail job) {
+        return (List<RepositoryDto>) job.getJobDataMap().get(IndexingJob.FIELD_REPOSITORIES);
+    }
+
+    @Test
+    public void testLanesAreExecutedInOrder() {
+        JobDetail rebuild = createJob(true, false, "a");
+        JobDetail incremental = createJob(false, false, "b");
+        JobDetail manual = createJob(false, true, "c");
+        assertTrue(queue.add(rebuild));
+        assertTrue(queue.add(incremental));
+        assertTrue(queue.add(manual));
+
+        List<JobDetail> jobs = queue.getJobs();
+        assertEquals(3, jobs.size());
+        assertSame(manual, jobs.get(0));
+        assertSame(incremental, jobs.get(1));
+        assertSame(rebuild, jobs.get(2));
+
+        queue.remove(manual);
+        assertSame(incremental, queue.getJobs().get(0));
+    }
+
+    @Test
+    public void testShadowRebuildIsQueuedAsRebuild() {
+        JobDetail shadowRebuild = createJob(true, true, "a");
+        shadowRebuild.getJobDataMap().put(IndexingJob.FIELD_SHADOW_REBUILD, true);
+        assertEquals(Lane.REBUILD, DelayedJobQueue.getLane(shadowRebuild));
+        // without clearing the index the shadow flag has no effect
+        JobDetail incremental = createJob(false, false, "a");
+        incremental.getJobDataMap().put(IndexingJob.FIELD_SHADOW_REBUILD, true);
+        assertEquals(Lane.INCREMENTAL, DelayedJobQueue.getLane(incremental));
+    }
+
+    @Test
+    public void testOverlappingJobsAreMerged() {
+        JobDetail first = createJob(false, false, "a", "b");
+        JobDetail second = createJob(false, false, "b", "c");
+        assertTrue(queue.add(first));
+        assertFalse(queue.add(second));
+
+        assertEquals(1, queue.getJobs().size());
+        List<RepositoryDto> repositories = getRepositories(first);
+        assertEquals(3, repositories.size());
+        assertEquals("c", repositories.get(2).getName());
+    }
+
+    @Test
+    public void testJobsWithDifferentModesAreNotMerged() {
+        JobDetail sequential = createJob(false, false, "a");
+        sequential.getJobDataMap().put(IndexingJob.FIELD_CONCURRENT_REPOSITORIES, 1);
+        JobDetail concurrent = createJob(false, false, "a");
+        concurrent.getJobDataMap().put(IndexingJob.FIELD_CONCURRENT_REPOSITORIES, 4);
+        JobDetail adaptive = createJob(false, false, "a");
+        adaptive.getJobDataMap().put(IndexingJob.FIELD_CONCURRENT_REPOSITORIES, 1);
+        adaptive.getJobDataMap().put(IndexingJob.FIELD_ADAPTIVE_POLLING, true);
+        assertTrue(queue.add(sequential));
+        assertTrue(queue.add(concurrent));
+        assertTrue(queue.add(adaptive));
+        assertEquals(3, queue.getJobs().size());
+        assertEquals(1, getRepositories(sequential).size());
+    }
+
+    @Test
+    public void testShadowRebuildIsNotMergedIntoClearingRebuild() {
+        JobDetail clearing = createJob(true, false, "a");
+        clearing.getJobDataMap().put(IndexingJob.FIELD_SHADOW_REBUILD, false);
+        JobDetail shadow = createJob(true, false, "a", "b");
+        shadow.getJobDataMap().put(IndexingJob.FIELD_SHADOW_REBUILD, true);
+        assertTrue(queue.add(clearing));
+        assertTrue(queue.add(shadow));
+        assertEquals(2, queue.getJobs().size());
+        assertEquals(1, getRepositories(clearing).size());
+
+        JobDetail secondShadow = createJob(true, false, "b", "c");
+        secondShadow.getJobDataMap().put(IndexingJob.FIELD_SHADOW_REBUILD, true);
+        assertFalse(queue.add(secondShadow));
+        assertEquals(3, getRepositories(shadow).size());
+    }
+
+    @Test
+    public void testRebuildDropsCoveredJobs() {
+        JobDetail incremental = createJob(false, false, "a");
+        JobDetail manual = createJob(false, true, "b");
+        JobDetail other = createJob(false, false, "c");
+        queue.add(incremental);
+        queue.add(manual);
+        queue.add(other);
+        JobDetail rebuild = createJob(true, false, "a", "b");
+        assertTrue(queue.add(rebuild));
+
+        List<JobDetail> jobs = queue.getJobs();
+        assertEquals(2, jobs.size());
+        assertSame(other, jobs.get(0));
+        assertSame(rebuild, jobs.get(1));
+        // a later incremental run of a rebuilt repository is dropped as well
+        assertFalse(queue.add(createJob(false, false, "b")));
+        assertEquals(2, queue.getJobs().size());
+    }
+
+    @Test
+    public void testJobWithoutRepositoriesCoversAllRepositories() {
+        queue.add(createJob(false, false, "a"));
+        queue.add(createJob(false, true, "b"));
+        JobDetail wholeIndex = createJob(true, false);
+        assertTrue(queue.add(wholeIndex));
+        assertEquals(1, queue.getJobs().size());
+        assertTrue(DelayedJobQueue.overlaps(getRepositories(wholeIndex), getRepositories(createJob(false, false, "x"))));
+        assertFalse(queue.add(createJob(false, false, "x")));
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.indexer.server.manager;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.lucene.index.IndexWriter;
+import org.codesearch.commons.plugins.vcs.VersionControlPlugin;
+import org.codesearch.indexer.server.IndexerTestEnvironment;
+import org.codesearch.indexer.tasks.NoOpDatabaseImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IndexCleanerTest {
+
+    private IndexerTestEnvironment environment;
+
+    @Before
+    public void setUp() throws Exception {
+        environment = new IndexerTestEnvironment();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        environment.close();
+    }
+
+    @Test
+    public void testRepositoryWithoutDocumentKeysIsIndexedAgain() throws Exception {
+        environment.addRepository("alpha");
+        environment.addRepository("beta");
+        IndexWriterManager indexWriterManager = environment.getIndexWriterManager();
+        IndexWriter writer = indexWriterManager.getWriter("alpha");
+        indexWriterManager.addDocument(writer, IndexWriterManagerTest.createDocument("alpha", "a.txt", true));
+        // written by an older version
+        indexWriterManager.addDocument(writer, IndexWriterManagerTest.createDocument("beta", "b.txt", false));
+        indexWriterManager.commit(writer);
+        environment.getIndexStatusManager().setStatus("alpha", "3");
+        environment.getIndexStatusManager().setStatus("beta", "3");
+
+        new IndexCleaner(environment.getIndexStatusManager(), environment.getConfigReader(), new NoOpDatabaseImpl(),
+                indexWriterManager).cleanIndex();
+
+        assertEquals("3", environment.getIndexStatusManager().getStatus("alpha"));
+        assertEquals(1, environment.getDocumentCount("alpha"));
+        assertEquals(VersionControlPlugin.UNDEFINED_VERSION, environment.getIndexStatusManager().getStatus("beta"));
+        assertEquals(0, environment.getDocumentCount("beta"));
+    }
+}
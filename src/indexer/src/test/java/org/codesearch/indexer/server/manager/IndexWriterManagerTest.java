@@ -0,0 +1,134 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.indexer.server.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.codesearch.commons.constants.IndexConstants;
+import org.codesearch.commons.plugins.lucenefields.LuceneFieldPluginLoaderImpl;
+import org.codesearch.indexer.server.MockConfigurationReader;
+import org.codesearch.indexer.server.MockPluginLoader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IndexWriterManagerTest {
+
+    private File directory;
+    private MockConfigurationReader configReader;
+    private IndexWriterManager indexWriterManager;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("codesearch", "test");
+        directory.delete();
+        directory.mkdirs();
+        configReader = new MockConfigurationReader(directory);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (indexWriterManager != null) {
+            indexWriterManager.shutdown();
+        }
+        FileUtils.deleteDirectory(directory);
+    }
+
+    private IndexWriterManager createManager() {
+        indexWriterManager = new IndexWriterManager(configReader, new LuceneFieldPluginLoaderImpl(new MockPluginLoader()));
+        return indexWriterManager;
+    }
+
+    private Document createDocument(String path) {
+        return createDocument("alpha", path, true);
+    }
+
+    static Document createDocument(String repositoryName, String path, boolean withKey) {
+        Document document = new Document();
+        document.add(new Field(IndexConstants.INDEX_FIELD_REPOSITORY, repositoryName.toLowerCase(), Field.Store.YES,
+                Field.Index.NOT_ANALYZED));
+        if (withKey) {
+            document.add(new Field(IndexConstants.INDEX_FIELD_KEY, repositoryName + ":" + path, Field.Store.YES,
+                    Field.Index.NOT_ANALYZED));
+        }
+        return document;
+    }
+
+    private int getCommittedDocumentCount() throws IOException {
+        Directory index = FSDirectory.open(configReader.getIndexLocation());
+        try {
+            if (!IndexReader.indexExists(index)) {
+                return 0;
+            }
+            IndexReader reader = IndexReader.open(index);
+            try {
+                return reader.numDocs();
+            } finally {
+                reader.close();
+            }
+        } finally {
+            index.close();
+        }
+    }
+
+    @Test
+    public void testWriterIsCommittedAfterDocumentCount() throws IOException {
+        configReader.getIndexerConfiguration().setCommitDocumentCount(2);
+        IndexWriter writer = createManager().getWriter("alpha");
+        indexWriterManager.addDocument(writer, createDocument("a.txt"));
+        assertEquals(0, getCommittedDocumentCount());
+        indexWriterManager.addDocument(writer, createDocument("b.txt"));
+        assertEquals(2, getCommittedDocumentCount());
+    }
+
+    @Test
+    public void testInvalidCommitPolicyFallsBackToDefaults() throws IOException {
+        configReader.getIndexerConfiguration().setCommitInterval(0);
+        configReader.getIndexerConfiguration().setCommitDocumentCount(-1);
+        IndexWriter writer = createManager().getWriter("alpha");
+        indexWriterManager.addDocument(writer, createDocument("a.txt"));
+        assertEquals("a single document is below the default document count", 0, getCommittedDocumentCount());
+        indexWriterManager.commit(writer);
+        assertEquals(1, getCommittedDocumentCount());
+    }
+
+    @Test
+    public void testDocumentKeysAreCheckedPerRepository() throws IOException {
+        IndexWriter writer = createManager().getWriter("alpha");
+        indexWriterManager.addDocument(writer, createDocument("alpha", "a.txt", true));
+        indexWriterManager.addDocument(writer, createDocument("beta", "b.txt", false));
+        indexWriterManager.commit(writer);
+
+        assertTrue(indexWriterManager.hasDocumentKeys("alpha"));
+        assertFalse("the keys of other repositories in the same index do not count", indexWriterManager.hasDocumentKeys("beta"));
+        assertTrue("a repository without documents has nothing to migrate", indexWriterManager.hasDocumentKeys("gamma"));
+    }
+}
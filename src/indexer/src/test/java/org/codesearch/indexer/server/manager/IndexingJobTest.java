@@ -0,0 +1,85 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.indexer.server.manager;
+
+import static org.junit.Assert.assertEquals;
+
+import org.codesearch.commons.configuration.dto.RepositoryDto;
+import org.codesearch.indexer.server.IndexerTestEnvironment;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.quartz.JobDataMap;
+
+public class IndexingJobTest {
+
+    private IndexerTestEnvironment environment;
+
+    @Before
+    public void setUp() throws Exception {
+        environment = new IndexerTestEnvironment();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        environment.close();
+    }
+
+    private RepositoryDto addRepository(String name, int files) throws Exception {
+        RepositoryDto repository = environment.addRepository(name);
+        for (int i = 0; i < files; i++) {
+            environment.getPlugin(name).addFile("src/File" + i + ".java", "class File" + i + " {}");
+        }
+        return repository;
+    }
+
+    @Test
+    public void testRepositoriesAreIndexedConcurrently() throws Exception {
+        RepositoryDto alpha = addRepository("alpha", 10);
+        RepositoryDto beta = addRepository("beta", 20);
+        RepositoryDto gamma = addRepository("gamma", 5);
+        environment.getPlugin("beta").setRevision("7");
+        JobDataMap jobData = environment.createJobData(false, alpha, beta, gamma);
+        jobData.put(IndexingJob.FIELD_CONCURRENT_REPOSITORIES, 3);
+        environment.runJob(jobData);
+
+        assertEquals(10, environment.getDocumentCount("alpha"));
+        assertEquals(20, environment.getDocumentCount("beta"));
+        assertEquals(5, environment.getDocumentCount("gamma"));
+        assertEquals("1", environment.getIndexStatusManager().getStatus("alpha"));
+        assertEquals("7", environment.getIndexStatusManager().getStatus("beta"));
+        assertEquals("1", environment.getIndexStatusManager().getStatus("gamma"));
+    }
+
+    @Test
+    public void testUnchangedRepositoryIsNotPulled() throws Exception {
+        RepositoryDto alpha = addRepository("alpha", 3);
+        RepositoryDto beta = addRepository("beta", 3);
+        environment.runJob(environment.createJobData(false, alpha, beta));
+        assertEquals(1, environment.getPlugin("alpha").getPulls());
+        assertEquals(1, environment.getPlugin("beta").getPulls());
+
+        environment.getPlugin("beta").setRevision("2");
+        environment.runJob(environment.createJobData(false, alpha, beta));
+        assertEquals(1, environment.getPlugin("alpha").getPulls());
+        assertEquals(2, environment.getPlugin("beta").getPulls());
+        assertEquals("1", environment.getIndexStatusManager().getStatus("alpha"));
+        assertEquals("2", environment.getIndexStatusManager().getStatus("beta"));
+    }
+}
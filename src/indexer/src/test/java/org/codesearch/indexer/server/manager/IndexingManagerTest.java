@@ -0,0 +1,75 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.indexer.server.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.codesearch.commons.configuration.dto.RepositoryDto;
+import org.codesearch.indexer.server.IndexerTestEnvironment;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IndexingManagerTest {
+
+    private IndexerTestEnvironment environment;
+
+    @Before
+    public void setUp() throws Exception {
+        environment = new IndexerTestEnvironment();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        environment.close();
+    }
+
+    /**
+     * Waits until the index status of a repository reaches the given
+     * revision.
+     */
+    private void waitForStatus(String repository, String revision) throws InterruptedException {
+        long end = System.currentTimeMillis() + 20000;
+        while (!revision.equals(environment.getIndexStatusManager().getStatus(repository)) && System.currentTimeMillis() < end) {
+            Thread.sleep(50);
+        }
+        assertEquals(revision, environment.getIndexStatusManager().getStatus(repository));
+    }
+
+    @Test
+    public void testPushNotificationsAreDebounced() throws Exception {
+        environment.getIndexerConfiguration().setPushDebounceSeconds(1);
+        RepositoryDto repository = environment.addRepository("alpha");
+        environment.getPlugin("alpha").addFile("README", "readme");
+        environment.getPlugin("alpha").setRevision("2");
+        IndexingManager indexingManager = environment.createIndexingManager();
+
+        assertTrue(indexingManager.indexPushedRevision(repository, "2"));
+        // handled by the pending job
+        assertFalse(indexingManager.indexPushedRevision(repository, null));
+        assertFalse(indexingManager.indexPushedRevision(repository, "2"));
+
+        waitForStatus("alpha", "2");
+        assertEquals(1, environment.getIndexedCount("alpha", "README"));
+        // the revision is already indexed
+        assertFalse(indexingManager.indexPushedRevision(repository, "2"));
+    }
+}
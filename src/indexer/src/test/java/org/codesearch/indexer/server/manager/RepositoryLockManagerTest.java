@@ -0,0 +1,113 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.indexer.server.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.codesearch.commons.configuration.dto.NoAuthentication;
+import org.codesearch.commons.configuration.dto.RepositoryDto;
+import org.junit.Test;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.TriggerBuilder;
+import org.quartz.impl.JobExecutionContextImpl;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.TriggerFiredBundle;
+
+public class RepositoryLockManagerTest {
+
+    private RepositoryLockManager lockManager = new RepositoryLockManager();
+
+    private JobExecutionContext createExecution() {
+        JobDetail jobDetail = JobBuilder.newJob(IndexingJob.class).build();
+        OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger().forJob(jobDetail).build();
+        return new JobExecutionContextImpl(null, new TriggerFiredBundle(jobDetail, trigger, null, false, null, null, null, null), null);
+    }
+
+    private List<RepositoryDto> repositories(String... names) {
+        List<RepositoryDto> repositories = new LinkedList<RepositoryDto>();
+        for (String name : names) {
+            repositories.add(new RepositoryDto(name, "", new NoAuthentication(), false, "GIT", Collections.<String> emptyList(),
+                    Collections.<String> emptyList(), Collections.<String> emptyList()));
+        }
+        return repositories;
+    }
+
+    @Test
+    public void testDisjointJobsRunConcurrently() {
+        JobExecutionContext first = createExecution();
+        JobExecutionContext second = createExecution();
+        assertTrue(lockManager.tryLock(first, repositories("a", "b")));
+        assertTrue(lockManager.tryLock(second, repositories("c")));
+        assertSame(first, lockManager.getLockHolder("b"));
+        assertSame(second, lockManager.getLockHolder("c"));
+    }
+
+    @Test
+    public void testOverlappingJobIsDelayed() {
+        JobExecutionContext first = createExecution();
+        JobExecutionContext second = createExecution();
+        assertTrue(lockManager.tryLock(first, repositories("a", "b")));
+        assertEquals("b", lockManager.getBlockingLock(repositories("c", "b")));
+        assertFalse(lockManager.tryLock(second, repositories("c", "b")));
+        // the locks are acquired all or none
+        assertNull(lockManager.getLockHolder("c"));
+
+        lockManager.unlock(first);
+        assertNull(lockManager.getBlockingLock(repositories("c", "b")));
+        assertTrue(lockManager.tryLock(second, repositories("c", "b")));
+    }
+
+    @Test
+    public void testWholeIndexJobExcludesAllOtherJobs() {
+        JobExecutionContext repositoryJob = createExecution();
+        JobExecutionContext indexJob = createExecution();
+        assertTrue(lockManager.tryLock(repositoryJob, repositories("a")));
+        assertEquals("a", lockManager.getBlockingLock(null));
+        assertFalse(lockManager.tryLock(indexJob, Collections.<RepositoryDto> emptyList()));
+
+        lockManager.unlock(repositoryJob);
+        assertTrue(lockManager.tryLock(indexJob, null));
+        assertEquals(RepositoryLockManager.WHOLE_INDEX, lockManager.getBlockingLock(repositories("z")));
+        assertFalse(lockManager.tryLock(repositoryJob, repositories("z")));
+    }
+
+    @Test
+    public void testExecutionsOfTheSameJobExcludeEachOther() {
+        JobExecutionContext first = createExecution();
+        JobExecutionContext second = createExecution();
+        List<RepositoryDto> repositories = repositories("a");
+        assertTrue(lockManager.tryLock(first, repositories));
+        assertFalse(lockManager.tryLock(second, repositories));
+        lockManager.unlock(second);
+        assertSame(first, lockManager.getLockHolder("a"));
+        lockManager.unlock(first);
+        assertTrue(lockManager.tryLock(second, Arrays.asList(repositories.get(0))));
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.indexer.server.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.codesearch.commons.constants.IndexConstants;
+import org.codesearch.commons.plugins.lucenefields.LuceneFieldPluginLoaderImpl;
+import org.codesearch.indexer.server.IndexerTestEnvironment;
+import org.codesearch.indexer.server.MockConfigurationReader;
+import org.codesearch.indexer.server.MockPluginLoader;
+import org.codesearch.indexer.server.manager.IndexWriterManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BulkImportTest {
+
+    private File directory;
+    private IndexWriterManager indexWriterManager;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("codesearch", "test");
+        directory.delete();
+        directory.mkdirs();
+        indexWriterManager = new IndexWriterManager(new MockConfigurationReader(directory), new LuceneFieldPluginLoaderImpl(
+                new MockPluginLoader()));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        indexWriterManager.shutdown();
+        FileUtils.deleteDirectory(directory);
+    }
+
+    private Document createDocument(String repositoryName, String path) {
+        Document document = new Document();
+        document.add(new Field(IndexConstants.INDEX_FIELD_REPOSITORY, repositoryName.toLowerCase(), Field.Store.YES,
+                Field.Index.NOT_ANALYZED));
+        document.add(new Field(IndexConstants.INDEX_FIELD_KEY, IndexingPipeline.createKey(repositoryName, path), Field.Store.YES,
+                Field.Index.NOT_ANALYZED));
+        return document;
+    }
+
+    private IndexWriter open(BulkImport bulkImport, boolean resume) throws IOException {
+        return bulkImport.open(resume, new WhitespaceAnalyzer(IndexConstants.LUCENE_VERSION), 16, indexWriterManager, 1000);
+    }
+
+    private int getDocumentFrequency(IndexWriter writer, Term term) throws IOException {
+        IndexReader reader = IndexReader.open(writer, true);
+        try {
+            return IndexerTestEnvironment.countDocuments(reader, term);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private int getDocumentCount(IndexWriter writer, String repositoryName) throws IOException {
+        return getDocumentFrequency(writer, new Term(IndexConstants.INDEX_FIELD_REPOSITORY, repositoryName.toLowerCase()));
+    }
+
+    @Test
+    public void testAttachReplacesDocumentsOfRepository() throws IOException {
+        IndexWriter mainWriter = indexWriterManager.getWriter("alpha");
+        indexWriterManager.addDocument(mainWriter, createDocument("alpha", "old.txt"));
+        indexWriterManager.addDocument(mainWriter, createDocument("alpha", "a.txt"));
+        indexWriterManager.addDocument(mainWriter, createDocument("beta", "a.txt"));
+        indexWriterManager.commit(mainWriter);
+
+        BulkImport bulkImport = new BulkImport(directory, "alpha");
+        IndexWriter importWriter = open(bulkImport, false);
+        importWriter.addDocument(createDocument("alpha", "a.txt"));
+        importWriter.addDocument(createDocument("alpha", "b.txt"));
+        importWriter.addDocument(createDocument("alpha", "c.txt"));
+        // the old documents stay searchable during the import
+        assertEquals(2, getDocumentCount(mainWriter, "alpha"));
+        bulkImport.attach(mainWriter, "-1", "1");
+        bulkImport.delete();
+
+        assertEquals(3, getDocumentCount(mainWriter, "alpha"));
+        assertEquals(1, getDocumentCount(mainWriter, "beta"));
+        assertEquals(0, getDocumentFrequency(mainWriter, new Term(IndexConstants.INDEX_FIELD_KEY, "alpha:old.txt")));
+        assertFalse(bulkImport.exists());
+    }
+
+    @Test
+    public void testInterruptedImportIsResumed() throws IOException {
+        BulkImport bulkImport = new BulkImport(directory, "alpha");
+        IndexWriter importWriter = open(bulkImport, false);
+        importWriter.addDocument(createDocument("alpha", "a.txt"));
+        importWriter.addDocument(createDocument("alpha", "b.txt"));
+        indexWriterManager.commit(importWriter);
+        importWriter.addDocument(createDocument("alpha", "c.txt"));
+        bulkImport.abort();
+        assertTrue(bulkImport.exists());
+
+        BulkImport resumed = new BulkImport(directory, "alpha");
+        importWriter = open(resumed, true);
+        assertEquals("only committed documents are kept", 2, getDocumentCount(importWriter, "alpha"));
+        resumed.abort();
+
+        BulkImport restarted = new BulkImport(directory, "alpha");
+        importWriter = open(restarted, false);
+        assertEquals(0, getDocumentCount(importWriter, "alpha"));
+        restarted.delete();
+        assertFalse(restarted.exists());
+    }
+
+    @Test
+    public void testImportWriterIsCommittedByPolicy() throws IOException {
+        BulkImport bulkImport = new BulkImport(directory, "alpha");
+        IndexWriter importWriter = bulkImport.open(false, new WhitespaceAnalyzer(IndexConstants.LUCENE_VERSION), 16, indexWriterManager, 2);
+        indexWriterManager.addDocument(importWriter, createDocument("alpha", "a.txt"));
+        indexWriterManager.addDocument(importWriter, createDocument("alpha", "b.txt"));
+        indexWriterManager.addDocument(importWriter, createDocument("alpha", "c.txt"));
+        bulkImport.abort();
+
+        BulkImport resumed = new BulkImport(directory, "alpha");
+        importWriter = open(resumed, true);
+        assertEquals(2, getDocumentCount(importWriter, "alpha"));
+        resumed.delete();
+    }
+
+    @Test
+    public void testAttachRecordsRevision() throws IOException {
+        IndexWriter mainWriter = indexWriterManager.getWriter("alpha");
+        BulkImport bulkImport = new BulkImport(directory, "alpha");
+        IndexWriter importWriter = open(bulkImport, false);
+        importWriter.addDocument(createDocument("alpha", "a.txt"));
+        importWriter.addDocument(createDocument("alpha", "b.txt"));
+        bulkImport.attach(mainWriter, "-1", "5");
+        assertEquals(new HashSet<String>(Arrays.asList("a.txt", "b.txt")), bulkImport.getImportedFiles());
+        bulkImport.delete();
+        indexWriterManager.shutdown();
+
+        // the revision is read from the index after a restart
+        indexWriterManager = new IndexWriterManager(new MockConfigurationReader(directory), new LuceneFieldPluginLoaderImpl(
+                new MockPluginLoader()));
+        assertEquals("5", indexWriterManager.getAttachedRevision("alpha", "-1"));
+        assertNull("the record is outdated once the status changed", indexWriterManager.getAttachedRevision("alpha", "5"));
+        assertNull(indexWriterManager.getAttachedRevision("beta", "-1"));
+
+        indexWriterManager.clearRepository("alpha");
+        assertNull(indexWriterManager.getAttachedRevision("alpha", "-1"));
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.indexer.server.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link GeneratedFileClassifier}.
+ */
+public class GeneratedFileClassifierTest {
+
+    private GeneratedFileClassifier classifier = new GeneratedFileClassifier(Arrays.asList("*.lock", "gen/*"));
+
+    /**
+     * Creates source code with short lines of at least the given size.
+     */
+    private static byte[] createSource(int size) {
+        StringBuilder source = new StringBuilder("public class Source {\n");
+        for (int i = 0; source.length() < size; i++) {
+            source.append("    private int field").append(i).append(" = ").append(i * 7).append("; // a plain field\n");
+        }
+        return source.append("}\n").toString().getBytes();
+    }
+
+    @Test
+    public void testSourceIsNotGenerated() {
+        assertNull(classifier.classify("src/Source.java", createSource(20000)));
+        assertNull(classifier.classify("src/Small.java", "class Small {}".getBytes()));
+    }
+
+    @Test
+    public void testPatternsWithoutSlashMatchTheFileName() {
+        assertEquals(GeneratedFileClassifier.Reason.PATH, classifier.classify("web/yarn.lock", new byte[0]));
+        assertEquals(GeneratedFileClassifier.Reason.PATH, classifier.classify("gen/Parser.java", new byte[0]));
+        assertNull(classifier.classify("src/gen/Parser.java", new byte[0]));
+    }
+
+    @Test
+    public void testMarkerInHeaderIsRecognized() {
+        assertEquals(GeneratedFileClassifier.Reason.MARKER, classifier.classify("src/Parser.java",
+                "/* Generated By:JavaCC: Do not edit this line. */\nclass Parser {}".getBytes()));
+        String content = new String(createSource(4096)) + "// DO NOT EDIT\n";
+        // markers after the header are ignored
+        assertNull(classifier.classify("src/Source.java", content.getBytes()));
+    }
+
+    @Test
+    public void testMinifiedScriptIsRecognized() {
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            script.append("function f").append(i).append("(a,b){return a+b*").append(i).append("};");
+        }
+        assertEquals(GeneratedFileClassifier.Reason.MINIFIED, classifier.classify("web/app.min.js", script.toString().getBytes()));
+    }
+
+    @Test
+    public void testEncodedDataIsRecognized() {
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        Random random = new Random(42);
+        StringBuilder data = new StringBuilder();
+        for (int line = 0; line < 100; line++) {
+            for (int i = 0; i < 76; i++) {
+                data.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            data.append('\n');
+        }
+        assertEquals(GeneratedFileClassifier.Reason.ENCODED, classifier.classify("src/Icons.java", data.toString().getBytes()));
+    }
+
+    @Test
+    public void testTextInOtherScriptsIsNotEncodedData() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            text.append("Съешь же ещё этих мягких французских булок, да выпей чаю.\n");
+        }
+        assertNull(classifier.classify("doc/readme.txt", text.toString().getBytes("UTF-8")));
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.indexer.server.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IndexingJournalTest {
+
+    private File directory;
+    private IndexingJournal journal;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("codesearch", "test");
+        directory.delete();
+        directory.mkdirs();
+        journal = new IndexingJournal(directory, "repo");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    private IndexingJournal load(String baseRevision) {
+        IndexingJournal loaded = new IndexingJournal(directory, "repo");
+        loaded.load(baseRevision);
+        return loaded;
+    }
+
+    @Test
+    public void testOnlyCommittedFilesAreWritten() throws IOException {
+        journal.start("1", "2", Collections.singletonList("old.txt"));
+        journal.fileFinished("a.txt");
+        journal.beforeCommit();
+        // finished while the index is committed, not part of the commit
+        journal.fileFinished("b.txt");
+        journal.afterCommit();
+
+        IndexingJournal loaded = load("1");
+        assertEquals("2", loaded.getTargetRevision());
+        assertEquals(new HashSet<String>(Arrays.asList("old.txt", "a.txt")), loaded.getProcessedFiles());
+
+        journal.beforeCommit();
+        journal.afterCommit();
+        assertEquals(new HashSet<String>(Arrays.asList("old.txt", "a.txt", "b.txt")), load("1").getProcessedFiles());
+    }
+
+    @Test
+    public void testFailedCommitKeepsFilesPending() throws IOException {
+        journal.start("1", "2", Collections.<String> emptyList());
+        journal.fileFinished("a.txt");
+        // the commit failed, afterCommit is not called
+        journal.beforeCommit();
+        journal.fileFinished("b.txt");
+        journal.beforeCommit();
+        journal.afterCommit();
+        assertEquals(new HashSet<String>(Arrays.asList("a.txt", "b.txt")), load("1").getProcessedFiles());
+    }
+
+    @Test
+    public void testJournalOfOtherBaseRevisionIsIgnored() throws IOException {
+        journal.start("1", "2", Collections.singletonList("a.txt"));
+        IndexingJournal loaded = new IndexingJournal(directory, "repo");
+        assertFalse(loaded.load("3"));
+        assertNull(loaded.getTargetRevision());
+        assertTrue(loaded.getProcessedFiles().isEmpty());
+    }
+
+    @Test
+    public void testDeletedJournalIsNotLoaded() throws IOException {
+        journal.start("1", "2", Collections.singletonList("a.txt"));
+        journal.fileFinished("b.txt");
+        journal.delete();
+        journal.beforeCommit();
+        journal.afterCommit();
+        assertFalse(new IndexingJournal(directory, "repo").load("1"));
+    }
+}
@@ -0,0 +1,318 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.indexer.server.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.RAMDirectory;
+import org.codesearch.commons.configuration.dto.IndexerConfiguration;
+import org.codesearch.commons.configuration.dto.NoAuthentication;
+import org.codesearch.commons.configuration.dto.RepositoryDto;
+import org.codesearch.commons.constants.IndexConstants;
+import org.codesearch.commons.database.DBAccess;
+import org.codesearch.commons.plugins.codeanalyzing.CodeAnalyzerPlugin;
+import org.codesearch.commons.plugins.lucenefields.LuceneFieldPlugin;
+import org.codesearch.commons.plugins.lucenefields.LuceneFieldPluginLoaderImpl;
+import org.codesearch.commons.plugins.vcs.FileIdentifier;
+import org.codesearch.commons.plugins.vcs.VersionControlPlugin;
+import org.codesearch.indexer.server.IndexerTestEnvironment;
+import org.codesearch.indexer.server.MockCodeAnalyzerPlugin;
+import org.codesearch.indexer.server.MockConfigurationReader;
+import org.codesearch.indexer.server.MockPluginLoader;
+import org.codesearch.indexer.server.MockVersionControlPlugin;
+import org.codesearch.indexer.server.exceptions.TaskExecutionException;
+import org.codesearch.indexer.server.manager.AnalysisCache;
+import org.codesearch.indexer.server.manager.IndexWriterManager;
+import org.codesearch.indexer.tasks.NoOpDatabaseImpl;
+import org.codesearch.indexer.tasks.RecordingDatabaseImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IndexingPipelineTest {
+
+    private File directory;
+    private MockConfigurationReader configReader;
+    private IndexerConfiguration configuration;
+    private IndexWriterManager indexWriterManager;
+    private IndexWriter indexWriter;
+    private RepositoryDto repository;
+    private MockVersionControlPlugin plugin;
+    private MockPluginLoader pluginLoader;
+    private List<LuceneFieldPlugin> luceneFieldPlugins;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("codesearch", "test");
+        directory.delete();
+        directory.mkdirs();
+        configReader = new MockConfigurationReader(directory);
+        configuration = configReader.getIndexerConfiguration();
+        configuration.setPipelineQueueSize(2);
+        pluginLoader = new MockPluginLoader();
+        indexWriterManager = new IndexWriterManager(configReader, new LuceneFieldPluginLoaderImpl(pluginLoader));
+        indexWriter = new IndexWriter(new RAMDirectory(), new IndexWriterConfig(IndexConstants.LUCENE_VERSION, new WhitespaceAnalyzer(
+                IndexConstants.LUCENE_VERSION)));
+        repository = new RepositoryDto("repo", "mock://repo", new NoAuthentication(), false, "MOCK", new LinkedList<String>(),
+                new LinkedList<String>(), new LinkedList<String>());
+        plugin = new MockVersionControlPlugin();
+        plugin.setRepository(repository);
+        pluginLoader.register(VersionControlPlugin.class, plugin);
+        luceneFieldPlugins = new LinkedList<LuceneFieldPlugin>();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        indexWriter.close();
+        indexWriterManager.shutdown();
+        FileUtils.deleteDirectory(directory);
+    }
+
+    IndexingPipeline createPipeline(IndexingJournal journal) {
+        return createPipeline(journal, new NoOpDatabaseImpl());
+    }
+
+    IndexingPipeline createPipeline(IndexingJournal journal, DBAccess dba) {
+        return new IndexingPipeline(repository, plugin, indexWriter, true, indexWriterManager, luceneFieldPlugins, dba,
+                new AnalysisCache(configReader), pluginLoader, null, configuration, new AtomicBoolean(true), journal);
+    }
+
+    void indexFiles(IndexingPipeline pipeline, List<FileIdentifier> files) throws Exception {
+        pipeline.start();
+        try {
+            for (FileIdentifier file : files) {
+                pipeline.add(file);
+            }
+        } finally {
+            pipeline.finish();
+        }
+    }
+
+    int getIndexedCount(String path) throws IOException {
+        return getDocumentCount(IndexingPipeline.createKeyTerm(repository.getName(), path));
+    }
+
+    int getDocumentCount(Term term) throws IOException {
+        indexWriter.commit();
+        IndexReader reader = IndexReader.open(indexWriter.getDirectory());
+        try {
+            return IndexerTestEnvironment.countDocuments(reader, term);
+        } finally {
+            reader.close();
+        }
+    }
+
+    String getContentHash(String path) throws IOException {
+        indexWriter.commit();
+        IndexSearcher searcher = new IndexSearcher(indexWriter.getDirectory());
+        try {
+            TopDocs topDocs = searcher.search(new TermQuery(IndexingPipeline.createKeyTerm(repository.getName(), path)), 1);
+            return searcher.doc(topDocs.scoreDocs[0].doc).get(IndexConstants.INDEX_FIELD_CONTENT_HASH);
+        } finally {
+            searcher.close();
+        }
+    }
+
+    @Test
+    public void testAllFilesAreIndexedByConcurrentWorkers() throws Exception {
+        configuration.setFetchThreads(3);
+        configuration.setIndexingThreads(2);
+        List<FileIdentifier> files = new LinkedList<FileIdentifier>();
+        for (int i = 0; i < 50; i++) {
+            files.add(plugin.addFile("src/File" + i + ".java", "class File" + i + " {}"));
+        }
+        indexFiles(createPipeline(null), files);
+        for (int i = 0; i < 50; i++) {
+            assertEquals(1, getIndexedCount("src/File" + i + ".java"));
+        }
+    }
+
+    @Test
+    public void testFailedFileIsSkipped() throws Exception {
+        List<FileIdentifier> files = new LinkedList<FileIdentifier>();
+        files.add(plugin.addFile("a.txt", "a"));
+        files.add(plugin.addFile("b.txt", "b"));
+        files.add(plugin.addFile("c.txt", "c"));
+        plugin.failOn("b.txt", new IllegalStateException("simulated failure"));
+        indexFiles(createPipeline(null), files);
+        assertEquals(1, getIndexedCount("a.txt"));
+        assertEquals(0, getIndexedCount("b.txt"));
+        assertEquals(1, getIndexedCount("c.txt"));
+    }
+
+    @Test(timeout = 30000)
+    public void testFailedWorkerStopsPipeline() throws Exception {
+        List<FileIdentifier> files = new LinkedList<FileIdentifier>();
+        for (int i = 0; i < 50; i++) {
+            files.add(plugin.addFile("File" + i + ".txt", "content"));
+        }
+        plugin.failOn("File1.txt", new Error("simulated failure"));
+        IndexingPipeline pipeline = createPipeline(null);
+        pipeline.start();
+        boolean addFailed = false;
+        try {
+            for (FileIdentifier file : files) {
+                pipeline.add(file);
+            }
+        } catch (TaskExecutionException ex) {
+            addFailed = true;
+        }
+        assertTrue("adding files to a failed pipeline must not block", addFailed);
+        try {
+            pipeline.finish();
+            fail("the failure of the fetch worker was not reported");
+        } catch (TaskExecutionException ex) {
+            assertTrue(ex.getMessage().contains("simulated failure"));
+        }
+    }
+
+    @Test
+    public void testOnlyIndexedFilesAreJournaled() throws Exception {
+        IndexingJournal journal = new IndexingJournal(directory, repository.getName());
+        journal.start("0", "1", new LinkedList<String>());
+        List<FileIdentifier> files = new LinkedList<FileIdentifier>();
+        files.add(plugin.addFile("a.txt", "a"));
+        files.add(plugin.addFile("b.txt", "b"));
+        files.add(plugin.addFile("c.txt", "c"));
+        plugin.failOn("b.txt", new IllegalStateException("simulated failure"));
+        indexWriterManager.registerWriter(indexWriter, 1000);
+        indexWriterManager.addCommitListener(indexWriter, journal);
+        indexFiles(createPipeline(journal), files);
+        indexWriterManager.commit(indexWriter);
+        indexWriterManager.unregisterWriter(indexWriter);
+
+        IndexingJournal resumed = new IndexingJournal(directory, repository.getName());
+        assertTrue(resumed.load("0"));
+        assertEquals(new HashSet<String>(Arrays.asList("a.txt", "c.txt")), resumed.getProcessedFiles());
+    }
+
+    @Test
+    public void testOversizedFileIsNotFetched() throws Exception {
+        configuration.setMaxFileSize(10);
+        plugin.setReportingFileSizes(true);
+        List<FileIdentifier> files = new LinkedList<FileIdentifier>();
+        files.add(plugin.addFile("small.txt", "small"));
+        files.add(plugin.addFile("large.txt", "a content that is too large"));
+        indexFiles(createPipeline(null), files);
+        assertTrue(plugin.getFetchedFiles().contains("small.txt"));
+        assertFalse(plugin.getFetchedFiles().contains("large.txt"));
+        assertEquals(1, getIndexedCount("large.txt"));
+    }
+
+    @Test
+    public void testSizesReportedWithChangesAreUsed() throws Exception {
+        configuration.setMaxFileSize(10);
+        plugin.setReportingSizesWithChanges(true);
+        List<FileIdentifier> files = new LinkedList<FileIdentifier>();
+        files.add(plugin.addFile("small.txt", "small"));
+        files.add(plugin.addFile("large.txt", "a content that is too large"));
+        indexFiles(createPipeline(null), files);
+        assertEquals(0, plugin.getFileSizeRequests());
+        assertTrue(plugin.getFetchedFiles().contains("small.txt"));
+        assertFalse(plugin.getFetchedFiles().contains("large.txt"));
+        assertEquals(1, getIndexedCount("large.txt"));
+    }
+
+    @Test
+    public void testContentOfUnknownSizeIsTruncated() throws Exception {
+        configuration.setMaxFileSize(10);
+        List<FileIdentifier> files = new LinkedList<FileIdentifier>();
+        files.add(plugin.addFile("small.txt", "small"));
+        files.add(plugin.addFile("large.txt", "a content that is too large"));
+        indexFiles(createPipeline(null), files);
+        assertTrue(plugin.getFetchedFiles().contains("large.txt"));
+        assertEquals(1, getIndexedCount("large.txt"));
+        assertEquals(IndexingPipeline.computeContentHash("small".getBytes()), getContentHash("small.txt"));
+        // the hash of a truncated content would not identify the file
+        assertEquals("", getContentHash("large.txt"));
+    }
+
+    @Test
+    public void testGeneratedFileIsTaggedAndIndexedWithoutContent() throws Exception {
+        configuration.setGeneratedFilePatterns(Arrays.asList("*.generated.txt"));
+        configuration.setSkipContentOfGeneratedFiles(true);
+        List<FileIdentifier> files = new LinkedList<FileIdentifier>();
+        files.add(plugin.addFile("messages.generated.txt", "locked versions"));
+        files.add(plugin.addFile("a.txt", "written by hand"));
+        indexFiles(createPipeline(null), files);
+        assertEquals(1, getIndexedCount("messages.generated.txt"));
+        assertEquals(1, getDocumentCount(new Term(IndexConstants.INDEX_FIELD_GENERATED, "true")));
+        assertEquals(1, getDocumentCount(new Term(IndexConstants.INDEX_FIELD_GENERATED, "false")));
+        // the hash still identifies the complete content
+        assertEquals(IndexingPipeline.computeContentHash("locked versions".getBytes()), getContentHash("messages.generated.txt"));
+    }
+
+    @Test
+    public void testContentHashIsGitBlobId() throws Exception {
+        // the ids git hash-object reports for the same content
+        assertEquals("e69de29bb2d1d6434b8b29ae775ad8c2e48c5391", IndexingPipeline.computeContentHash(new byte[0]));
+        assertEquals("ce013625030ba8dba906f756967f9e9ca394464a", IndexingPipeline.computeContentHash("hello\n".getBytes("US-ASCII")));
+    }
+
+    @Test
+    public void testAnalysisDataOfKnownContentIsCopied() throws Exception {
+        repository.setCodeNavigationEnabled(true);
+        configuration.setDeduplicate(true);
+        RecordingDatabaseImpl database = new RecordingDatabaseImpl();
+        database.getContentHashes().add(IndexingPipeline.computeContentHash("known".getBytes()));
+        List<FileIdentifier> files = new LinkedList<FileIdentifier>();
+        files.add(plugin.addFile("a.txt", "known"));
+        files.add(plugin.addFile("b.txt", "unknown"));
+        indexFiles(createPipeline(null, database), files);
+
+        assertEquals(Arrays.asList("a.txt"), database.getCopiedFiles());
+        assertEquals("only the record of the analyzed file is replaced", Arrays.asList("b.txt"), database.getDeletedFiles());
+        assertEquals(IndexingPipeline.computeContentHash("known".getBytes()), getContentHash("a.txt"));
+    }
+
+    @Test
+    public void testKnownContentIsNotAnalyzedAgain() throws Exception {
+        repository.setCodeNavigationEnabled(true);
+        configuration.setAnalysisThreads(1);
+        MockCodeAnalyzerPlugin analyzer = new MockCodeAnalyzerPlugin();
+        pluginLoader.register(CodeAnalyzerPlugin.class, analyzer);
+        List<FileIdentifier> files = new LinkedList<FileIdentifier>();
+        files.add(plugin.addFile("A.java", "class Same {}"));
+        files.add(plugin.addFile("B.java", "class Same {}"));
+        files.add(plugin.addFile("C.java", "class Other {}"));
+        indexFiles(createPipeline(null, new RecordingDatabaseImpl()), files);
+
+        assertEquals(2, analyzer.getAnalyzedFiles());
+    }
+}
@@ -0,0 +1,257 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.indexer.server.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.codesearch.commons.constants.IndexConstants;
+import org.codesearch.commons.configuration.dto.RepositoryDto;
+import org.codesearch.commons.plugins.vcs.FileIdentifier;
+import org.codesearch.commons.plugins.vcs.VersionControlPlugin;
+import org.codesearch.indexer.server.IndexerTestEnvironment;
+import org.codesearch.indexer.server.MockVersionControlPlugin;
+import org.codesearch.indexer.server.manager.IndexWriterManager;
+import org.codesearch.indexer.tasks.RecordingDatabaseImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IndexingTaskTest {
+
+    private IndexerTestEnvironment environment;
+
+    @Before
+    public void setUp() throws Exception {
+        environment = new IndexerTestEnvironment();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        environment.close();
+    }
+
+    private IndexingJournal createJournal(String repositoryName) {
+        return new IndexingJournal(environment.getIndexWriterManager().getIndexLocation(), repositoryName);
+    }
+
+    @Test
+    public void testContentIsIndexedInBothCases() throws Exception {
+        RepositoryDto repository = environment.addRepository("alpha");
+        environment.getPlugin("alpha").addFile("Hello.java", "class HelloWorld {}");
+        environment.runJob(environment.createJobData(false, repository));
+
+        assertEquals(1, environment.getDocumentFrequency("alpha", new Term("content", "HelloWorld")));
+        assertEquals(0, environment.getDocumentFrequency("alpha", new Term("content", "helloworld")));
+        assertEquals(1, environment.getDocumentFrequency("alpha", new Term("content" + IndexConstants.LC_POSTFIX, "helloworld")));
+    }
+
+    @Test
+    public void testChangedFileReplacesItsDocument() throws Exception {
+        RepositoryDto alpha = environment.addRepository("alpha");
+        RepositoryDto beta = environment.addRepository("beta");
+        environment.getPlugin("alpha").addFile("a.txt", "first");
+        environment.getPlugin("beta").addFile("a.txt", "first");
+        environment.runJob(environment.createJobData(false, alpha, beta));
+        environment.getPlugin("alpha").addFile("a.txt", "second");
+        environment.getPlugin("alpha").setRevision("2");
+        environment.runJob(environment.createJobData(false, alpha));
+
+        assertEquals(1, environment.getIndexedCount("alpha", "a.txt"));
+        assertEquals(1, environment.getDocumentFrequency("alpha", new Term("content", "second")));
+        assertEquals("the document of the same path in another repository is kept", 1, environment.getIndexedCount("beta",
+                "a.txt"));
+        // both repositories share the index, only the old content of beta is left
+        assertEquals(1, environment.getDocumentFrequency("alpha", new Term("content", "first")));
+    }
+
+    @Test
+    public void testInterruptedRunIsResumed() throws Exception {
+        environment.getIndexerConfiguration().setBulkImport(false);
+        RepositoryDto repository = environment.addRepository("alpha");
+        MockVersionControlPlugin plugin = environment.getPlugin("alpha");
+        plugin.addFile("a.txt", "a");
+        plugin.addFile("b.txt", "b");
+        createJournal("alpha").start(VersionControlPlugin.UNDEFINED_VERSION, "1", Collections.singletonList("a.txt"));
+        environment.runJob(environment.createJobData(false, repository));
+
+        assertFalse(plugin.getFetchedFiles().contains("a.txt"));
+        assertTrue(plugin.getFetchedFiles().contains("b.txt"));
+        assertEquals("1", environment.getIndexStatusManager().getStatus("alpha"));
+        assertFalse("the journal of a finished run is deleted", createJournal("alpha").load(VersionControlPlugin.UNDEFINED_VERSION));
+    }
+
+    @Test
+    public void testFileDeletedSinceInterruptedRunIsRemovedFromIndex() throws Exception {
+        environment.getIndexerConfiguration().setBulkImport(false);
+        RepositoryDto repository = environment.addRepository("alpha");
+        MockVersionControlPlugin plugin = environment.getPlugin("alpha");
+        // the interrupted run committed a.txt at revision 1
+        IndexWriterManager indexWriterManager = environment.getIndexWriterManager();
+        IndexWriter writer = indexWriterManager.getWriter("alpha");
+        Document document = new Document();
+        document.add(new Field(IndexConstants.INDEX_FIELD_REPOSITORY, "alpha", Field.Store.YES, Field.Index.NOT_ANALYZED));
+        document.add(new Field(IndexConstants.INDEX_FIELD_KEY, IndexingPipeline.createKey("alpha", "a.txt"), Field.Store.YES,
+                Field.Index.NOT_ANALYZED));
+        indexWriterManager.addDocument(writer, document);
+        indexWriterManager.commit(writer);
+        createJournal("alpha").start(VersionControlPlugin.UNDEFINED_VERSION, "1", Collections.singletonList("a.txt"));
+        // a.txt was deleted in revision 2, so it is not part of the changes since the indexed revision
+        plugin.addFile("b.txt", "b");
+        plugin.setRevision("2");
+        plugin.setChangesSinceRevision("1", new FileIdentifier("a.txt", true, repository));
+        environment.runJob(environment.createJobData(false, repository));
+
+        assertEquals(0, environment.getIndexedCount("alpha", "a.txt"));
+        assertEquals(1, environment.getIndexedCount("alpha", "b.txt"));
+        assertEquals("2", environment.getIndexStatusManager().getStatus("alpha"));
+    }
+
+    @Test
+    public void testChangedFileOfInterruptedImportIsIndexedAgain() throws Exception {
+        RepositoryDto repository = environment.addRepository("alpha");
+        MockVersionControlPlugin plugin = environment.getPlugin("alpha");
+        // the interrupted import committed the first version of a.txt at revision 1
+        IndexWriterManager indexWriterManager = environment.getIndexWriterManager();
+        BulkImport bulkImport = new BulkImport(indexWriterManager.getIndexLocation(), "alpha");
+        IndexWriter importWriter = bulkImport.open(false, new WhitespaceAnalyzer(IndexConstants.LUCENE_VERSION), 16,
+                indexWriterManager, 1000);
+        for (String path : Arrays.asList("a.txt", "deleted.txt", "kept.txt")) {
+            Document document = new Document();
+            document.add(new Field(IndexConstants.INDEX_FIELD_REPOSITORY, "alpha", Field.Store.YES, Field.Index.NOT_ANALYZED));
+            document.add(new Field(IndexConstants.INDEX_FIELD_KEY, IndexingPipeline.createKey("alpha", path), Field.Store.YES,
+                    Field.Index.NOT_ANALYZED));
+            importWriter.addDocument(document);
+        }
+        indexWriterManager.commit(importWriter);
+        bulkImport.abort();
+        createJournal("alpha").start(VersionControlPlugin.UNDEFINED_VERSION, "1", Arrays.asList("a.txt", "deleted.txt", "kept.txt"));
+        plugin.addFile("a.txt", "second");
+        plugin.addFile("kept.txt", "kept");
+        plugin.setRevision("2");
+        plugin.setChangesSinceRevision("1", new FileIdentifier("a.txt", false, repository), new FileIdentifier("deleted.txt",
+                true, repository));
+        environment.runJob(environment.createJobData(false, repository));
+
+        assertTrue(plugin.getFetchedFiles().contains("a.txt"));
+        assertEquals(1, environment.getIndexedCount("alpha", "a.txt"));
+        assertEquals(1, environment.getDocumentFrequency("alpha", new Term("content", "second")));
+        assertEquals(0, environment.getIndexedCount("alpha", "deleted.txt"));
+        assertFalse("the import was resumed", plugin.getFetchedFiles().contains("kept.txt"));
+        assertEquals(1, environment.getIndexedCount("alpha", "kept.txt"));
+    }
+
+    @Test
+    public void testJournalOfOtherRevisionIsNotResumed() throws Exception {
+        environment.getIndexerConfiguration().setBulkImport(false);
+        RepositoryDto repository = environment.addRepository("alpha");
+        MockVersionControlPlugin plugin = environment.getPlugin("alpha");
+        plugin.addFile("a.txt", "a");
+        createJournal("alpha").start("5", "6", Collections.singletonList("a.txt"));
+        environment.runJob(environment.createJobData(false, repository));
+
+        assertTrue(plugin.getFetchedFiles().contains("a.txt"));
+        assertEquals(1, environment.getIndexedCount("alpha", "a.txt"));
+    }
+
+    @Test
+    public void testStatusIsRecoveredFromAttachedImport() throws Exception {
+        RepositoryDto repository = environment.addRepository("alpha");
+        environment.getPlugin("alpha").addFile("a.txt", "a");
+        // an import was attached, but the indexer stopped before the status was written
+        IndexWriterManager indexWriterManager = environment.getIndexWriterManager();
+        BulkImport bulkImport = new BulkImport(indexWriterManager.getIndexLocation(), "alpha");
+        IndexWriter importWriter = bulkImport.open(false, new WhitespaceAnalyzer(IndexConstants.LUCENE_VERSION), 16,
+                indexWriterManager, 1000);
+        Document document = new Document();
+        document.add(new Field(IndexConstants.INDEX_FIELD_REPOSITORY, "alpha", Field.Store.YES, Field.Index.NOT_ANALYZED));
+        document.add(new Field(IndexConstants.INDEX_FIELD_KEY, IndexingPipeline.createKey("alpha", "old.txt"), Field.Store.YES,
+                Field.Index.NOT_ANALYZED));
+        importWriter.addDocument(document);
+        bulkImport.attach(indexWriterManager.getWriter("alpha"), VersionControlPlugin.UNDEFINED_VERSION, "1");
+        bulkImport.delete();
+        environment.runJob(environment.createJobData(false, repository));
+
+        assertEquals("1", environment.getIndexStatusManager().getStatus("alpha"));
+        assertEquals("the changes since the attached revision are indexed incrementally", 1, environment.getIndexedCount("alpha",
+                "old.txt"));
+        assertEquals(1, environment.getIndexedCount("alpha", "a.txt"));
+    }
+
+    @Test
+    public void testAnalysisDataOfDeletedFilesIsPurgedAfterImport() throws Exception {
+        RecordingDatabaseImpl database = new RecordingDatabaseImpl();
+        database.getFiles().addAll(Arrays.asList("a.txt", "deleted.txt"));
+        environment.setDatabase(database);
+        RepositoryDto repository = environment.addRepository("alpha");
+        repository.setCodeNavigationEnabled(true);
+        environment.getPlugin("alpha").addFile("a.txt", "a");
+        environment.runJob(environment.createJobData(false, repository));
+
+        assertEquals(1, environment.getIndexedCount("alpha", "a.txt"));
+        assertTrue(database.getDeletedFiles().contains("deleted.txt"));
+    }
+
+    private RepositoryDto indexRenamedFile(RecordingDatabaseImpl database, int similarity) throws Exception {
+        environment.setDatabase(database);
+        RepositoryDto repository = environment.addRepository("alpha");
+        repository.setCodeNavigationEnabled(true);
+        MockVersionControlPlugin plugin = environment.getPlugin("alpha");
+        plugin.addFile("a.txt", "content");
+        environment.runJob(environment.createJobData(false, repository));
+        plugin.clearChanges();
+        database.getDeletedFiles().clear();
+        plugin.renameFile("a.txt", "b.txt", similarity == 100 ? "content" : "changed content", similarity);
+        plugin.setRevision("2");
+        environment.runJob(environment.createJobData(false, repository));
+        return repository;
+    }
+
+    @Test
+    public void testUnchangedRenameMovesAnalysisData() throws Exception {
+        RecordingDatabaseImpl database = new RecordingDatabaseImpl();
+        indexRenamedFile(database, 100);
+
+        assertEquals("2", environment.getIndexStatusManager().getStatus("alpha"));
+        assertEquals(0, environment.getIndexedCount("alpha", "a.txt"));
+        assertEquals(1, environment.getIndexedCount("alpha", "b.txt"));
+        assertEquals(Arrays.asList("a.txt -> b.txt"), database.getMovedFiles());
+        assertFalse(database.getDeletedFiles().contains("a.txt"));
+    }
+
+    @Test
+    public void testChangedRenameDeletesAnalysisDataOfOldPath() throws Exception {
+        RecordingDatabaseImpl database = new RecordingDatabaseImpl();
+        indexRenamedFile(database, 80);
+
+        assertEquals(0, environment.getIndexedCount("alpha", "a.txt"));
+        assertEquals(1, environment.getIndexedCount("alpha", "b.txt"));
+        assertTrue(database.getMovedFiles().isEmpty());
+        assertTrue(database.getDeletedFiles().contains("a.txt"));
+    }
+}
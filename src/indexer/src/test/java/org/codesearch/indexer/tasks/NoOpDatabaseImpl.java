@@ -20,6 +20,7 @@
  */
 package org.codesearch.indexer.tasks;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -95,7 +96,13 @@ public class NoOpDatabaseImpl implements DBAccess {
     }
 
     @Override
-    public void setAnalysisDataForFile(String filePath, String repository, AstNode binaryIndex, List<Usage> usages, List<String> types, List<String> imports) throws DatabaseAccessException {
+    public void setAnalysisDataForFile(String filePath, String repository, AstNode binaryIndex, List<Usage> usages, List<String> types, List<String> imports,
+            String contentHash) throws DatabaseAccessException {
+    }
+
+    @Override
+    public boolean copyAnalysisData(String contentHash, String filePath, String repository) throws DatabaseAccessException {
+        return false;
     }
 
     @Override
@@ -105,4 +112,14 @@ public class NoOpDatabaseImpl implements DBAccess {
     @Override
     public void deleteFile(String filePath, String repository) throws DatabaseAccessException {
     }
+
+    @Override
+    public List<String> getFilesOfRepository(String repository) throws DatabaseAccessException {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean moveFile(String oldPath, String newPath, String repository) throws DatabaseAccessException {
+        return false;
+    }
 }
@@ -0,0 +1,109 @@
+/**
+ * Copyright 2010 David Froehlich   <david.froehlich@businesssoftware.at>,
+ *                Samuel Kogler     <samuel.kogler@gmail.com>,
+ *                Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Codesearch is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Codesearch.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.indexer.tasks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.codesearch.commons.database.DatabaseAccessException;
+import org.codesearch.commons.plugins.vcs.VersionControlPlugin;
+
+/**
+ * Database that records the files whose analysis data was deleted, copied or
+ * moved. It contains the analysis data of the given files and content hashes,
+ * which is at the undefined revision until another one is set.
+ */
+public class RecordingDatabaseImpl extends NoOpDatabaseImpl {
+
+    private List<String> files = Collections.synchronizedList(new ArrayList<String>());
+    private Set<String> contentHashes = Collections.synchronizedSet(new HashSet<String>());
+    private List<String> deletedFiles = Collections.synchronizedList(new ArrayList<String>());
+    private List<String> copiedFiles = Collections.synchronizedList(new ArrayList<String>());
+    private List<String> movedFiles = Collections.synchronizedList(new ArrayList<String>());
+    private String lastAnalyzedRevision = VersionControlPlugin.UNDEFINED_VERSION;
+
+    /**
+     * @return the files of the repository, modifiable
+     */
+    public List<String> getFiles() {
+        return files;
+    }
+
+    /**
+     * @return the content hashes whose analysis data can be copied, modifiable
+     */
+    public Set<String> getContentHashes() {
+        return contentHashes;
+    }
+
+    public List<String> getDeletedFiles() {
+        return deletedFiles;
+    }
+
+    public List<String> getCopiedFiles() {
+        return copiedFiles;
+    }
+
+    /**
+     * @return the moved files as old path and new path separated by " -> "
+     */
+    public List<String> getMovedFiles() {
+        return movedFiles;
+    }
+
+    @Override
+    public void setLastAnalyzedRevisionOfRepository(String repositoryName, String revision) throws DatabaseAccessException {
+        lastAnalyzedRevision = revision;
+    }
+
+    @Override
+    public String getLastAnalyzedRevisionOfRepository(String repositoryName) throws DatabaseAccessException {
+        return lastAnalyzedRevision;
+    }
+
+    @Override
+    public List<String> getFilesOfRepository(String repository) throws DatabaseAccessException {
+        return new ArrayList<String>(files);
+    }
+
+    @Override
+    public void deleteFile(String filePath, String repository) throws DatabaseAccessException {
+        deletedFiles.add(filePath);
+    }
+
+    @Override
+    public boolean copyAnalysisData(String contentHash, String filePath, String repository) throws DatabaseAccessException {
+        if (!contentHashes.contains(contentHash)) {
+            return false;
+        }
+        copiedFiles.add(filePath);
+        return true;
+    }
+
+    @Override
+    public boolean moveFile(String oldPath, String newPath, String repository) throws DatabaseAccessException {
+        movedFiles.add(oldPath + " -> " + newPath);
+        return true;
+    }
+}
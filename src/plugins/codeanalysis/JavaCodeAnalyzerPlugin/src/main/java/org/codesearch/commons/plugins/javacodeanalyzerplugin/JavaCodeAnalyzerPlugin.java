@@ -608,6 +608,12 @@ public class JavaCodeAnalyzerPlugin implements CodeAnalyzerPlugin {
         return "text/x-java-source";
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public String getVersion() {
+        return "1";
+    }
+
     /** {@inheritDoc} */
     @Override
     public List<String> getTypeDeclarations() throws CodeAnalyzerPluginException {
@@ -164,4 +164,10 @@ public class XmlCodeAnalyzerPlugin implements CodeAnalyzerPlugin {
     public String getPurposes() {
         return "application/xml";
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getVersion() {
+        return "1";
+    }
 }
@@ -19,10 +19,15 @@
 package org.codesearch.commons.plugins.vcs;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -108,6 +113,15 @@ public class GitLocalPlugin implements VersionControlPlugin {
      */
     @Override
     public FileDto getFile(FileIdentifier fileIdentifier, String revision) throws VersionControlPluginException, VcsFileNotFoundException {
+        return getFile(fileIdentifier, revision, Long.MAX_VALUE);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The output of git show is drained completely, only the first bytes are kept.
+     */
+    @Override
+    public FileDto getFile(FileIdentifier fileIdentifier, String revision, long maxSize) throws VersionControlPluginException, VcsFileNotFoundException {
         revision = parseRevision(revision);
         String gitIdentifier = revision + ":" + fileIdentifier.getFilePath();
         //Check if file exists
@@ -115,12 +129,14 @@ public class GitLocalPlugin implements VersionControlPlugin {
             throw new VcsFileNotFoundException("File " + fileIdentifier + "@" + revision + " does not exist. Try pulling new changes.");
         }
 
-        byte[] fileContent = executeGitCommand("show", gitIdentifier);
+        BoundedOutputStream content = new BoundedOutputStream(maxSize);
+        executeGitCommand(content, "show", gitIdentifier);
         String lastRevision = StringUtils.chomp(new String(executeGitCommand("log", revision, "-n1", "--pretty=%H", fileIdentifier.getFilePath())));
         String lastAuthor = StringUtils.chomp(new String(executeGitCommand("log", revision, "-n1", "--pretty=%an", fileIdentifier.getFilePath())));
 
         FileDto file = new FileDto();
-        file.setContent(fileContent);
+        file.setContent(content.toByteArray());
+        file.setTruncated(content.isTruncated());
         file.setRepository(currentRepository);
         file.setFilePath(fileIdentifier.getFilePath());
         file.setLastAlteration(lastRevision);
@@ -128,6 +144,20 @@ public class GitLocalPlugin implements VersionControlPlugin {
         return file;
     }
 
+    /**
+     * {@inheritDoc}
+     * Reads the size of the blob with cat-file.
+     */
+    @Override
+    public long getFileSize(FileIdentifier fileIdentifier, String revision) throws VersionControlPluginException {
+        String size = StringUtils.chomp(new String(executeGitCommand("cat-file", "-s", parseRevision(revision) + ":" + fileIdentifier.getFilePath())));
+        try {
+            return Long.parseLong(size);
+        } catch (NumberFormatException ex) {
+            throw new VersionControlPluginException("Invalid file size returned by git: " + size);
+        }
+    }
+
     /**
      * {@inheritDoc} 
      * Does not support black-/whitelist patterns when retrieving changed files.
@@ -135,40 +165,76 @@ public class GitLocalPlugin implements VersionControlPlugin {
     @Override
     public Set<FileIdentifier> getChangedFilesSinceRevision(String revision, List<String> blacklistPatterns, List<String> whitelistPatterns) throws VersionControlPluginException {
         Set<FileIdentifier> files = new HashSet<FileIdentifier>();
-
-        if (revision.equals(VersionControlPlugin.UNDEFINED_VERSION)) {
-            List<String> output = bytesToStringList(executeGitCommand("ls-files"));
-
-            LOG.debug(output.size() + " changed files since commit " + revision);
-
-            FileIdentifier fileIdentifier = null;
-            for (String line : output) {
-                fileIdentifier = new FileIdentifier();
-                fileIdentifier.setFilePath(line);
-                fileIdentifier.setRepository(currentRepository);
-                files.add(fileIdentifier);
+        ChangedFileIterator iterator = iterateChangedFilesSinceRevision(revision, blacklistPatterns, whitelistPatterns);
+        try {
+            while (iterator.hasNext()) {
+                files.add(iterator.next());
             }
-        } else {
-            List<String> output = bytesToStringList(executeGitCommand("diff", revision, "--name-status"));
-
-            LOG.debug(output.size() + " changed files since commit " + revision);
+        } finally {
+            iterator.close();
+        }
+        LOG.debug(files.size() + " changed files since commit " + revision);
+        return files;
+    }
 
-            FileIdentifier fileIdentifier = null;
-            for (String line : output) {
-                char status = line.charAt(0);
-                String path = line.substring(2);
-                fileIdentifier = new FileIdentifier();
-                fileIdentifier.setRepository(currentRepository);
-                fileIdentifier.setFilePath(path);
+    /**
+     * {@inheritDoc}
+     * Reads the output of ls-files or diff while git is still running. Renames are detected by git and
+     * reported with the old path and the similarity of the contents. The sizes of the files are read by a
+     * single cat-file process running alongside.
+     */
+    @Override
+    public ChangedFileIterator iterateChangedFilesSinceRevision(String revision, List<String> blacklistPatterns, List<String> whitelistPatterns) throws VersionControlPluginException {
+        final BlobSizeReader sizeReader = new BlobSizeReader();
+        try {
+            if (revision.equals(VersionControlPlugin.UNDEFINED_VERSION)) {
+                return new ProcessChangedFileIterator(startGitCommand("ls-files")) {
+
+                    @Override
+                    protected FileIdentifier parseLine(String line) {
+                        FileIdentifier file = new FileIdentifier(line, false, currentRepository);
+                        file.setSize(sizeReader.getSize(line));
+                        return file;
+                    }
+
+                    @Override
+                    public void close() {
+                        super.close();
+                        sizeReader.close();
+                    }
+                };
+            }
+            return new ProcessChangedFileIterator(startGitCommand("diff", revision, "--name-status", "-M")) {
+
+                @Override
+                protected FileIdentifier parseLine(String line) {
+                    char status = line.charAt(0);
+                    String[] paths = line.substring(line.indexOf('\t') + 1).split("\t");
+                    FileIdentifier file;
+                    if (status == 'R' && paths.length == 2) {
+                        // R<similarity> <old path> <new path>
+                        file = new FileIdentifier(paths[1], false, currentRepository);
+                        file.setOldPath(paths[0]);
+                        file.setSimilarity(Integer.parseInt(line.substring(1, line.indexOf('\t'))));
+                    } else {
+                        file = new FileIdentifier(paths[0], status == 'D', currentRepository);
+                    }
+                    if (!file.isDeleted()) {
+                        file.setSize(sizeReader.getSize(file.getFilePath()));
+                    }
+                    return file;
+                }
 
-                if (status == 'D') {
-                    fileIdentifier.setDeleted(true);
+                @Override
+                public void close() {
+                    super.close();
+                    sizeReader.close();
                 }
-                files.add(fileIdentifier);
-            }
+            };
+        } catch (VersionControlPluginException ex) {
+            sizeReader.close();
+            throw ex;
         }
-
-        return files;
     }
 
     /**
@@ -179,6 +245,27 @@ public class GitLocalPlugin implements VersionControlPlugin {
         return StringUtils.chomp(new String(executeGitCommand("rev-parse", "HEAD")));
     }
 
+    /**
+     * {@inheritDoc}
+     * Uses ls-remote to retrieve the commit the HEAD of the remote repository points to.
+     */
+    @Override
+    public String getRemoteRevision() throws VersionControlPluginException {
+        byte[] output;
+        if (currentRepository.getUsedAuthentication() instanceof SshAuthentication) {
+            SshAuthentication sa = (SshAuthentication) currentRepository.getUsedAuthentication();
+            String gitLsRemoteCommand = GIT_BINARY_LOCATION + " " + GIT_DEFAULT_ARGUMENTS + " ls-remote origin HEAD";
+            output = executeCommand("/bin/bash", "-c", String.format(sshWrapperCommandTemplate, sa.getSshFilePath(), gitLsRemoteCommand));
+        } else {
+            output = executeGitCommand("ls-remote", "origin", "HEAD");
+        }
+        List<String> lines = bytesToStringList(output);
+        if (lines.isEmpty()) {
+            return null;
+        }
+        return lines.get(0).split("\\s+")[0];
+    }
+
     @Override
     public List<String> getFilesInDirectory(String directoryPath, String revision) throws VersionControlPluginException {
         revision = parseRevision(revision);
@@ -217,15 +304,97 @@ public class GitLocalPlugin implements VersionControlPlugin {
         //TODO add validation logic
     }
 
+    /**
+     * Reads the sizes of the files in HEAD from a running git cat-file --batch-check process, so the sizes
+     * of all changed files are known without starting a process per file.
+     */
+    private class BlobSizeReader {
+
+        private Process process;
+        private Writer input;
+        private BufferedReader output;
+
+        BlobSizeReader() throws VersionControlPluginException {
+            process = startGitCommand("cat-file", "--batch-check");
+            input = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
+            output = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        }
+
+        /**
+         * @param path the path of the file
+         * @return the size of the file, -1 if it could not be read
+         */
+        long getSize(String path) {
+            try {
+                input.write("HEAD:" + path + "\n");
+                input.flush();
+                // <object> blob <size>, or <name> missing
+                String line = output.readLine();
+                if (line != null) {
+                    String[] parts = line.split(" ");
+                    if (parts.length == 3 && parts[1].equals("blob")) {
+                        return Long.parseLong(parts[2]);
+                    }
+                }
+            } catch (IOException ex) {
+                LOG.warn("Could not read the size of " + path + ": " + ex);
+            } catch (NumberFormatException ex) {
+                LOG.warn("Invalid file size returned by git for " + path + ": " + ex);
+            }
+            return -1;
+        }
+
+        void close() {
+            IOUtils.closeQuietly(input);
+            IOUtils.closeQuietly(output);
+            IOUtils.closeQuietly(process.getErrorStream());
+            process.destroy();
+        }
+    }
+
     private byte[] executeGitCommand(String... arguments) throws VersionControlPluginException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        executeGitCommand(output, arguments);
+        return output.toByteArray();
+    }
+
+    private void executeGitCommand(OutputStream output, String... arguments) throws VersionControlPluginException {
         List<String> cmd = new LinkedList<String>();
         cmd.add(GIT_BINARY_LOCATION);
         cmd.add(GIT_DEFAULT_ARGUMENTS);
         Collections.addAll(cmd, arguments);
-        return executeCommand(cmd.toArray(new String[0]));
+        executeCommand(output, cmd.toArray(new String[0]));
+    }
+
+    /**
+     * Starts a git command without waiting for it to finish.
+     * @return the running process
+     */
+    private Process startGitCommand(String... arguments) throws VersionControlPluginException {
+        List<String> cmd = new LinkedList<String>();
+        cmd.add(GIT_BINARY_LOCATION);
+        cmd.add(GIT_DEFAULT_ARGUMENTS);
+        Collections.addAll(cmd, arguments);
+        try {
+            synchronized (this) {
+                processBuilder = new ProcessBuilder();
+                processBuilder.directory(branchDirectory);
+                processBuilder.command(cmd);
+                LOG.debug("Executing command: " + processBuilder.command());
+                return processBuilder.start();
+            }
+        } catch (IOException ex) {
+            throw new VersionControlPluginException("Error executing command: " + ex);
+        }
     }
 
     private byte[] executeCommand(String... commands) throws VersionControlPluginException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        executeCommand(output, commands);
+        return output.toByteArray();
+    }
+
+    private void executeCommand(OutputStream output, String... commands) throws VersionControlPluginException {
         try {
             Process process = null;
 
@@ -236,15 +405,13 @@ public class GitLocalPlugin implements VersionControlPlugin {
                 LOG.debug("Executing command: " + processBuilder.command());
                 process = processBuilder.start();
 
-                byte[] output = IOUtils.toByteArray(process.getInputStream());
+                IOUtils.copy(process.getInputStream(), output);
 
                 process.waitFor();
                 if (process.exitValue() != 0) {
                     throw new VersionControlPluginException("Command returned error code: " + process.exitValue() + "\n    Output: " + IOUtils.toString(process.getErrorStream()));
                 }
                 cleanupProcess(process);
-
-                return output;
             }
         } catch (InterruptedException ex) {
             throw new VersionControlPluginException("Execution of command interrupted by operating system");
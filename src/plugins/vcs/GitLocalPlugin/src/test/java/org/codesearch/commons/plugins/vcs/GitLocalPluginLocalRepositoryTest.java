@@ -0,0 +1,143 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.commons.plugins.vcs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.codesearch.commons.configuration.dto.NoAuthentication;
+import org.codesearch.commons.configuration.dto.RepositoryDto;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link GitLocalPlugin} with a repository cloned from a local
+ * directory.
+ */
+public class GitLocalPluginLocalRepositoryTest {
+
+    private File directory;
+    private File origin;
+    private VersionControlPlugin plugin;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("codesearch", "git");
+        directory.delete();
+        origin = new File(directory, "origin");
+        origin.mkdirs();
+        git("init", "-q");
+        writeFile("a.txt", "first");
+        writeFile("b.txt", "second file");
+        commit();
+        File cacheDirectory = new File(directory, "cache");
+        cacheDirectory.mkdirs();
+        plugin = new GitLocalPlugin();
+        plugin.setCacheDirectory(cacheDirectory.getAbsolutePath());
+        plugin.setRepository(createRepository());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testSizesOfAllFilesAreReported() throws Exception {
+        Map<String, FileIdentifier> changes = iterateChangedFiles(VersionControlPlugin.UNDEFINED_VERSION);
+        assertEquals(2, changes.size());
+        assertEquals(5, changes.get("a.txt").getSize());
+        assertEquals(11, changes.get("b.txt").getSize());
+    }
+
+    @Test
+    public void testSizesOfChangedFilesAreReported() throws Exception {
+        String revision = plugin.getRepositoryRevision();
+        writeFile("a.txt", "first, changed");
+        writeFile("c.txt", "third");
+        new File(origin, "b.txt").delete();
+        commit();
+        plugin.pullChanges();
+
+        Map<String, FileIdentifier> changes = iterateChangedFiles(revision);
+        assertEquals(3, changes.size());
+        assertEquals(14, changes.get("a.txt").getSize());
+        assertEquals(5, changes.get("c.txt").getSize());
+        assertTrue(changes.get("b.txt").isDeleted());
+        assertEquals(-1, changes.get("b.txt").getSize());
+    }
+
+    private Map<String, FileIdentifier> iterateChangedFiles(String revision) throws VersionControlPluginException {
+        Map<String, FileIdentifier> changes = new HashMap<String, FileIdentifier>();
+        ChangedFileIterator iterator = plugin.iterateChangedFilesSinceRevision(revision, Collections.<String> emptyList(),
+                Collections.<String> emptyList());
+        try {
+            while (iterator.hasNext()) {
+                FileIdentifier file = iterator.next();
+                changes.put(file.getFilePath(), file);
+            }
+        } finally {
+            iterator.close();
+        }
+        return changes;
+    }
+
+    private RepositoryDto createRepository() {
+        RepositoryDto repository = new RepositoryDto();
+        repository.setName("local-test-repo");
+        repository.setUrl(origin.getAbsolutePath());
+        repository.setVersionControlSystem("GIT");
+        repository.setCodeNavigationEnabled(false);
+        repository.setUsedAuthentication(new NoAuthentication());
+        repository.setWhitelistEntries(new LinkedList<String>());
+        repository.setBlacklistEntries(new LinkedList<String>());
+        repository.setRepositoryGroups(new LinkedList<String>());
+        return repository;
+    }
+
+    private void writeFile(String path, String content) throws IOException {
+        FileUtils.writeStringToFile(new File(origin, path), content);
+    }
+
+    private void commit() throws Exception {
+        git("add", "-A");
+        git("-c", "user.name=test", "-c", "user.email=test@example.com", "commit", "-q", "-m", "test");
+    }
+
+    private void git(String... arguments) throws Exception {
+        String[] command = new String[arguments.length + 1];
+        command[0] = "git";
+        System.arraycopy(arguments, 0, command, 1, arguments.length);
+        Process process = new ProcessBuilder(command).directory(origin).redirectErrorStream(true).start();
+        String output = IOUtils.toString(process.getInputStream());
+        if (process.waitFor() != 0) {
+            throw new IOException("git " + arguments[0] + " failed: " + output);
+        }
+    }
+}
@@ -20,9 +20,11 @@ package org.codesearch.commons.plugins.vcs;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -93,16 +95,27 @@ public class HgLocalPlugin implements VersionControlPlugin {
      */
     @Override
     public FileDto getFile(FileIdentifier fileIdentifier, String revision) throws VersionControlPluginException {
+        return getFile(fileIdentifier, revision, Long.MAX_VALUE);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The output of hg cat is drained completely, only the first bytes are kept.
+     */
+    @Override
+    public FileDto getFile(FileIdentifier fileIdentifier, String revision, long maxSize) throws VersionControlPluginException {
         if (revision == null || revision.isEmpty()) {
             revision = ".";
         }
-        byte[] fileContent = executeHgCommand("cat", "-r " + revision, fileIdentifier.getFilePath());
+        BoundedOutputStream content = new BoundedOutputStream(maxSize);
+        executeHgCommand(content, "cat", "-r " + revision, fileIdentifier.getFilePath());
         String[] logEntry = new String(executeHgCommand("log", "-l 1", "--template \"{node}$$${author}\"", fileIdentifier.getFilePath())).split("$$$");
         String lastRevision = logEntry[0];
         String lastAuthor = logEntry[1];
 
         FileDto file = new FileDto();
-        file.setContent(fileContent);
+        file.setContent(content.toByteArray());
+        file.setTruncated(content.isTruncated());
         file.setRepository(currentRepository);
         file.setFilePath(fileIdentifier.getFilePath());
         file.setLastAlteration(lastRevision);
@@ -110,6 +123,15 @@ public class HgLocalPlugin implements VersionControlPlugin {
         return file;
     }
 
+    /**
+     * {@inheritDoc}
+     * Hg can not report the size without reading the content, so the size is never known.
+     */
+    @Override
+    public long getFileSize(FileIdentifier fileIdentifier, String revision) {
+        return -1;
+    }
+
     /**
      * {@inheritDoc} 
      * Does not support black-/whitelist patterns when retrieving changed files.
@@ -117,40 +139,55 @@ public class HgLocalPlugin implements VersionControlPlugin {
     @Override
     public Set<FileIdentifier> getChangedFilesSinceRevision(String revision, List<String> blacklistPatterns, List<String> whitelistPatterns) throws VersionControlPluginException {
         Set<FileIdentifier> files = new HashSet<FileIdentifier>();
+        ChangedFileIterator iterator = iterateChangedFilesSinceRevision(revision, blacklistPatterns, whitelistPatterns);
+        try {
+            while (iterator.hasNext()) {
+                files.add(iterator.next());
+            }
+        } finally {
+            iterator.close();
+        }
+        LOG.debug(files.size() + " changed files since revision " + revision);
+        return files;
+    }
 
+    /**
+     * {@inheritDoc}
+     * Reads the output of manifest or status while hg is still running. Hg prints the source of copied and
+     * renamed files below the added file, they are reported as copies since the removal of the source is
+     * reported separately.
+     */
+    @Override
+    public ChangedFileIterator iterateChangedFilesSinceRevision(String revision, List<String> blacklistPatterns, List<String> whitelistPatterns) throws VersionControlPluginException {
         if (revision.equals("0")) {
-            List<String> output = bytesToStringList(executeHgCommand("manifest"));
+            return new ProcessChangedFileIterator(startHgCommand("manifest")) {
 
-            LOG.debug(output.size() + " changed files since revision " + revision);
-
-            FileIdentifier fileIdentifier = null;
-            for (String line : output) {
-                fileIdentifier = new FileIdentifier();
-                fileIdentifier.setFilePath(line);
-                fileIdentifier.setRepository(currentRepository);
-                files.add(fileIdentifier);
-            }
-        } else {
-            List<String> output = bytesToStringList(executeHgCommand("status", "--rev " + revision));
-
-            LOG.debug(output.size() + " changed files since revision " + revision);
+                @Override
+                protected FileIdentifier parseLine(String line) {
+                    return new FileIdentifier(line, false, currentRepository);
+                }
+            };
+        }
+        return new ProcessChangedFileIterator(startHgCommand("status", "--rev " + revision, "-C")) {
 
-            FileIdentifier fileIdentifier = null;
-            for (String line : output) {
+            @Override
+            protected FileIdentifier parseLine(String line) {
                 char status = line.charAt(0);
                 String path = line.substring(2);
-                fileIdentifier = new FileIdentifier();
-                fileIdentifier.setRepository(currentRepository);
-                fileIdentifier.setFilePath(path);
+                return new FileIdentifier(path, status == 'R', currentRepository);
+            }
 
-                if (status == 'R') {
-                    fileIdentifier.setDeleted(true);
-                }
-                files.add(fileIdentifier);
+            @Override
+            protected boolean isContinuationLine(String line) {
+                return line.startsWith("  ");
             }
-        }
 
-        return files;
+            @Override
+            protected void parseContinuationLine(FileIdentifier file, String line) {
+                file.setOldPath(line.substring(2));
+                file.setCopied(true);
+            }
+        };
     }
 
     /**
@@ -158,7 +195,17 @@ public class HgLocalPlugin implements VersionControlPlugin {
      */
     @Override
     public String getRepositoryRevision() throws VersionControlPluginException {
-        return new String(executeHgCommand("hg log -l 1 --template \"{node}\""));
+        return new String(executeHgCommand("log", "-l", "1", "--template", "{node}")).trim();
+    }
+
+    /**
+     * {@inheritDoc}
+     * Uses identify to retrieve the full node id of the tip of the default remote repository.
+     */
+    @Override
+    public String getRemoteRevision() throws VersionControlPluginException {
+        String output = new String(executeHgCommand("identify", "--debug", "--id", "default")).trim();
+        return output.isEmpty() ? null : output;
     }
 
     /**
@@ -207,7 +254,35 @@ public class HgLocalPlugin implements VersionControlPlugin {
         //TODO add validation logic
     }
 
+    /**
+     * Starts a hg command without waiting for it to finish.
+     * @return the running process
+     */
+    private Process startHgCommand(String... arguments) throws VersionControlPluginException {
+        List<String> command = new LinkedList<String>();
+        command.add(HG_BINARY_LOCATION);
+        command.add(HG_DEFAULT_ARGUMENTS);
+        command.addAll(Arrays.asList(arguments));
+        try {
+            synchronized (this) {
+                processBuilder = new ProcessBuilder();
+                processBuilder.directory(branchDirectory);
+                processBuilder.command(command);
+                LOG.trace("Executing hg command: " + processBuilder.command());
+                return processBuilder.start();
+            }
+        } catch (IOException ex) {
+            throw new VersionControlPluginException("Error executing hg command: " + ex);
+        }
+    }
+
     private byte[] executeHgCommand(String... arguments) throws VersionControlPluginException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        executeHgCommand(output, arguments);
+        return output.toByteArray();
+    }
+
+    private void executeHgCommand(OutputStream output, String... arguments) throws VersionControlPluginException {
         try {
             List<String> command = new LinkedList<String>();
             command.add(HG_BINARY_LOCATION);
@@ -223,15 +298,13 @@ public class HgLocalPlugin implements VersionControlPlugin {
                 LOG.trace("Executing hg command: " + processBuilder.command());
                 process = processBuilder.start();
 
-                byte[] output = IOUtils.toByteArray(process.getInputStream());
+                IOUtils.copy(process.getInputStream(), output);
 
                 process.waitFor();
                 if (process.exitValue() != 0) {
                     throw new VersionControlPluginException("Hg returned error code: " + process.exitValue() + "\n   Output: " + IOUtils.toString(process.getErrorStream()));
                 }
                 cleanupProcess(process);
-
-                return output;
             }
         } catch (InterruptedException ex) {
             throw new VersionControlPluginException("Execution of hg interrupted by operating system");
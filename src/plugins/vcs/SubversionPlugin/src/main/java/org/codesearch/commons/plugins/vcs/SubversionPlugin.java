@@ -18,13 +18,14 @@
  */
 package org.codesearch.commons.plugins.vcs;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -37,9 +38,12 @@ import org.codesearch.commons.configuration.dto.NoAuthentication;
 import org.codesearch.commons.configuration.dto.RepositoryDto;
 import org.codesearch.commons.configuration.dto.SshAuthentication;
 import org.tmatesoft.svn.core.ISVNDirEntryHandler;
+import org.tmatesoft.svn.core.ISVNLogEntryHandler;
 import org.tmatesoft.svn.core.SVNDepth;
 import org.tmatesoft.svn.core.SVNDirEntry;
 import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNLogEntryPath;
 import org.tmatesoft.svn.core.SVNNodeKind;
 import org.tmatesoft.svn.core.SVNProperties;
 import org.tmatesoft.svn.core.SVNProperty;
@@ -111,6 +115,15 @@ public class SubversionPlugin implements VersionControlPlugin {
     @Override
     public FileDto getFile(FileIdentifier identifier, String revision)
             throws VersionControlPluginException, VcsFileNotFoundException {
+        return getFile(identifier, revision, Long.MAX_VALUE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public FileDto getFile(FileIdentifier identifier, String revision, long maxSize)
+            throws VersionControlPluginException, VcsFileNotFoundException {
         try {
             String filePath = identifier.getFilePath();
             LOG.debug("Retrieving and checking file: " + filePath);
@@ -119,16 +132,17 @@ public class SubversionPlugin implements VersionControlPlugin {
             if (nodeKind != SVNNodeKind.FILE) {
                 throw new VcsFileNotFoundException("The file is either a folder or has been deleted");
             }
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            BoundedOutputStream content = new BoundedOutputStream(maxSize);
 
             SVNProperties properties = new SVNProperties();
-            getSvnRepo().getFile(filePath, Long.parseLong(revision), properties, baos);
+            getSvnRepo().getFile(filePath, Long.parseLong(revision), properties, content);
             boolean binary = !SVNProperty.isTextMimeType(properties.getStringValue(SVNProperty.MIME_TYPE));
             String lastAuthor = properties.getStringValue(SVNProperty.LAST_AUTHOR);
             String lastAlteration = properties.getStringValue(SVNProperty.COMMITTED_REVISION);
             fileDto.setLastAuthor(lastAuthor);
             fileDto.setLastAlteration(lastAlteration);
-            fileDto.setContent(baos.toByteArray());
+            fileDto.setContent(content.toByteArray());
+            fileDto.setTruncated(content.isTruncated());
             fileDto.setBinary(binary);
             fileDto.setFilePath(filePath);
             fileDto.setRepository(repository);
@@ -144,6 +158,27 @@ public class SubversionPlugin implements VersionControlPlugin {
     @Override
     public Set<FileIdentifier> getChangedFilesSinceRevision(String revision, List<String> blacklistPatterns,
             List<String> whitelistPatterns) throws VersionControlPluginException {
+        Set<FileIdentifier> fileIdentifiers = new HashSet<FileIdentifier>();
+        ChangedFileIterator iterator = iterateChangedFilesSinceRevision(revision, blacklistPatterns, whitelistPatterns);
+        try {
+            while (iterator.hasNext()) {
+                fileIdentifiers.add(iterator.next());
+            }
+        } finally {
+            iterator.close();
+        }
+        return fileIdentifiers;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The initial listing walks the repository one directory at a time. The changes since a revision are
+     * reported by a callback of SVNKit, so they are collected before they are returned. The copy sources of
+     * added files are read from the log, a file whose source was deleted is reported as renamed.
+     */
+    @Override
+    public ChangedFileIterator iterateChangedFilesSinceRevision(String revision, List<String> blacklistPatterns,
+            List<String> whitelistPatterns) throws VersionControlPluginException {
         List<Pattern> compiledBlacklist = new LinkedList<Pattern>();
         List<Pattern> compiledWhitelist = new LinkedList<Pattern>();
         for (String s : blacklistPatterns) {
@@ -152,27 +187,119 @@ public class SubversionPlugin implements VersionControlPlugin {
         for (String s : whitelistPatterns) {
             compiledWhitelist.add(Pattern.compile(s));
         }
-        Set<FileIdentifier> fileIdentifiers = new HashSet<FileIdentifier>();
         try {
             if (revision.equals(VersionControlPlugin.UNDEFINED_VERSION)) {
-                if (shouldFileBeIncluded(entryPoint, compiledBlacklist, compiledWhitelist)) {
-                    listEntries(entryPoint, fileIdentifiers, compiledBlacklist, compiledWhitelist);
-                }
+                return new DirectoryListingIterator(compiledBlacklist, compiledWhitelist);
             } else {
+                Set<FileIdentifier> fileIdentifiers = new HashSet<FileIdentifier>();
+                Set<String> addedFiles = new HashSet<String>();
                 ISVNOptions options = SVNWCUtil.createDefaultOptions(true);
                 SVNDiffClient diffClient = new SVNDiffClient(getSvnRepo().getAuthenticationManager(), options);
                 diffClient.doDiffStatus(getSvnRepo().getLocation(), SVNRevision.create(Long.parseLong(revision)),
                     getSvnRepo().getLocation(), SVNRevision.HEAD, SVNDepth.INFINITY, true, new DiffStatusHandler(
-                        fileIdentifiers));
+                        fileIdentifiers, addedFiles));
+                if (!addedFiles.isEmpty()) {
+                    detectCopies(fileIdentifiers, addedFiles, Long.parseLong(revision));
+                }
+                return new CollectionIterator(fileIdentifiers);
             }
         } catch (NullPointerException e) {
             throw new VersionControlPluginException("No repository specified", e);
         } catch (SVNException ex) {
-            return fileIdentifiers;
+            throw new VersionControlPluginException("Could not retrieve changed files: " + ex);
         } catch (NumberFormatException ex) {
             throw new VersionControlPluginException("Invalid revision specifed", ex);
         }
-        return fileIdentifiers;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Reads the size from the directory entry of the file.
+     */
+    @Override
+    public long getFileSize(FileIdentifier identifier, String revision) throws VersionControlPluginException {
+        try {
+            SVNDirEntry entry = getSvnRepo().info(identifier.getFilePath(), Long.parseLong(revision));
+            if (entry == null || entry.getKind() != SVNNodeKind.FILE) {
+                return -1;
+            }
+            return entry.getSize();
+        } catch (SVNException ex) {
+            throw new VersionControlPluginException(ex.toString());
+        }
+    }
+
+    /**
+     * Sets the old path of the added files that were copied since the given revision. Copies of directories
+     * apply to all files below them.
+     */
+    private void detectCopies(Set<FileIdentifier> fileIdentifiers, Set<String> addedFiles, long revision)
+            throws SVNException {
+        long latestRevision = getSvnRepo().getLatestRevision();
+        if (revision >= latestRevision) {
+            return;
+        }
+        // pairs of target and source paths in the order of the revisions
+        final List<String[]> copies = new LinkedList<String[]>();
+        getSvnRepo().log(new String[] {""}, revision + 1, latestRevision, true, false, new ISVNLogEntryHandler() {
+
+            @Override
+            public void handleLogEntry(SVNLogEntry logEntry) throws SVNException {
+                for (Object o : logEntry.getChangedPaths().values()) {
+                    SVNLogEntryPath entryPath = (SVNLogEntryPath)o;
+                    if (entryPath.getCopyPath() != null) {
+                        copies.add(new String[] {entryPath.getPath(), entryPath.getCopyPath()});
+                    }
+                }
+            }
+        });
+        if (copies.isEmpty()) {
+            return;
+        }
+        Set<String> deletedFiles = new HashSet<String>();
+        for (FileIdentifier file : fileIdentifiers) {
+            if (file.isDeleted()) {
+                deletedFiles.add(file.getFilePath());
+            }
+        }
+        Set<FileIdentifier> deletedSources = new HashSet<FileIdentifier>();
+        for (FileIdentifier file : fileIdentifiers) {
+            if (!addedFiles.contains(file.getFilePath())) {
+                continue;
+            }
+            String oldPath = getCopySource(file.getFilePath(), copies);
+            if (oldPath != null && !oldPath.equals(file.getFilePath())) {
+                file.setOldPath(oldPath);
+                // the deletion of a copied file is part of its rename
+                file.setCopied(!deletedFiles.contains(oldPath));
+                if (!file.isCopied()) {
+                    deletedSources.add(new FileIdentifier(oldPath, true, repository));
+                }
+            }
+        }
+        fileIdentifiers.removeAll(deletedSources);
+    }
+
+    /**
+     * Follows the copies back to the path the file had before them.
+     *
+     * @return the old path of the file relative to the entry point, null if it was copied from outside of it
+     */
+    private String getCopySource(String path, List<String[]> copies) {
+        String absolutePath = SVNPathUtil.append(StringUtils.isBlank(entryPoint) ? "/" : entryPoint, path);
+        for (ListIterator<String[]> iter = copies.listIterator(copies.size()); iter.hasPrevious();) {
+            String[] copy = iter.previous();
+            if (absolutePath.equals(copy[0])) {
+                absolutePath = copy[1];
+            } else if (absolutePath.startsWith(copy[0] + "/")) {
+                absolutePath = copy[1] + absolutePath.substring(copy[0].length());
+            }
+        }
+        String root = StringUtils.isBlank(entryPoint) ? "/" : entryPoint + "/";
+        if (!absolutePath.startsWith(root)) {
+            return null;
+        }
+        return absolutePath.substring(root.length());
     }
 
     /**
@@ -187,6 +314,15 @@ public class SubversionPlugin implements VersionControlPlugin {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * The repository revision is always read from the server, so this is the same as {@link #getRepositoryRevision()}.
+     */
+    @Override
+    public String getRemoteRevision() throws VersionControlPluginException {
+        return getRepositoryRevision();
+    }
+
     @Override
     public List<String> getFilesInDirectory(String directoryPath, String revision) throws VersionControlPluginException {
         List<String> fileNames = new LinkedList<String>();
@@ -209,29 +345,6 @@ public class SubversionPlugin implements VersionControlPlugin {
         // Does not need local cache directory.
     }
 
-    private void listEntries(String path, Set<FileIdentifier> identifiers, List<Pattern> blacklistPatterns,
-            List<Pattern> whitelistPatterns) throws SVNException {
-        Collection entries = getSvnRepo().getDir(path, -1, null, (Collection)null);
-        Iterator iterator = entries.iterator();
-        while (iterator.hasNext()) {
-            boolean checkFile = true;
-            SVNDirEntry entry = (SVNDirEntry)iterator.next();
-            String fileUrl = path.equals("") ? entry.getName() : path + "/" + entry.getName();
-
-            if (shouldFileBeIncluded(fileUrl, blacklistPatterns, whitelistPatterns)) {
-                if (entry.getKind() == SVNNodeKind.DIR) {
-                    listEntries(fileUrl, identifiers, blacklistPatterns, whitelistPatterns);
-                } else if (entry.getKind() == SVNNodeKind.FILE) {
-                    String replacedUrl = fileUrl;
-                    if (StringUtils.isNotBlank(entryPoint)) {
-                        replacedUrl = fileUrl.replace(entryPoint + "/", "");
-                    }
-                    identifiers.add(new FileIdentifier(replacedUrl, false, repository));
-                }
-            }
-        }
-    }
-
     private boolean shouldFileBeIncluded(String fileUrl, List<Pattern> blacklistPatterns,
             List<Pattern> whitelistPatterns) {
         boolean matchesElementOnWhitelist = false;
@@ -321,12 +434,115 @@ public class SubversionPlugin implements VersionControlPlugin {
         getSvnRepo().testConnection();
     }
 
+    /**
+     * Lists all files of the repository, reading one directory at a time.
+     */
+    private class DirectoryListingIterator implements ChangedFileIterator {
+
+        private List<Pattern> blacklistPatterns;
+        private List<Pattern> whitelistPatterns;
+        /**
+         * The directories that still have to be listed.
+         */
+        private LinkedList<String> pendingDirectories = new LinkedList<String>();
+        /**
+         * The files of the listed directories that were not returned yet.
+         */
+        private LinkedList<FileIdentifier> pendingFiles = new LinkedList<FileIdentifier>();
+
+        DirectoryListingIterator(List<Pattern> blacklistPatterns, List<Pattern> whitelistPatterns) {
+            this.blacklistPatterns = blacklistPatterns;
+            this.whitelistPatterns = whitelistPatterns;
+            if (shouldFileBeIncluded(entryPoint, blacklistPatterns, whitelistPatterns)) {
+                pendingDirectories.add(entryPoint);
+            }
+        }
+
+        @Override
+        public boolean hasNext() throws VersionControlPluginException {
+            while (pendingFiles.isEmpty() && !pendingDirectories.isEmpty()) {
+                try {
+                    listDirectory(pendingDirectories.removeFirst());
+                } catch (SVNException ex) {
+                    throw new VersionControlPluginException("Could not list directory: " + ex);
+                }
+            }
+            return !pendingFiles.isEmpty();
+        }
+
+        @Override
+        public FileIdentifier next() throws VersionControlPluginException {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return pendingFiles.removeFirst();
+        }
+
+        @Override
+        public void close() {
+            pendingDirectories.clear();
+            pendingFiles.clear();
+        }
+
+        private void listDirectory(String path) throws SVNException {
+            Collection entries = getSvnRepo().getDir(path, -1, null, (Collection)null);
+            // subdirectories are listed before the siblings of this directory
+            List<String> subDirectories = new LinkedList<String>();
+            Iterator iterator = entries.iterator();
+            while (iterator.hasNext()) {
+                SVNDirEntry entry = (SVNDirEntry)iterator.next();
+                String fileUrl = path.equals("") ? entry.getName() : path + "/" + entry.getName();
+
+                if (shouldFileBeIncluded(fileUrl, blacklistPatterns, whitelistPatterns)) {
+                    if (entry.getKind() == SVNNodeKind.DIR) {
+                        subDirectories.add(fileUrl);
+                    } else if (entry.getKind() == SVNNodeKind.FILE) {
+                        String replacedUrl = fileUrl;
+                        if (StringUtils.isNotBlank(entryPoint)) {
+                            replacedUrl = fileUrl.replace(entryPoint + "/", "");
+                        }
+                        pendingFiles.add(new FileIdentifier(replacedUrl, false, repository));
+                    }
+                }
+            }
+            pendingDirectories.addAll(0, subDirectories);
+        }
+    }
+
+    /**
+     * Returns already collected files.
+     */
+    private static class CollectionIterator implements ChangedFileIterator {
+
+        private Iterator<FileIdentifier> iterator;
+
+        CollectionIterator(Collection<FileIdentifier> files) {
+            this.iterator = files.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public FileIdentifier next() {
+            return iterator.next();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
     private class DiffStatusHandler implements ISVNDiffStatusHandler {
 
         private Set<FileIdentifier> fileIdentifiers;
+        private Set<String> addedFiles;
 
-        public DiffStatusHandler(Set<FileIdentifier> fileIdentifiers) {
+        public DiffStatusHandler(Set<FileIdentifier> fileIdentifiers, Set<String> addedFiles) {
             this.fileIdentifiers = fileIdentifiers;
+            this.addedFiles = addedFiles;
         }
 
         @Override
@@ -334,6 +550,9 @@ public class SubversionPlugin implements VersionControlPlugin {
             if (diffStatus.getKind() == SVNNodeKind.FILE) {
                 boolean deleted = diffStatus.getModificationType() == SVNStatusType.STATUS_DELETED;
                 fileIdentifiers.add(new FileIdentifier(diffStatus.getPath(), deleted, repository));
+                if (diffStatus.getModificationType() == SVNStatusType.STATUS_ADDED) {
+                    addedFiles.add(diffStatus.getPath());
+                }
             }
         }
     }
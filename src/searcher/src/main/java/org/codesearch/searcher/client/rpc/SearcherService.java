@@ -21,15 +21,16 @@
 
 package org.codesearch.searcher.client.rpc;
 
-import java.util.List;
 import java.util.Set;
 
 import org.codesearch.searcher.shared.FileDto;
 import org.codesearch.searcher.shared.JumpLocation;
 import org.codesearch.searcher.shared.SearchResultDto;
+import org.codesearch.searcher.shared.SearchResultPage;
 import org.codesearch.searcher.shared.SearchType;
 import org.codesearch.searcher.shared.SearchViewData;
 import org.codesearch.searcher.shared.exception.SearcherServiceException;
+import org.codesearch.searcher.shared.exception.StaleCursorException;
 
 import com.google.gwt.user.client.rpc.RemoteService;
 import com.google.gwt.user.client.rpc.RemoteServiceRelativePath;
@@ -41,16 +42,18 @@ import com.google.gwt.user.client.rpc.RemoteServiceRelativePath;
 @RemoteServiceRelativePath("../gwt.rpc")
 public interface SearcherService extends RemoteService {
     /**
-     * Executes a lucene search on the server and returns the results as a {@link List} of {@link SearchResultDto}.
+     * Executes a lucene search on the server and returns a page of the results as a {@link SearchResultPage}.
      * @param query The given search query.
      * @param caseSensitive Whether the search should be case sensitive.
      * @param searchType Whether the selection consists of repositories or repository groups
      * @param selection The selected repositories or repository groups that are used for filtering
-     * @param maxResults The maximum number of results
-     * @return The results as a {@link List} of {@link SearchResultDto}.
+     * @param pageSize The maximum number of results on the page
+     * @param cursor The cursor of the previous page, null for the first page
+     * @return The {@link SearchResultPage} containing the results and the cursor of the next page.
+     * @throws StaleCursorException If the index was refreshed since the cursor was created.
      * @throws SearcherServiceException If an exception occurs on the server.
      */
-    List<SearchResultDto> doSearch(String query, boolean caseSensitive, SearchType searchType, Set<String> selection, int maxResults) throws SearcherServiceException;
+    SearchResultPage doSearch(String query, boolean caseSensitive, SearchType searchType, Set<String> selection, int pageSize, String cursor) throws SearcherServiceException;
 
     /**
      * Returns the data needed by the SearchView
@@ -18,12 +18,11 @@
  */
 package org.codesearch.searcher.client.rpc;
 
-import java.util.List;
 import java.util.Set;
 
 import org.codesearch.searcher.shared.FileDto;
 import org.codesearch.searcher.shared.JumpLocation;
-import org.codesearch.searcher.shared.SearchResultDto;
+import org.codesearch.searcher.shared.SearchResultPage;
 import org.codesearch.searcher.shared.SearchType;
 import org.codesearch.searcher.shared.SearchViewData;
 
@@ -32,7 +31,7 @@ import com.google.gwt.user.client.rpc.AsyncCallback;
 public interface SearcherServiceAsync {
 
     void doSearch(String query, boolean caseSensitive, SearchType searchType,
-            Set<String> selection, int maxResults, AsyncCallback<List<SearchResultDto>> callback);
+            Set<String> selection, int pageSize, String cursor, AsyncCallback<SearchResultPage> callback);
 
     void getSearchViewData(AsyncCallback<SearchViewData> callback);
 
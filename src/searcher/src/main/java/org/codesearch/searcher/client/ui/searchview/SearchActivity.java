@@ -18,15 +18,17 @@
  */
 package org.codesearch.searcher.client.ui.searchview;
 
-import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.codesearch.searcher.client.ClientFactory;
 import org.codesearch.searcher.client.rpc.SearcherService;
 import org.codesearch.searcher.client.rpc.SearcherServiceAsync;
-import org.codesearch.searcher.shared.SearchResultDto;
+import org.codesearch.searcher.shared.SearchResultPage;
+import org.codesearch.searcher.shared.SearchType;
 import org.codesearch.searcher.shared.SearchViewData;
+import org.codesearch.searcher.shared.exception.StaleCursorException;
 
 import com.google.gwt.activity.shared.AbstractActivity;
 import com.google.gwt.core.client.GWT;
@@ -48,6 +50,18 @@ public class SearchActivity extends AbstractActivity implements SearchView.Prese
     private SearchView searchView;
     private SearcherServiceAsync searcherServiceAsync = GWT.create(SearcherService.class);
     private SearchPlace searchPlace;
+    // the parameters of the current search, used to load further pages
+    private String query;
+    private boolean caseSensitive;
+    private SearchType searchType;
+    private Set<String> selection;
+    private int pageSize;
+    /** the cursor of the next page, null if all results are loaded */
+    private String cursor;
+    private int loadedResults;
+    private boolean loading;
+    /** numbers the searches, responses to requests of older searches are ignored */
+    private int searchSequence;
 
     public SearchActivity(ClientFactory clientFactory, SearchPlace searchPlace) {
         this.clientFactory = clientFactory;
@@ -89,16 +103,46 @@ public class SearchActivity extends AbstractActivity implements SearchView.Prese
         goTo(new SearchPlace(searchView.getSearchBox().getValue(), searchView.getSearchType(), searchView.getSelection(), searchView.getMaxResults()));
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void loadMoreResults() {
+        if (cursor != null && !loading) {
+            LOG.log(Level.INFO, "Loading more results");
+            loading = true;
+            searcherServiceAsync.doSearch(query, caseSensitive, searchType, selection, pageSize, cursor, new DoSearchHandler(true,
+                    false));
+        }
+    }
+
     private void search() {
-        String query = searchView.getSearchBox().getValue();
+        query = searchView.getSearchBox().getValue();
         if (searchView.isInitialized() && !query.trim().isEmpty()) {
             LOG.log(Level.INFO, "Executing search");
-
-            searcherServiceAsync.doSearch(query, searchView.getCaseSensitive().getValue(),
-                    searchView.getSearchType(), searchView.getSelection(), searchView.getMaxResults(), new DoSearchHandler());
+            caseSensitive = searchView.getCaseSensitive().getValue();
+            searchType = searchView.getSearchType();
+            selection = searchView.getSelection();
+            pageSize = searchView.getMaxResults();
+            runSearch(false);
         }
     }
 
+    /**
+     * Retrieves the first page of the current search.
+     *
+     * @param restarted whether the search is run again because the index
+     *            changed while its results were paged
+     */
+    private void runSearch(boolean restarted) {
+        cursor = null;
+        loadedResults = 0;
+        loading = true;
+        searchSequence++;
+        searcherServiceAsync.doSearch(query, caseSensitive, searchType, selection, pageSize, null, new DoSearchHandler(false,
+                restarted));
+    }
+
     private void getData() {
         searcherServiceAsync.getSearchViewData(new AsyncCallback<SearchViewData>() {
 
@@ -130,29 +174,70 @@ public class SearchActivity extends AbstractActivity implements SearchView.Prese
     /**
      * Handles calls to the doSearch RPC method.
      */
-    private class DoSearchHandler implements AsyncCallback<List<SearchResultDto>> {
+    private class DoSearchHandler implements AsyncCallback<SearchResultPage> {
+
+        /** whether the page is appended to the displayed results */
+        private boolean append;
+        /** whether the search was run again because the index changed */
+        private boolean restarted;
+        /** the number of the search the request belongs to */
+        private int sequence = searchSequence;
+
+        public DoSearchHandler(boolean append, boolean restarted) {
+            this.append = append;
+            this.restarted = restarted;
+        }
 
         /**
          * {@inheritDoc}
          */
         @Override
         public void onFailure(Throwable caught) {
+            if (sequence != searchSequence) {
+                return;
+            }
+            loading = false;
+            if (append && caught instanceof StaleCursorException) {
+                // the loaded pages do not fit together with the following ones
+                LOG.log(Level.INFO, "The index changed, running the search again");
+                runSearch(true);
+                return;
+            }
             Window.alert("Exception calling the search service on the server:\n" + caught);
-            searchView.getResultsView().setVisible(false);
+            if (!append) {
+                searchView.getResultsView().setVisible(false);
+            }
         }
 
         /**
          * {@inheritDoc}
          */
         @Override
-        public void onSuccess(List<SearchResultDto> resultList) {
-            if (resultList != null) {
-                searchView.setResultStatusMessage(resultList.size() + " results found.");
-                if (!resultList.isEmpty()) {
-                    searchView.setSearchResults(resultList);
+        public void onSuccess(SearchResultPage page) {
+            if (sequence != searchSequence) {
+                LOG.log(Level.INFO, "Ignoring the results of a previous search");
+                return;
+            }
+            loading = false;
+            if (page != null) {
+                cursor = page.getCursor();
+                loadedResults += page.getResults().size();
+                String status = restarted ? "The results changed, the search was run again. " : "";
+                if (cursor == null) {
+                    searchView.setResultStatusMessage(status + loadedResults + " results found.");
+                } else {
+                    searchView.setResultStatusMessage(status + loadedResults + " of " + page.getTotalHits() + " results loaded.");
+                }
+                if (append) {
+                    searchView.addSearchResults(page.getResults());
+                } else if (!page.getResults().isEmpty()) {
+                    searchView.setSearchResults(page.getResults());
                     searchView.getResultsView().setVisible(true);
                     searchView.focusResultList();
+                } else if (restarted) {
+                    searchView.getResultsView().setVisible(false);
                 }
+                searchView.setMoreResultsAvailable(cursor != null);
             }
         }
     }
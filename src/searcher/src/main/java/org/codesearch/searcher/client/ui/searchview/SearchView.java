@@ -45,6 +45,8 @@ public interface SearchView extends IsWidget {
     void setPresenter(Presenter presenter);
     Panel getResultsView();
     void setSearchResults(List<SearchResultDto> results);
+    void addSearchResults(List<SearchResultDto> results);
+    void setMoreResultsAvailable(boolean moreResultsAvailable);
     void setResultStatusMessage(String message);
     void setSearchType(SearchType searchType);
     void setSelection(Set<String> selection);
@@ -66,5 +68,6 @@ public interface SearchView extends IsWidget {
     public interface Presenter {
         void goTo(Place place);
         void doSearch();
+        void loadMoreResults();
     }
 }
@@ -68,6 +68,8 @@ import com.google.gwt.user.client.ui.Widget;
 import com.google.gwt.view.client.CellPreviewEvent;
 import com.google.gwt.view.client.ListDataProvider;
 import com.google.gwt.view.client.NoSelectionModel;
+import com.google.gwt.view.client.Range;
+import com.google.gwt.view.client.RangeChangeEvent;
 import com.google.gwt.view.client.SelectionModel;
 
 /**
@@ -133,8 +135,11 @@ public class SearchViewImpl extends Composite implements SearchView {
     private Presenter presenter;
     private SearchType searchType;
     private NumberFormat relevanceFormatter = NumberFormat.getFormat("00.00");
-    private List<SearchResultDto> unfilteredResults;
+    private List<SearchResultDto> unfilteredResults = new ArrayList<SearchResultDto>();
     private boolean filtersInitialized;
+    private Set<String> fileEndingFilterNames = new HashSet<String>();
+    private Set<String> repositoryFilterNames = new HashSet<String>();
+    private boolean moreResultsAvailable;
     private boolean repositoriesInitialized;
     private boolean repositoryGroupsInitialized;
     private String searchFieldTooltip = "";
@@ -182,31 +187,7 @@ public class SearchViewImpl extends Composite implements SearchView {
     @UiHandler("filterPanel")
     void onFiltersOpen(OpenEvent<DisclosurePanel> e) {
         if (!filtersInitialized) {
-            unfilteredResults = new ArrayList<SearchResultDto>(searchResultDataProvider.getList());
-
-            Set<String> fileEndings = new HashSet<String>();
-            Set<String> repos = new HashSet<String>();
-
-            for (SearchResultDto result : unfilteredResults) {
-                int pos = result.getFilePath().lastIndexOf('.');
-                if (pos != -1) {
-                    fileEndings.add(result.getFilePath().substring(pos + 1).toLowerCase());
-                }
-                repos.add(result.getRepository());
-            }
-
-            ToggleButton bt = null;
-            for (String fileEnding : fileEndings) {
-                bt = new ToggleButton(fileEnding);
-                bt.addValueChangeHandler(new FilterHandler());
-                fileEndingFilterPanel.add(bt);
-            }
-            for (String repo : repos) {
-                bt = new ToggleButton(repo);
-                bt.addValueChangeHandler(new FilterHandler());
-                repositoryFilterPanel.add(bt);
-            }
-
+            addFilterButtons(unfilteredResults);
             filtersInitialized = true;
         }
     }
@@ -244,8 +225,9 @@ public class SearchViewImpl extends Composite implements SearchView {
         searchBox.setValue("");
         resultStatusLabel.setText("");
         setSearchType(SearchType.REPOSITORIES);
-        fileEndingFilterPanel.clear();
-        repositoryFilterPanel.clear();
+        clearFilterButtons();
+        unfilteredResults.clear();
+        moreResultsAvailable = false;
         filterPanel.setOpen(false);
         helpBox.setVisible(false);
     }
@@ -293,8 +275,33 @@ public class SearchViewImpl extends Composite implements SearchView {
      */
     @Override
     public void setSearchResults(List<SearchResultDto> results) {
+        clearFilterButtons();
         filtersInitialized = false;
-        searchResultDataProvider.setList(results);
+        unfilteredResults = new ArrayList<SearchResultDto>(results);
+        searchResultDataProvider.setList(new ArrayList<SearchResultDto>(results));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addSearchResults(List<SearchResultDto> results) {
+        unfilteredResults.addAll(results);
+        if (filtersInitialized) {
+            addFilterButtons(results);
+            applyFilters();
+        } else {
+            searchResultDataProvider.getList().addAll(results);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setMoreResultsAvailable(boolean moreResultsAvailable) {
+        this.moreResultsAvailable = moreResultsAvailable;
+        loadMoreResultsIfNeeded();
     }
 
     @Override
@@ -444,6 +451,97 @@ public class SearchViewImpl extends Composite implements SearchView {
         }
     }
 
+    /**
+     * Requests the next page of results once the displayed range reaches the
+     * end of the loaded results, so the pager can always move one page ahead.
+     */
+    private void loadMoreResultsIfNeeded() {
+        Range range = resultTable.getVisibleRange();
+        if (moreResultsAvailable && range.getStart() + range.getLength() >= searchResultDataProvider.getList().size()) {
+            presenter.loadMoreResults();
+        }
+    }
+
+    /**
+     * Adds filter buttons for the file endings and repositories of the given
+     * results that do not have one yet.
+     */
+    private void addFilterButtons(List<SearchResultDto> results) {
+        for (SearchResultDto result : results) {
+            int pos = result.getFilePath().lastIndexOf('.');
+            if (pos != -1) {
+                String fileEnding = result.getFilePath().substring(pos + 1).toLowerCase();
+                if (fileEndingFilterNames.add(fileEnding)) {
+                    ToggleButton bt = new ToggleButton(fileEnding);
+                    bt.addValueChangeHandler(new FilterHandler());
+                    fileEndingFilterPanel.add(bt);
+                }
+            }
+            if (repositoryFilterNames.add(result.getRepository())) {
+                ToggleButton bt = new ToggleButton(result.getRepository());
+                bt.addValueChangeHandler(new FilterHandler());
+                repositoryFilterPanel.add(bt);
+            }
+        }
+    }
+
+    private void clearFilterButtons() {
+        fileEndingFilterPanel.clear();
+        repositoryFilterPanel.clear();
+        fileEndingFilterNames.clear();
+        repositoryFilterNames.clear();
+    }
+
+    /**
+     * Displays the loaded results that match the selected filters.
+     */
+    private void applyFilters() {
+        Set<String> fileEndingFilters = new HashSet<String>();
+        Set<String> repoFilters = new HashSet<String>();
+
+        Iterator<Widget> iter = fileEndingFilterPanel.iterator();
+        while (iter.hasNext()) {
+            ToggleButton bt = (ToggleButton) iter.next();
+            if (bt.isDown()) {
+                fileEndingFilters.add(bt.getText());
+            }
+        }
+
+        iter = repositoryFilterPanel.iterator();
+        while (iter.hasNext()) {
+            ToggleButton bt = (ToggleButton) iter.next();
+            if (bt.isDown()) {
+                repoFilters.add(bt.getText());
+            }
+        }
+
+        List<SearchResultDto> results = new ArrayList<SearchResultDto>(unfilteredResults);
+
+        for (int i = (results.size() - 1); i >= 0; i--) {
+            SearchResultDto result = results.get(i);
+            if (!fileEndingFilters.isEmpty()) {
+                int pos = result.getFilePath().lastIndexOf('.');
+                if (pos != -1) {
+                    String resultFileEnding = result.getFilePath().substring(pos + 1);
+                    if (!fileEndingFilters.contains(resultFileEnding.toLowerCase())) {
+                        results.remove(i);
+                        continue;
+                    }
+                } else {
+                    results.remove(i);
+                    continue;
+                }
+            }
+
+            if (!repoFilters.isEmpty() && !repoFilters.contains(result.getRepository())) {
+                results.remove(i);
+                continue;
+            }
+        }
+
+        searchResultDataProvider.setList(results);
+    }
+
     private void initResultTable() {
         resultTable = new CellTable<SearchResultDto>(PAGE_SIZE);
         resultTable.addColumn(new TextColumn<SearchResultDto>() {
@@ -534,6 +632,13 @@ public class SearchViewImpl extends Composite implements SearchView {
         SimplePager.Resources pagerResources = GWT.create(SimplePager.Resources.class);
         resultTablePager = new SimplePager(TextLocation.CENTER, pagerResources, false, 0, true);
         resultTablePager.setDisplay(resultTable);
+        resultTable.addRangeChangeHandler(new RangeChangeEvent.Handler() {
+
+            @Override
+            public void onRangeChange(RangeChangeEvent event) {
+                loadMoreResultsIfNeeded();
+            }
+        });
         searchResultDataProvider = new ListDataProvider<SearchResultDto>();
         searchResultDataProvider.addDataDisplay(resultTable);
     }
@@ -545,50 +650,7 @@ public class SearchViewImpl extends Composite implements SearchView {
 
         @Override
         public void onValueChange(ValueChangeEvent<Boolean> event) {
-            Set<String> fileEndingFilters = new HashSet<String>();
-            Set<String> repoFilters = new HashSet<String>();
-
-            Iterator<Widget> iter = fileEndingFilterPanel.iterator();
-            while (iter.hasNext()) {
-                ToggleButton bt = (ToggleButton) iter.next();
-                if (bt.isDown()) {
-                    fileEndingFilters.add(bt.getText());
-                }
-            }
-
-            iter = repositoryFilterPanel.iterator();
-            while (iter.hasNext()) {
-                ToggleButton bt = (ToggleButton) iter.next();
-                if (bt.isDown()) {
-                    repoFilters.add(bt.getText());
-                }
-            }
-
-            List<SearchResultDto> results = new ArrayList<SearchResultDto>(unfilteredResults);
-
-            for (int i = (results.size() - 1); i >= 0; i--) {
-                SearchResultDto result = results.get(i);
-                if (!fileEndingFilters.isEmpty()) {
-                    int pos = result.getFilePath().lastIndexOf('.');
-                    if (pos != -1) {
-                        String resultFileEnding = result.getFilePath().substring(pos + 1);
-                        if (!fileEndingFilters.contains(resultFileEnding.toLowerCase())) {
-                            results.remove(i);
-                            continue;
-                        }
-                    } else {
-                        results.remove(i);
-                        continue;
-                    }
-                }
-
-                if (!repoFilters.isEmpty() && !repoFilters.contains(result.getRepository())) {
-                    results.remove(i);
-                    continue;
-                }
-            }
-
-            searchResultDataProvider.setList(results);
+            applyFilters();
         }
     }
 }
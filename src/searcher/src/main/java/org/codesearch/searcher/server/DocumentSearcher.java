@@ -32,6 +32,7 @@ import java.util.Set;
 
 import org.apache.lucene.queryParser.ParseException;
 import org.codesearch.searcher.shared.SearchResultDto;
+import org.codesearch.searcher.shared.SearchResultPage;
 
 /**
  * Util class that can be used to perform lucene searches against the index.
@@ -49,6 +50,19 @@ public interface DocumentSearcher {
      */
     List<SearchResultDto> search(String searchString, boolean caseSensitive, Set<String> repositoryNames, Set<String> repositoryGroupNames, int maxResults) throws ParseException, IOException, InvalidIndexException;
 
+    /**
+     * Retrieves a single page of the results of a search, only the stored
+     * fields of the results on the page are loaded.
+     * @param searchString the String that will be parsed to a query
+     * @param pageSize the maximum number of results on the page
+     * @param cursor the cursor returned with the previous page, null for the first page
+     * @return the page
+     * @throws ParseException if the searchString could not be parsed to a query
+     * @throws IOException if the Index could not be read
+     * @throws InvalidCursorException if the cursor is malformed or the index changed since it was created
+     */
+    SearchResultPage search(String searchString, boolean caseSensitive, Set<String> repositoryNames, Set<String> repositoryGroupNames, int pageSize, String cursor) throws ParseException, IOException, InvalidIndexException, InvalidCursorException;
+
 //    List<String> suggestSearchNames(String searchString, boolean caseSensitive, Set<String> repositoryNames, Set<String> repositoryGroupNames) throws ParseException, IOException, InvalidIndexException;
 
     void refreshIndex() throws InvalidIndexException;
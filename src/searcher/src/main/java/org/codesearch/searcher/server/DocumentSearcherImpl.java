@@ -20,33 +20,53 @@ package org.codesearch.searcher.server;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.log4j.Logger;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.queryParser.ParseException;
-import org.apache.lucene.queryParser.QueryParser;
+import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.codesearch.commons.configuration.ConfigurationReader;
+import org.codesearch.commons.configuration.dto.RepositoryDto;
 import org.codesearch.commons.constants.IndexConstants;
-import org.codesearch.commons.plugins.lucenefields.LuceneFieldPlugin;
 import org.codesearch.commons.plugins.lucenefields.LuceneFieldPluginLoader;
+import org.codesearch.commons.utils.IndexShards;
 import org.codesearch.searcher.shared.SearchResultDto;
+import org.codesearch.searcher.shared.SearchResultPage;
 
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
-import org.apache.lucene.queryParser.analyzing.AnalyzingQueryParser;
-import org.apache.lucene.util.Version;
 
+/**
+ * Searches the index. Any number of searches run in parallel, each one holds
+ * a reference of the reader it searches until it is finished. Refreshing the
+ * index publishes the reopened reader for subsequent searches, the replaced
+ * reader is closed as soon as the last search using it releases it. The
+ * results of recent searches are cached until the readers they were computed
+ * from are replaced.
+ */
 @Singleton
 public class DocumentSearcherImpl implements DocumentSearcher {
 
@@ -54,24 +74,71 @@ public class DocumentSearcherImpl implements DocumentSearcher {
      * The logger.
      */
     private static final Logger LOG = Logger.getLogger(DocumentSearcherImpl.class);
-    private final List<LuceneFieldPlugin> luceneFieldPlugins;
     /**
-     * The parser used for parsing search terms to lucene queries
+     * The maximum number of cached search results.
+     */
+    private static final int QUERY_CACHE_SIZE = 1000;
+    /**
+     * The name of the reader of the index if it is not sharded.
+     */
+    private static final String INDEX_READER_NAME = "";
+    /**
+     * Separates the parts of a cursor.
+     */
+    private static final String CURSOR_SEPARATOR = ":";
+    /**
+     * Separates the generations of the readers in a cursor.
+     */
+    private static final String GENERATION_SEPARATOR = ",";
+    /**
+     * The stored fields of the documents that are part of a search result.
      */
-    private QueryParser queryParser;
+    private static final FieldSelector RESULT_FIELDS = new MapFieldSelector(new String[]{IndexConstants.INDEX_FIELD_REPOSITORY,
+        IndexConstants.INDEX_FIELD_FILEPATH, IndexConstants.INDEX_FIELD_REVISION});
     /**
-     * The parser used for parsing search terms to lucene queries - case
-     * sensitive
+     * Numbers the readers, a reopened reader gets a new generation.
      */
-    private QueryParser queryParserCaseSensitive;
+    private static final AtomicLong READER_GENERATIONS = new AtomicLong();
     /**
-     * The searcher used for searching the lucene index
+     * Compiles the search strings to queries.
      */
-    private IndexSearcher indexSearcher;
+    private final QueryCompiler queryCompiler;
+    /**
+     * The reader of the lucene index.
+     */
+    private volatile ReferencedReader indexReader;
+    /**
+     * Whether every repository is stored in a separate index.
+     */
+    private boolean sharded;
+    /**
+     * The readers of the repository indexes by repository name, used
+     * instead of the searcher if the index is sharded. The map is never
+     * modified, refreshing the index replaces it.
+     */
+    private volatile Map<String, ReferencedReader> shardReaders = Collections.emptyMap();
     /**
      * Whether the searcher has been initialized. *
      */
-    private boolean searcherInitialized = false;
+    private volatile boolean searcherInitialized = false;
+    /**
+     * Held while the searcher is initialized or refreshed, searches never
+     * wait for it.
+     */
+    private final Object refreshLock = new Object();
+    /**
+     * The results of recent searches.
+     */
+    private final QueryResultCache queryResultCache = new QueryResultCache(QUERY_CACHE_SIZE);
+    /**
+     * The filters restricting searches to the selected repositories, used if
+     * the index is not sharded.
+     */
+    private final RepositoryFilterCache repositoryFilterCache = new RepositoryFilterCache();
+    /**
+     * The repositories of the repository groups by group name.
+     */
+    private final Map<String, List<String>> repositoryGroups = new ConcurrentHashMap<String, List<String>>();
     /**
      * The location of the index. *
      */
@@ -94,18 +161,10 @@ public class DocumentSearcherImpl implements DocumentSearcher {
         this.configurationReader = configurationReader;
         // Retrieve index location from the configuration
         indexLocation = configurationReader.getIndexLocation();
-        LOG.debug("Index location set to: " + indexLocation);
-        queryParser = new AnalyzingQueryParser(IndexConstants.LUCENE_VERSION, IndexConstants.INDEX_FIELD_CONTENT + IndexConstants.LC_POSTFIX,
-                luceneFieldPluginLoader.getPerFieldAnalyzerWrapper(false)); // use AnalyzingQueryParser for case-insensitive parser since the regular QueryParser would not correctly handle search terms with wild cards
-        queryParser.setAllowLeadingWildcard(true);
-        queryParser.setDefaultOperator(QueryParser.Operator.AND);
-        queryParser.setLowercaseExpandedTerms(false);
-        queryParserCaseSensitive = new QueryParser(IndexConstants.LUCENE_VERSION, IndexConstants.INDEX_FIELD_CONTENT,
+        sharded = configurationReader.getIndexerConfiguration().isShardedIndex();
+        LOG.debug("Index location set to: " + indexLocation + (sharded ? ", using one index per repository" : ""));
+        queryCompiler = new QueryCompiler(luceneFieldPluginLoader.getAllLuceneFieldPlugins(), luceneFieldPluginLoader.getPerFieldAnalyzerWrapper(false),
                 luceneFieldPluginLoader.getPerFieldAnalyzerWrapper(true));
-        queryParserCaseSensitive.setAllowLeadingWildcard(true);
-        queryParserCaseSensitive.setDefaultOperator(QueryParser.Operator.AND);
-        queryParserCaseSensitive.setLowercaseExpandedTerms(false);
-        luceneFieldPlugins = luceneFieldPluginLoader.getAllLuceneFieldPlugins();
 
         try {
             initSearcher();
@@ -120,44 +179,189 @@ public class DocumentSearcherImpl implements DocumentSearcher {
      * {@inheritDoc}
      */
     @Override
-    public synchronized List<SearchResultDto> search(String searchString, boolean caseSensitive, Set<String> repositoryNames,
+    public List<SearchResultDto> search(String searchString, boolean caseSensitive, Set<String> repositoryNames,
             Set<String> repositoryGroupNames, int maxResults) throws ParseException, IOException, InvalidIndexException {
+        try {
+            return search(searchString, caseSensitive, repositoryNames, repositoryGroupNames, maxResults, null).getResults();
+        } catch (InvalidCursorException ex) {
+            // the first page has no cursor
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SearchResultPage search(String searchString, boolean caseSensitive, Set<String> repositoryNames,
+            Set<String> repositoryGroupNames, int pageSize, String cursor) throws ParseException, IOException,
+            InvalidIndexException, InvalidCursorException {
         if (!searcherInitialized) {
             initSearcher();
         }
-        List<SearchResultDto> results = new LinkedList<SearchResultDto>();
-        String finalSearchString = parseQuery(searchString, repositoryNames, repositoryGroupNames);
-        Query query;
-        for(LuceneFieldPlugin plugin : luceneFieldPlugins){
-            finalSearchString = finalSearchString.replace(plugin.getAbbreviatedFieldName() + ":", plugin.getFieldName() + ":");
-        }
-        if (caseSensitive) {
-            query = queryParserCaseSensitive.parse(finalSearchString);
-        } else {
-            for (LuceneFieldPlugin plugin : luceneFieldPlugins) {
-                if (plugin.getLowerCaseAnalyzer() != null) {
-                    finalSearchString = finalSearchString.replace(plugin.getFieldName() + ":", plugin.getFieldName() + IndexConstants.LC_POSTFIX + ":");
-                }
+        Set<String> selectedRepositories = getSelectedRepositories(repositoryNames, repositoryGroupNames);
+        List<ReferencedReader> readers = sharded ? acquireShardReaders(selectedRepositories) : acquireIndexReader();
+        try {
+            if (readers.isEmpty()) {
+                LOG.info("None of the selected repositories is indexed");
+                return new SearchResultPage(new LinkedList<SearchResultDto>(), null, 0);
+            }
+            Map<String, Long> generations = getGenerations(readers);
+            ScoreDoc after = parseCursor(cursor, generations);
+            SearchResultPage page = queryResultCache.get(searchString, caseSensitive, selectedRepositories, pageSize, cursor,
+                    generations);
+            if (page != null) {
+                LOG.info("Found " + page.getResults().size() + " cached results for query: " + searchString);
+                return page;
+            }
+            // the selected shards only contain documents of the selected repositories
+            Filter filter = sharded || selectedRepositories.isEmpty() ? null : repositoryFilterCache.getFilter(selectedRepositories);
+            page = searchReaders(readers, queryCompiler.compile(searchString, caseSensitive), filter, pageSize, after,
+                    generations);
+            queryResultCache.put(searchString, caseSensitive, selectedRepositories, pageSize, cursor, generations, page);
+            return page;
+        } finally {
+            // closes the readers that were replaced in the meantime
+            for (ReferencedReader reader : readers) {
+                reader.release();
             }
-            query = queryParser.parse(finalSearchString);
         }
+    }
 
+    /**
+     * Executes a query against the acquired readers and loads the stored
+     * fields of the hits on the requested page.
+     *
+     * @param readers the readers
+     * @param query the query
+     * @param filter the filter restricting the search to the selected
+     *            repositories, null if all documents are searched
+     * @param pageSize the maximum number of results
+     * @param after the last hit of the previous page, null for the first page
+     * @param generations the generations of the readers
+     * @return the page
+     * @throws IOException if the index could not be read
+     */
+    private SearchResultPage searchReaders(List<ReferencedReader> readers, Query query, Filter filter, int pageSize,
+            ScoreDoc after, Map<String, Long> generations) throws IOException {
+        List<SearchResultDto> results = new LinkedList<SearchResultDto>();
+        IndexSearcher searcher = readers.size() == 1 ? readers.get(0).getSearcher() : createMultiSearcher(readers);
         LOG.info("Searching index with query: " + query.toString());
-        // Retrieve all search results from search
-        TopDocs topDocs = indexSearcher.search(query, maxResults);
-        LOG.info("Found " + topDocs.scoreDocs.length + " results");
-        Document doc;
+        try {
+            SearchAfterCollector collector = new SearchAfterCollector(after, pageSize);
+            searcher.search(query, filter, collector);
+            ScoreDoc[] scoreDocs = collector.getScoreDocs();
+            LOG.info("Found " + collector.getTotalHits() + " results, returning " + scoreDocs.length);
+            Document doc;
+
+            for (ScoreDoc sd : scoreDocs) {
+                doc = searcher.doc(sd.doc, RESULT_FIELDS);
+                SearchResultDto searchResult = new SearchResultDto();
+                searchResult.setRepository(doc.get(IndexConstants.INDEX_FIELD_REPOSITORY));
+                searchResult.setFilePath(doc.get(IndexConstants.INDEX_FIELD_FILEPATH));
+                searchResult.setLastRevision(doc.get(IndexConstants.INDEX_FIELD_REVISION));
+                searchResult.setRelevance(sd.score);
+                results.add(searchResult);
+            }
+            String nextCursor = null;
+            if (scoreDocs.length > 0 && collector.getRemainingHits() > scoreDocs.length) {
+                nextCursor = createCursor(scoreDocs[scoreDocs.length - 1], generations);
+            }
+            return new SearchResultPage(results, nextCursor, collector.getTotalHits());
+        } finally {
+            if (readers.size() > 1) {
+                searcher.getIndexReader().close();
+            }
+        }
+    }
+
+    /**
+     * Creates the cursor of the page following the given hit. It contains
+     * the score and document number of the hit and the generations of the
+     * readers, since document numbers are only valid for the readers they
+     * were retrieved from.
+     */
+    private String createCursor(ScoreDoc last, Map<String, Long> generations) {
+        return Float.floatToIntBits(last.score) + CURSOR_SEPARATOR + last.doc + CURSOR_SEPARATOR + encodeGenerations(generations);
+    }
+
+    /**
+     * Parses a cursor created by {@link #createCursor(ScoreDoc, Map)}.
+     *
+     * @return the last hit of the previous page, null if the cursor is null
+     * @throws InvalidCursorException if the cursor is malformed or the index
+     *             has been refreshed since the cursor was created
+     */
+    private ScoreDoc parseCursor(String cursor, Map<String, Long> generations) throws InvalidCursorException {
+        if (cursor == null) {
+            return null;
+        }
+        // the generations are last, the names of the repositories may contain the separator
+        String[] parts = cursor.split(CURSOR_SEPARATOR, 3);
+        if (parts.length != 3) {
+            throw new InvalidCursorException("Malformed cursor: " + cursor, false);
+        }
+        ScoreDoc after;
+        try {
+            after = new ScoreDoc(Integer.parseInt(parts[1]), Float.intBitsToFloat(Integer.parseInt(parts[0])));
+        } catch (NumberFormatException ex) {
+            throw new InvalidCursorException("Malformed cursor: " + cursor, false);
+        }
+        if (!parts[2].equals(encodeGenerations(generations))) {
+            throw new InvalidCursorException("The index changed since the cursor " + cursor + " was created", true);
+        }
+        return after;
+    }
+
+    /**
+     * Encodes the generations of the readers as the sorted
+     * name=generation pairs.
+     */
+    private String encodeGenerations(Map<String, Long> generations) {
+        StringBuilder encoded = new StringBuilder();
+        for (Map.Entry<String, Long> generation : new TreeMap<String, Long>(generations).entrySet()) {
+            if (encoded.length() > 0) {
+                encoded.append(GENERATION_SEPARATOR);
+            }
+            encoded.append(generation.getKey()).append('=').append(generation.getValue());
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * Returns the generations of the readers by the names of their indexes,
+     * they identify the state of the index the results of a search are
+     * computed from.
+     */
+    private Map<String, Long> getGenerations(List<ReferencedReader> readers) {
+        Map<String, Long> generations = new HashMap<String, Long>();
+        for (ReferencedReader reader : readers) {
+            generations.put(reader.getName(), reader.getGeneration());
+        }
+        return generations;
+    }
+
+    /**
+     * @return the cache of the search results
+     */
+    public QueryResultCache getQueryResultCache() {
+        return queryResultCache;
+    }
 
-        for (ScoreDoc sd : topDocs.scoreDocs) {
-            doc = indexSearcher.doc(sd.doc);
-            SearchResultDto searchResult = new SearchResultDto();
-            searchResult.setRepository(doc.get(IndexConstants.INDEX_FIELD_REPOSITORY));
-            searchResult.setFilePath(doc.get(IndexConstants.INDEX_FIELD_FILEPATH));
-            searchResult.setLastRevision(doc.get(IndexConstants.INDEX_FIELD_REVISION));
-            searchResult.setRelevance(sd.score);
-            results.add(searchResult);
+    /**
+     * Acquires the current reader of the index.
+     *
+     * @return a list containing the reader, which has to be released after
+     *         the search
+     */
+    private List<ReferencedReader> acquireIndexReader() {
+        while (true) {
+            ReferencedReader reader = indexReader;
+            if (reader.tryAcquire()) {
+                return Collections.singletonList(reader);
+            }
+            // the reader was replaced and closed in the meantime, the new one is already published
         }
-        return results;
     }
 
 //    /** {@inheritDoc} */
@@ -172,63 +376,265 @@ public class DocumentSearcherImpl implements DocumentSearcher {
      * {@inheritDoc}
      */
     @Override
-    public synchronized void refreshIndex() throws InvalidIndexException {
-        try {
-            // Calling reopen instead of new initialization for performance reasons
-            IndexReader newReader = indexSearcher.getIndexReader().reopen(true);
-            if (newReader != indexSearcher.getIndexReader()) {
-                indexSearcher.getIndexReader().close();
-                indexSearcher = new IndexSearcher(newReader);
+    public void refreshIndex() throws InvalidIndexException {
+        synchronized (refreshLock) {
+            LOG.info("Query result cache: " + queryResultCache.getHitCount() + " hits, " + queryResultCache.getMissCount() + " misses, "
+                    + queryResultCache.getSize() + " of " + queryResultCache.getMaxEntries() + " entries used");
+            if (!searcherInitialized) {
+                initSearcher();
+                return;
+            }
+            if (sharded) {
+                refreshShards();
+                return;
+            }
+            try {
+                // Calling reopen instead of new initialization for performance reasons
+                ReferencedReader oldReader = indexReader;
+                IndexReader newReader = oldReader.getReader().reopen(true);
+                if (newReader != oldReader.getReader()) {
+                    indexReader = new ReferencedReader(INDEX_READER_NAME, newReader);
+                    // running searches keep the old reader open until they release it
+                    oldReader.release();
+                }
+            } catch (CorruptIndexException ex) {
+                throw new InvalidIndexException("Could not refresh the index because it is corrupt: " + ex);
+            } catch (IOException ex) {
+                throw new InvalidIndexException("Could not refresh the index: " + ex);
             }
-        } catch (CorruptIndexException ex) {
-            throw new InvalidIndexException("Could not refresh the index because it is corrupt: " + ex);
-        } catch (IOException ex) {
-            throw new InvalidIndexException("Could not refresh the index: " + ex);
         }
     }
 
     /**
-     * parses the search term to a lucene conform query keeping in mind the
-     * several options
+     * Reopens the readers of the repository indexes and opens the indexes of
+     * repositories that were indexed for the first time. An index that can
+     * not be opened is skipped, the previous reader of the repository stays
+     * in use until it can be reopened.
+     */
+    private void refreshShards() {
+        Map<String, ReferencedReader> newReaders = new HashMap<String, ReferencedReader>(shardReaders);
+        List<ReferencedReader> replacedReaders = new LinkedList<ReferencedReader>();
+        for (RepositoryDto repository : configurationReader.getRepositories()) {
+            String repositoryName = repository.getName();
+            ReferencedReader reader = newReaders.get(repositoryName);
+            try {
+                if (reader == null) {
+                    IndexReader newReader = openShard(repositoryName);
+                    if (newReader != null) {
+                        newReaders.put(repositoryName, new ReferencedReader(repositoryName, newReader));
+                    }
+                } else {
+                    IndexReader newReader = reader.getReader().reopen(true);
+                    if (newReader != reader.getReader()) {
+                        replacedReaders.add(reader);
+                        newReaders.put(repositoryName, new ReferencedReader(repositoryName, newReader));
+                    }
+                }
+            } catch (CorruptIndexException ex) {
+                LOG.error("Could not refresh the index of repository " + repositoryName + " because it is corrupt: " + ex);
+            } catch (IOException ex) {
+                LOG.error("Could not refresh the index of repository " + repositoryName + ": " + ex);
+            }
+        }
+        shardReaders = Collections.unmodifiableMap(newReaders);
+        for (ReferencedReader reader : replacedReaders) {
+            // running searches keep the old reader open until they release it
+            reader.release();
+        }
+    }
+
+    /**
+     * Opens the index of a repository.
      *
-     * @param query the search query
-     * @return the lucene conform query
+     * @param repositoryName the name of the repository
+     * @return the reader, null if the repository is not indexed yet
+     * @throws IOException if the index could not be opened
      */
-    private String parseQuery(String query, Set<String> repositoryNames, Set<String> repositoryGroupNames) {
-        for (String repoGroup : repositoryGroupNames) {
-            for (String repo : configurationReader.getRepositoriesForGroup(repoGroup)) {
-                repositoryNames.add(repo);
+    private IndexReader openShard(String repositoryName) throws IOException {
+        File location = IndexShards.getShardLocation(indexLocation, repositoryName);
+        if (!location.isDirectory()) {
+            return null;
+        }
+        Directory directory = FSDirectory.open(location);
+        if (!IndexReader.indexExists(directory)) {
+            directory.close();
+            return null;
+        }
+        return IndexReader.open(directory, true);
+    }
+
+    /**
+     * Acquires the readers of the selected repositories.
+     *
+     * @param repositoryNames the selected repositories, all if empty
+     * @return the readers, which have to be released after the search, empty
+     *         if none of the repositories is indexed
+     */
+    private List<ReferencedReader> acquireShardReaders(Set<String> repositoryNames) {
+        List<ReferencedReader> acquired = new LinkedList<ReferencedReader>();
+        while (true) {
+            Map<String, ReferencedReader> currentReaders = shardReaders;
+            List<ReferencedReader> readers = new LinkedList<ReferencedReader>();
+            if (repositoryNames.isEmpty()) {
+                readers.addAll(currentReaders.values());
+            } else {
+                for (String repositoryName : repositoryNames) {
+                    ReferencedReader reader = currentReaders.get(repositoryName);
+                    if (reader != null) {
+                        readers.add(reader);
+                    }
+                }
+            }
+            for (ReferencedReader reader : readers) {
+                if (!reader.tryAcquire()) {
+                    break;
+                }
+                acquired.add(reader);
             }
+            if (acquired.size() == readers.size()) {
+                return acquired;
+            }
+            // one of the readers was replaced and closed in the meantime, the new ones are already published
+            for (ReferencedReader reader : acquired) {
+                reader.release();
+            }
+            acquired.clear();
         }
-        if (repositoryNames.isEmpty()) {
-            return query;
+    }
+
+    /**
+     * Creates a searcher over several repository indexes, its reader has to
+     * be closed after the search, which leaves the repository readers open.
+     */
+    private IndexSearcher createMultiSearcher(List<ReferencedReader> readers) {
+        // the document numbers referenced by cursors depend on the order of the sub readers
+        List<ReferencedReader> sortedReaders = new ArrayList<ReferencedReader>(readers);
+        Collections.sort(sortedReaders, new Comparator<ReferencedReader>() {
+
+            @Override
+            public int compare(ReferencedReader o1, ReferencedReader o2) {
+                return o1.getName().compareTo(o2.getName());
+            }
+        });
+        IndexReader[] subReaders = new IndexReader[sortedReaders.size()];
+        for (int i = 0; i < subReaders.length; i++) {
+            subReaders[i] = sortedReaders.get(i).getReader();
         }
-        StringBuilder repoQuery = new StringBuilder();
-        repoQuery.append(" +");
-        repoQuery.append(IndexConstants.INDEX_FIELD_REPOSITORY);
-        repoQuery.append(":("); // this is because the lucene query is sad
+        return new IndexSearcher(new MultiReader(subReaders, false));
+    }
 
-        Iterator<String> iter = repositoryNames.iterator();
-        while (iter.hasNext()) {
-            repoQuery.append(iter.next());
-            if (iter.hasNext()) {
-                repoQuery.append(" OR ");
+    /**
+     * Returns the repositories selected directly or through one of their
+     * groups.
+     *
+     * @param repositoryNames the selected repositories
+     * @param repositoryGroupNames the selected repository groups
+     * @return the names of the repositories, empty if all repositories are
+     *         searched
+     */
+    private Set<String> getSelectedRepositories(Set<String> repositoryNames, Set<String> repositoryGroupNames) {
+        Set<String> selectedRepositories = new HashSet<String>(repositoryNames);
+        for (String repoGroup : repositoryGroupNames) {
+            List<String> groupRepositories = repositoryGroups.get(repoGroup);
+            if (groupRepositories == null) {
+                // the configuration does not change while the searcher runs
+                groupRepositories = configurationReader.getRepositoriesForGroup(repoGroup);
+                repositoryGroups.put(repoGroup, groupRepositories);
             }
+            selectedRepositories.addAll(groupRepositories);
         }
-        repoQuery.append(")");
-        return query + repoQuery.toString();
+        return selectedRepositories;
     }
 
     private void initSearcher() throws InvalidIndexException {
-        try {
+        synchronized (refreshLock) {
             if (searcherInitialized) {
-                indexSearcher.close();
+                return;
+            }
+            if (sharded) {
+                // repositories that are not indexed yet are opened when the index is refreshed
+                refreshShards();
+                searcherInitialized = true;
+                return;
+            }
+            try {
+                indexReader = new ReferencedReader(INDEX_READER_NAME, IndexReader.open(FSDirectory.open(indexLocation), true));
+                searcherInitialized = true;
+            } catch (IOException exc) {
+                throw new InvalidIndexException("No valid index found at: " + indexLocation + "\n" + exc);
+            }
+        }
+    }
+
+    /**
+     * An index reader with a reference count. The count starts with the
+     * reference of the searcher, which is released when the reader is
+     * replaced, every search acquires another one. The reader is closed when
+     * the count drops to zero and can not be acquired afterwards.
+     */
+    private static final class ReferencedReader {
+
+        private final String name;
+        private final long generation = READER_GENERATIONS.incrementAndGet();
+        private final IndexReader reader;
+        private final IndexSearcher searcher;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        /**
+         * @param name the name of the repository of the index, empty if the
+         *            index is not sharded
+         * @param reader the reader
+         */
+        ReferencedReader(String name, IndexReader reader) {
+            this.name = name;
+            this.reader = reader;
+            this.searcher = new IndexSearcher(reader);
+        }
+
+        String getName() {
+            return name;
+        }
+
+        long getGeneration() {
+            return generation;
+        }
+
+        IndexReader getReader() {
+            return reader;
+        }
+
+        IndexSearcher getSearcher() {
+            return searcher;
+        }
+
+        /**
+         * Acquires a reference unless the reader is already closed.
+         *
+         * @return whether the reference was acquired
+         */
+        boolean tryAcquire() {
+            while (true) {
+                int count = references.get();
+                if (count <= 0) {
+                    return false;
+                }
+                if (references.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Releases a reference, the reader is closed with the last one.
+         */
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                try {
+                    reader.close();
+                } catch (IOException ex) {
+                    LOG.warn("Could not close index reader: " + ex);
+                }
             }
-            indexSearcher = new IndexSearcher(FSDirectory.open(indexLocation), true);
-            searcherInitialized = true;
-        } catch (IOException exc) {
-            searcherInitialized = false;
-            throw new InvalidIndexException("No valid index found at: " + indexLocation + "\n" + exc);
         }
     }
 }
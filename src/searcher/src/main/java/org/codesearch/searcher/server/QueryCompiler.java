@@ -0,0 +1,196 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.searcher.server;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.queryParser.ParseException;
+import org.apache.lucene.queryParser.QueryParser;
+import org.apache.lucene.queryParser.analyzing.AnalyzingQueryParser;
+import org.apache.lucene.search.Query;
+import org.codesearch.commons.constants.IndexConstants;
+import org.codesearch.commons.plugins.lucenefields.LuceneFieldPlugin;
+
+/**
+ * Compiles search strings to Lucene queries. The field of every clause is
+ * resolved while the query is parsed: abbreviated field names are replaced by
+ * the field names, and case insensitive queries use the lower case fields of
+ * the plugins that have one. Terms and quoted phrases are never touched.
+ * <p>
+ * Compiled queries are cached. Lucene queries are not modified by searching,
+ * so a compiled query can be used by several threads at the same time.
+ */
+class QueryCompiler {
+
+    /**
+     * The maximum number of cached queries.
+     */
+    private static final int MAX_CACHED_QUERIES = 500;
+
+    private final Analyzer analyzer;
+    private final Analyzer analyzerCaseSensitive;
+    /**
+     * The fields of case insensitive queries by the names used in search
+     * strings.
+     */
+    private final Map<String, String> fields = new HashMap<String, String>();
+    /**
+     * The fields of case sensitive queries by the names used in search
+     * strings.
+     */
+    private final Map<String, String> fieldsCaseSensitive = new HashMap<String, String>();
+    private final Map<List<Object>, Query> queries = new LinkedHashMap<List<Object>, Query>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, Query> eldest) {
+            return size() > MAX_CACHED_QUERIES;
+        }
+    };
+
+    /**
+     * @param luceneFieldPlugins the plugins of the indexed fields
+     * @param analyzer the analyzer of case insensitive queries
+     * @param analyzerCaseSensitive the analyzer of case sensitive queries
+     */
+    QueryCompiler(List<LuceneFieldPlugin> luceneFieldPlugins, Analyzer analyzer, Analyzer analyzerCaseSensitive) {
+        this.analyzer = analyzer;
+        this.analyzerCaseSensitive = analyzerCaseSensitive;
+        for (LuceneFieldPlugin plugin : luceneFieldPlugins) {
+            String fieldName = plugin.getFieldName();
+            String lowerCaseFieldName = plugin.getLowerCaseAnalyzer() != null ? fieldName + IndexConstants.LC_POSTFIX : fieldName;
+            fieldsCaseSensitive.put(fieldName, fieldName);
+            fields.put(fieldName, lowerCaseFieldName);
+            if (plugin.getAbbreviatedFieldName() != null) {
+                fieldsCaseSensitive.put(plugin.getAbbreviatedFieldName(), fieldName);
+                fields.put(plugin.getAbbreviatedFieldName(), lowerCaseFieldName);
+            }
+        }
+    }
+
+    /**
+     * Returns the query of a search string.
+     *
+     * @param searchString the search string
+     * @param caseSensitive whether the search is case sensitive
+     * @return the query, which must not be modified
+     * @throws ParseException if the search string is invalid
+     */
+    Query compile(String searchString, boolean caseSensitive) throws ParseException {
+        List<Object> key = Arrays.<Object> asList(QueryResultCache.normalizeQuery(searchString), caseSensitive);
+        synchronized (queries) {
+            Query query = queries.get(key);
+            if (query != null) {
+                return query;
+            }
+        }
+        // parsers are not thread safe, every compilation uses its own
+        QueryParser parser = caseSensitive ? new CaseSensitiveParser() : new CaseInsensitiveParser();
+        parser.setAllowLeadingWildcard(true);
+        parser.setDefaultOperator(QueryParser.Operator.AND);
+        parser.setLowercaseExpandedTerms(false);
+        Query query = parser.parse(searchString);
+        synchronized (queries) {
+            queries.put(key, query);
+        }
+        return query;
+    }
+
+    /**
+     * Returns the indexed field of a field name used in a search string.
+     */
+    private String resolveField(String field, boolean caseSensitive) {
+        String resolvedField = (caseSensitive ? fieldsCaseSensitive : fields).get(field);
+        return resolvedField == null ? field : resolvedField;
+    }
+
+    private class CaseSensitiveParser extends QueryParser {
+
+        CaseSensitiveParser() {
+            super(IndexConstants.LUCENE_VERSION, IndexConstants.INDEX_FIELD_CONTENT, analyzerCaseSensitive);
+        }
+
+        @Override
+        protected Query getFieldQuery(String field, String queryText, boolean quoted) throws ParseException {
+            return super.getFieldQuery(resolveField(field, true), queryText, quoted);
+        }
+
+        @Override
+        protected Query getWildcardQuery(String field, String termStr) throws ParseException {
+            return super.getWildcardQuery(resolveField(field, true), termStr);
+        }
+
+        @Override
+        protected Query getPrefixQuery(String field, String termStr) throws ParseException {
+            return super.getPrefixQuery(resolveField(field, true), termStr);
+        }
+
+        @Override
+        protected Query getFuzzyQuery(String field, String termStr, float minSimilarity) throws ParseException {
+            return super.getFuzzyQuery(resolveField(field, true), termStr, minSimilarity);
+        }
+
+        @Override
+        protected Query getRangeQuery(String field, String part1, String part2, boolean inclusive) throws ParseException {
+            return super.getRangeQuery(resolveField(field, true), part1, part2, inclusive);
+        }
+    }
+
+    /**
+     * Uses an AnalyzingQueryParser, the regular QueryParser would not
+     * correctly handle search terms with wild cards.
+     */
+    private class CaseInsensitiveParser extends AnalyzingQueryParser {
+
+        CaseInsensitiveParser() {
+            super(IndexConstants.LUCENE_VERSION, IndexConstants.INDEX_FIELD_CONTENT + IndexConstants.LC_POSTFIX, analyzer);
+        }
+
+        @Override
+        protected Query getFieldQuery(String field, String queryText, boolean quoted) throws ParseException {
+            return super.getFieldQuery(resolveField(field, false), queryText, quoted);
+        }
+
+        @Override
+        protected Query getWildcardQuery(String field, String termStr) throws ParseException {
+            return super.getWildcardQuery(resolveField(field, false), termStr);
+        }
+
+        @Override
+        protected Query getPrefixQuery(String field, String termStr) throws ParseException {
+            return super.getPrefixQuery(resolveField(field, false), termStr);
+        }
+
+        @Override
+        protected Query getFuzzyQuery(String field, String termStr, float minSimilarity) throws ParseException {
+            return super.getFuzzyQuery(resolveField(field, false), termStr, minSimilarity);
+        }
+
+        @Override
+        protected Query getRangeQuery(String field, String part1, String part2, boolean inclusive) throws ParseException {
+            return super.getRangeQuery(resolveField(field, false), part1, part2, inclusive);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.searcher.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codesearch.searcher.shared.SearchResultDto;
+import org.codesearch.searcher.shared.SearchResultPage;
+
+/**
+ * A bounded cache of result pages, the least recently used results are
+ * evicted first. Every entry remembers the generations of the index readers it
+ * was computed from and is only used as long as the searched readers have not
+ * been replaced, so refreshing the index invalidates exactly the results of
+ * the changed indexes.
+ */
+public class QueryResultCache {
+
+    private final int maxEntries;
+    private final Map<List<Object>, Entry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxEntries the maximum number of cached pages
+     */
+    public QueryResultCache(final int maxEntries) {
+        this.maxEntries = maxEntries;
+        entries = new LinkedHashMap<List<Object>, Entry>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns a cached page of search results.
+     *
+     * @param query the search query
+     * @param caseSensitive whether the search is case sensitive
+     * @param repositories the searched repositories, empty if all are searched
+     * @param pageSize the maximum number of results on the page
+     * @param cursor the cursor the page starts at, null for the first page
+     * @param generations the generations of the readers the search would use
+     * @return a copy of the page, null if it is not cached or outdated
+     */
+    public SearchResultPage get(String query, boolean caseSensitive, Set<String> repositories, int pageSize, String cursor,
+            Map<String, Long> generations) {
+        List<Object> key = createKey(query, caseSensitive, repositories, pageSize, cursor);
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && !entry.generations.equals(generations)) {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return new SearchResultPage(new ArrayList<SearchResultDto>(entry.page.getResults()), entry.page.getCursor(),
+                entry.page.getTotalHits());
+    }
+
+    /**
+     * Adds a page of search results to the cache.
+     *
+     * @param query the search query
+     * @param caseSensitive whether the search is case sensitive
+     * @param repositories the searched repositories, empty if all are searched
+     * @param pageSize the maximum number of results on the page
+     * @param cursor the cursor the page starts at, null for the first page
+     * @param generations the generations of the readers that were searched
+     * @param page the page
+     */
+    public void put(String query, boolean caseSensitive, Set<String> repositories, int pageSize, String cursor,
+            Map<String, Long> generations, SearchResultPage page) {
+        Entry entry = new Entry(generations, new SearchResultPage(Collections.unmodifiableList(new ArrayList<SearchResultDto>(
+                page.getResults())), page.getCursor(), page.getTotalHits()));
+        synchronized (entries) {
+            entries.put(createKey(query, caseSensitive, repositories, pageSize, cursor), entry);
+        }
+    }
+
+    /**
+     * Removes all entries, the counters are kept.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    private List<Object> createKey(String query, boolean caseSensitive, Set<String> repositories, int pageSize, String cursor) {
+        return Arrays.<Object> asList(normalizeQuery(query), caseSensitive, new TreeSet<String>(repositories), pageSize, cursor);
+    }
+
+    /**
+     * Trims the query and collapses whitespace outside of quoted phrases, so
+     * queries that only differ in their formatting share an entry.
+     */
+    static String normalizeQuery(String query) {
+        StringBuilder normalized = new StringBuilder(query.length());
+        boolean quoted = false;
+        boolean pendingSpace = false;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (!quoted && Character.isWhitespace(c)) {
+                pendingSpace = normalized.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                normalized.append(' ');
+                pendingSpace = false;
+            }
+            if (c == '"' && (i == 0 || query.charAt(i - 1) != '\\')) {
+                quoted = !quoted;
+            }
+            normalized.append(c);
+        }
+        return normalized.toString();
+    }
+
+    private static class Entry {
+
+        private final Map<String, Long> generations;
+        private final SearchResultPage page;
+
+        Entry(Map<String, Long> generations, SearchResultPage page) {
+            this.generations = generations;
+            this.page = page;
+        }
+    }
+}
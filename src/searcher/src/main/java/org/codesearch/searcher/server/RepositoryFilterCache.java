@@ -0,0 +1,115 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.searcher.server;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.search.CachingWrapperFilter;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.util.OpenBitSet;
+import org.codesearch.commons.constants.IndexConstants;
+
+/**
+ * Provides the filters that restrict a search to a set of repositories. The
+ * documents of a selection are collected into a bit set once per segment of
+ * the index and reused by every search with the same selection, so the size
+ * of the selection does not affect the cost of a search.
+ */
+class RepositoryFilterCache {
+
+    /**
+     * The maximum number of cached selections, every selection holds one bit
+     * per document of the index.
+     */
+    private static final int MAX_SELECTIONS = 64;
+
+    private final Map<Set<String>, Filter> filters = new LinkedHashMap<Set<String>, Filter>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Set<String>, Filter> eldest) {
+            return size() > MAX_SELECTIONS;
+        }
+    };
+
+    /**
+     * Returns the filter of a selection of repositories.
+     *
+     * @param repositoryNames the selected repositories, must not be empty
+     * @return the filter, which can be used by several threads at the same
+     *         time
+     */
+    Filter getFilter(Set<String> repositoryNames) {
+        Set<String> key = new TreeSet<String>(repositoryNames);
+        synchronized (filters) {
+            Filter filter = filters.get(key);
+            if (filter == null) {
+                // caches the bit set per segment, segments that did not change keep it when the index is reopened
+                filter = new CachingWrapperFilter(new RepositoryFilter(key));
+                filters.put(key, filter);
+            }
+            return filter;
+        }
+    }
+
+    /**
+     * Matches the documents of a set of repositories.
+     */
+    private static class RepositoryFilter extends Filter {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Term> terms = new ArrayList<Term>();
+
+        RepositoryFilter(Set<String> repositoryNames) {
+            for (String repositoryName : repositoryNames) {
+                // the repository field is indexed in lower case
+                terms.add(new Term(IndexConstants.INDEX_FIELD_REPOSITORY, repositoryName.toLowerCase()));
+            }
+        }
+
+        @Override
+        public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
+            OpenBitSet bits = new OpenBitSet(reader.maxDoc());
+            TermDocs termDocs = reader.termDocs();
+            try {
+                for (Term term : terms) {
+                    termDocs.seek(term);
+                    while (termDocs.next()) {
+                        bits.set(termDocs.doc());
+                    }
+                }
+            } finally {
+                termDocs.close();
+            }
+            return bits;
+        }
+    }
+}
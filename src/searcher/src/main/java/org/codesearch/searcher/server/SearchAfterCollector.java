@@ -0,0 +1,125 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.searcher.server;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.util.PriorityQueue;
+
+/**
+ * Collects the best scoring documents that follow a given hit in the order of
+ * descending score and ascending document id, which is the order of
+ * {@link org.apache.lucene.search.TopScoreDocCollector}. Only the documents of
+ * the requested page are kept, the documents of earlier pages are skipped.
+ */
+class SearchAfterCollector extends Collector {
+
+    private final ScoreDoc after;
+    private final HitQueue queue;
+    private Scorer scorer;
+    private int docBase;
+    private int totalHits;
+    private int remainingHits;
+
+    /**
+     * @param after the last hit of the previous page, null for the first
+     *            page
+     * @param pageSize the number of documents to collect
+     */
+    SearchAfterCollector(ScoreDoc after, int pageSize) {
+        this.after = after;
+        queue = new HitQueue(pageSize);
+    }
+
+    @Override
+    public void setScorer(Scorer scorer) throws IOException {
+        this.scorer = scorer;
+    }
+
+    @Override
+    public void collect(int doc) throws IOException {
+        float score = scorer.score();
+        int globalDoc = docBase + doc;
+        totalHits++;
+        if (after != null && (score > after.score || (score == after.score && globalDoc <= after.doc))) {
+            // on an earlier page
+            return;
+        }
+        remainingHits++;
+        queue.insertWithOverflow(new ScoreDoc(globalDoc, score));
+    }
+
+    @Override
+    public void setNextReader(IndexReader reader, int docBase) throws IOException {
+        this.docBase = docBase;
+    }
+
+    @Override
+    public boolean acceptsDocsOutOfOrder() {
+        return true;
+    }
+
+    /**
+     * @return the collected documents, best first
+     */
+    ScoreDoc[] getScoreDocs() {
+        ScoreDoc[] scoreDocs = new ScoreDoc[queue.size()];
+        for (int i = scoreDocs.length - 1; i >= 0; i--) {
+            scoreDocs[i] = queue.pop();
+        }
+        return scoreDocs;
+    }
+
+    /**
+     * @return the number of documents matching the query
+     */
+    int getTotalHits() {
+        return totalHits;
+    }
+
+    /**
+     * @return the number of matching documents on this and the following
+     *         pages
+     */
+    int getRemainingHits() {
+        return remainingHits;
+    }
+
+    /**
+     * Keeps the best hits, the worst one on top.
+     */
+    private static class HitQueue extends PriorityQueue<ScoreDoc> {
+
+        HitQueue(int size) {
+            initialize(size);
+        }
+
+        @Override
+        protected boolean lessThan(ScoreDoc a, ScoreDoc b) {
+            if (a.score == b.score) {
+                return a.doc > b.doc;
+            }
+            return a.score < b.score;
+        }
+    }
+}
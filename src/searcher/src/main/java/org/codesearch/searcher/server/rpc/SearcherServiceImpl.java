@@ -49,16 +49,19 @@ import org.codesearch.commons.plugins.vcs.VersionControlPluginException;
 import org.codesearch.commons.utils.mime.MimeTypeUtil;
 import org.codesearch.searcher.client.rpc.SearcherService;
 import org.codesearch.searcher.server.DocumentSearcherImpl;
+import org.codesearch.searcher.server.InvalidCursorException;
 import org.codesearch.searcher.server.InvalidIndexException;
 import org.codesearch.searcher.shared.FileDto;
 import org.codesearch.searcher.shared.JumpLocation;
 import org.codesearch.searcher.shared.OutlineNode;
 import org.codesearch.searcher.shared.SearchField;
 import org.codesearch.searcher.shared.SearchResultDto;
+import org.codesearch.searcher.shared.SearchResultPage;
 import org.codesearch.searcher.shared.SearchType;
 import org.codesearch.searcher.shared.SearchViewData;
 import org.codesearch.searcher.shared.SidebarNode;
 import org.codesearch.searcher.shared.exception.SearcherServiceException;
+import org.codesearch.searcher.shared.exception.StaleCursorException;
 
 import com.google.gwt.user.server.rpc.RemoteServiceServlet;
 import com.google.inject.Inject;
@@ -111,15 +114,15 @@ public class SearcherServiceImpl extends RemoteServiceServlet implements Searche
      * {@inheritDoc}
      */
     @Override
-    public List<SearchResultDto> doSearch(String query, boolean caseSensitive, SearchType searchType, Set<String> selection, int maxResults)
-            throws SearcherServiceException {
-        List<SearchResultDto> resultItems = new LinkedList<SearchResultDto>();
+    public SearchResultPage doSearch(String query, boolean caseSensitive, SearchType searchType, Set<String> selection, int pageSize,
+            String cursor) throws SearcherServiceException {
+        SearchResultPage page = new SearchResultPage(new LinkedList<SearchResultDto>(), null, 0);
         try {
             // TODO fix incompatibility
             if (searchType == SearchType.REPOSITORIES) {
-                resultItems = documentSearcher.search(query, caseSensitive, selection, new HashSet<String>(), maxResults);
+                page = documentSearcher.search(query, caseSensitive, selection, new HashSet<String>(), pageSize, cursor);
             } else if (searchType == SearchType.REPOSITORY_GROUPS) {
-                resultItems = documentSearcher.search(query, caseSensitive, new HashSet<String>(), selection, maxResults);
+                page = documentSearcher.search(query, caseSensitive, new HashSet<String>(), selection, pageSize, cursor);
             }
         } catch (ParseException ex) {
             throw new SearcherServiceException("Invalid search query: \n" + ex);
@@ -127,8 +130,13 @@ public class SearcherServiceImpl extends RemoteServiceServlet implements Searche
             throw new SearcherServiceException("Exception searching the index: \n" + ex);
         } catch (InvalidIndexException ex) {
             throw new SearcherServiceException("Invalid index: \n" + ex);
+        } catch (InvalidCursorException ex) {
+            if (ex.isStale()) {
+                throw new StaleCursorException(ex.getMessage());
+            }
+            throw new SearcherServiceException("Invalid cursor: \n" + ex);
         }
-        return resultItems;
+        return page;
     }
 
     /**
@@ -0,0 +1,66 @@
+/**
+ * Copyright 2010 David Froehlich   <david.froehlich@businesssoftware.at>,
+ *                Samuel Kogler     <samuel.kogler@gmail.com>,
+ *                Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Codesearch is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Codesearch.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.codesearch.searcher.shared;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A page of the results of a search.
+ */
+public class SearchResultPage implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private List<SearchResultDto> results;
+    private String cursor;
+    private int totalHits;
+
+    public SearchResultPage() {
+    }
+
+    /**
+     * @param results the results of the page
+     * @param cursor the cursor of the next page, null if this is the last one
+     * @param totalHits the number of documents matching the search
+     */
+    public SearchResultPage(List<SearchResultDto> results, String cursor, int totalHits) {
+        this.results = results;
+        this.cursor = cursor;
+        this.totalHits = totalHits;
+    }
+
+    public List<SearchResultDto> getResults() {
+        return results;
+    }
+
+    /**
+     * @return the opaque cursor that retrieves the next page, null if there
+     *         are no more results
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    public int getTotalHits() {
+        return totalHits;
+    }
+}
@@ -0,0 +1,277 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.searcher.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.io.FileUtils;
+import org.codesearch.searcher.shared.SearchResultDto;
+import org.codesearch.searcher.shared.SearchResultPage;
+import org.junit.After;
+import org.junit.Test;
+
+public class DocumentSearcherImplTest {
+
+    private SearcherTestEnvironment environment;
+
+    @After
+    public void tearDown() throws IOException {
+        environment.close();
+    }
+
+    private Set<String> search(DocumentSearcherImpl searcher, String searchString) throws Exception {
+        return search(searcher, searchString, Collections.<String> emptySet(), Collections.<String> emptySet());
+    }
+
+    private Set<String> search(DocumentSearcherImpl searcher, String searchString, Set<String> repositoryNames,
+            Set<String> repositoryGroupNames) throws Exception {
+        List<SearchResultDto> results = searcher.search(searchString, false, repositoryNames, repositoryGroupNames, 100);
+        Set<String> files = new HashSet<String>();
+        for (SearchResultDto result : results) {
+            files.add(result.getRepository() + ":" + result.getFilePath());
+        }
+        return files;
+    }
+
+    @Test
+    public void testCorruptShardIsSkippedOnRefresh() throws Exception {
+        environment = new SearcherTestEnvironment(true);
+        environment.addRepository("alpha");
+        environment.addRepository("broken");
+        environment.addRepository("gamma");
+        environment.addFile("alpha", "a.txt", "needle");
+        environment.addFile("gamma", "g.txt", "needle");
+        DocumentSearcherImpl searcher = environment.createSearcher();
+        assertEquals(2, search(searcher, "needle").size());
+
+        // the shard of the repository exists, but its segments can not be read
+        File brokenShard = environment.getIndexLocation("broken");
+        brokenShard.mkdirs();
+        FileUtils.writeStringToFile(new File(brokenShard, "segments_1"), "not an index");
+        environment.addFile("gamma", "h.txt", "needle");
+        searcher.refreshIndex();
+
+        Set<String> expected = new HashSet<String>();
+        expected.add("alpha:a.txt");
+        expected.add("gamma:g.txt");
+        expected.add("gamma:h.txt");
+        assertEquals("the shards following the broken one are refreshed", expected, search(searcher, "needle"));
+    }
+
+    @Test
+    public void testSearchIsRestrictedToSelectedRepositories() throws Exception {
+        environment = new SearcherTestEnvironment(false);
+        environment.addRepository("Alpha");
+        environment.addRepository("beta");
+        environment.addRepository("gamma").getRepositoryGroups().add("group");
+        environment.addFile("Alpha", "a.txt", "needle");
+        environment.addFile("beta", "b.txt", "needle");
+        environment.addFile("gamma", "g.txt", "needle");
+        DocumentSearcherImpl searcher = environment.createSearcher();
+        Set<String> noGroups = Collections.emptySet();
+
+        assertEquals(Collections.singleton("Alpha:a.txt"), search(searcher, "needle", Collections.singleton("Alpha"), noGroups));
+        assertEquals(Collections.singleton("gamma:g.txt"), search(searcher, "needle", Collections.<String> emptySet(),
+                Collections.singleton("group")));
+        Set<String> expected = new HashSet<String>();
+        expected.add("Alpha:a.txt");
+        expected.add("gamma:g.txt");
+        assertEquals(expected, search(searcher, "needle", Collections.singleton("Alpha"), Collections.singleton("group")));
+
+        // the filter of a selection is reused after documents were added
+        environment.addFile("Alpha", "c.txt", "needle");
+        searcher.refreshIndex();
+        expected.add("Alpha:c.txt");
+        assertEquals(expected, search(searcher, "needle", Collections.singleton("Alpha"), Collections.singleton("group")));
+    }
+
+    @Test
+    public void testRefreshInvalidatesOnlyResultsOfChangedShards() throws Exception {
+        environment = new SearcherTestEnvironment(true);
+        environment.addRepository("alpha");
+        environment.addRepository("beta");
+        environment.addFile("alpha", "a.txt", "needle");
+        environment.addFile("beta", "b.txt", "needle");
+        DocumentSearcherImpl searcher = environment.createSearcher();
+        QueryResultCache cache = searcher.getQueryResultCache();
+        Set<String> beta = Collections.singleton("beta");
+        searcher.search("needle", false, beta, Collections.<String> emptySet(), 10, null);
+        assertEquals(2, search(searcher, "needle").size());
+        long misses = cache.getMissCount();
+
+        environment.addFile("alpha", "c.txt", "needle");
+        searcher.refreshIndex();
+        assertEquals(1, searcher.search("needle", false, beta, Collections.<String> emptySet(), 10, null).getResults().size());
+        assertEquals("the results of the unchanged shard are still cached", misses, cache.getMissCount());
+        assertEquals(3, search(searcher, "needle").size());
+        assertEquals(misses + 1, cache.getMissCount());
+    }
+
+    /**
+     * Retrieves all results page by page.
+     */
+    private Set<String> searchPages(DocumentSearcherImpl searcher, String searchString, Set<String> repositoryNames, int pageSize)
+            throws Exception {
+        Set<String> files = new HashSet<String>();
+        String cursor = null;
+        do {
+            SearchResultPage page = searcher.search(searchString, false, repositoryNames, Collections.<String> emptySet(), pageSize,
+                    cursor);
+            for (SearchResultDto result : page.getResults()) {
+                assertTrue("Result on several pages: " + result.getFilePath(), files.add(result.getRepository() + ":"
+                        + result.getFilePath()));
+            }
+            cursor = page.getCursor();
+        } while (cursor != null);
+        return files;
+    }
+
+    @Test
+    public void testAllResultsArePaged() throws Exception {
+        environment = new SearcherTestEnvironment(true);
+        environment.addRepository("alpha");
+        environment.addRepository("beta");
+        for (int i = 0; i < 7; i++) {
+            environment.addFile(i % 2 == 0 ? "alpha" : "beta", "file" + i + ".txt", "needle");
+        }
+        DocumentSearcherImpl searcher = environment.createSearcher();
+        assertEquals(search(searcher, "needle"), searchPages(searcher, "needle", Collections.<String> emptySet(), 2));
+        assertEquals(7, searchPages(searcher, "needle", Collections.<String> emptySet(), 7).size());
+    }
+
+    @Test
+    public void testStaleCursorIsRejected() throws Exception {
+        environment = new SearcherTestEnvironment(true);
+        environment.addRepository("alpha");
+        environment.addRepository("beta");
+        environment.addFile("alpha", "a1.txt", "needle");
+        environment.addFile("alpha", "a2.txt", "needle");
+        environment.addFile("beta", "b1.txt", "needle");
+        environment.addFile("beta", "b2.txt", "needle");
+        DocumentSearcherImpl searcher = environment.createSearcher();
+        Set<String> noGroups = Collections.emptySet();
+        String cursor = searcher.search("needle", false, Collections.<String> emptySet(), noGroups, 1, null).getCursor();
+        String betaCursor = searcher.search("needle", false, Collections.singleton("beta"), noGroups, 1, null).getCursor();
+
+        environment.addFile("alpha", "a3.txt", "needle");
+        searcher.refreshIndex();
+        try {
+            searcher.search("needle", false, Collections.<String> emptySet(), noGroups, 1, cursor);
+            fail("The index changed since the cursor was created");
+        } catch (InvalidCursorException ex) {
+            assertTrue(ex.isStale());
+        }
+        // the searched shard did not change
+        SearchResultPage page = searcher.search("needle", false, Collections.singleton("beta"), noGroups, 1, betaCursor);
+        assertEquals(1, page.getResults().size());
+        assertNull(page.getCursor());
+    }
+
+    @Test
+    public void testMalformedCursorIsRejected() throws Exception {
+        environment = new SearcherTestEnvironment(false);
+        environment.addRepository("alpha");
+        environment.addFile("alpha", "a.txt", "needle");
+        DocumentSearcherImpl searcher = environment.createSearcher();
+        for (String cursor : new String[] { "", "1:2", "x:1:=1" }) {
+            try {
+                searcher.search("needle", false, Collections.<String> emptySet(), Collections.<String> emptySet(), 1, cursor);
+                fail("Malformed cursor: " + cursor);
+            } catch (InvalidCursorException ex) {
+                assertFalse(ex.isStale());
+            }
+        }
+    }
+
+    @Test
+    public void testSearchesRunWhileTheIndexIsRefreshed() throws Exception {
+        environment = new SearcherTestEnvironment(false);
+        environment.addRepository("alpha");
+        searchWhileRefreshing("alpha");
+    }
+
+    @Test
+    public void testSearchesRunWhileTheShardsAreRefreshed() throws Exception {
+        environment = new SearcherTestEnvironment(true);
+        environment.addRepository("alpha");
+        environment.addRepository("beta");
+        searchWhileRefreshing("alpha", "beta");
+    }
+
+    /**
+     * Adds files and refreshes the index while other threads search it. The
+     * searches must neither fail on readers closed by the refresh nor lose
+     * results that were visible before.
+     */
+    private void searchWhileRefreshing(final String... repositoryNames) throws Exception {
+        environment.addFile(repositoryNames[0], "file0.txt", "needle");
+        final DocumentSearcherImpl searcher = environment.createSearcher();
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final List<Throwable> failures = new CopyOnWriteArrayList<Throwable>();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+
+                @Override
+                public void run() {
+                    int previousCount = 0;
+                    try {
+                        while (running.get()) {
+                            int count = search(searcher, "needle").size();
+                            if (count < previousCount) {
+                                throw new AssertionError("Found " + count + " results after " + previousCount);
+                            }
+                            previousCount = count;
+                        }
+                    } catch (Throwable ex) {
+                        failures.add(ex);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        int files = 20;
+        try {
+            for (int i = 1; i < files; i++) {
+                environment.addFile(repositoryNames[i % repositoryNames.length], "file" + i + ".txt", "needle");
+                searcher.refreshIndex();
+            }
+        } finally {
+            running.set(false);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+        assertTrue("Searches failed: " + failures, failures.isEmpty());
+        assertEquals(files, search(searcher, "needle").size());
+    }
+}
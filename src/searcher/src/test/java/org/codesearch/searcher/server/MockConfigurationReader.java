@@ -0,0 +1,116 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.searcher.server;
+
+import java.io.File;
+import java.net.URI;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.codesearch.commons.configuration.ConfigurationReader;
+import org.codesearch.commons.configuration.dto.CodesearchConfiguration;
+import org.codesearch.commons.configuration.dto.IndexerConfiguration;
+import org.codesearch.commons.configuration.dto.JobDto;
+import org.codesearch.commons.configuration.dto.RepositoryDto;
+
+/**
+ * A configuration reader that returns the values of a modifiable
+ * configuration, the index and the cache are located in the given directory.
+ */
+public class MockConfigurationReader implements ConfigurationReader {
+
+    private CodesearchConfiguration configuration = new CodesearchConfiguration();
+
+    public MockConfigurationReader(File directory) {
+        configuration.setIndexLocation(new File(directory, "index"));
+        configuration.setCacheDirectory(new File(directory, "cache"));
+        configuration.getIndexLocation().mkdirs();
+        configuration.getCacheDirectory().mkdirs();
+        // not used by the searcher
+        configuration.setSearcherLocation(new File(directory, "searcher").toURI());
+        configuration.setIndexerConfiguration(new IndexerConfiguration());
+        configuration.setRepositories(new LinkedList<RepositoryDto>());
+        configuration.setJobs(new LinkedList<JobDto>());
+        configuration.setRepositoryGroups(new LinkedList<String>());
+    }
+
+    public CodesearchConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    @Override
+    public List<JobDto> getJobs() {
+        return configuration.getJobs();
+    }
+
+    @Override
+    public List<RepositoryDto> getRepositories() {
+        return configuration.getRepositories();
+    }
+
+    @Override
+    public List<String> getRepositoriesForGroup(String groupName) {
+        List<String> repositories = new LinkedList<String>();
+        for (RepositoryDto repository : configuration.getRepositories()) {
+            if (repository.getRepositoryGroups().contains(groupName)) {
+                repositories.add(repository.getName());
+            }
+        }
+        return repositories;
+    }
+
+    @Override
+    public RepositoryDto getRepositoryByName(String name) {
+        for (RepositoryDto repository : configuration.getRepositories()) {
+            if (repository.getName().equals(name)) {
+                return repository;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<String> getRepositoryGroups() {
+        return configuration.getRepositoryGroups();
+    }
+
+    @Override
+    public File getCacheDirectory() {
+        return configuration.getCacheDirectory();
+    }
+
+    @Override
+    public File getIndexLocation() {
+        return configuration.getIndexLocation();
+    }
+
+    @Override
+    public URI getSearcherLocation() {
+        return configuration.getSearcherLocation();
+    }
+
+    @Override
+    public IndexerConfiguration getIndexerConfiguration() {
+        return configuration.getIndexerConfiguration();
+    }
+
+    @Override
+    public void refresh() {
+    }
+}
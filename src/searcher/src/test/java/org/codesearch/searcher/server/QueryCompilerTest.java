@@ -0,0 +1,78 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.searcher.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.codesearch.commons.plugins.lucenefields.LuceneFieldPluginLoader;
+import org.junit.Test;
+
+/**
+ * Tests {@link QueryCompiler}.
+ */
+public class QueryCompilerTest {
+
+    private QueryCompiler compiler;
+
+    public QueryCompilerTest() {
+        LuceneFieldPluginLoader loader = SearcherTestEnvironment.createLuceneFieldPluginLoader();
+        compiler = new QueryCompiler(loader.getAllLuceneFieldPlugins(), loader.getPerFieldAnalyzerWrapper(false),
+                loader.getPerFieldAnalyzerWrapper(true));
+    }
+
+    private String compile(String searchString, boolean caseSensitive) throws Exception {
+        return compiler.compile(searchString, caseSensitive).toString();
+    }
+
+    @Test
+    public void testCaseInsensitiveQueriesUseLowerCaseFields() throws Exception {
+        assertEquals("content_lc:needle", compile("Needle", false));
+        assertEquals("filename_lc:foo.java", compile("filename:Foo.java", false));
+        assertEquals("+content_lc:needle +filename_lc:foo.java", compile("Needle fn:Foo.java", false));
+        // the repository field has no lower case field
+        assertEquals("repository:alpha", compile("rp:Alpha", false));
+    }
+
+    @Test
+    public void testCaseSensitiveQueriesUseRegularFields() throws Exception {
+        assertEquals("content:Needle", compile("Needle", true));
+        assertEquals("+content:Needle +filename:Foo.java", compile("Needle fn:Foo.java", true));
+    }
+
+    @Test
+    public void testFieldsOfAllClauseTypesAreResolved() throws Exception {
+        assertEquals("filepath_lc:src/foo*", compile("fp:src/Foo*", false));
+        assertEquals("filepath:src/Foo*", compile("fp:src/Foo*", true));
+        assertEquals("filename_lc:foo~0.5", compile("fn:Foo~", false));
+        assertEquals("filename_lc:[a TO b]", compile("fn:[a TO b]", false));
+        assertEquals("unknown:Value", compile("unknown:Value", true));
+    }
+
+    @Test
+    public void testPhrasesAreNotResolved() throws Exception {
+        assertEquals("content:\"fn Foo bar\"", compile("\"fn:Foo bar\"", true));
+    }
+
+    @Test
+    public void testCompiledQueriesAreCached() throws Exception {
+        assertSame(compiler.compile("Needle  fn:Foo.java", false), compiler.compile(" Needle fn:Foo.java", false));
+        assertEquals("+content:Needle +filename:Foo.java", compile("Needle  fn:Foo.java", true));
+    }
+}
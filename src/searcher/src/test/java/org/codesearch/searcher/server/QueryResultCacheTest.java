@@ -0,0 +1,111 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.searcher.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.codesearch.searcher.shared.SearchResultDto;
+import org.codesearch.searcher.shared.SearchResultPage;
+import org.junit.Test;
+
+/**
+ * Tests {@link QueryResultCache}.
+ */
+public class QueryResultCacheTest {
+
+    private static final Set<String> ALL_REPOSITORIES = Collections.emptySet();
+
+    private QueryResultCache cache = new QueryResultCache(2);
+
+    private static Map<String, Long> generations(long alpha, long beta) {
+        Map<String, Long> generations = new HashMap<String, Long>();
+        generations.put("alpha", alpha);
+        generations.put("beta", beta);
+        return generations;
+    }
+
+    private static SearchResultPage createPage(String... paths) {
+        List<SearchResultDto> results = new LinkedList<SearchResultDto>();
+        for (String path : paths) {
+            SearchResultDto result = new SearchResultDto();
+            result.setFilePath(path);
+            results.add(result);
+        }
+        return new SearchResultPage(results, null, results.size());
+    }
+
+    @Test
+    public void testPageIsCachedForTheSameReaders() {
+        cache.put("needle", false, ALL_REPOSITORIES, 10, null, generations(1, 1), createPage("a.txt"));
+        SearchResultPage page = cache.get("needle", false, ALL_REPOSITORIES, 10, null, generations(1, 1));
+        assertNotNull(page);
+        assertEquals("a.txt", page.getResults().get(0).getFilePath());
+        assertNull(cache.get("needle", true, ALL_REPOSITORIES, 10, null, generations(1, 1)));
+        assertNull(cache.get("needle", false, Collections.singleton("alpha"), 10, null, generations(1, 1)));
+        assertNull(cache.get("needle", false, ALL_REPOSITORIES, 20, null, generations(1, 1)));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    public void testReplacedReaderInvalidatesThePage() {
+        cache.put("needle", false, ALL_REPOSITORIES, 10, null, generations(1, 1), createPage("a.txt"));
+        assertNull(cache.get("needle", false, ALL_REPOSITORIES, 10, null, generations(1, 2)));
+        assertEquals("the outdated entry is removed", 0, cache.getSize());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedPageIsEvicted() {
+        cache.put("first", false, ALL_REPOSITORIES, 10, null, generations(1, 1), createPage("a.txt"));
+        cache.put("second", false, ALL_REPOSITORIES, 10, null, generations(1, 1), createPage("b.txt"));
+        assertNotNull(cache.get("first", false, ALL_REPOSITORIES, 10, null, generations(1, 1)));
+        cache.put("third", false, ALL_REPOSITORIES, 10, null, generations(1, 1), createPage("c.txt"));
+        assertEquals(2, cache.getSize());
+        assertNotNull(cache.get("first", false, ALL_REPOSITORIES, 10, null, generations(1, 1)));
+        assertNull(cache.get("second", false, ALL_REPOSITORIES, 10, null, generations(1, 1)));
+    }
+
+    @Test
+    public void testCachedPagesAreCopies() {
+        SearchResultPage page = createPage("a.txt");
+        cache.put("needle", false, ALL_REPOSITORIES, 10, null, generations(1, 1), page);
+        page.getResults().clear();
+        SearchResultPage cached = cache.get("needle", false, ALL_REPOSITORIES, 10, null, generations(1, 1));
+        assertEquals(1, cached.getResults().size());
+        cached.getResults().clear();
+        assertEquals(1, cache.get("needle", false, ALL_REPOSITORIES, 10, null, generations(1, 1)).getResults().size());
+    }
+
+    @Test
+    public void testQueriesDifferingInWhitespaceShareAnEntry() {
+        assertEquals("foo bar", QueryResultCache.normalizeQuery("  foo \t bar "));
+        assertEquals("foo \"a  b\"", QueryResultCache.normalizeQuery("foo   \"a  b\""));
+        cache.put("foo  bar", false, ALL_REPOSITORIES, 10, null, generations(1, 1), createPage("a.txt"));
+        assertNotNull(cache.get(" foo bar", false, ALL_REPOSITORIES, 10, null, generations(1, 1)));
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.searcher.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.store.RAMDirectory;
+import org.codesearch.commons.constants.IndexConstants;
+import org.junit.Test;
+
+/**
+ * Tests {@link RepositoryFilterCache}.
+ */
+public class RepositoryFilterCacheTest {
+
+    private RepositoryFilterCache cache = new RepositoryFilterCache();
+
+    @Test
+    public void testSelectionsShareTheirFilter() {
+        Filter filter = cache.getFilter(new LinkedHashSet<String>(Arrays.asList("alpha", "beta")));
+        assertSame("the order of the selection does not matter", filter, cache.getFilter(new LinkedHashSet<String>(Arrays.asList(
+                "beta", "alpha"))));
+    }
+
+    @Test
+    public void testFilterMatchesDocumentsOfSelectedRepositories() throws Exception {
+        RAMDirectory directory = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(IndexConstants.LUCENE_VERSION, new WhitespaceAnalyzer(
+                IndexConstants.LUCENE_VERSION)));
+        for (String repositoryName : Arrays.asList("alpha", "beta", "gamma", "beta")) {
+            Document document = new Document();
+            // the indexer writes the repository names in lower case
+            document.add(new Field(IndexConstants.INDEX_FIELD_REPOSITORY, repositoryName, Field.Store.NO,
+                    Field.Index.NOT_ANALYZED_NO_NORMS));
+            writer.addDocument(document);
+        }
+        writer.close();
+        IndexReader reader = IndexReader.open(directory, true);
+        try {
+            Filter filter = cache.getFilter(new HashSet<String>(Arrays.asList("Beta", "gamma")));
+            DocIdSetIterator iterator = filter.getDocIdSet(reader).iterator();
+            HashSet<Integer> documents = new HashSet<Integer>();
+            while (iterator.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+                documents.add(iterator.docID());
+            }
+            assertEquals(new HashSet<Integer>(Arrays.asList(1, 2, 3)), documents);
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.searcher.server;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.RAMDirectory;
+import org.codesearch.commons.constants.IndexConstants;
+import org.junit.Test;
+
+/**
+ * Tests {@link SearchAfterCollector}.
+ */
+public class SearchAfterCollectorTest {
+
+    @Test
+    public void testPagesFollowTheOrderOfTopDocs() throws Exception {
+        RAMDirectory directory = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(IndexConstants.LUCENE_VERSION, new WhitespaceAnalyzer(
+                IndexConstants.LUCENE_VERSION)));
+        for (int i = 0; i < 20; i++) {
+            StringBuilder content = new StringBuilder();
+            // several documents share a score, their order is given by the document id
+            for (int j = 0; j <= i % 4; j++) {
+                content.append("needle ");
+            }
+            content.append("hay");
+            Document document = new Document();
+            document.add(new Field(IndexConstants.INDEX_FIELD_CONTENT, content.toString(), Field.Store.NO, Field.Index.ANALYZED));
+            writer.addDocument(document);
+            if (i % 7 == 6) {
+                // creates several segments
+                writer.commit();
+            }
+        }
+        writer.close();
+        IndexSearcher searcher = new IndexSearcher(directory, true);
+        try {
+            Query query = new TermQuery(new Term(IndexConstants.INDEX_FIELD_CONTENT, "needle"));
+            List<Integer> expected = new ArrayList<Integer>();
+            for (ScoreDoc scoreDoc : searcher.search(query, 100).scoreDocs) {
+                expected.add(scoreDoc.doc);
+            }
+
+            List<Integer> paged = new ArrayList<Integer>();
+            ScoreDoc after = null;
+            while (true) {
+                SearchAfterCollector collector = new SearchAfterCollector(after, 3);
+                searcher.search(query, collector);
+                assertEquals(20, collector.getTotalHits());
+                assertEquals(20 - paged.size(), collector.getRemainingHits());
+                ScoreDoc[] scoreDocs = collector.getScoreDocs();
+                if (scoreDocs.length == 0) {
+                    break;
+                }
+                for (ScoreDoc scoreDoc : scoreDocs) {
+                    paged.add(scoreDoc.doc);
+                }
+                after = scoreDocs[scoreDocs.length - 1];
+            }
+            assertEquals(expected, paged);
+        } finally {
+            searcher.close();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.searcher.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.codesearch.commons.configuration.dto.NoAuthentication;
+import org.codesearch.commons.configuration.dto.RepositoryDto;
+import org.codesearch.commons.constants.IndexConstants;
+import org.codesearch.commons.plugins.Plugin;
+import org.codesearch.commons.plugins.PluginLoader;
+import org.codesearch.commons.plugins.lucenefields.LuceneFieldPlugin;
+import org.codesearch.commons.plugins.lucenefields.LuceneFieldPluginLoader;
+import org.codesearch.commons.plugins.lucenefields.LuceneFieldPluginLoaderImpl;
+import org.codesearch.commons.plugins.lucenefields.core.ContentLuceneFieldPlugin;
+import org.codesearch.commons.plugins.lucenefields.core.FilenameLuceneFieldPlugin;
+import org.codesearch.commons.plugins.lucenefields.core.FilepathLuceneFieldPlugin;
+import org.codesearch.commons.plugins.lucenefields.core.RepositoryLuceneFieldPlugin;
+import org.codesearch.commons.utils.IndexShards;
+
+/**
+ * A searcher working on a temporary index. The documents are written the
+ * way the indexer writes them with the core lucene field plugins.
+ */
+public class SearcherTestEnvironment {
+
+    private File directory;
+    private MockConfigurationReader configReader;
+    private LuceneFieldPluginLoader luceneFieldPluginLoader;
+
+    public SearcherTestEnvironment(boolean sharded) throws IOException {
+        directory = File.createTempFile("codesearch", "test");
+        directory.delete();
+        directory.mkdirs();
+        configReader = new MockConfigurationReader(directory);
+        configReader.getIndexerConfiguration().setShardedIndex(sharded);
+        luceneFieldPluginLoader = createLuceneFieldPluginLoader();
+    }
+
+    /**
+     * Creates a lucene field plugin loader providing the core lucene field
+     * plugins.
+     */
+    public static LuceneFieldPluginLoader createLuceneFieldPluginLoader() {
+        return new LuceneFieldPluginLoaderImpl(new PluginLoader() {
+
+            @Override
+            public <T extends Plugin> T getPlugin(Class<T> clazz, String purpose) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public <T extends Plugin> T getNewPluginInstance(Class<T> clazz, String purpose) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public <T extends Plugin> List<T> getAllPluginsOfClass(Class<T> clazz) {
+                List<T> plugins = new LinkedList<T>();
+                for (LuceneFieldPlugin plugin : Arrays.asList(new RepositoryLuceneFieldPlugin(), new FilepathLuceneFieldPlugin(),
+                        new FilenameLuceneFieldPlugin(), new ContentLuceneFieldPlugin())) {
+                    plugins.add(clazz.cast(plugin));
+                }
+                return plugins;
+            }
+        });
+    }
+
+    public MockConfigurationReader getConfigReader() {
+        return configReader;
+    }
+
+    /**
+     * Adds a repository to the configuration.
+     */
+    public RepositoryDto addRepository(String name) {
+        RepositoryDto repository = new RepositoryDto(name, "mock://" + name, new NoAuthentication(), false, name,
+                new LinkedList<String>(), new LinkedList<String>(), new LinkedList<String>());
+        configReader.getRepositories().add(repository);
+        return repository;
+    }
+
+    /**
+     * Returns the location of the index holding the documents of a
+     * repository.
+     */
+    public File getIndexLocation(String repositoryName) {
+        File indexLocation = configReader.getIndexLocation();
+        if (!configReader.getIndexerConfiguration().isShardedIndex()) {
+            return indexLocation;
+        }
+        return IndexShards.getShardLocation(indexLocation, repositoryName);
+    }
+
+    /**
+     * Adds a file to the index of its repository and commits the index.
+     */
+    public void addFile(String repositoryName, String path, String content) throws IOException {
+        Directory index = FSDirectory.open(getIndexLocation(repositoryName));
+        IndexWriter writer = new IndexWriter(index, new IndexWriterConfig(IndexConstants.LUCENE_VERSION,
+                luceneFieldPluginLoader.getPerFieldAnalyzerWrapper(false)));
+        try {
+            String fileName = path.substring(path.lastIndexOf('/') + 1);
+            Document document = new Document();
+            document.add(new Field(IndexConstants.INDEX_FIELD_KEY, repositoryName + ":" + path, Field.Store.NO,
+                    Field.Index.NOT_ANALYZED_NO_NORMS));
+            document.add(new Field(IndexConstants.INDEX_FIELD_REPOSITORY, repositoryName, Field.Store.YES, Field.Index.ANALYZED));
+            document.add(new Field(IndexConstants.INDEX_FIELD_REVISION, "1", Field.Store.YES, Field.Index.NO));
+            addField(document, IndexConstants.INDEX_FIELD_FILEPATH, path, Field.Store.YES);
+            addField(document, IndexConstants.INDEX_FIELD_FILENAME, fileName, Field.Store.YES);
+            addField(document, IndexConstants.INDEX_FIELD_CONTENT, content, Field.Store.NO);
+            writer.addDocument(document);
+            writer.commit();
+        } finally {
+            writer.close();
+            index.close();
+        }
+    }
+
+    private void addField(Document document, String fieldName, String value, Field.Store store) {
+        document.add(new Field(fieldName, value, store, Field.Index.ANALYZED));
+        document.add(new Field(fieldName + IndexConstants.LC_POSTFIX, value, store, Field.Index.ANALYZED));
+    }
+
+    /**
+     * Creates a searcher of the index.
+     */
+    public DocumentSearcherImpl createSearcher() {
+        return new DocumentSearcherImpl(configReader, luceneFieldPluginLoader);
+    }
+
+    /**
+     * Deletes the temporary directory.
+     */
+    public void close() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+}
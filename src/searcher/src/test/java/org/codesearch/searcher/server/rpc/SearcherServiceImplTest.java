@@ -0,0 +1,98 @@
+/**
+ * Copyright 2010 David Froehlich <david.froehlich@businesssoftware.at>, Samuel
+ * Kogler <samuel.kogler@gmail.com>, Stephan Stiboller <stistc06@htlkaindorf.at>
+ *
+ * This file is part of Codesearch.
+ *
+ * Codesearch is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Codesearch is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Codesearch. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codesearch.searcher.server.rpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.codesearch.searcher.server.DocumentSearcherImpl;
+import org.codesearch.searcher.server.SearcherTestEnvironment;
+import org.codesearch.searcher.shared.SearchResultPage;
+import org.codesearch.searcher.shared.SearchType;
+import org.codesearch.searcher.shared.exception.SearcherServiceException;
+import org.codesearch.searcher.shared.exception.StaleCursorException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the paging of {@link SearcherServiceImpl#doSearch}, as seen by the
+ * client.
+ */
+public class SearcherServiceImplTest {
+
+    private static final Set<String> ALL_REPOSITORIES = Collections.emptySet();
+
+    private SearcherTestEnvironment environment;
+    private DocumentSearcherImpl searcher;
+    private SearcherServiceImpl service;
+
+    @Before
+    public void setUp() throws Exception {
+        environment = new SearcherTestEnvironment(false);
+        environment.addRepository("alpha");
+        environment.addFile("alpha", "a.txt", "needle");
+        environment.addFile("alpha", "b.txt", "needle");
+        environment.addFile("alpha", "c.txt", "needle");
+        searcher = environment.createSearcher();
+        service = new SearcherServiceImpl(searcher, environment.getConfigReader(), null, null, null,
+                SearcherTestEnvironment.createLuceneFieldPluginLoader());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        environment.close();
+    }
+
+    private SearchResultPage search(String cursor) throws SearcherServiceException {
+        return service.doSearch("needle", false, SearchType.REPOSITORIES, ALL_REPOSITORIES, 2, cursor);
+    }
+
+    @Test
+    public void testRefreshBetweenPagesRequiresNewSearch() throws Exception {
+        SearchResultPage first = search(null);
+        assertNotNull(first.getCursor());
+        environment.addFile("alpha", "d.txt", "needle");
+        searcher.refreshIndex();
+        try {
+            search(first.getCursor());
+            fail("The index changed since the first page was retrieved");
+        } catch (StaleCursorException ex) {
+            // the client runs the search again
+        }
+        SearchResultPage restarted = search(null);
+        assertEquals(4, restarted.getTotalHits());
+        assertEquals(2, search(restarted.getCursor()).getResults().size());
+    }
+
+    @Test
+    public void testMalformedCursorIsNotStale() throws Exception {
+        try {
+            search("malformed");
+            fail("The cursor is malformed");
+        } catch (SearcherServiceException ex) {
+            assertFalse(ex instanceof StaleCursorException);
+        }
+    }
+}